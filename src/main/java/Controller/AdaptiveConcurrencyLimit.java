@@ -0,0 +1,149 @@
+package Controller;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A concurrency limit that adapts to the latency of the work it admits (a gradient limiter).
+ * 
+ * Two moving averages of latency are kept: a short-term one that reacts within a few dozen samples and a long-term
+ * baseline. While the short-term latency stays within tolerance times the baseline, the limit grows by roughly its
+ * square root per adjustment (but only while the admitted work actually uses at least half of it). When the database
+ * stalls, the short-term latency rises above the baseline and the limit shrinks in proportion, down to half per
+ * adjustment, so excess requests are rejected immediately instead of piling up behind the stall.
+ * 
+ * Every SQL statement is a latency sample, so the averages and the limit are kept in one immutable snapshot that
+ * samples replace with a compare-and-set rather than under a lock.
+ */
+public class AdaptiveConcurrencyLimit {
+    private static final double SHORT_TERM_WEIGHT = 0.1;
+    private static final double LONG_TERM_WEIGHT = 0.005;
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicReference<State> state;
+
+    /**
+     * The latency averages and the limit that they produced
+     */
+    private static final class State {
+        final double shortTermNanos;
+        final double longTermNanos;
+        final double limit;
+
+        State(double shortTermNanos, double longTermNanos, double limit) {
+            this.shortTermNanos = shortTermNanos;
+            this.longTermNanos = longTermNanos;
+            this.limit = limit;
+        }
+    }
+
+    /**
+     * @param initialLimit the limit before any latency has been observed
+     * @param minLimit the lowest the limit can fall
+     * @param maxLimit the highest the limit can grow
+     * @param tolerance how many times the baseline latency the short-term latency may reach before the limit shrinks
+     */
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        if (minLimit < 0 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Expected 0 <= minLimit <= maxLimit");
+        }
+
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.state = new AtomicReference<>(new State(0, 0, Math.max(minLimit, Math.min(maxLimit, initialLimit))));
+    }
+
+    /**
+     * Admits one unit of work if the number in flight is below the limit
+     * 
+     * @return true if the work was admitted, in which case release() must be called when it finishes
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+
+            if (current >= (int) state.get().limit) {
+                return false;
+            }
+
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Marks one unit of admitted work as finished
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Adjusts the limit using the latency of one operation performed by admitted work
+     * 
+     * @param nanos the latency of the operation
+     */
+    public void onLatencySample(long nanos) {
+        while (true) {
+            State current = state.get();
+            State next = nextState(current, nanos);
+
+            if (state.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the current limit
+     */
+    public int getLimit() {
+        return (int) state.get().limit;
+    }
+
+    /**
+     * @return the number of admitted units of work that have not finished
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Folds one latency sample into the averages and adjusts the limit
+     * 
+     * @return the state after the sample
+     */
+    private State nextState(State current, long nanos) {
+        if (current.longTermNanos == 0) {
+            return new State(nanos, nanos, current.limit);
+        }
+
+        double shortTermNanos = current.shortTermNanos + (nanos - current.shortTermNanos) * SHORT_TERM_WEIGHT;
+        double longTermNanos = current.longTermNanos + (nanos - current.longTermNanos) * LONG_TERM_WEIGHT;
+
+        // After a long stall the baseline has crept up - pull it back down so the limit can recover
+        if (longTermNanos > 2 * shortTermNanos) {
+            longTermNanos *= 0.95;
+        }
+
+        // Grow by the square root only while latency is within tolerance, so that shrinking is never cancelled out
+        // by the headroom, however small the limit
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longTermNanos / shortTermNanos));
+        double currentLimit = current.limit;
+        double newLimit = gradient < 1.0 ? currentLimit * gradient : currentLimit + Math.sqrt(currentLimit);
+
+        // Don't grow a limit that the current load is not using
+        if (newLimit > currentLimit && inFlight.get() < currentLimit / 2) {
+            return new State(shortTermNanos, longTermNanos, currentLimit);
+        }
+
+        return new State(shortTermNanos, longTermNanos,
+                Math.max(minLimit, Math.min(maxLimit, currentLimit * (1 - SMOOTHING) + newLimit * SMOOTHING)));
+    }
+}
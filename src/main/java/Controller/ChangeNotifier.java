@@ -0,0 +1,30 @@
+package Controller;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import Model.Message;
+import Service.MessageEventListener;
+import Service.MessageEventType;
+
+/**
+ * Wakes long-polling change log readers when a message changes.
+ *
+ * A reader takes the current future before it queries the change log, and waits on it only if the query found
+ * nothing. Every event completes the current future and replaces it, so a change committed between the query and
+ * the wait still wakes the reader, and waiting readers hold no thread.
+ */
+public class ChangeNotifier implements MessageEventListener {
+    private final AtomicReference<CompletableFuture<Void>> next = new AtomicReference<>(new CompletableFuture<>());
+
+    /**
+     * @return a future that completes at the next message event
+     */
+    public CompletableFuture<Void> nextChange() {
+        return next.get();
+    }
+
+    @Override
+    public void onMessageEvent(MessageEventType type, Message message) {
+        next.getAndSet(new CompletableFuture<>()).complete(null);
+    }
+}
@@ -0,0 +1,180 @@
+package Controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import io.javalin.http.Context;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Locale;
+import Metrics.*;
+
+/**
+ * Encodes response bodies and decodes request bodies as JSON or, for service-to-service callers, as the binary
+ * Smile or CBOR encodings of the same objects, which are smaller and cheaper to produce and parse.
+ *
+ * The response encoding is negotiated from the Accept header: the supported type with the highest quality wins,
+ * and JSON is used when the header is absent or names nothing supported, so existing clients are unaffected.
+ * Request bodies are decoded according to their Content-Type, again defaulting to JSON.
+ *
+ * Only the endpoints that answer with a single JSON document are negotiated. The newline-delimited import and
+ * export, the event stream and the Prometheus scrape keep their own text formats.
+ */
+public class ContentNegotiator {
+    public static final String JSON = "application/json";
+    public static final String SMILE = "application/x-jackson-smile";
+    public static final String CBOR = "application/cbor";
+
+    /**
+     * The supported encodings, JSON first as the default
+     */
+    private static final List<String> MEDIA_TYPES = List.of(JSON, SMILE, CBOR);
+    private static final List<ObjectMapper> MAPPERS = List.of(new ObjectMapper(), new SmileMapper(), new CBORMapper());
+
+    private final Counter.Child[] responses = new Counter.Child[MEDIA_TYPES.size()];
+    private final Counter.Child[] responseBytes = new Counter.Child[MEDIA_TYPES.size()];
+
+    /**
+     * @param registry the registry that the per-encoding response counts and sizes are added to
+     */
+    public ContentNegotiator(MetricsRegistry registry) {
+        Counter responseCounter = registry.counter("http_responses_by_encoding_total", "Negotiated response bodies by encoding", "encoding");
+        Counter bytesCounter = registry.counter("http_response_body_bytes_total", "Bytes of negotiated response bodies by encoding", "encoding");
+
+        for (int i = 0; i < MEDIA_TYPES.size(); i++) {
+            responses[i] = responseCounter.labels(MEDIA_TYPES.get(i));
+            responseBytes[i] = bytesCounter.labels(MEDIA_TYPES.get(i));
+        }
+    }
+
+    /**
+     * Gets the mapper of an encoding, for clients of the API that want to speak the same encodings
+     *
+     * @param mediaType JSON, SMILE or CBOR
+     * @return the mapper that reads and writes the encoding
+     */
+    public static ObjectMapper mapperFor(String mediaType) {
+        int index = MEDIA_TYPES.indexOf(mediaType);
+
+        if (index < 0) {
+            throw new IllegalArgumentException("Unsupported media type " + mediaType + ", expected one of " + MEDIA_TYPES);
+        }
+
+        return MAPPERS.get(index);
+    }
+
+    /**
+     * Sets the response body to an object, encoded as the request's Accept header asks
+     *
+     * @param context the Javalin Context object manages information about both the HTTP request and response.
+     * @param value the object to send
+     * @return the context, so that the status can be chained as with Context.json()
+     */
+    public Context writeBody(Context context, Object value) {
+        int index = negotiate(context.header("Accept"));
+        byte[] body;
+
+        try {
+            body = MAPPERS.get(index).writeValueAsBytes(value);
+        }
+        catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        responses[index].inc();
+        responseBytes[index].inc(body.length);
+
+        context.header("Vary", "Accept");
+        return context.contentType(MEDIA_TYPES.get(index)).result(body);
+    }
+
+    /**
+     * Decodes the request body according to its Content-Type, in place of Context.bodyAsClass()
+     *
+     * @param context the Javalin Context object manages information about both the HTTP request and response.
+     * @param type the class to decode the body as
+     * @return the decoded body
+     * @throws UncheckedIOException if the body is not valid in its encoding
+     */
+    public <T> T readBody(Context context, Class<T> type) {
+        // A missing or unsupported Content-Type is read as JSON, as Context.bodyAsClass() would
+        int index = Math.max(0, mediaTypeIndex(context.contentType()));
+
+        try {
+            return MAPPERS.get(index).readValue(context.bodyAsBytes(), type);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Picks the supported encoding with the highest quality in an Accept header, the earliest one on a tie
+     *
+     * @param accept the Accept header, or null
+     * @return the index of the chosen encoding, JSON if nothing supported is acceptable
+     */
+    private static int negotiate(String accept) {
+        if (accept == null) {
+            return 0;
+        }
+
+        int best = 0;
+        double bestQuality = 0;
+
+        for (String range : accept.split(",")) {
+            String[] parts = range.split(";");
+            int index = mediaTypeIndex(parts[0]);
+            double quality = quality(parts);
+
+            if (index >= 0 && quality > bestQuality) {
+                best = index;
+                bestQuality = quality;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * @param mediaType a media type or range, possibly with parameters, or null
+     * @return the index of the supported encoding it names, 0 (JSON) for a wildcard, -1 if it is unsupported or null
+     */
+    private static int mediaTypeIndex(String mediaType) {
+        if (mediaType == null) {
+            return -1;
+        }
+
+        int semicolon = mediaType.indexOf(';');
+        String type = (semicolon < 0 ? mediaType : mediaType.substring(0, semicolon)).trim().toLowerCase(Locale.ROOT);
+
+        if (type.equals("*/*") || type.equals("application/*")) {
+            return 0;
+        }
+
+        return MEDIA_TYPES.indexOf(type);
+    }
+
+    /**
+     * @param parts a media range split at its semicolons
+     * @return the range's q parameter, 1 if it has none, 0 if it is malformed
+     */
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2));
+                }
+                catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+
+        return 1;
+    }
+}
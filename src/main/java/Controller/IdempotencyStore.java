@@ -0,0 +1,183 @@
+package Controller;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import Metrics.*;
+
+/**
+ * Remembers the responses of requests sent with an Idempotency-Key header, so that a client retrying a request gets
+ * the response of the first attempt instead of repeating its side effects.
+ *
+ * The first request with a key claims it and executes; its response is stored as the bytes that were sent. A
+ * request that arrives with the same key while the first is still executing gets the same future, and is answered
+ * when the first finishes rather than executing again. Entries expire a fixed time after they are claimed. When
+ * the store is full, expired entries are swept out, and if that frees nothing, a batch of entries is evicted in the
+ * map's iteration order, as TtlCache does.
+ */
+public class IdempotencyStore {
+    private static final long SWEEP_INTERVAL_NANOS = 10_000_000_000L;
+
+    /**
+     * A response as it was sent to the client
+     */
+    public static final class StoredResponse {
+        private final int status;
+        private final String contentType;
+        private final byte[] body;
+
+        public StoredResponse(int status, String contentType, byte[] body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        /**
+         * @return the Content-Type of the response, or null if it had none
+         */
+        public String getContentType() {
+            return contentType;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+
+    /**
+     * A key, the request that claimed it and the eventual response
+     */
+    public static final class Claim {
+        private final String fingerprint;
+        private final long expiresAtNanos;
+        private final boolean owner;
+        private final CompletableFuture<StoredResponse> response;
+
+        private Claim(String fingerprint, long expiresAtNanos, boolean owner, CompletableFuture<StoredResponse> response) {
+            this.fingerprint = fingerprint;
+            this.expiresAtNanos = expiresAtNanos;
+            this.owner = owner;
+            this.response = response;
+        }
+
+        /**
+         * @return true if this request claimed the key and must execute, then call complete() or release()
+         */
+        public boolean isOwner() {
+            return owner;
+        }
+
+        /**
+         * @param fingerprint the fingerprint of a request with the same key
+         * @return true if that request is the same as the one that claimed the key
+         */
+        public boolean matches(String fingerprint) {
+            return this.fingerprint.equals(fingerprint);
+        }
+
+        /**
+         * @return the response of the request that claimed the key, which completes once that request finishes
+         */
+        public CompletableFuture<StoredResponse> getResponse() {
+            return response;
+        }
+    }
+
+    private final Map<String, Claim> claims = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final int maxSize;
+    private final AtomicLong nextSweepNanos = new AtomicLong(System.nanoTime() + SWEEP_INTERVAL_NANOS);
+
+    /**
+     * @param ttlMillis how long a key is remembered after it is claimed
+     * @param maxSize the maximum number of keys held
+     * @param registry the registry that the number of keys held is added to
+     */
+    public IdempotencyStore(long ttlMillis, int maxSize, MetricsRegistry registry) {
+        this.ttlNanos = ttlMillis * 1_000_000;
+        this.maxSize = maxSize;
+
+        registry.gauge("idempotency_keys", "Idempotency keys held in memory").labels().set(claims::size);
+    }
+
+    /**
+     * Claims a key, or returns the claim of the request that already holds it
+     *
+     * @param key the idempotency key, scoped to the endpoint it was sent to
+     * @param fingerprint identifies the request, so that a key reused for a different request can be rejected
+     * @return the claim, whose isOwner() tells whether the caller must execute the request
+     */
+    public Claim claim(String key, String fingerprint) {
+        long now = System.nanoTime();
+
+        if (now - nextSweepNanos.get() > 0 || claims.size() >= maxSize) {
+            sweep(now);
+        }
+
+        Claim claimed = new Claim(fingerprint, now + ttlNanos, true, new CompletableFuture<>());
+        Claim current = claims.compute(key, (k, existing) ->
+                existing == null || now - existing.expiresAtNanos > 0 ? claimed : existing);
+
+        if (current == claimed) {
+            return claimed;
+        }
+
+        return new Claim(current.fingerprint, current.expiresAtNanos, false, current.response);
+    }
+
+    /**
+     * Stores the response of a request that claimed a key, and answers the requests waiting on it
+     *
+     * @param claim the claim returned to the request
+     * @param response the response that was sent
+     */
+    public void complete(Claim claim, StoredResponse response) {
+        claim.response.complete(response);
+    }
+
+    /**
+     * Forgets a key without storing a response, so that the next request with the key executes again. The requests
+     * waiting on the key are answered with the response given, if any, or fail.
+     *
+     * @param key the key that was claimed
+     * @param claim the claim returned to the request
+     * @param response the response that was sent, or null if the request failed
+     */
+    public void release(String key, Claim claim, StoredResponse response) {
+        claims.remove(key, claim);
+
+        if (response != null) {
+            claim.response.complete(response);
+        }
+        else {
+            claim.response.completeExceptionally(new IllegalStateException("The request holding idempotency key " + key + " failed"));
+        }
+    }
+
+    /**
+     * Removes the expired keys, then evicts about 1% of the maximum size if the store is still full
+     */
+    private void sweep(long now) {
+        nextSweepNanos.set(now + SWEEP_INTERVAL_NANOS);
+        claims.values().removeIf(claim -> now - claim.expiresAtNanos > 0);
+
+        if (claims.size() < maxSize) {
+            return;
+        }
+
+        int toEvict = Math.max(1, maxSize / 100);
+        Iterator<String> keys = claims.keySet().iterator();
+
+        while (toEvict > 0 && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+            toEvict--;
+        }
+    }
+}
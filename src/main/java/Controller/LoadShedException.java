@@ -0,0 +1,13 @@
+package Controller;
+
+/**
+ * Thrown from a before-handler to stop a request that the LoadShedder did not admit. The controller maps it to an
+ * empty 503 response.
+ */
+public class LoadShedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public LoadShedException() {
+        super("Request shed under load", null, false, false);
+    }
+}
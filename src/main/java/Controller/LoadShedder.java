@@ -0,0 +1,96 @@
+package Controller;
+
+import DAO.QueryLatencyListener;
+import Metrics.*;
+
+/**
+ * Rejects requests early, before they reach the service layer, when the database cannot keep up.
+ * 
+ * Reads and writes are admitted through separate adaptive concurrency limits, each adjusted by the latency of the
+ * SQL statements of its kind (SELECTs for reads, everything else for writes). Writes have priority: while the write
+ * limit is exhausted, reads are shed even if the read limit has room, so the database's capacity goes to writes.
+ */
+public class LoadShedder implements QueryLatencyListener {
+    private final AdaptiveConcurrencyLimit readLimit;
+    private final AdaptiveConcurrencyLimit writeLimit;
+    private final Counter.Child readsShed;
+    private final Counter.Child writesShed;
+
+    /**
+     * @param readLimit the concurrency limit for read requests
+     * @param writeLimit the concurrency limit for write requests
+     * @param registry the registry that the limits and rejection counts are exposed in
+     */
+    public LoadShedder(AdaptiveConcurrencyLimit readLimit, AdaptiveConcurrencyLimit writeLimit, MetricsRegistry registry) {
+        this.readLimit = readLimit;
+        this.writeLimit = writeLimit;
+
+        Counter shed = registry.counter("load_shed_total", "Requests rejected with 503 by the load shedder", "class");
+        this.readsShed = shed.labels("read");
+        this.writesShed = shed.labels("write");
+
+        Gauge limit = registry.gauge("load_shedder_limit", "Current adaptive concurrency limit", "class");
+        limit.labels("read").set(readLimit::getLimit);
+        limit.labels("write").set(writeLimit::getLimit);
+
+        Gauge inFlight = registry.gauge("load_shedder_in_flight", "Admitted requests that have not finished", "class");
+        inFlight.labels("read").set(readLimit::getInFlight);
+        inFlight.labels("write").set(writeLimit::getInFlight);
+    }
+
+    /**
+     * Admits a request if its class has capacity
+     * 
+     * @param write true for requests that modify data, false for reads
+     * @return true if the request was admitted, in which case release() must be called when it finishes
+     */
+    public boolean tryAcquire(boolean write) {
+        if (write) {
+            if (writeLimit.tryAcquire()) {
+                return true;
+            }
+
+            writesShed.inc();
+            return false;
+        }
+
+        // Reads yield to writes: while writes are at their limit, reads are shed first
+        if (writeLimit.getInFlight() < writeLimit.getLimit() && readLimit.tryAcquire()) {
+            return true;
+        }
+
+        readsShed.inc();
+        return false;
+    }
+
+    /**
+     * Marks an admitted request as finished
+     * 
+     * @param write the value that was passed to tryAcquire()
+     */
+    public void release(boolean write) {
+        if (write) {
+            writeLimit.release();
+        }
+        else {
+            readLimit.release();
+        }
+    }
+
+    /**
+     * @return the number of admitted requests, reads and writes, that have not finished
+     */
+    public int getInFlight() {
+        return readLimit.getInFlight() + writeLimit.getInFlight();
+    }
+
+    @Override
+    public void onQueryExecuted(String sql, long nanos) {
+        if (sql.regionMatches(true, 0, "SELECT", 0, 6)) {
+            readLimit.onLatencySample(nanos);
+        }
+        else {
+            writeLimit.onLatencySample(nanos);
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package Controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.javalin.http.Context;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import Metrics.*;
+import Model.Message;
+import Service.MessageEventListener;
+import Service.MessageEventType;
+import Util.DaemonThreadFactory;
+
+/**
+ * Fans message events out to Server-Sent Events subscribers.
+ *
+ * Each event is serialized into a complete SSE frame once, when it is published, and kept in a fixed size ring.
+ * Subscribers only hold a cursor into the ring: a pool of delivery threads copies the frames a subscriber has not
+ * seen yet to its connection. Connections are written with non-blocking servlet output, so a delivery thread stops
+ * at a subscriber whose connection cannot take more and moves on, and resumes from the cursor once the container
+ * reports that the connection can be written again. A slow subscriber therefore never holds up the writer that
+ * published the event or the other subscribers. A subscriber that falls so far behind that the ring overwrites its
+ * next frame is dropped, and its reconnect (with Last-Event-ID) either resumes from the ring or receives a "reset"
+ * event telling it to reload.
+ *
+ * Event IDs have the form {stream}-{sequence}, where the stream part changes every time the server starts, so an
+ * ID from before a restart is never mistaken for a position in the current ring.
+ */
+public class MessageEventStream implements MessageEventListener {
+    private static final Logger logger = LoggerFactory.getLogger(MessageEventStream.class);
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    public static final String CONTENT_TYPE = "text/event-stream";
+
+    /**
+     * Sent to a subscriber that asked to resume from an event that is no longer in the ring
+     */
+    private static final byte[] RESET_FRAME = "event: reset\ndata: {}\n\n".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * An SSE comment, sent periodically so that proxies keep idle connections open and disconnects are noticed
+     */
+    private static final byte[] HEARTBEAT_FRAME = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * An event serialized as a complete SSE frame
+     */
+    private static final class Frame {
+        final long sequence;
+        final int postedBy;
+        final byte[] bytes;
+
+        Frame(long sequence, int postedBy, byte[] bytes) {
+            this.sequence = sequence;
+            this.postedBy = postedBy;
+            this.bytes = bytes;
+        }
+    }
+
+    private final String streamId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicReferenceArray<Frame> ring;
+    private final int mask;
+    private final Object publishLock = new Object();
+
+    /**
+     * The sequence number that the next event will get. Frames below it are complete in the ring.
+     */
+    private volatile long nextSequence = 1;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor deliveryExecutor;
+    private final ScheduledExecutorService heartbeatExecutor;
+
+    private final Counter.Child publishedEvents;
+    private final Counter dropped;
+
+    /**
+     * @param capacity the number of events kept for slow and resuming subscribers (rounded up to a power of two)
+     * @param deliveryThreads the number of threads writing events to subscribers
+     * @param heartbeatMillis how often an idle subscriber is sent a heartbeat comment
+     * @param registry the registry that the stream's metrics are added to
+     */
+    public MessageEventStream(int capacity, int deliveryThreads, long heartbeatMillis, MetricsRegistry registry) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+
+        this.deliveryExecutor = new ThreadPoolExecutor(deliveryThreads, deliveryThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new DaemonThreadFactory("message-stream-delivery"));
+        this.deliveryExecutor.allowCoreThreadTimeOut(true);
+        this.heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("message-stream-heartbeat"));
+        this.heartbeatExecutor.scheduleAtFixedRate(this::sendHeartbeats, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+
+        this.publishedEvents = registry.counter("message_stream_events_total", "Message events published to the event stream").labels();
+        this.dropped = registry.counter("message_stream_dropped_total", "Event stream subscribers dropped", "reason");
+        registry.gauge("message_stream_subscribers", "Open event stream subscriptions").labels().set(subscribers::size);
+    }
+
+    /**
+     * Serializes an event into the ring and wakes the subscribers
+     */
+    @Override
+    public void onMessageEvent(MessageEventType type, Message message) {
+        String data;
+
+        try {
+            data = OBJECT_MAPPER.writeValueAsString(message);
+        }
+        catch (JsonProcessingException e) {
+            logger.error("Failed to serialize {} event of message {}", type.getName(), message.getMessage_id(), e);
+            return;
+        }
+
+        synchronized (publishLock) {
+            long sequence = nextSequence;
+            String frame = "id: " + streamId + "-" + sequence + "\nevent: " + type.getName() + "\ndata: " + data + "\n\n";
+
+            ring.set((int) (sequence & mask), new Frame(sequence, message.getPosted_by(), frame.getBytes(StandardCharsets.UTF_8)));
+            nextSequence = sequence + 1;
+        }
+
+        publishedEvents.inc();
+
+        for (Subscriber subscriber : subscribers) {
+            subscriber.schedule();
+        }
+    }
+
+    /**
+     * Turns a request into a subscription that stays open until the client disconnects, is dropped or the stream
+     * is closed
+     *
+     * @param context the context of the request to stream events to
+     * @param postedBy only stream events of messages posted by this account, or null for every message
+     * @param lastEventId the ID of the last event the client received before reconnecting, or null
+     * @throws IOException if the response cannot be started
+     */
+    public void subscribe(Context context, Integer postedBy, String lastEventId) throws IOException {
+        context.status(200).contentType(CONTENT_TYPE);
+        context.header("Cache-Control", "no-cache");
+        context.header("X-Accel-Buffering", "no");
+
+        ServletOutputStream output = context.res().getOutputStream();
+        Subscriber subscriber = new Subscriber(output, postedBy);
+        long head = nextSequence;
+        long resumeFrom = resumePosition(lastEventId, head);
+
+        if (resumeFrom < 0) {
+            subscriber.cursor = head;
+            subscriber.resetPending = lastEventId != null;
+        }
+        else {
+            subscriber.cursor = resumeFrom;
+        }
+
+        // Send the headers now rather than with the first event, so that the client knows it is subscribed
+        context.res().flushBuffer();
+
+        // Switch the response to non-blocking output, which needs the request to be asynchronous. The subscription
+        // never times out on its own - it ends when the client disconnects.
+        AsyncContext asyncContext = context.req().startAsync();
+        asyncContext.setTimeout(0);
+
+        context.future(() -> subscriber.completion);
+
+        // The container calls onWritePossible once the output is ready, which schedules the first delivery. The
+        // subscriber is only published afterwards, so that nothing writes to the output while it is still blocking.
+        output.setWriteListener(subscriber);
+        subscribers.add(subscriber);
+
+        if (subscriber.completion.isDone()) {
+            subscribers.remove(subscriber);
+        }
+    }
+
+    /**
+     * Ends every subscription and stops the delivery and heartbeat threads
+     */
+    public void close() {
+        heartbeatExecutor.shutdownNow();
+        deliveryExecutor.shutdownNow();
+
+        for (Subscriber subscriber : subscribers) {
+            subscriber.drop("closed");
+        }
+    }
+
+    /**
+     * @return the number of open subscriptions
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Finds where a reconnecting client should resume
+     *
+     * @param lastEventId the ID of the last event the client received, or null
+     * @param head the sequence number of the next event
+     * @return the sequence number of the first event to send, or -1 if the client must start from the head
+     */
+    private long resumePosition(String lastEventId, long head) {
+        if (lastEventId == null || !lastEventId.startsWith(streamId + "-")) {
+            return -1;
+        }
+
+        long lastSequence;
+
+        try {
+            lastSequence = Long.parseLong(lastEventId.substring(streamId.length() + 1));
+        }
+        catch (NumberFormatException e) {
+            return -1;
+        }
+
+        long oldestInRing = Math.max(1, head - ring.length());
+
+        if (lastSequence + 1 < oldestInRing || lastSequence >= head) {
+            return -1;
+        }
+
+        return lastSequence + 1;
+    }
+
+    private void sendHeartbeats() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.heartbeatDue = true;
+            subscriber.schedule();
+        }
+    }
+
+    /**
+     * An open subscription. At most one delivery thread writes to it at a time, and only while the container reports
+     * that its output is ready.
+     */
+    private final class Subscriber implements WriteListener {
+        final ServletOutputStream output;
+        final Integer postedBy;
+        final CompletableFuture<Void> completion = new CompletableFuture<>();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+
+        /**
+         * The sequence number of the next frame to consider sending. Only read and written by delivery threads once
+         * the subscription is open.
+         */
+        long cursor;
+        volatile boolean resetPending;
+        volatile boolean heartbeatDue;
+
+        /**
+         * Whether frames have been written since the output was last flushed. Only read and written by delivery
+         * threads.
+         */
+        boolean flushPending;
+
+        /**
+         * Whether the output was not ready for a write, so that delivery waits for onWritePossible
+         */
+        volatile boolean awaitingWritable = true;
+
+        Subscriber(ServletOutputStream output, Integer postedBy) {
+            this.output = output;
+            this.postedBy = postedBy;
+        }
+
+        /**
+         * Makes sure that a delivery thread will copy whatever is pending to this subscriber
+         */
+        void schedule() {
+            if (!completion.isDone() && scheduled.compareAndSet(false, true)) {
+                try {
+                    deliveryExecutor.execute(this::deliver);
+                }
+                catch (RuntimeException e) {
+                    // The stream has been closed
+                    drop("closed");
+                }
+            }
+        }
+
+        /**
+         * Resumes delivery once the output that was not ready can be written again
+         */
+        @Override
+        public void onWritePossible() {
+            awaitingWritable = false;
+            schedule();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            drop("disconnected");
+        }
+
+        /**
+         * Writes every pending frame that the output takes without blocking, then checks whether more arrived while
+         * it was writing
+         */
+        private void deliver() {
+            try {
+                while (true) {
+                    if (!writePending()) {
+                        return;
+                    }
+
+                    scheduled.set(false);
+
+                    // A subscriber whose output is not ready is scheduled again by onWritePossible
+                    boolean idle = cursor >= nextSequence && !heartbeatDue && !resetPending && !flushPending;
+
+                    if (awaitingWritable || idle || !scheduled.compareAndSet(false, true)) {
+                        return;
+                    }
+                }
+            }
+            catch (IOException e) {
+                drop("disconnected");
+            }
+        }
+
+        /**
+         * @return false if the subscriber was dropped
+         */
+        private boolean writePending() throws IOException {
+            if (resetPending) {
+                if (!isReady()) {
+                    return true;
+                }
+
+                resetPending = false;
+                output.write(RESET_FRAME);
+                flushPending = true;
+            }
+
+            long head = nextSequence;
+
+            while (cursor < head) {
+                Frame frame = ring.get((int) (cursor & mask));
+
+                // The ring has wrapped past this subscriber, so the frames it needed are gone
+                if (frame == null || frame.sequence != cursor) {
+                    drop("lagging");
+                    return false;
+                }
+
+                if (postedBy == null || frame.postedBy == postedBy) {
+                    if (!isReady()) {
+                        return true;
+                    }
+
+                    output.write(frame.bytes);
+                    flushPending = true;
+                }
+
+                cursor++;
+            }
+
+            if (heartbeatDue) {
+                if (!isReady()) {
+                    return true;
+                }
+
+                heartbeatDue = false;
+                output.write(HEARTBEAT_FRAME);
+                flushPending = true;
+            }
+
+            if (flushPending && isReady()) {
+                flushPending = false;
+                output.flush();
+            }
+
+            return true;
+        }
+
+        /**
+         * Checks whether the output takes a write without blocking. If it does not, the container calls
+         * onWritePossible once it does.
+         */
+        private boolean isReady() {
+            // Set first, so that an onWritePossible that races the check is not lost
+            awaitingWritable = true;
+
+            if (output.isReady()) {
+                awaitingWritable = false;
+                return true;
+            }
+
+            return false;
+        }
+
+        void drop(String reason) {
+            if (subscribers.remove(this)) {
+                dropped.labels(reason).inc();
+            }
+
+            completion.complete(null);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package Controller;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import Model.Message;
+import Service.ImportRecord;
+import Service.MessageSource;
+
+/**
+ * Reads messages from newline-delimited JSON with a streaming parser, so only the record being read is held in
+ * memory however large the input is.
+ *
+ * A record that is well-formed JSON but does not describe a message (for example an array, or an object with a
+ * field of the wrong type) is returned without a message so that it can be rejected. Malformed JSON cannot be
+ * skipped reliably, so it fails the read with a JsonProcessingException giving its location.
+ */
+public class NdjsonMessageReader implements MessageSource {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final JsonParser parser;
+
+    /**
+     * @param input the NDJSON to read, which is only read as records are asked for
+     * @throws IOException if the input cannot be read
+     */
+    public NdjsonMessageReader(InputStream input) throws IOException {
+        this.parser = OBJECT_MAPPER.getFactory().createParser(input);
+    }
+
+    @Override
+    public ImportRecord next() throws IOException {
+        JsonToken token = parser.nextToken();
+
+        if (token == null) {
+            return null;
+        }
+
+        int line = parser.getTokenLocation().getLineNr();
+
+        if (token != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return new ImportRecord(line, null);
+        }
+
+        // Read the record as a tree first so that a field of the wrong type rejects the record without leaving the
+        // parser in the middle of it
+        JsonNode record = parser.readValueAsTree();
+
+        try {
+            return new ImportRecord(line, OBJECT_MAPPER.treeToValue(record, Message.class));
+        }
+        catch (JsonProcessingException e) {
+            return new ImportRecord(line, null);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package Controller;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.javalin.http.Context;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams rows to an HTTP response as newline-delimited JSON, one object per line, at no more than a fixed number of
+ * rows per second.
+ *
+ * The response is gzip encoded when the client accepts it. Null fields are left out, so an Account without its
+ * password is written as {"account_id":1,"username":"testuser1"}.
+ */
+public class NdjsonWriter {
+    public static final String CONTENT_TYPE = "application/x-ndjson";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * How far ahead of its rate the writer may get before it sleeps, so that it does not sleep after every row
+     */
+    private static final long MIN_SLEEP_NANOS = 5_000_000;
+
+    private final JsonGenerator generator;
+    private final OutputStream output;
+    private final double rowsPerSecond;
+    private final long startNanos = System.nanoTime();
+    private long rows;
+
+    /**
+     * Sets the response headers and opens the response body
+     *
+     * @param context the context of the response to write to
+     * @param rowsPerSecond the most rows to write per second, or 0 to write as fast as the client reads
+     * @throws IOException if the response body cannot be opened
+     */
+    public NdjsonWriter(Context context, double rowsPerSecond) throws IOException {
+        boolean gzip = acceptsGzip(context.header("Accept-Encoding"));
+
+        context.status(200).contentType(CONTENT_TYPE);
+
+        if (gzip) {
+            context.header("Content-Encoding", "gzip");
+        }
+
+        // Write to the servlet stream directly, since Javalin's compressing stream would decide per response whether
+        // to compress based on the size of the first write
+        OutputStream body = context.res().getOutputStream();
+        this.output = gzip ? new GZIPOutputStream(body, BUFFER_SIZE) : new BufferedOutputStream(body, BUFFER_SIZE);
+        this.generator = OBJECT_MAPPER.getFactory().createGenerator(output);
+        this.generator.setRootValueSeparator(null);
+        this.rowsPerSecond = rowsPerSecond;
+    }
+
+    /**
+     * Writes a row as a line of JSON, first sleeping if the writer is ahead of its rate
+     *
+     * @param row the object to write
+     * @throws IOException if the client has gone away
+     */
+    public void write(Object row) throws IOException {
+        throttle();
+
+        generator.writeObject(row);
+        generator.writeRaw('\n');
+        rows++;
+    }
+
+    /**
+     * Flushes the remaining rows and completes the response body
+     *
+     * @throws IOException if the client has gone away
+     */
+    public void finish() throws IOException {
+        generator.close();
+    }
+
+    /**
+     * @return the number of rows written so far
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Sleeps until the next row is due, if it is due far enough in the future
+     */
+    private void throttle() throws IOException {
+        if (rowsPerSecond <= 0) {
+            return;
+        }
+
+        long dueNanos = startNanos + (long) (rows * 1_000_000_000L / rowsPerSecond);
+        long aheadNanos = dueNanos - System.nanoTime();
+
+        if (aheadNanos < MIN_SLEEP_NANOS) {
+            return;
+        }
+
+        // Send what has been written so far rather than leaving it buffered while sleeping
+        generator.flush();
+
+        try {
+            Thread.sleep(aheadNanos / 1_000_000, (int) (aheadNanos % 1_000_000));
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while throttling an export");
+        }
+    }
+
+    /**
+     * @param acceptEncoding the request's Accept-Encoding header (may be null)
+     * @return true if the header lists gzip
+     */
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        for (String encoding : acceptEncoding.split(",")) {
+            String name = encoding.trim();
+            int parameters = name.indexOf(';');
+
+            if (parameters >= 0) {
+                // A q value of 0 means the encoding is not acceptable
+                if (name.substring(parameters).replace(" ", "").matches(";q=0(\\.0*)?")) {
+                    continue;
+                }
+
+                name = name.substring(0, parameters).trim();
+            }
+
+            if (name.equalsIgnoreCase("gzip")) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
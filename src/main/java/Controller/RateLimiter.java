@@ -0,0 +1,125 @@
+package Controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket per key (account ID, client IP...) that limits how often each key may make a request.
+ * 
+ * Each bucket holds up to burst tokens and refills at ratePerSecond. Rather than storing a token count and a refill
+ * timestamp, a bucket stores a single "theoretical arrival time" (the generic cell rate algorithm, which behaves
+ * exactly like a token bucket): a request is allowed when that time is no more than the burst window ahead of now,
+ * and allowing it pushes the time forward by one token's worth. This makes acquiring a token a single
+ * compare-and-set on one AtomicLong, with no locks.
+ * 
+ * Buckets live in striped maps. A bucket whose arrival time is in the past is full, so dropping it loses nothing;
+ * each stripe periodically sweeps out buckets that have been full for longer than the idle timeout, which keeps
+ * memory bounded by the number of recently active keys.
+ * 
+ * @param <K> the type of key that requests are limited by
+ */
+public class RateLimiter<K> {
+    private static final int STRIPES = 16;
+    private static final long SWEEP_INTERVAL_NANOS = 10_000_000_000L;
+
+    private final long emissionIntervalNanos;
+    private final long burstWindowNanos;
+    private final long idleTimeoutNanos;
+    private final List<Map<K, AtomicLong>> stripes;
+    private final AtomicLong[] nextSweepNanos;
+
+    /**
+     * @param ratePerSecond how many requests per second each key may make once its burst is used up
+     * @param burst how many requests a key may make at once after being idle
+     * @param idleTimeoutMillis how long a bucket must have been full before it is evicted
+     */
+    public RateLimiter(double ratePerSecond, int burst, long idleTimeoutMillis) {
+        if (ratePerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("The rate must be positive and the burst at least 1");
+        }
+
+        this.emissionIntervalNanos = (long) (1e9 / ratePerSecond);
+        this.burstWindowNanos = emissionIntervalNanos * (burst - 1);
+        this.idleTimeoutNanos = idleTimeoutMillis * 1_000_000;
+        this.stripes = new ArrayList<>(STRIPES);
+        this.nextSweepNanos = new AtomicLong[STRIPES];
+
+        long now = System.nanoTime();
+
+        for (int i = 0; i < STRIPES; i++) {
+            stripes.add(new ConcurrentHashMap<>());
+            nextSweepNanos[i] = new AtomicLong(now + SWEEP_INTERVAL_NANOS);
+        }
+    }
+
+    /**
+     * Attempts to take a token from a key's bucket
+     * 
+     * @param key the key making the request
+     * @return 0 if the request is allowed, otherwise the number of nanoseconds until the key's next token is available
+     */
+    public long tryAcquire(K key) {
+        long now = System.nanoTime();
+        int stripeIndex = stripeOf(key);
+        Map<K, AtomicLong> stripe = stripes.get(stripeIndex);
+
+        AtomicLong arrivalTime = stripe.get(key);
+
+        if (arrivalTime == null) {
+            arrivalTime = stripe.computeIfAbsent(key, newKey -> new AtomicLong(now));
+        }
+
+        while (true) {
+            long current = arrivalTime.get();
+            long base = Math.max(current, now);
+
+            // The bucket is empty: the next token arrives once base falls back within the burst window
+            if (base - now > burstWindowNanos) {
+                sweepIfDue(stripeIndex, now);
+                return base - now - burstWindowNanos;
+            }
+
+            if (arrivalTime.compareAndSet(current, base + emissionIntervalNanos)) {
+                sweepIfDue(stripeIndex, now);
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * @return the number of buckets currently held in memory
+     */
+    public int getBucketCount() {
+        int count = 0;
+
+        for (Map<K, AtomicLong> stripe : stripes) {
+            count += stripe.size();
+        }
+
+        return count;
+    }
+
+    /**
+     * Removes every bucket of a stripe that has been full for longer than the idle timeout, at most once per interval
+     * (whichever thread wins the compare-and-set performs the sweep, everyone else carries on)
+     */
+    private void sweepIfDue(int stripeIndex, long now) {
+        long nextSweep = nextSweepNanos[stripeIndex].get();
+
+        if (now - nextSweep < 0 || !nextSweepNanos[stripeIndex].compareAndSet(nextSweep, now + SWEEP_INTERVAL_NANOS)) {
+            return;
+        }
+
+        long idleSince = now - idleTimeoutNanos;
+        stripes.get(stripeIndex).values().removeIf(arrivalTime -> arrivalTime.get() - idleSince < 0);
+    }
+
+    private int stripeOf(K key) {
+        int hash = key.hashCode();
+
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+}
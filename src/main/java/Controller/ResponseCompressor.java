@@ -0,0 +1,290 @@
+package Controller;
+
+import io.airlift.compress.zstd.ZstdCompressor;
+import io.javalin.http.Context;
+import io.javalin.http.HandlerType;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import Metrics.*;
+import Service.TtlCache;
+
+/**
+ * Compresses response bodies with the encoding that the request's Accept-Encoding header prefers, zstd or gzip.
+ *
+ * Bodies smaller than the minimum size are sent as they are, since compressing them saves less than it costs.
+ * Deflaters are pooled rather than created per response, and the compressed bytes of GET responses are cached by
+ * the content of the uncompressed body, so a hot response (the same message list served to many clients) is
+ * compressed once per cache lifetime however it was produced. Entries need no invalidation, since a changed body
+ * is a different key.
+ *
+ * This runs as an after handler, once the body is complete. Responses that are streamed to the servlet output
+ * directly (the NDJSON exports and the event stream) have no result here and compress themselves.
+ */
+public class ResponseCompressor {
+    public static final String GZIP = "gzip";
+    public static final String ZSTD = "zstd";
+
+    /**
+     * The supported encodings in the server's order of preference when a client accepts several equally
+     */
+    private static final List<String> ENCODINGS = List.of(ZSTD, GZIP);
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final int minSize;
+    private final int gzipLevel;
+    private final BlockingQueue<Deflater> deflaters;
+    private final ZstdCompressor zstdCompressor = new ZstdCompressor();
+    private final TtlCache<CacheKey, byte[]> cache;
+    private final Counter.Child[] responses = new Counter.Child[ENCODINGS.size()];
+    private final Counter.Child[] uncompressedBytes = new Counter.Child[ENCODINGS.size()];
+    private final Counter.Child[] compressedBytes = new Counter.Child[ENCODINGS.size()];
+
+    /**
+     * The key of a cached compressed body: the encoding and the uncompressed bytes, whose hash is computed once
+     */
+    private static final class CacheKey {
+        final int encoding;
+        final byte[] body;
+        final int hash;
+
+        CacheKey(int encoding, byte[] body) {
+            this.encoding = encoding;
+            this.body = body;
+            this.hash = 31 * encoding + Arrays.hashCode(body);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof CacheKey)) {
+                return false;
+            }
+
+            CacheKey key = (CacheKey) other;
+            return hash == key.hash && encoding == key.encoding && Arrays.equals(body, key.body);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * @param minSize the smallest body, in bytes, that is compressed
+     * @param gzipLevel the deflate level of gzip responses, 1 (fastest) to 9 (smallest)
+     * @param deflaterPoolSize the most idle Deflaters kept for reuse
+     * @param cacheTtlMillis how long the compressed bytes of a GET response are kept
+     * @param cacheMaxEntries the most compressed bodies kept
+     * @param registry the registry that the compression counts and the cache's hit and miss counts are added to
+     */
+    public ResponseCompressor(int minSize, int gzipLevel, int deflaterPoolSize, long cacheTtlMillis, int cacheMaxEntries, MetricsRegistry registry) {
+        if (gzipLevel < 1 || gzipLevel > 9) {
+            throw new IllegalArgumentException("The gzip level must be from 1 to 9, got " + gzipLevel);
+        }
+
+        this.minSize = minSize;
+        this.gzipLevel = gzipLevel;
+        this.deflaters = new ArrayBlockingQueue<>(Math.max(1, deflaterPoolSize));
+        this.cache = new TtlCache<>("compressed_responses", cacheTtlMillis, cacheMaxEntries, registry);
+
+        Counter responseCounter = registry.counter("http_compressed_responses_total", "Compressed response bodies by encoding", "encoding");
+        Counter bytesCounter = registry.counter("http_compression_bytes_total", "Bytes of compressed response bodies before and after compression, by encoding",
+                "encoding", "stage");
+
+        for (int i = 0; i < ENCODINGS.size(); i++) {
+            responses[i] = responseCounter.labels(ENCODINGS.get(i));
+            uncompressedBytes[i] = bytesCounter.labels(ENCODINGS.get(i), "uncompressed");
+            compressedBytes[i] = bytesCounter.labels(ENCODINGS.get(i), "compressed");
+        }
+    }
+
+    /**
+     * Replaces the response body with its compressed form, if it is large enough and the client accepts a
+     * supported encoding
+     *
+     * @param context the Javalin Context object manages information about both the HTTP request and response.
+     * @throws IOException if the response body cannot be read
+     */
+    public void compress(Context context) throws IOException {
+        InputStream result = context.resultInputStream();
+
+        if (result == null || context.res().containsHeader("Content-Encoding")) {
+            return;
+        }
+
+        byte[] body = result.readAllBytes();
+        context.result(body);
+
+        if (body.length < minSize) {
+            return;
+        }
+
+        // The body depends on Accept-Encoding from this size on, whether or not this client gets it compressed
+        context.header("Vary", context.res().containsHeader("Vary") ? context.res().getHeader("Vary") + ", Accept-Encoding" : "Accept-Encoding");
+
+        int index = negotiate(context.header("Accept-Encoding"));
+
+        if (index < 0) {
+            return;
+        }
+
+        byte[] compressed;
+
+        if (context.method() == HandlerType.GET) {
+            CacheKey key = new CacheKey(index, body);
+            compressed = cache.get(key);
+
+            if (compressed == null) {
+                compressed = compress(index, body);
+                cache.put(key, compressed);
+            }
+        }
+        else {
+            compressed = compress(index, body);
+        }
+
+        responses[index].inc();
+        uncompressedBytes[index].inc(body.length);
+        compressedBytes[index].inc(compressed.length);
+
+        context.header("Content-Encoding", ENCODINGS.get(index));
+        context.result(compressed);
+    }
+
+    private byte[] compress(int index, byte[] body) {
+        return ENCODINGS.get(index).equals(GZIP) ? gzip(body) : zstd(body);
+    }
+
+    /**
+     * Writes a gzip member around raw deflate output, so that a pooled Deflater can be used (GZIPOutputStream
+     * always creates its own)
+     */
+    private byte[] gzip(byte[] body) {
+        Deflater deflater = deflaters.poll();
+
+        if (deflater == null) {
+            deflater = new Deflater(gzipLevel, true);
+        }
+
+        try {
+            deflater.setInput(body);
+            deflater.finish();
+
+            // Deflate output of incompressible input can be slightly larger than the input
+            byte[] output = new byte[GZIP_HEADER.length + body.length + body.length / 1000 + 64];
+            System.arraycopy(GZIP_HEADER, 0, output, 0, GZIP_HEADER.length);
+            int length = GZIP_HEADER.length;
+
+            while (!deflater.finished()) {
+                if (length == output.length - 8) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+
+                length += deflater.deflate(output, length, output.length - 8 - length);
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            writeIntLittleEndian(output, length, (int) crc.getValue());
+            writeIntLittleEndian(output, length + 4, body.length);
+
+            return Arrays.copyOf(output, length + 8);
+        }
+        finally {
+            deflater.reset();
+
+            if (!deflaters.offer(deflater)) {
+                deflater.end();
+            }
+        }
+    }
+
+    private byte[] zstd(byte[] body) {
+        byte[] output = new byte[zstdCompressor.maxCompressedLength(body.length)];
+        int length = zstdCompressor.compress(body, 0, body.length, output, 0, output.length);
+
+        return Arrays.copyOf(output, length);
+    }
+
+    private static void writeIntLittleEndian(byte[] output, int offset, int value) {
+        output[offset] = (byte) value;
+        output[offset + 1] = (byte) (value >>> 8);
+        output[offset + 2] = (byte) (value >>> 16);
+        output[offset + 3] = (byte) (value >>> 24);
+    }
+
+    /**
+     * Picks the supported encoding with the highest quality in an Accept-Encoding header, in the server's order of
+     * preference on a tie
+     *
+     * @param acceptEncoding the Accept-Encoding header, or null
+     * @return the index of the chosen encoding, -1 to send the body uncompressed
+     */
+    private static int negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return -1;
+        }
+
+        double[] qualities = new double[ENCODINGS.size()];
+        double wildcardQuality = -1;
+
+        Arrays.fill(qualities, -1);
+
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            double quality = quality(parts);
+
+            if (name.equals("*")) {
+                wildcardQuality = quality;
+            }
+            else if (ENCODINGS.contains(name)) {
+                qualities[ENCODINGS.indexOf(name)] = quality;
+            }
+        }
+
+        int best = -1;
+        double bestQuality = 0;
+
+        for (int i = 0; i < qualities.length; i++) {
+            // An encoding that is not named is acceptable with the quality of *, if there is one
+            double quality = qualities[i] >= 0 ? qualities[i] : wildcardQuality;
+
+            if (quality > bestQuality) {
+                best = i;
+                bestQuality = quality;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * @param parts a content coding split at its semicolons
+     * @return the coding's q parameter, 1 if it has none, 0 if it is malformed
+     */
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2));
+                }
+                catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+
+        return 1;
+    }
+}
@@ -0,0 +1,290 @@
+package Controller;
+
+import io.javalin.config.JavalinConfig;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+/**
+ * The settings of the embedded Jetty server: its request threads and their queue, connection timeouts, request
+ * size limits and buffer sizes.
+ *
+ * Settings are read from these sources, each overriding the ones before it:
+ *
+ * 1. the default profile, server-profiles/default.properties on the classpath
+ * 2. the profile named by -Dserver.profile or SERVER_PROFILE (low-latency, high-throughput or small-memory)
+ * 3. the properties file named by -Dserver.config or SERVER_CONFIG
+ * 4. environment variables named after the keys: server.threads.idleTimeoutMillis is SERVER_THREADS_IDLE_TIMEOUT_MILLIS
+ * 5. system properties with the keys' own names
+ *
+ * The merged settings are validated when they are loaded, so that a bad value stops the server from being
+ * created rather than surfacing under load.
+ */
+public class ServerConfig {
+    public static final String PROFILE_PROPERTY = "server.profile";
+    public static final String CONFIG_FILE_PROPERTY = "server.config";
+
+    /**
+     * The profiles shipped in server-profiles on the classpath
+     */
+    public static final List<String> PROFILES = List.of("default", "low-latency", "high-throughput", "small-memory");
+
+    private static final List<String> KEYS = List.of(
+            "server.threads.min",
+            "server.threads.max",
+            "server.threads.idleTimeoutMillis",
+            "server.threads.queueCapacity",
+            "server.connector.idleTimeoutMillis",
+            "server.connector.acceptQueueSize",
+            "server.http.maxRequestSize",
+            "server.http.outputBufferSize",
+            "server.http.requestHeaderSize");
+
+    /**
+     * Connections must stay open longer than a change log request may wait (see MAX_CHANGES_WAIT_SECONDS), and
+     * longer than the event stream's heartbeat interval
+     */
+    private static final long MIN_CONNECTOR_IDLE_TIMEOUT_MILLIS = 30_000;
+
+    private final String profile;
+    private final int minThreads;
+    private final int maxThreads;
+    private final int threadIdleTimeoutMillis;
+    private final int queueCapacity;
+    private final long connectorIdleTimeoutMillis;
+    private final int acceptQueueSize;
+    private final long maxRequestSize;
+    private final int outputBufferSize;
+    private final int requestHeaderSize;
+
+    private ServerConfig(String profile, Properties settings) {
+        this.profile = profile;
+        this.minThreads = intSetting(settings, "server.threads.min", 1);
+        this.maxThreads = intSetting(settings, "server.threads.max", 1);
+        this.threadIdleTimeoutMillis = intSetting(settings, "server.threads.idleTimeoutMillis", 1);
+        this.queueCapacity = intSetting(settings, "server.threads.queueCapacity", 0);
+        this.connectorIdleTimeoutMillis = longSetting(settings, "server.connector.idleTimeoutMillis", MIN_CONNECTOR_IDLE_TIMEOUT_MILLIS);
+        this.acceptQueueSize = intSetting(settings, "server.connector.acceptQueueSize", 0);
+        this.maxRequestSize = longSetting(settings, "server.http.maxRequestSize", 1);
+        this.outputBufferSize = intSetting(settings, "server.http.outputBufferSize", 1);
+        this.requestHeaderSize = intSetting(settings, "server.http.requestHeaderSize", 1);
+
+        if (minThreads > maxThreads) {
+            throw new IllegalArgumentException("server.threads.min (" + minThreads + ") must not exceed server.threads.max (" + maxThreads + ")");
+        }
+    }
+
+    /**
+     * Loads the settings from the profile, file, environment and system properties
+     *
+     * @return the validated settings
+     * @throws IllegalArgumentException if the profile or file cannot be read, a key is unknown or a value is invalid
+     */
+    public static ServerConfig load() {
+        return load(System.getProperties(), System.getenv());
+    }
+
+    /**
+     * Loads the settings from the given system properties and environment rather than the process's own
+     */
+    static ServerConfig load(Properties systemProperties, Map<String, String> environment) {
+        String profile = lookup(PROFILE_PROPERTY, systemProperties, environment, "default");
+
+        if (!PROFILES.contains(profile)) {
+            throw new IllegalArgumentException("Unknown server profile \"" + profile + "\", expected one of " + PROFILES);
+        }
+
+        Properties settings = new Properties();
+        readProfile("default", settings);
+        readProfile(profile, settings);
+
+        String configFile = lookup(CONFIG_FILE_PROPERTY, systemProperties, environment, null);
+
+        if (configFile != null) {
+            readFile(Path.of(configFile), settings);
+        }
+
+        for (String key : KEYS) {
+            String value = lookup(key, systemProperties, environment, null);
+
+            if (value != null) {
+                settings.setProperty(key, value);
+            }
+        }
+
+        return new ServerConfig(profile, settings);
+    }
+
+    /**
+     * @return the name of the profile the settings started from
+     */
+    public String getProfile() {
+        return profile;
+    }
+
+    /**
+     * Applies the settings to a Javalin app's configuration, for use as Javalin.create(serverConfig::apply)
+     *
+     * @param config the configuration of the app being created
+     */
+    public void apply(JavalinConfig config) {
+        config.http.maxRequestSize = maxRequestSize;
+
+        config.jetty.server(() -> {
+            QueuedThreadPool threadPool = new QueuedThreadPool(maxThreads, minThreads, threadIdleTimeoutMillis,
+                    queueCapacity > 0 ? new BlockingArrayQueue<>(queueCapacity) : null);
+            threadPool.setName("JettyServerThreadPool");
+
+            Server server = new Server(threadPool);
+
+            // Javalin adds its connector when the app starts, so tune the connectors just before the server starts them
+            server.addEventListener(new LifeCycle.Listener() {
+                @Override
+                public void lifeCycleStarting(LifeCycle event) {
+                    for (Connector connector : server.getConnectors()) {
+                        configureConnector(connector);
+                    }
+                }
+            });
+
+            return server;
+        });
+    }
+
+    @Override
+    public String toString() {
+        return "ServerConfig{" +
+                "profile='" + profile + '\'' +
+                ", minThreads=" + minThreads +
+                ", maxThreads=" + maxThreads +
+                ", threadIdleTimeoutMillis=" + threadIdleTimeoutMillis +
+                ", queueCapacity=" + queueCapacity +
+                ", connectorIdleTimeoutMillis=" + connectorIdleTimeoutMillis +
+                ", acceptQueueSize=" + acceptQueueSize +
+                ", maxRequestSize=" + maxRequestSize +
+                ", outputBufferSize=" + outputBufferSize +
+                ", requestHeaderSize=" + requestHeaderSize +
+                '}';
+    }
+
+    private void configureConnector(Connector connector) {
+        if (connector instanceof ServerConnector) {
+            ServerConnector serverConnector = (ServerConnector) connector;
+            serverConnector.setIdleTimeout(connectorIdleTimeoutMillis);
+
+            if (acceptQueueSize > 0) {
+                serverConnector.setAcceptQueueSize(acceptQueueSize);
+            }
+        }
+
+        HttpConnectionFactory httpConnectionFactory = connector.getConnectionFactory(HttpConnectionFactory.class);
+
+        if (httpConnectionFactory != null) {
+            HttpConfiguration httpConfiguration = httpConnectionFactory.getHttpConfiguration();
+            httpConfiguration.setOutputBufferSize(outputBufferSize);
+            httpConfiguration.setRequestHeaderSize(requestHeaderSize);
+        }
+    }
+
+    /**
+     * Finds a setting in the system properties, then in the environment
+     */
+    private static String lookup(String key, Properties systemProperties, Map<String, String> environment, String defaultValue) {
+        String value = systemProperties.getProperty(key);
+
+        if (value == null) {
+            value = environment.get(environmentVariable(key));
+        }
+
+        return value != null ? value.trim() : defaultValue;
+    }
+
+    /**
+     * @return the environment variable that overrides a key, for example SERVER_THREADS_IDLE_TIMEOUT_MILLIS for
+     *         server.threads.idleTimeoutMillis
+     */
+    static String environmentVariable(String key) {
+        return key.replaceAll("([a-z0-9])([A-Z])", "$1_$2").replace('.', '_').replace('-', '_').toUpperCase();
+    }
+
+    private static void readProfile(String profile, Properties settings) {
+        try (InputStream input = ServerConfig.class.getResourceAsStream("/server-profiles/" + profile + ".properties")) {
+            if (input == null) {
+                throw new IllegalArgumentException("Server profile \"" + profile + "\" is not on the classpath");
+            }
+
+            Properties profileSettings = new Properties();
+            profileSettings.load(input);
+            merge(profileSettings, settings, "server profile " + profile);
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read server profile \"" + profile + "\"", e);
+        }
+    }
+
+    private static void readFile(Path path, Properties settings) {
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            Properties fileSettings = new Properties();
+            fileSettings.load(reader);
+            merge(fileSettings, settings, path.toString());
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read server config file " + path, e);
+        }
+    }
+
+    /**
+     * Copies settings over the ones read so far, rejecting unknown keys so that a misspelt key is not silently ignored
+     */
+    private static void merge(Properties from, Properties settings, String source) {
+        for (String key : from.stringPropertyNames()) {
+            if (!KEYS.contains(key)) {
+                throw new IllegalArgumentException("Unknown setting " + key + " in " + source + ", expected one of " + KEYS);
+            }
+
+            settings.setProperty(key, from.getProperty(key).trim());
+        }
+    }
+
+    private static int intSetting(Properties settings, String key, int min) {
+        long value = longSetting(settings, key, min);
+
+        if (value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(key + " must be at most " + Integer.MAX_VALUE + ", got " + value);
+        }
+
+        return (int) value;
+    }
+
+    private static long longSetting(Properties settings, String key, long min) {
+        String value = settings.getProperty(key);
+        long parsed;
+
+        try {
+            parsed = Long.parseLong(value);
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " must be a whole number, got \"" + value + "\"");
+        }
+
+        if (parsed < min) {
+            throw new IllegalArgumentException(key + " must be at least " + min + ", got " + parsed);
+        }
+
+        return parsed;
+    }
+}
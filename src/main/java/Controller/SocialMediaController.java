@@ -1,19 +1,283 @@
 package Controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import io.javalin.Javalin;
 import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import io.javalin.http.HandlerType;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import org.eclipse.jetty.server.Request;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import DAO.*;
+import Metrics.*;
 import Model.*;
 import Service.*;
+import Util.DaemonThreadFactory;
 
 public class SocialMediaController {
+    private static final Logger logger = LoggerFactory.getLogger(SocialMediaController.class);
+
+    /**
+     * The name of the request attribute holding the System.nanoTime() at which the request started
+     */
+    private static final String REQUEST_START_ATTRIBUTE = "requestStartNanos";
+
+    /**
+     * How long a rate limiter bucket must have been full before it is evicted
+     */
+    private static final long RATE_LIMIT_IDLE_MILLIS = 60_000;
+
+    /**
+     * The name of the request attribute recording whether the load shedder admitted the request as a write
+     */
+    private static final String LOAD_SHED_PERMIT_ATTRIBUTE = "loadShedPermit";
+
+    /**
+     * The most IDs that a single multi-get request may ask for
+     */
+    private static final int MAX_MULTI_GET_IDS = 100;
+
+    /**
+     * The most records that an import may insert per transaction
+     */
+    private static final int MAX_IMPORT_BATCH_SIZE = 10_000;
+
+    private static final String MESSAGE_STREAM_PATH = "/messages/stream";
+
+    /**
+     * The most changes that a single change log request may ask for
+     */
+    private static final int MAX_CHANGES_LIMIT = 1_000;
+
+    /**
+     * The longest a change log request may wait for a new change, kept below the server's 30 second idle timeout
+     */
+    private static final int MAX_CHANGES_WAIT_SECONDS = 25;
+
+    /**
+     * The number of buckets a posting activity request covers unless it asks for a start time
+     */
+    private static final int DEFAULT_ACTIVITY_BUCKETS = 24;
+
+    /**
+     * The most buckets that a single posting activity request may cover
+     */
+    private static final int MAX_ACTIVITY_BUCKETS = 1_000;
+
+    /**
+     * The number of days that each active poster window covers
+     */
+    private static final Map<String, Integer> ACTIVE_POSTER_WINDOW_DAYS = Map.of("day", 1, "week", 7, "month", 30);
+
+    /**
+     * The number of accounts an account search returns unless it asks for a limit, and the most it may ask for
+     */
+    private static final int DEFAULT_ACCOUNT_SEARCH_LIMIT = 10;
+    private static final int MAX_ACCOUNT_SEARCH_LIMIT = 100;
+
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    /**
+     * The longest idempotency key accepted
+     */
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
+    /**
+     * Runs an export query, writing each row it reads to an NdjsonWriter
+     */
+    private interface ExportQuery {
+        void run(int afterId, NdjsonWriter writer) throws SQLException, IOException;
+    }
+
+    private ServerConfig serverConfig;
     private SocialMediaService socialMediaService;
+    private MetricsRegistry metricsRegistry;
+    private HttpMetrics httpMetrics;
+    private ContentNegotiator contentNegotiator;
+    private ResponseCompressor responseCompressor;
+    private QueryInstrumentation queryInstrumentation;
+    private RateLimiter<Integer> messageRateLimiter;
+    private RateLimiter<String> authRateLimiter;
+    private Counter rateLimitedRequests;
+    private LoadShedder loadShedder;
+    private IdempotencyStore idempotencyStore;
+    private Counter idempotentRequests;
+    private MessageEventStream messageEventStream;
+    private ChangeNotifier changeNotifier;
+    private ChangeLogMaintenance changeLogMaintenance;
+    private AccountStatsReconciler accountStatsReconciler;
+    private ActivityRollup activityRollup;
+    private ActivePosterTracker activePosterTracker;
+    private TrendingTracker trendingTracker;
+    private UsernameIndex usernameIndex;
+    private MessagePurger messagePurger;
+    private MessageArchiver messageArchiver;
+    private Warmup warmup;
+
+    /**
+     * Re-reads the change log for long-polling requests once they are woken, so that waiting requests hold no
+     * request thread and the re-reads that a burst of writes triggers are bounded
+     */
+    private ExecutorService changePollExecutor;
+
+    /**
+     * The long-polling change log requests that are waiting for a change
+     */
+    private final AtomicInteger waitingChangeRequests = new AtomicInteger();
+
+    /**
+     * The most rows per second that an export may stream (0 for no limit), so that exports leave database capacity
+     * for live traffic
+     */
+    private double maxExportRowsPerSecond = Double.parseDouble(System.getProperty("export.maxRowsPerSecond", "20000"));
+
+    /**
+     * The number of records an import inserts per transaction unless the request asks for another batch size
+     */
+    private int importBatchSize = Integer.getInteger("import.batchSize", 500);
+
+    /**
+     * How long a retried request waits for the attempt that holds its idempotency key before it is answered with 409
+     */
+    private long idempotencyWaitMillis = TimeUnit.SECONDS.toMillis(Long.getLong("idempotency.waitSeconds", 10));
+
+    /**
+     * The length of the sliding window that trending terms and messages are counted in
+     */
+    private long trendingWindowMillis = TimeUnit.SECONDS.toMillis(Long.getLong("trending.windowSeconds", 300));
+
+    /**
+     * The most trending terms and messages that are tracked and reported
+     */
+    private int trendingTopK = Integer.getInteger("trending.topK", 20);
 
     /**
-     * Creates a new SocialMediaController object
+     * Creates a new SocialMediaController object that uses the application's database from ConnectionUtil
      */
     public SocialMediaController() {
-        this.socialMediaService = new SocialMediaService();
+        this(null);
+    }
+
+    /**
+     * Creates a new SocialMediaController object that uses the supplied database
+     * 
+     * @param dataSource the database to use, or null for the application's database from ConnectionUtil
+     */
+    public SocialMediaController(DataSource dataSource) {
+        // Read the Jetty settings first, so that invalid ones fail before anything else is started
+        this.serverConfig = ServerConfig.load();
+
+        this.metricsRegistry = new MetricsRegistry();
+        this.httpMetrics = new HttpMetrics(metricsRegistry);
+        this.contentNegotiator = new ContentNegotiator(metricsRegistry);
+        this.responseCompressor = new ResponseCompressor(Integer.getInteger("compression.minBytes", 1024), Integer.getInteger("compression.gzipLevel", 6),
+                Integer.getInteger("compression.deflaterPoolSize", 32), Long.getLong("compression.cache.ttlMillis", 30_000),
+                Integer.getInteger("compression.cache.maxEntries", 256), metricsRegistry);
+        this.queryInstrumentation = new QueryInstrumentation(metricsRegistry, dataSource);
+        this.socialMediaService = new SocialMediaService(new SocialMediaDAO(queryInstrumentation), metricsRegistry);
+
+        // Message writes are limited per posting account, registrations and logins per client IP
+        this.messageRateLimiter = new RateLimiter<>(Double.parseDouble(System.getProperty("rateLimit.messages.perSecond", "10")),
+                Integer.getInteger("rateLimit.messages.burst", 50), RATE_LIMIT_IDLE_MILLIS);
+        this.authRateLimiter = new RateLimiter<>(Double.parseDouble(System.getProperty("rateLimit.auth.perSecond", "50")),
+                Integer.getInteger("rateLimit.auth.burst", 100), RATE_LIMIT_IDLE_MILLIS);
+        this.rateLimitedRequests = metricsRegistry.counter("http_rate_limited_total", "Requests rejected with 429 by a rate limiter", "limiter");
+
+        Gauge rateLimiterBuckets = metricsRegistry.gauge("rate_limiter_buckets", "Token buckets held in memory", "limiter");
+        rateLimiterBuckets.labels("messages").set(messageRateLimiter::getBucketCount);
+        rateLimiterBuckets.labels("auth").set(authRateLimiter::getBucketCount);
+
+        // Reads and writes get separate adaptive concurrency limits driven by the latency of their SQL statements
+        this.loadShedder = new LoadShedder(
+                new AdaptiveConcurrencyLimit(Integer.getInteger("loadShedding.read.initialLimit", 64), Integer.getInteger("loadShedding.read.minLimit", 8),
+                        Integer.getInteger("loadShedding.read.maxLimit", 512), 2.0),
+                new AdaptiveConcurrencyLimit(Integer.getInteger("loadShedding.write.initialLimit", 32), Integer.getInteger("loadShedding.write.minLimit", 4),
+                        Integer.getInteger("loadShedding.write.maxLimit", 256), 2.0),
+                metricsRegistry);
+        queryInstrumentation.addLatencyListener(loadShedder);
+
+        // Retried creates with an Idempotency-Key header get the response of the first attempt
+        this.idempotencyStore = new IdempotencyStore(TimeUnit.HOURS.toMillis(Long.getLong("idempotency.ttlHours", 24)),
+                Integer.getInteger("idempotency.maxKeys", 100_000), metricsRegistry);
+        this.idempotentRequests = metricsRegistry.counter("idempotent_requests_total", "Requests sent with an Idempotency-Key header, by outcome", "result");
+
+        // Committed message changes are pushed to event stream subscribers
+        this.messageEventStream = new MessageEventStream(Integer.getInteger("messageStream.capacity", 4096),
+                Integer.getInteger("messageStream.deliveryThreads", 4), Long.getLong("messageStream.heartbeatMillis", 15_000), metricsRegistry);
+        socialMediaService.addMessageEventListener(messageEventStream);
+
+        // Long-polling change log readers are woken by the same events, and the log is kept bounded in the background
+        this.changeNotifier = new ChangeNotifier();
+        socialMediaService.addMessageEventListener(changeNotifier);
+        this.changePollExecutor = Executors.newFixedThreadPool(Integer.getInteger("changes.pollThreads", 2), new DaemonThreadFactory("change-poll"));
+        metricsRegistry.gauge("changes_waiting_requests", "Long-polling change log requests waiting for a change").labels().set(waitingChangeRequests::get);
+        this.changeLogMaintenance = new ChangeLogMaintenance(socialMediaService,
+                TimeUnit.HOURS.toMillis(Long.getLong("changes.retentionHours", 168)),
+                TimeUnit.MINUTES.toMillis(Long.getLong("changes.compactAfterMinutes", 60)),
+                TimeUnit.SECONDS.toMillis(Long.getLong("changes.maintenanceIntervalSeconds", 300)), metricsRegistry);
+
+        // The per-account statistics are kept up to date by every write, and checked against the messages in the background
+        this.accountStatsReconciler = new AccountStatsReconciler(socialMediaService,
+                TimeUnit.SECONDS.toMillis(Long.getLong("accountStats.reconcileIntervalSeconds", 600)), metricsRegistry);
+
+        // Posting activity is counted per hour and per poster per day as messages are written, and saved in the background
+        this.activityRollup = new ActivityRollup(socialMediaService, Integer.getInteger("activity.topPosters", 10),
+                TimeUnit.SECONDS.toMillis(Long.getLong("activity.saveIntervalSeconds", 60)), metricsRegistry);
+        socialMediaService.addMessageEventListener(activityRollup);
+
+        // The distinct posters of each day are sketched as messages are created, so any range of days can be counted
+        this.activePosterTracker = new ActivePosterTracker(socialMediaService, Integer.getInteger("activePosters.precision", 12),
+                TimeUnit.SECONDS.toMillis(Long.getLong("activePosters.saveIntervalSeconds", 60)), metricsRegistry);
+        socialMediaService.addMessageEventListener(activePosterTracker);
+
+        // Terms of new messages and reads of messages are counted in fixed-size sketches, and the hottest messages are pinned in the cache
+        this.trendingTracker = new TrendingTracker(socialMediaService, trendingWindowMillis, Integer.getInteger("trending.slices", 5),
+                Integer.getInteger("trending.sketchWidth", 2_048), Integer.getInteger("trending.sketchDepth", 4), trendingTopK,
+                Integer.getInteger("trending.pinnedMessages", 10), metricsRegistry);
+        socialMediaService.addMessageEventListener(trendingTracker);
+        socialMediaService.addMessageReadListener(trendingTracker::recordMessageRead);
+
+        // Every username is held in memory for prefix searches, and new accounts are added as they register
+        this.usernameIndex = new UsernameIndex(socialMediaService, metricsRegistry);
+        socialMediaService.addAccountListener(usernameIndex);
+
+        // Deleted messages are only marked deleted, and removed in the background while few requests are in flight
+        int purgeQuietInFlight = Integer.getInteger("purge.quietInFlight", 2);
+        this.messagePurger = new MessagePurger(socialMediaService, () -> loadShedder.getInFlight() <= purgeQuietInFlight,
+                Integer.getInteger("purge.batchSize", 500), Double.parseDouble(System.getProperty("purge.maxRowsPerSecond", "2000")),
+                TimeUnit.SECONDS.toMillis(Long.getLong("purge.minAgeSeconds", 60)),
+                TimeUnit.SECONDS.toMillis(Long.getLong("purge.intervalSeconds", 30)), metricsRegistry);
+
+        // Months older than archive.afterDays move to the compressed archive in the background (off unless configured)
+        this.messageArchiver = new MessageArchiver(socialMediaService, () -> loadShedder.getInFlight() <= purgeQuietInFlight,
+                Long.getLong("archive.afterDays", 0), Integer.getInteger("archive.blockSize", 1_000),
+                TimeUnit.SECONDS.toMillis(Long.getLong("archive.intervalSeconds", 3_600)), metricsRegistry);
+
+        // Warm-up is started by whoever starts the server, and /ready reports when it has finished
+        this.warmup = new Warmup(socialMediaService, Integer.getInteger("warmup.accounts", 1_000), Integer.getInteger("warmup.messages", 10_000),
+                System.getProperty("warmup.requestSample"), Integer.getInteger("warmup.replayIterations", 20),
+                Integer.getInteger("warmup.threads", 3), metricsRegistry);
+
+        JvmMetrics.register(metricsRegistry);
+    }
+
+    /**
+     * @return the Jetty settings that startAPI() applies
+     */
+    public ServerConfig getServerConfig() {
+        return serverConfig;
     }
 
     /**
@@ -22,28 +286,124 @@ public class SocialMediaController {
      * @return a Javalin app object which defines the behavior of the Javalin controller.
      */
     public Javalin startAPI() {
-        Javalin app = Javalin.create();
+        // Tune Jetty's threads, timeouts, limits and buffers from the server profile
+        logger.info("Starting with {}", serverConfig);
+        Javalin app = Javalin.create(config -> {
+            serverConfig.apply(config);
+
+            // Responses are compressed by responseCompressor, which pools its compressors and caches their output
+            config.compression.none();
+        });
+
+        // Time every request, including the compression of its response, and record it in the HTTP metrics
+        app.before(this::startRequestTimer);
+        app.after(responseCompressor::compress);
+        app.after(this::recordRequestMetrics);
+
+        // Shed requests that the database has no capacity for before they reach the service layer
+        app.before(this::admitRequest);
+        app.after(this::releaseRequest);
+        app.exception(LoadShedException.class, (exception, context) -> context.header("Retry-After", "1").status(503));
+
+        // End the event stream subscriptions, which would otherwise hold the server open, and the background work
+        app.events(event -> event.serverStopping(() -> {
+            messageEventStream.close();
+            changePollExecutor.shutdownNow();
+            changeLogMaintenance.close();
+            accountStatsReconciler.close();
+            activityRollup.close();
+            activePosterTracker.close();
+            trendingTracker.close();
+            messagePurger.close();
+            messageArchiver.close();
+            queryInstrumentation.close();
+        }));
+
         app.get("example-endpoint", this::exampleHandler);
 
-        app.post("/register", this::addAccount);
+        app.post("/register", context -> handleIdempotently(context, this::addAccount));
 
         app.post("/login", this::loginToAccount);
         
-        app.post("/messages", this::addMessage);
+        app.post("/messages", context -> handleIdempotently(context, this::addMessage));
 
         app.get("/messages", this::getAllMessages);
 
+        app.get(MESSAGE_STREAM_PATH, this::streamMessageEvents);
+
         app.get("/messages/{message_id}", this::getMessageById);
 
         app.delete("/messages/{message_id}", this::deleteMessageById);
 
         app.patch("/messages/{message_id}", this::updateMessageById);
 
+        app.get("/accounts", this::getAccountsByIds);
+
+        app.get("/accounts/search", this::searchAccounts);
+
         app.get("/accounts/{account_id}/messages", this::getAllMessagesByUser);
 
+        app.get("/accounts/{account_id}/stats", this::getAccountStats);
+
+        app.get("/stats/activity", this::getActivity);
+
+        app.get("/stats/trending", this::getTrending);
+
+        app.get("/stats/active-posters", this::getActivePosters);
+
+        app.post("/import/messages", this::importMessages);
+
+        app.get("/export/messages", this::exportMessages);
+
+        app.get("/export/accounts", this::exportAccounts);
+
+        app.get("/changes", this::getChanges);
+
+        app.get("/metrics", this::getMetrics);
+
+        app.get("/ready", this::getReadiness);
+
+        app.get("/admin/queries", this::getQueryStats);
+
         return app;
     }
 
+    /**
+     * Starts warming up the caches (and, if a request sample is configured with -Dwarmup.requestSample, the JIT)
+     * once the app returned by startAPI() is listening. GET /ready responds with 503 until warm-up has finished.
+     * 
+     * @param port the port the app listens on
+     * @return a future that completes when warm-up has finished
+     */
+    public CompletableFuture<Void> warmUp(int port) {
+        return warmup.start(port);
+    }
+
+    /**
+     * Ends an export that failed. If nothing was sent yet the HTTP response status is set to 500, otherwise the
+     * connection is dropped so that the client sees a truncated response rather than one that looks complete.
+     * 
+     * @param context the Javalin Context object manages information about both the HTTP request and response.
+     * @param export the name of the export, for the log
+     * @param e the failure
+     */
+    private void abortExport(Context context, String export, Exception e) {
+        if (e instanceof SQLException) {
+            logger.error("Export of {} failed", export, e);
+        }
+        else {
+            logger.debug("Export of {} stopped: {}", export, e.toString());
+        }
+
+        if (!context.res().isCommitted()) {
+            context.res().reset();
+            context.status(500);
+            return;
+        }
+
+        Request.getBaseRequest(context.req()).getHttpChannel().abort(e);
+    }
+
     /**
      * Attempts to add a new account to the application's database.
      * 
@@ -54,19 +414,25 @@ public class SocialMediaController {
      * 
      * On success, the HTTP response status is set to 200.
      * On failure, the HTTP response status is set to 400.
+     * If the client IP has made too many registration or login attempts, the HTTP response status is set to 429.
      * 
      * @param context the Javalin Context object manages information about both the HTTP request and response.
      */
     private void addAccount(Context context) {
+        // Reject the request if this client has registered or logged in too often
+        if (rejectIfRateLimited(context, authRateLimiter, context.ip(), "auth")) {
+            return;
+        }
+
         // Get the Account object from the Javalin context
-        Account accountFromBody = context.bodyAsClass(Account.class);
+        Account accountFromBody = contentNegotiator.readBody(context, Account.class);
 
         // Insert the account into the application's database
         Account accountInserted = socialMediaService.addAccount(accountFromBody);
 
         // Set the HTTP response based on whether or not the account was successfully added
         if (accountInserted != null) {
-            context.json(accountInserted).status(200);
+            contentNegotiator.writeBody(context, accountInserted).status(200);
         }
         else {
             context.status(400);
@@ -82,25 +448,67 @@ public class SocialMediaController {
      * 
      * On success, the HTTP response status is set to 200.
      * On failure, the HTTP response status is set to 400.
+     * If the posting account has written too many messages recently, the HTTP response status is set to 429.
      * 
      * @param context the Javalin Context object manages information about both the HTTP request and response.
      */
     private void addMessage(Context context) {
         // Get the Message object from the Javalin context
-        Message messageFromBody = context.bodyAsClass(Message.class);
+        Message messageFromBody = contentNegotiator.readBody(context, Message.class);
+
+        // Reject the request if the posting account has written too many messages recently
+        if (rejectIfRateLimited(context, messageRateLimiter, messageFromBody.getPosted_by(), "messages")) {
+            return;
+        }
 
         // Insert the message into the application's database
         Message messageInserted = socialMediaService.addMessage(messageFromBody);
 
         // Set the HTTP response based on whether or not the message was successfully added
         if (messageInserted != null) {
-            context.json(messageInserted).status(200);
+            contentNegotiator.writeBody(context, messageInserted).status(200);
         }
         else {
             context.status(400);
         }
     }
 
+    /**
+     * Asks the load shedder to admit a request, rejecting it with HTTP response status 503 if the database is overloaded
+     * 
+     * Operational endpoints (metrics, readiness and admin) are never shed.
+     * 
+     * @param context the Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void admitRequest(Context context) {
+        // Event stream subscriptions do not touch the database, but would hold a permit for as long as they are open
+        if (isOperationalPath(context.path()) || context.path().equals(MESSAGE_STREAM_PATH)) {
+            return;
+        }
+
+        boolean write = context.method() != HandlerType.GET && context.method() != HandlerType.HEAD;
+
+        if (!loadShedder.tryAcquire(write)) {
+            throw new LoadShedException();
+        }
+
+        context.attribute(LOAD_SHED_PERMIT_ATTRIBUTE, write);
+    }
+
+    /**
+     * Builds the response body of a change log request
+     * 
+     * @param changes the changes found
+     * @param after the sequence number that the changes were read after
+     * @return the changes, and the sequence number to read after next
+     */
+    private Map<String, Object> changesPage(ArrayList<MessageChange> changes, long after) {
+        Map<String, Object> page = new LinkedHashMap<>();
+        page.put("changes", changes);
+        page.put("next", changes.isEmpty() ? after : changes.get(changes.size() - 1).getSeq());
+        return page;
+    }
+
     /**
      * Deletes a message by ID from the application's database
      * 
@@ -120,7 +528,7 @@ public class SocialMediaController {
 
         if (deletedMessage != null) {
             // Set the HTTP response status to 200 and return the obtained Message
-            context.json(deletedMessage).status(200);
+            contentNegotiator.writeBody(context, deletedMessage).status(200);
         }
         else {
             // Set the HTTP response status to 200 while leaving the response body blank
@@ -133,22 +541,185 @@ public class SocialMediaController {
      * @param context The Javalin Context object manages information about both the HTTP request and response.
      */
     private void exampleHandler(Context context) {
-        context.json("sample text");
+        contentNegotiator.writeBody(context, "sample text");
+    }
+
+    /**
+     * Streams every account as newline-delimited JSON (see streamExport), without passwords
+     * 
+     * @param context the Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void exportAccounts(Context context) {
+        streamExport(context, "accounts", (afterId, writer) -> socialMediaService.exportAccounts(afterId, writer::write));
     }
 
     /**
-     * Gets all messages from the application's database
+     * Streams every message as newline-delimited JSON (see streamExport)
+     * 
+     * @param context the Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void exportMessages(Context context) {
+        streamExport(context, "messages", (afterId, writer) -> socialMediaService.exportMessages(afterId, writer::write));
+    }
+
+    /**
+     * Gets the message statistics of the account with the requested account ID: how many messages it has posted,
+     * and when it last posted
+     * 
+     * If no account with the account ID is found, then the HTTP response body is left empty.
      * 
      * Always sets the HTTP response status to 200
      * 
      * @param context the Javalin Context object manages information about both the HTTP request and response.
      */
+    private void getAccountStats(Context context) {
+        // Get the account ID from the endpoint's path
+        int idFromPath = Integer.parseInt(context.pathParam("account_id"));
+
+        // Get the statistics of the account
+        AccountStats accountStats = socialMediaService.getAccountStats(idFromPath);
+
+        if (accountStats != null) {
+            // Set the HTTP response status to 200 and return the obtained statistics
+            contentNegotiator.writeBody(context, accountStats).status(200);
+        }
+        else {
+            // Set the HTTP response status to 200 while leaving the response body blank
+            context.status(200);
+        }
+    }
+
+    /**
+     * Gets the accounts whose IDs are listed in the comma separated "ids" query parameter, in the listed order
+     * 
+     * Passwords are left out of the returned accounts. IDs of accounts that do not exist are skipped.
+     * 
+     * On success, the HTTP response status is set to 200.
+     * If the "ids" parameter is missing, is not a list of integers or lists more than 100 IDs, the HTTP response
+     * status is set to 400.
+     * 
+     * @param context the Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void getAccountsByIds(Context context) {
+        ArrayList<Integer> ids = parseIds(context.queryParam("ids"));
+
+        if (ids == null) {
+            // Set the HTTP response status to 400 while leaving the response body blank
+            context.status(400);
+            return;
+        }
+
+        // Set the HTTP message body to the account list and set the HTTP response status to 200
+        contentNegotiator.writeBody(context, socialMediaService.getAccountsByIds(ids)).status(200);
+    }
+
+    /**
+     * Gets the estimated number of distinct accounts that posted a message within a range of whole UTC days. The
+     * estimate comes from per-day HyperLogLog sketches, and its relative standard error is returned with it.
+     * 
+     * The "window" query parameter is "day" (the default), "week" or "month" (30 days), ending with the day of the
+     * "to" query parameter. The "to" parameter is an exclusive epoch second and defaults to now. A "from" epoch
+     * second can be given instead of a window, and is rounded down to the start of its day.
+     * 
+     * On success, the HTTP response status is set to 200.
+     * If a parameter is invalid, "from" is not before "to" or the range covers more than 1000 days, the HTTP response
+     * status is set to 400.
+     * 
+     * @param context the Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void getActivePosters(Context context) {
+        Integer windowDays = ACTIVE_POSTER_WINDOW_DAYS.get(context.queryParamAsClass("window", String.class).getOrDefault("day"));
+        Long to = parseEpoch(context.queryParam("to"), System.currentTimeMillis() / 1000);
+
+        if (windowDays == null || to == null) {
+            // Set the HTTP response status to 400 while leaving the response body blank
+            context.status(400);
+            return;
+        }
+
+        long lastDay = Math.floorDiv(to - 1, ActivePosterTracker.DAY_SECONDS) * ActivePosterTracker.DAY_SECONDS;
+        Long from = parseEpoch(context.queryParam("from"), lastDay - (windowDays - 1) * ActivePosterTracker.DAY_SECONDS);
+
+        if (from == null || from >= to || ActivityRollup.countBuckets(from, to, ActivePosterTracker.DAY_SECONDS) > MAX_ACTIVITY_BUCKETS) {
+            // Set the HTTP response status to 400 while leaving the response body blank
+            context.status(400);
+            return;
+        }
+
+        long firstDay = Math.floorDiv(from, ActivePosterTracker.DAY_SECONDS) * ActivePosterTracker.DAY_SECONDS;
+
+        Map<String, Object> activePosters = new LinkedHashMap<>();
+        activePosters.put("from", firstDay);
+        activePosters.put("to", lastDay + ActivePosterTracker.DAY_SECONDS);
+        activePosters.put("active_posters", activePosterTracker.countActivePosters(firstDay, lastDay));
+        activePosters.put("standard_error", activePosterTracker.getStandardError());
+
+        // Set the HTTP message body to the estimate and set the HTTP response status to 200
+        contentNegotiator.writeBody(context, activePosters).status(200);
+    }
+
+    /**
+     * Gets the posting activity of every hour or day in a range of time: how many messages were posted in it and,
+     * for days, which accounts posted the most. The counts are kept up to date as messages are written, so no
+     * messages are read.
+     * 
+     * The "bucket" query parameter is "hour" (the default) or "day". The "from" and "to" query parameters are epoch
+     * seconds; "from" is rounded down to the start of its bucket and "to" is exclusive. They default to the 24
+     * buckets up to now.
+     * 
+     * On success, the HTTP response status is set to 200.
+     * If a parameter is invalid, "from" is not before "to" or the range covers more than 1000 buckets, the HTTP
+     * response status is set to 400.
+     * 
+     * @param context the Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void getActivity(Context context) {
+        String bucket = context.queryParam("bucket");
+        long bucketSeconds;
+
+        if (bucket == null || bucket.equals("hour")) {
+            bucketSeconds = ActivityRollup.HOUR_SECONDS;
+        }
+        else if (bucket.equals("day")) {
+            bucketSeconds = ActivityRollup.DAY_SECONDS;
+        }
+        else {
+            context.status(400);
+            return;
+        }
+
+        Long to = parseEpoch(context.queryParam("to"), System.currentTimeMillis() / 1000);
+        Long from = to == null ? null : parseEpoch(context.queryParam("from"), to - DEFAULT_ACTIVITY_BUCKETS * bucketSeconds);
+
+        if (from == null || from >= to || ActivityRollup.countBuckets(from, to, bucketSeconds) > MAX_ACTIVITY_BUCKETS) {
+            // Set the HTTP response status to 400 while leaving the response body blank
+            context.status(400);
+            return;
+        }
+
+        // Set the HTTP message body to the buckets and set the HTTP response status to 200
+        contentNegotiator.writeBody(context, activityRollup.getActivity(from, to, bucketSeconds)).status(200);
+    }
+
+    /**
+     * Gets all messages from the application's database, or only the messages listed in the "ids" query parameter
+     * (see getMessagesByIds)
+     * 
+     * Always sets the HTTP response status to 200 when the "ids" parameter is absent
+     * 
+     * @param context the Javalin Context object manages information about both the HTTP request and response.
+     */
     private void getAllMessages(Context context) {
+        if (context.queryParam("ids") != null) {
+            getMessagesByIds(context);
+            return;
+        }
+
         // Get all messages from the application's database
         ArrayList<Message> messageList = socialMediaService.getAllMessages();
 
         // Set the HTTP response status to 200
-        context.json(messageList).status(200);
+        contentNegotiator.writeBody(context, messageList).status(200);
     }
 
     /**
@@ -168,7 +739,72 @@ public class SocialMediaController {
         ArrayList<Message> messageList = socialMediaService.getAllMessagesByUser(idFromPath);
 
         // Set the HTTP message body to the message list and set the HTTP response status to 200
-        context.json(messageList).status(200);
+        contentNegotiator.writeBody(context, messageList).status(200);
+    }
+
+    /**
+     * Gets the changes to messages committed after the sequence number in the "after" query parameter (0 if
+     * absent), oldest first and at most "limit" (default 100, up to 1000) of them. The response body has the
+     * changes and "next", the sequence number to pass as "after" in the following request.
+     * 
+     * If there are no newer changes and the "wait" query parameter is given, the request waits up to that many
+     * seconds (up to 25) for a change before responding.
+     * 
+     * On success, the HTTP response status is set to 200.
+     * If a parameter is not a valid number, the HTTP response status is set to 400.
+     * If changes after "after" have been removed by retention, the HTTP response status is set to 410 and the
+     * response body has "truncated_through" and "head"; the client must resynchronize from an export and then
+     * continue from "head".
+     * If the change log cannot be read, the HTTP response status is set to 500.
+     * 
+     * @param context the Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void getChanges(Context context) {
+        Long after = parseSequence(context.queryParam("after"));
+        Integer limit = parseIntInRange(context.queryParam("limit"), 100, 1, MAX_CHANGES_LIMIT);
+        Integer waitSeconds = parseIntInRange(context.queryParam("wait"), 0, 0, MAX_CHANGES_WAIT_SECONDS);
+
+        if (after == null || limit == null || waitSeconds == null) {
+            // Set the HTTP response status to 400 while leaving the response body blank
+            context.status(400);
+            return;
+        }
+
+        try {
+            long truncatedThrough = socialMediaService.getChangeLogTruncatedThrough();
+
+            if (after < truncatedThrough) {
+                Map<String, Object> gone = new LinkedHashMap<>();
+                gone.put("truncated_through", truncatedThrough);
+                gone.put("head", socialMediaService.getLatestChangeSeq());
+                contentNegotiator.writeBody(context, gone).status(410);
+                return;
+            }
+        }
+        catch (SQLException e) {
+            logger.error("Reading the change log failed", e);
+            context.status(500);
+            return;
+        }
+
+        // Take the future before reading, so that a change committed after the read still wakes this request
+        CompletableFuture<Void> nextChange = changeNotifier.nextChange();
+        ArrayList<MessageChange> changes = socialMediaService.getChangesAfter(after, limit);
+
+        if (!changes.isEmpty() || waitSeconds == 0) {
+            contentNegotiator.writeBody(context, changesPage(changes, after)).status(200);
+            return;
+        }
+
+        // A waiting request does not use the database, so it gives its load shedding permit back
+        releaseRequest(context);
+        waitingChangeRequests.incrementAndGet();
+
+        context.future(() -> nextChange.copy()
+                .completeOnTimeout(null, waitSeconds, TimeUnit.SECONDS)
+                .whenComplete((woken, error) -> waitingChangeRequests.decrementAndGet())
+                .thenApplyAsync(woken -> changesPage(socialMediaService.getChangesAfter(after, limit), after), changePollExecutor)
+                .thenAccept(page -> contentNegotiator.writeBody(context, page).status(200)));
     }
 
     /**
@@ -189,7 +825,7 @@ public class SocialMediaController {
 
         if (returnedMessage != null) {
             // Set the HTTP response status to 200 and return the obtained Message
-            context.json(returnedMessage).status(200);
+            contentNegotiator.writeBody(context, returnedMessage).status(200);
         }
         else {
             // Set the HTTP response status to 200 while leaving the response body blank
@@ -198,32 +834,653 @@ public class SocialMediaController {
     }
 
     /**
-     * Attempts to login to an account using the supplied username and password
+     * Gets the messages whose IDs are listed in the comma separated "ids" query parameter, in the listed order
+     * 
+     * Cached messages are served from memory, and the rest are read from the database in a single query. IDs of
+     * messages that do not exist are skipped.
+     * 
+     * On success, the HTTP response status is set to 200.
+     * If the "ids" parameter is empty, is not a list of integers or lists more than 100 IDs, the HTTP response status
+     * is set to 400.
+     * 
+     * @param context the Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void getMessagesByIds(Context context) {
+        ArrayList<Integer> ids = parseIds(context.queryParam("ids"));
+
+        if (ids == null) {
+            // Set the HTTP response status to 400 while leaving the response body blank
+            context.status(400);
+            return;
+        }
+
+        // Set the HTTP message body to the message list and set the HTTP response status to 200
+        contentNegotiator.writeBody(context, socialMediaService.getMessagesByIds(ids)).status(200);
+    }
+
+    /**
+     * Gets the application's metrics in the Prometheus text exposition format
+     * 
+     * Always sets the HTTP response status to 200
+     * 
+     * @param context the Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void getMetrics(Context context) {
+        context.contentType(MetricsRegistry.CONTENT_TYPE).result(metricsRegistry.scrape()).status(200);
+    }
+
+    /**
+     * Gets per-SQL-template execution statistics, the slowest recent query executions and connection wait times
+     * 
+     * Bind parameter values are never included - slow executions only list their parameter types.
+     * 
+     * Always sets the HTTP response status to 200
+     * 
+     * @param context the Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void getQueryStats(Context context) {
+        Map<String, Object> connectionWait = new LinkedHashMap<>();
+        connectionWait.put("count", queryInstrumentation.getConnectionWaitCount());
+        connectionWait.put("meanMillis", queryInstrumentation.getConnectionWaitMeanMillis());
+        connectionWait.put("maxMillis", queryInstrumentation.getConnectionWaitMaxMillis());
+
+        Map<String, Object> queryStats = new LinkedHashMap<>();
+        queryStats.put("queries", queryInstrumentation.getQueryStats());
+        queryStats.put("slowQueries", queryInstrumentation.getSlowQueries());
+        queryStats.put("connectionWait", connectionWait);
+
+        contentNegotiator.writeBody(context, queryStats).status(200);
+    }
+
+    /**
+     * Reports whether the server has finished warming up, for load balancers and deployment tooling to wait on
+     * 
+     * Sets the HTTP response status to 200 once warm-up has finished, and to 503 until then.
+     * 
+     * @param context the Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void getReadiness(Context context) {
+        Map<String, Object> readiness = new LinkedHashMap<>();
+        readiness.put("ready", warmup.isReady());
+        contentNegotiator.writeBody(context, readiness).status(warmup.isReady() ? 200 : 503);
+    }
+
+    /**
+     * Gets the terms used most in the messages posted within the trending window, and the messages read most within
+     * it, with their estimated counts. The counts come from fixed-size sketches, so they may be slightly high, but
+     * never low.
+     * 
+     * The optional "limit" query parameter caps the number of terms and of messages, up to the configured top K.
+     * 
+     * On success, the HTTP response status is set to 200.
+     * If the "limit" parameter is not a positive integer, the HTTP response status is set to 400.
+     * 
+     * @param context the Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void getTrending(Context context) {
+        Integer limit = parseIntInRange(context.queryParam("limit"), trendingTopK, 1, Integer.MAX_VALUE);
+
+        if (limit == null) {
+            // Set the HTTP response status to 400 while leaving the response body blank
+            context.status(400);
+            return;
+        }
+
+        Map<String, Object> trending = new LinkedHashMap<>();
+        trending.put("window_seconds", TimeUnit.MILLISECONDS.toSeconds(trendingWindowMillis));
+        trending.put("terms", trendingTracker.getTrendingTerms(limit));
+        trending.put("messages", trendingTracker.getHotMessages(limit));
+
+        // Set the HTTP message body to the trending terms and messages and set the HTTP response status to 200
+        contentNegotiator.writeBody(context, trending).status(200);
+    }
+
+    /**
+     * Runs a create handler at most once per Idempotency-Key header.
+     * 
+     * Requests without the header run the handler as usual. The first request with a key runs it and its response
+     * is stored; a later request with the same key and body gets the stored response back, with an
+     * Idempotent-Replayed header, without running the handler (or using up rate limit tokens) again. A request whose
+     * key is held by an attempt that is still running waits for that attempt's response instead of running alongside it.
+     * 
+     * Responses with the HTTP status 429 or 5xx, or from a handler that failed, are not stored, so that the client
+     * can retry them.
+     * 
+     * If the key is longer than 255 characters, the HTTP response status is set to 400.
+     * If the key was used with a different body, the HTTP response status is set to 422.
+     * If the attempt holding the key does not finish in time, the HTTP response status is set to 409.
+     * 
+     * @param context the Javalin Context object manages information about both the HTTP request and response.
+     * @param handler the handler that creates the resource
+     * @throws Exception if the handler fails
+     */
+    private void handleIdempotently(Context context, Handler handler) throws Exception {
+        String idempotencyKey = context.header(IDEMPOTENCY_KEY_HEADER);
+
+        if (idempotencyKey == null) {
+            handler.handle(context);
+            return;
+        }
+
+        if (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            // Set the HTTP response status to 400 while leaving the response body blank
+            context.status(400);
+            return;
+        }
+
+        // Keys are scoped to the endpoint, and the body identifies the request that the key was first used with
+        String scopedKey = context.path() + " " + idempotencyKey;
+        IdempotencyStore.Claim claim = idempotencyStore.claim(scopedKey, context.body());
+
+        if (!claim.matches(context.body())) {
+            idempotentRequests.labels("mismatched").inc();
+            context.status(422);
+            return;
+        }
+
+        if (!claim.isOwner()) {
+            CompletableFuture<IdempotencyStore.StoredResponse> response = claim.getResponse();
+
+            if (response.isDone()) {
+                idempotentRequests.labels("replayed").inc();
+                replayIdempotentResponse(context, response.join());
+                return;
+            }
+
+            // A waiting request does not use the database, so it gives its load shedding permit back
+            idempotentRequests.labels("waited").inc();
+            releaseRequest(context);
+
+            context.future(() -> response.copy()
+                    .completeOnTimeout(null, idempotencyWaitMillis, TimeUnit.MILLISECONDS)
+                    .thenAccept(stored -> {
+                        if (stored == null) {
+                            context.status(409);
+                        }
+                        else {
+                            replayIdempotentResponse(context, stored);
+                        }
+                    }));
+            return;
+        }
+
+        idempotentRequests.labels("executed").inc();
+
+        try {
+            handler.handle(context);
+        }
+        catch (Exception e) {
+            idempotencyStore.release(scopedKey, claim, null);
+            throw e;
+        }
+
+        // Keep the serialized response, and send the same bytes
+        InputStream result = context.resultInputStream();
+        byte[] body = result == null ? new byte[0] : result.readAllBytes();
+        context.result(body);
+
+        IdempotencyStore.StoredResponse stored = new IdempotencyStore.StoredResponse(context.statusCode(), context.res().getContentType(), body);
+
+        if (context.statusCode() == 429 || context.statusCode() >= 500) {
+            idempotencyStore.release(scopedKey, claim, stored);
+        }
+        else {
+            idempotencyStore.complete(claim, stored);
+        }
+    }
+
+    /**
+     * Imports messages in bulk from a newline-delimited JSON request body, one message object per line.
+     * 
+     * The body is parsed as it arrives and the messages are inserted in transactions of "batch_size" records
+     * (configured by import.batchSize when the query parameter is absent). A batch is committed before more of the
+     * body is read, so a client cannot send faster than the database can take its messages. Records are validated
+     * with the same rules as POST /messages, and invalid records are skipped.
+     * 
+     * The response body is a summary of the number of imported and rejected records and the line numbers of the
+     * rejected records. Batches committed before a failure stay committed, so a failed import can be resumed after
+     * the last imported line.
+     * 
+     * On success, the HTTP response status is set to 200.
+     * If "batch_size" is invalid or the body is not well-formed JSON, the HTTP response status is set to 400.
+     * If a batch could not be written to the database, the HTTP response status is set to 500.
+     * 
+     * @param context the Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void importMessages(Context context) {
+        Integer batchSize = parseBatchSize(context.queryParam("batch_size"));
+
+        if (batchSize == null) {
+            // Set the HTTP response status to 400 while leaving the response body blank
+            context.status(400);
+            return;
+        }
+
+        ImportSummary summary = new ImportSummary();
+
+        try {
+            socialMediaService.importMessages(new NdjsonMessageReader(context.req().getInputStream()), batchSize, summary);
+            contentNegotiator.writeBody(context, summary).status(200);
+        }
+        catch (JsonProcessingException e) {
+            summary.setError("Malformed JSON on line " + (e.getLocation() != null ? e.getLocation().getLineNr() : "unknown"));
+            contentNegotiator.writeBody(context, summary).status(400);
+        }
+        catch (IOException e) {
+            logger.debug("Import of messages stopped: {}", e.toString());
+            summary.setError("Failed to read the request body");
+            contentNegotiator.writeBody(context, summary).status(400);
+        }
+        catch (SQLException e) {
+            logger.error("Import of messages failed", e);
+            summary.setError("Failed to write to the database");
+            contentNegotiator.writeBody(context, summary).status(500);
+        }
+    }
+
+    /**
+     * Checks whether a path belongs to an operational endpoint, which must keep working while the API is overloaded
+     * 
+     * @param path the request path
+     * @return true for the metrics, readiness and admin endpoints
+     */
+    private boolean isOperationalPath(String path) {
+        return path.equals("/metrics") || path.equals("/ready") || path.startsWith("/admin/");
+    }
+
+    /**
+     * Attempts to login to an account using the supplied username and password
      * 
      * Actual login logic is currently not implemented. This method will succeed if an account
      * with a matching username and password is found in the application's database.
      * 
      * On success, the HTTP response status is set to 200.
      * On failure, the HTTP response status is set to 401.
+     * If the client IP has made too many registration or login attempts, the HTTP response status is set to 429.
      * 
      * @param context the Javalin Context object manages information about both the HTTP request and response.
      */
     private void loginToAccount(Context context) {
+        // Reject the request if this client has registered or logged in too often
+        if (rejectIfRateLimited(context, authRateLimiter, context.ip(), "auth")) {
+            return;
+        }
+
         // Get the Account object from the Javalin context
-        Account accountFromBody = context.bodyAsClass(Account.class);
+        Account accountFromBody = contentNegotiator.readBody(context, Account.class);
 
         // Insert the account into the application's database
         Account accountLoggedIn = socialMediaService.loginToAccount(accountFromBody);
 
         // Set the HTTP response based on whether or not the account was successfully logged in to
         if (accountLoggedIn != null) {
-            context.json(accountLoggedIn).status(200);
+            contentNegotiator.writeBody(context, accountLoggedIn).status(200);
         }
         else {
             context.status(401);
         }
     }
 
+    /**
+     * Parses the "batch_size" query parameter of an import
+     * 
+     * @param batchSize the parameter value (may be null)
+     * @return the batch size (the configured default if the parameter is missing), or null if it is not an
+     *         integer between 1 and MAX_IMPORT_BATCH_SIZE
+     */
+    private Integer parseBatchSize(String batchSize) {
+        if (batchSize == null) {
+            return importBatchSize;
+        }
+
+        try {
+            int size = Integer.parseInt(batchSize.trim());
+            return size >= 1 && size <= MAX_IMPORT_BATCH_SIZE ? size : null;
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses the "after" query parameter of an export, which is the ID of the last row of an earlier export
+     * 
+     * @param after the parameter value (may be null)
+     * @return the checkpoint ID (0 if the parameter is missing), or null if it is not a non-negative integer
+     */
+    private Integer parseCheckpoint(String after) {
+        if (after == null) {
+            return 0;
+        }
+
+        try {
+            int checkpoint = Integer.parseInt(after.trim());
+            return checkpoint >= 0 ? checkpoint : null;
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses an optional query parameter holding an epoch time in seconds
+     * 
+     * @param epoch the parameter value (may be null)
+     * @param defaultValue the value used if the parameter is missing
+     * @return the time, or null if it is not an integer
+     */
+    private Long parseEpoch(String epoch, long defaultValue) {
+        if (epoch == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Long.parseLong(epoch.trim());
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses the "rate" query parameter of an export, which asks for the export to be streamed more slowly than
+     * the configured maximum
+     * 
+     * @param rate the parameter value in rows per second (may be null)
+     * @return the rate to stream at (0 for no limit), or null if the parameter is not a positive number
+     */
+    private Double parseExportRate(String rate) {
+        if (rate == null) {
+            return maxExportRowsPerSecond;
+        }
+
+        try {
+            double rowsPerSecond = Double.parseDouble(rate.trim());
+
+            if (!(rowsPerSecond > 0) || Double.isInfinite(rowsPerSecond)) {
+                return null;
+            }
+
+            return maxExportRowsPerSecond > 0 ? Math.min(rowsPerSecond, maxExportRowsPerSecond) : rowsPerSecond;
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses a comma separated list of IDs
+     * 
+     * @param idList the list, such as "1,2,3"
+     * @return the IDs in the listed order, or null if the list is missing, empty, has more than
+     *         MAX_MULTI_GET_IDS entries or contains an entry that is not an integer
+     */
+    private ArrayList<Integer> parseIds(String idList) {
+        if (idList == null || idList.isBlank()) {
+            return null;
+        }
+
+        String[] entries = idList.split(",");
+
+        if (entries.length > MAX_MULTI_GET_IDS) {
+            return null;
+        }
+
+        ArrayList<Integer> ids = new ArrayList<>(entries.length);
+
+        try {
+            for (String entry : entries) {
+                ids.add(Integer.parseInt(entry.trim()));
+            }
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+
+        return ids;
+    }
+
+    /**
+     * Parses an optional integer query parameter that must lie within a range
+     * 
+     * @param value the parameter value (may be null)
+     * @param defaultValue the value used if the parameter is missing
+     * @param min the lowest allowed value
+     * @param max the highest allowed value
+     * @return the value, or null if it is not an integer between min and max
+     */
+    private Integer parseIntInRange(String value, int defaultValue, int min, int max) {
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            return parsed >= min && parsed <= max ? parsed : null;
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses the "after" query parameter of a change log request, which is the sequence number of the last change
+     * the client has seen
+     * 
+     * @param after the parameter value (may be null)
+     * @return the sequence number (0 if the parameter is missing), or null if it is not a non-negative integer
+     */
+    private Long parseSequence(String after) {
+        if (after == null) {
+            return 0L;
+        }
+
+        try {
+            long sequence = Long.parseLong(after.trim());
+            return sequence >= 0 ? sequence : null;
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Records the method, route, status and duration of a finished request in the HTTP metrics
+     * 
+     * Requests that did not match any endpoint are recorded under the "unmatched" route so that arbitrary paths
+     * cannot create new label combinations.
+     * 
+     * @param context the Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void recordRequestMetrics(Context context) {
+        Long startNanos = context.attribute(REQUEST_START_ATTRIBUTE);
+
+        if (startNanos == null) {
+            return;
+        }
+
+        String route = context.endpointHandlerPath();
+
+        if (!route.startsWith("/")) {
+            route = "unmatched";
+        }
+
+        httpMetrics.recordRequest(context.method().name(), route, context.statusCode(), System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Tells the load shedder that an admitted request has finished
+     * 
+     * @param context the Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void releaseRequest(Context context) {
+        Boolean write = context.attribute(LOAD_SHED_PERMIT_ATTRIBUTE);
+
+        if (write != null) {
+            // Clear the attribute so that a permit handed back early is not released again after the request
+            context.attribute(LOAD_SHED_PERMIT_ATTRIBUTE, null);
+            loadShedder.release(write);
+        }
+    }
+
+    /**
+     * Takes a token from a key's rate limiter bucket, or rejects the request if the bucket is empty
+     * 
+     * A rejected request gets the HTTP response status 429 and a Retry-After header with the number of seconds
+     * until the key's next token is available.
+     * 
+     * @param context the Javalin Context object manages information about both the HTTP request and response.
+     * @param rateLimiter the rate limiter that applies to the request
+     * @param key the key (account ID or client IP) that the request is limited by
+     * @param limiterName the name of the rate limiter in the http_rate_limited_total metric
+     * @return true if the request was rejected and the handler should stop
+     */
+    private <K> boolean rejectIfRateLimited(Context context, RateLimiter<K> rateLimiter, K key, String limiterName) {
+        long retryAfterNanos = rateLimiter.tryAcquire(key);
+
+        if (retryAfterNanos == 0) {
+            return false;
+        }
+
+        rateLimitedRequests.labels(limiterName).inc();
+        context.header("Retry-After", Long.toString((retryAfterNanos + 999_999_999) / 1_000_000_000)).status(429);
+
+        return true;
+    }
+
+    /**
+     * Sends a stored response again, marked with an Idempotent-Replayed header
+     * 
+     * @param context the Javalin Context object manages information about both the HTTP request and response.
+     * @param stored the response of the first request with the same idempotency key
+     */
+    private void replayIdempotentResponse(Context context, IdempotencyStore.StoredResponse stored) {
+        if (stored.getContentType() != null) {
+            context.contentType(stored.getContentType());
+        }
+
+        context.header("Idempotent-Replayed", "true");
+        context.status(stored.getStatus()).result(stored.getBody());
+    }
+
+    /**
+     * Gets the accounts whose usernames start with the "prefix" query parameter, in username order, for
+     * autocompleting mentions. Usernames match the prefix case-sensitively, and passwords are left out of the
+     * returned accounts.
+     * 
+     * The "limit" query parameter caps the number of accounts returned, between 1 and 100 (10 by default).
+     * 
+     * On success, the HTTP response status is set to 200.
+     * If the prefix is missing or empty or the limit is invalid, the HTTP response status is set to 400.
+     * 
+     * @param context the Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void searchAccounts(Context context) {
+        String prefix = context.queryParam("prefix");
+        Integer limit = parseIntInRange(context.queryParam("limit"), DEFAULT_ACCOUNT_SEARCH_LIMIT, 1, MAX_ACCOUNT_SEARCH_LIMIT);
+
+        if (prefix == null || prefix.isEmpty() || limit == null) {
+            // Set the HTTP response status to 400 while leaving the response body blank
+            context.status(400);
+            return;
+        }
+
+        // Set the HTTP message body to the matching accounts and set the HTTP response status to 200
+        contentNegotiator.writeBody(context, usernameIndex.search(prefix, limit)).status(200);
+    }
+
+    /**
+     * Stores the time at which a request started so that its duration can be recorded when it finishes
+     * 
+     * @param context the Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void startRequestTimer(Context context) {
+        context.attribute(REQUEST_START_ATTRIBUTE, System.nanoTime());
+    }
+
+    /**
+     * Streams the rows of an export as newline-delimited JSON, one JSON object per line in ID order, reading them
+     * from a forward-only database cursor so that the table is never held in memory.
+     * 
+     * The "after" query parameter resumes an interrupted export from the ID of the last line received. The "rate"
+     * query parameter limits the export to that many rows per second, and the configured maximum rate applies
+     * either way. The response is gzip encoded if the request's Accept-Encoding allows it.
+     * 
+     * On success, the HTTP response status is set to 200.
+     * If "after" or "rate" is invalid, the HTTP response status is set to 400.
+     * If the export fails before anything was sent, the HTTP response status is set to 500. If it fails later, the
+     * connection is dropped, so a response that ends cleanly is always complete.
+     * 
+     * @param context the Javalin Context object manages information about both the HTTP request and response.
+     * @param export the name of the export, for the log
+     * @param query streams the rows after a checkpoint ID to a writer
+     */
+    private void streamExport(Context context, String export, ExportQuery query) {
+        Integer afterId = parseCheckpoint(context.queryParam("after"));
+        Double rowsPerSecond = parseExportRate(context.queryParam("rate"));
+
+        if (afterId == null || rowsPerSecond == null) {
+            // Set the HTTP response status to 400 while leaving the response body blank
+            context.status(400);
+            return;
+        }
+
+        // An export runs for as long as its rate and the client allow, so it gives its load shedding permit back
+        // rather than holding a share of the read limit (and keeping the quiet-time background work waiting) throughout
+        releaseRequest(context);
+
+        try {
+            NdjsonWriter writer = new NdjsonWriter(context, rowsPerSecond);
+            query.run(afterId, writer);
+            writer.finish();
+        }
+        catch (SQLException | IOException e) {
+            abortExport(context, export, e);
+        }
+    }
+
+    /**
+     * Streams message created, updated and deleted events as Server-Sent Events as they are committed, optionally
+     * only for the messages posted by the account in the "posted_by" query parameter.
+     * 
+     * A client that reconnects with a Last-Event-ID header (or "lastEventId" query parameter) resumes after that
+     * event if it is still buffered, and otherwise first receives a "reset" event telling it to reload. Clients that
+     * fall too far behind are disconnected.
+     * 
+     * On success, the HTTP response status is set to 200 and the response stays open.
+     * If "posted_by" is not an integer, the HTTP response status is set to 400.
+     * 
+     * @param context the Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void streamMessageEvents(Context context) {
+        Integer postedBy = null;
+        String postedByParameter = context.queryParam("posted_by");
+
+        if (postedByParameter != null) {
+            try {
+                postedBy = Integer.parseInt(postedByParameter.trim());
+            }
+            catch (NumberFormatException e) {
+                // Set the HTTP response status to 400 while leaving the response body blank
+                context.status(400);
+                return;
+            }
+        }
+
+        String lastEventId = context.header("Last-Event-ID");
+
+        if (lastEventId == null) {
+            lastEventId = context.queryParam("lastEventId");
+        }
+
+        try {
+            messageEventStream.subscribe(context, postedBy, lastEventId);
+        }
+        catch (IOException e) {
+            logger.debug("Message event subscription failed: {}", e.toString());
+        }
+    }
+
     /**
      * Attempts to update the text of a message by ID from the application's database
      * 
@@ -233,6 +1490,7 @@ public class SocialMediaController {
      * 
      * On success, the HTTP response status is set to 200.
      * On failure, the HTTP response status is set to 400.
+     * If the account that posted the message has written too many messages recently, the HTTP response status is set to 429.
      * 
      * @param context the Javalin Context object manages information about both the HTTP request and response.
      */
@@ -240,15 +1498,22 @@ public class SocialMediaController {
         // Get the message ID from the endpoint's path
         int idFromPath = Integer.parseInt(context.pathParam("message_id"));
 
+        // Reject the request if the account that posted the message has written too many messages recently
+        Integer postedBy = socialMediaService.getPosterOfMessage(idFromPath);
+
+        if (postedBy != null && rejectIfRateLimited(context, messageRateLimiter, postedBy, "messages")) {
+            return;
+        }
+
         // Get the Message object from the Javalin context
-        Message messageFromBody = context.bodyAsClass(Message.class);
+        Message messageFromBody = contentNegotiator.readBody(context, Message.class);
 
         // Update the text of the message with a matching ID
         Message updatedMessage = socialMediaService.updateMessageById(idFromPath, messageFromBody.getMessage_text());
 
         if (updatedMessage != null) {
             // Set the HTTP response status to 200 and return the updated Message
-            context.json(updatedMessage).status(200);
+            contentNegotiator.writeBody(context, updatedMessage).status(200);
         }
         else {
             // Set the HTTP response status to 400 while leaving the response body blank
@@ -0,0 +1,159 @@
+package Controller;
+
+import io.javalin.Javalin;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import javax.sql.DataSource;
+import Util.EmbeddedDatabase;
+
+/**
+ * Runs the API in-process, for tests and embedding: a controller, the Javalin app from its startAPI() and,
+ * optionally, a private in-memory database.
+ *
+ * Unlike Main, a server built with port 0 listens on an ephemeral port, so that any number of servers can run side
+ * by side in one JVM or in concurrent JVMs. Use getBaseUrl() to reach it.
+ *
+ * <pre>
+ * SocialMediaServer server = SocialMediaServer.builder().inMemoryDatabase().port(0).start().join();
+ * ...
+ * server.stop();
+ * </pre>
+ */
+public class SocialMediaServer {
+    private final SocialMediaController controller;
+    private final Javalin app;
+    private final EmbeddedDatabase ownedDatabase;
+
+    private SocialMediaServer(SocialMediaController controller, Javalin app, EmbeddedDatabase ownedDatabase) {
+        this.controller = controller;
+        this.app = app;
+        this.ownedDatabase = ownedDatabase;
+    }
+
+    /**
+     * @return a builder for a server on port 8080 using the application's database from ConnectionUtil
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the controller serving the API
+     */
+    public SocialMediaController getController() {
+        return controller;
+    }
+
+    /**
+     * @return the port the server listens on, which is the ephemeral port it was given if it was built with port 0
+     */
+    public int getPort() {
+        return app.port();
+    }
+
+    /**
+     * @return the URL of the server, for example http://localhost:41234, with no trailing slash
+     */
+    public String getBaseUrl() {
+        return "http://localhost:" + getPort();
+    }
+
+    /**
+     * Stops the server, and drops its in-memory database if the builder created one for it
+     */
+    public void stop() {
+        app.stop();
+
+        if (ownedDatabase != null) {
+            ownedDatabase.close();
+        }
+    }
+
+    /**
+     * Configures and starts a SocialMediaServer
+     */
+    public static class Builder {
+        private int port = 8080;
+        private DataSource dataSource;
+        private boolean inMemoryDatabase;
+        private boolean warmUp = true;
+
+        private Builder() {
+        }
+
+        /**
+         * @param port the port to listen on, or 0 for an ephemeral port
+         * @return this builder
+         */
+        public Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * Uses a database that the caller manages, such as an EmbeddedDatabase shared by a test class and reset
+         * between tests
+         *
+         * @param dataSource the database to use
+         * @return this builder
+         */
+        public Builder dataSource(DataSource dataSource) {
+            this.dataSource = dataSource;
+            this.inMemoryDatabase = false;
+            return this;
+        }
+
+        /**
+         * Creates a private in-memory database for the server, which is dropped when the server stops
+         *
+         * @return this builder
+         */
+        public Builder inMemoryDatabase() {
+            this.dataSource = null;
+            this.inMemoryDatabase = true;
+            return this;
+        }
+
+        /**
+         * @param warmUp whether to warm the caches as soon as the server listens (true by default); if false, the
+         *               server only reports ready once getController().warmUp(port) has been called
+         * @return this builder
+         */
+        public Builder warmUp(boolean warmUp) {
+            this.warmUp = warmUp;
+            return this;
+        }
+
+        /**
+         * Creates the server and starts listening
+         *
+         * @return a future that completes with the server once it is ready to serve: once warm-up has finished, or
+         *         straight away if warm-up is disabled
+         * @throws SQLException if the in-memory database could not be created
+         */
+        public CompletableFuture<SocialMediaServer> start() throws SQLException {
+            EmbeddedDatabase ownedDatabase = inMemoryDatabase ? new EmbeddedDatabase() : null;
+            SocialMediaController controller = new SocialMediaController(ownedDatabase != null ? ownedDatabase.getDataSource() : dataSource);
+            Javalin app = controller.startAPI();
+
+            try {
+                app.start(port);
+            }
+            catch (RuntimeException e) {
+                if (ownedDatabase != null) {
+                    ownedDatabase.close();
+                }
+
+                throw e;
+            }
+
+            SocialMediaServer server = new SocialMediaServer(controller, app, ownedDatabase);
+
+            if (!warmUp) {
+                return CompletableFuture.completedFuture(server);
+            }
+
+            return controller.warmUp(server.getPort()).thenApply(warmedUp -> server);
+        }
+    }
+}
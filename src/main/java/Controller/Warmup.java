@@ -0,0 +1,175 @@
+package Controller;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import Metrics.*;
+import Service.SocialMediaService;
+import Util.DaemonThreadFactory;
+
+/**
+ * Gets a freshly started server ready for traffic, and tracks whether it is.
+ *
+ * The warm-up tasks run in parallel: loading the most active accounts into the caches, loading the most recent
+ * messages into the message cache and, if a request sample is configured, replaying it against the server so
+ * that the JIT compiles the request paths. The server reports itself ready once every task has finished, whether
+ * or not it succeeded, since a failed warm-up only makes the first requests slower.
+ *
+ * The request sample is a text file with one request per line, as "GET /path" or just "/path". Lines starting
+ * with # are ignored, and so are requests other than GET and HEAD, since replaying a write would change data.
+ */
+public class Warmup {
+    private static final Logger logger = LoggerFactory.getLogger(Warmup.class);
+
+    /**
+     * A warm-up task, which returns how many items it warmed
+     */
+    private interface Task {
+        int run() throws Exception;
+    }
+
+    private final SocialMediaService socialMediaService;
+    private final int accounts;
+    private final int messages;
+    private final String requestSample;
+    private final int replayIterations;
+    private final int threads;
+
+    private volatile boolean ready;
+    private final AtomicInteger tasksTotal = new AtomicInteger();
+    private final AtomicInteger tasksCompleted = new AtomicInteger();
+    private final AtomicLong durationMillis = new AtomicLong();
+    private final Counter itemsWarmed;
+
+    /**
+     * @param socialMediaService the service whose caches are warmed
+     * @param accounts the most accounts to load
+     * @param messages the most recent messages to load
+     * @param requestSample the path of the request sample to replay, or null to skip the replay
+     * @param replayIterations how many times the request sample is replayed
+     * @param threads the number of threads warm-up tasks run on
+     * @param registry the registry that warm-up progress is reported to
+     */
+    public Warmup(SocialMediaService socialMediaService, int accounts, int messages, String requestSample, int replayIterations, int threads,
+            MetricsRegistry registry) {
+        this.socialMediaService = socialMediaService;
+        this.accounts = accounts;
+        this.messages = messages;
+        this.requestSample = requestSample;
+        this.replayIterations = replayIterations;
+        this.threads = threads;
+
+        this.itemsWarmed = registry.counter("warmup_items_total", "Cache entries loaded and requests replayed during warm-up", "task");
+        Gauge progress = registry.gauge("warmup_tasks", "Warm-up tasks", "state");
+        progress.labels("total").set(tasksTotal::get);
+        progress.labels("completed").set(tasksCompleted::get);
+        registry.gauge("warmup_duration_seconds", "How long warm-up took, once it has finished").labels().set(() -> durationMillis.get() / 1000.0);
+        registry.gauge("ready", "Whether the server has finished warming up").labels().set(() -> ready ? 1 : 0);
+    }
+
+    /**
+     * @return true once warm-up has finished
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Starts warming up a server that is already listening
+     *
+     * @param port the port the server listens on, which the request sample is replayed against
+     * @return a future that completes when warm-up has finished and the server reports itself ready
+     */
+    public CompletableFuture<Void> start(int port) {
+        long startMillis = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("warmup"));
+
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        tasks.add(runTask("accounts", () -> socialMediaService.warmAccountCaches(accounts), executor));
+        tasks.add(runTask("messages", () -> socialMediaService.warmMessageCache(messages), executor));
+
+        if (requestSample != null) {
+            tasks.add(runTask("replay", () -> replay(port), executor));
+        }
+
+        return CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).whenComplete((result, e) -> {
+            executor.shutdown();
+            durationMillis.set(System.currentTimeMillis() - startMillis);
+            ready = true;
+            logger.info("Warm-up finished in {} ms", durationMillis.get());
+        });
+    }
+
+    private CompletableFuture<Void> runTask(String name, Task task, ExecutorService executor) {
+        tasksTotal.incrementAndGet();
+
+        return CompletableFuture.runAsync(() -> {
+            try {
+                itemsWarmed.labels(name).inc(task.run());
+            }
+            catch (Exception e) {
+                logger.warn("Warm-up task {} failed", name, e);
+            }
+            finally {
+                tasksCompleted.incrementAndGet();
+            }
+        }, executor);
+    }
+
+    /**
+     * Sends every GET and HEAD request of the request sample to the server, replayIterations times
+     *
+     * @return the number of requests sent
+     */
+    private int replay(int port) throws IOException, InterruptedException {
+        List<String> paths = new ArrayList<>();
+
+        for (String line : Files.readAllLines(Path.of(requestSample))) {
+            String request = line.trim();
+
+            if (request.isEmpty() || request.startsWith("#")) {
+                continue;
+            }
+
+            String[] parts = request.split("\\s+", 2);
+
+            if (parts.length == 1) {
+                paths.add(parts[0]);
+            }
+            else if (parts[0].equalsIgnoreCase("GET") || parts[0].equalsIgnoreCase("HEAD")) {
+                paths.add(parts[1]);
+            }
+        }
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        int sent = 0;
+
+        for (int iteration = 0; iteration < replayIterations; iteration++) {
+            for (String path : paths) {
+                HttpRequest request = HttpRequest.newBuilder()
+                        .uri(URI.create("http://localhost:" + port + (path.startsWith("/") ? path : "/" + path)))
+                        .timeout(Duration.ofSeconds(10))
+                        .build();
+
+                client.send(request, HttpResponse.BodyHandlers.discarding());
+                sent++;
+            }
+        }
+
+        return sent;
+    }
+}
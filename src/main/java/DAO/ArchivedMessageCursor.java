@@ -0,0 +1,83 @@
+package DAO;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import Model.Message;
+
+/**
+ * Reads archived messages in ID order, for merging into an export of the Message table, from a cursor over the
+ * archive's locator rows. Each block is decompressed when the first of its messages is reached.
+ *
+ * A block holds one month of messages, so consecutive IDs mostly come from the same few blocks, and the most
+ * recently used blocks are kept decoded rather than decompressed again for every message.
+ */
+class ArchivedMessageCursor {
+    private static final int DECODED_BLOCKS = 8;
+
+    private final ResultSet locators;
+    private final PreparedStatement blockPs;
+    private final Map<Integer, Map<Integer, Message>> blocks = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Map<Integer, Message>> eldest) {
+            return size() > DECODED_BLOCKS;
+        }
+    };
+
+    /**
+     * @param locators the message_id and block_id of archived messages, in message_id order
+     * @param blockPs a statement that gets the payload of the block whose ID is its parameter
+     */
+    ArchivedMessageCursor(ResultSet locators, PreparedStatement blockPs) {
+        this.locators = locators;
+        this.blockPs = blockPs;
+    }
+
+    /**
+     * @return the next archived message, or null once every message has been read
+     * @throws SQLException if the locators or a block could not be read
+     */
+    Message next() throws SQLException {
+        if (!locators.next()) {
+            return null;
+        }
+
+        int messageId = locators.getInt(1);
+        int blockId = locators.getInt(2);
+        Map<Integer, Message> block = blocks.get(blockId);
+
+        if (block == null) {
+            block = readBlock(blockId);
+            blocks.put(blockId, block);
+        }
+
+        Message message = block.get(messageId);
+
+        if (message == null) {
+            throw new SQLDataException("Archived message " + messageId + " is missing from block " + blockId);
+        }
+
+        return message;
+    }
+
+    private Map<Integer, Message> readBlock(int blockId) throws SQLException {
+        blockPs.setInt(1, blockId);
+        ResultSet rs = blockPs.executeQuery();
+
+        if (!rs.next()) {
+            throw new SQLDataException("Archive block " + blockId + " does not exist");
+        }
+
+        Map<Integer, Message> block = new HashMap<>();
+
+        for (Message message : MessageArchiveCodec.decode(rs.getBytes(1))) {
+            block.put(message.getMessage_id(), message);
+        }
+
+        return block;
+    }
+}
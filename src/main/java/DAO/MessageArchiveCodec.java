@@ -0,0 +1,132 @@
+package DAO;
+
+import io.airlift.compress.MalformedInputException;
+import io.airlift.compress.zstd.ZstdCompressor;
+import io.airlift.compress.zstd.ZstdDecompressor;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import Model.Message;
+
+/**
+ * The format of an archive block: a batch of messages from one monthly partition, written as fixed fields and
+ * compressed with zstd.
+ *
+ * A block is written once and never changed, so the whole block is compressed as one frame, which compresses the
+ * repetitive message text far better than rows compressed one at a time would.
+ */
+class MessageArchiveCodec {
+    private static final int FORMAT_VERSION = 1;
+
+    private static final long MIN_EPOCH = ZonedDateTime.of(1, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC).toEpochSecond();
+    private static final long MAX_EPOCH = ZonedDateTime.of(9999, 12, 31, 23, 59, 59, 0, ZoneOffset.UTC).toEpochSecond();
+
+    /**
+     * The compressor keeps no state between calls, unlike the decompressor, which is created per block
+     */
+    private static final ZstdCompressor COMPRESSOR = new ZstdCompressor();
+
+    private MessageArchiveCodec() {
+    }
+
+    /**
+     * @param timePostedEpoch a time_posted_epoch in seconds
+     * @return the monthly partition the time falls in, as yyyymm in UTC (202211 for November 2022)
+     */
+    static int partitionMonth(long timePostedEpoch) {
+        // Times outside years 1 to 9999 fall in the first or last partition
+        long clamped = Math.max(MIN_EPOCH, Math.min(MAX_EPOCH, timePostedEpoch));
+        ZonedDateTime time = Instant.ofEpochSecond(clamped).atZone(ZoneOffset.UTC);
+
+        return time.getYear() * 100 + time.getMonthValue();
+    }
+
+    /**
+     * @param messages the messages of the block
+     * @return the uncompressed bytes of the block
+     */
+    static byte[] encode(List<Message> messages) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(messages.size() * 64);
+
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeByte(FORMAT_VERSION);
+            output.writeInt(messages.size());
+
+            for (Message message : messages) {
+                output.writeInt(message.getMessage_id());
+                output.writeInt(message.getPosted_by());
+                output.writeLong(message.getTime_posted_epoch());
+                output.writeUTF(message.getMessage_text());
+            }
+        }
+        catch (IOException e) {
+            // Writing to memory does not fail
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param uncompressed the bytes from encode()
+     * @return the compressed block payload
+     */
+    static byte[] compress(byte[] uncompressed) {
+        byte[] output = new byte[COMPRESSOR.maxCompressedLength(uncompressed.length)];
+        int length = COMPRESSOR.compress(uncompressed, 0, uncompressed.length, output, 0, output.length);
+
+        return Arrays.copyOf(output, length);
+    }
+
+    /**
+     * @param payload a compressed block payload
+     * @return the messages of the block, in the order they were written
+     * @throws SQLDataException if the payload is not a valid block
+     */
+    static ArrayList<Message> decode(byte[] payload) throws SQLException {
+        long size = ZstdDecompressor.getDecompressedSize(payload, 0, payload.length);
+
+        if (size < 0 || size > Integer.MAX_VALUE) {
+            throw new SQLDataException("Archive block has no valid uncompressed size");
+        }
+
+        byte[] uncompressed = new byte[(int) size];
+
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(uncompressed))) {
+            new ZstdDecompressor().decompress(payload, 0, payload.length, uncompressed, 0, uncompressed.length);
+
+            int version = input.readUnsignedByte();
+
+            if (version != FORMAT_VERSION) {
+                throw new SQLDataException("Unsupported archive block format " + version);
+            }
+
+            int count = input.readInt();
+            ArrayList<Message> messages = new ArrayList<>(count);
+
+            for (int i = 0; i < count; i++) {
+                int messageId = input.readInt();
+                int postedBy = input.readInt();
+                long timePostedEpoch = input.readLong();
+
+                messages.add(new Message(messageId, postedBy, input.readUTF(), timePostedEpoch));
+            }
+
+            return messages;
+        }
+        catch (IOException | MalformedInputException e) {
+            throw new SQLDataException("Corrupt archive block", e);
+        }
+    }
+}
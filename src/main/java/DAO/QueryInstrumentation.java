@@ -0,0 +1,485 @@
+package DAO;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import Metrics.*;
+import Util.ConnectionUtil;
+import Util.DaemonThreadFactory;
+
+/**
+ * Wraps the connections handed to the DAO so that every statement they prepare is timed.
+ * 
+ * For each SQL template this records the execution count, time, rows returned or affected, and failures, both in
+ * QueryStats (served by GET /admin/queries) and in the metrics registry. The metrics are labelled by a short statement
+ * name (the statement type and the table it targets, such as "select message") rather than the SQL, so that SQL
+ * built at run time cannot grow the label sets without bound. The time spent waiting for a connection is recorded as
+ * well. The slowest executions are kept in a rolling SlowQueryLog with their bind parameters reduced to types, and
+ * executions slower than the EXPLAIN threshold have their query plan logged (at most once a minute for each
+ * template). The plans are explained on a background thread with a connection of their own, so a slow statement
+ * run while a lock is held does not keep the lock for the EXPLAIN as well.
+ */
+public class QueryInstrumentation {
+    private static final Logger logger = LoggerFactory.getLogger(QueryInstrumentation.class);
+
+    /**
+     * The number of slow executions kept per window of the slow query log
+     */
+    public static final int DEFAULT_SLOW_QUERY_CAPACITY = 20;
+
+    /**
+     * The length of a slow query log window
+     */
+    public static final long DEFAULT_SLOW_QUERY_WINDOW_MILLIS = 5 * 60 * 1000;
+
+    /**
+     * Executions taking at least this long have their query plan logged, read from -Ddb.explainThresholdMillis when
+     * the class loads (100 if it is not set)
+     */
+    public static final long CONFIGURED_EXPLAIN_THRESHOLD_MILLIS = Long.getLong("db.explainThresholdMillis", 100);
+
+    private static final long EXPLAIN_INTERVAL_NANOS = 60_000_000_000L;
+
+    /**
+     * The most slow executions waiting to be explained, beyond which more are dropped
+     */
+    private static final int EXPLAIN_QUEUE_CAPACITY = 16;
+
+    /**
+     * Finds the table that a statement reads from or writes to
+     */
+    private static final Pattern STATEMENT_TARGET = Pattern.compile("\\b(?:FROM|INTO|UPDATE|TABLE)\\s+([A-Za-z_][A-Za-z0-9_.]*)",
+            Pattern.CASE_INSENSITIVE);
+
+    private final Map<String, QueryStats> queryStats = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastExplainedNanos = new ConcurrentHashMap<>();
+    private final List<QueryLatencyListener> latencyListeners = new CopyOnWriteArrayList<>();
+    private final DataSource dataSource;
+    private final SlowQueryLog slowQueryLog;
+    private final long explainThresholdNanos;
+    private final LongAdder connectionWaitCount = new LongAdder();
+    private final LongAdder connectionWaitNanos = new LongAdder();
+    private final LongAccumulator connectionWaitMaxNanos = new LongAccumulator(Math::max, 0);
+    private final Histogram queryDuration;
+    private final Counter queryRows;
+    private final Counter queryErrors;
+    private final Histogram.Child connectionWait;
+    private final ThreadPoolExecutor explainExecutor;
+
+    /**
+     * @param registry the registry that the database metrics are added to
+     */
+    public QueryInstrumentation(MetricsRegistry registry) {
+        this(registry, null);
+    }
+
+    /**
+     * @param registry the registry that the database metrics are added to
+     * @param dataSource the database to connect to, or null for the application's database from ConnectionUtil
+     */
+    public QueryInstrumentation(MetricsRegistry registry, DataSource dataSource) {
+        this(registry, dataSource, DEFAULT_SLOW_QUERY_CAPACITY, DEFAULT_SLOW_QUERY_WINDOW_MILLIS, CONFIGURED_EXPLAIN_THRESHOLD_MILLIS);
+    }
+
+    /**
+     * @param registry the registry that the database metrics are added to
+     * @param slowQueryCapacity the number of slow executions kept per window
+     * @param slowQueryWindowMillis the length of a slow query log window
+     * @param explainThresholdMillis executions taking at least this long have their query plan logged
+     */
+    public QueryInstrumentation(MetricsRegistry registry, int slowQueryCapacity, long slowQueryWindowMillis, long explainThresholdMillis) {
+        this(registry, null, slowQueryCapacity, slowQueryWindowMillis, explainThresholdMillis);
+    }
+
+    /**
+     * @param registry the registry that the database metrics are added to
+     * @param dataSource the database to connect to, or null for the application's database from ConnectionUtil
+     * @param slowQueryCapacity the number of slow executions kept per window
+     * @param slowQueryWindowMillis the length of a slow query log window
+     * @param explainThresholdMillis executions taking at least this long have their query plan logged
+     */
+    public QueryInstrumentation(MetricsRegistry registry, DataSource dataSource, int slowQueryCapacity, long slowQueryWindowMillis,
+            long explainThresholdMillis) {
+        this.dataSource = dataSource;
+        this.slowQueryLog = new SlowQueryLog(slowQueryCapacity, slowQueryWindowMillis);
+        this.explainThresholdNanos = explainThresholdMillis * 1_000_000;
+        this.queryDuration = registry.histogram("db_query_duration_seconds", "Time spent executing SQL statements, by statement name", "query");
+        this.queryRows = registry.counter("db_query_rows_total", "Rows returned or affected by SQL statements, by statement name", "query");
+        this.queryErrors = registry.counter("db_query_errors_total", "SQL statements that failed, by statement name", "query");
+        this.connectionWait = registry.histogram("db_connection_wait_seconds", "Time spent obtaining a database connection").labels();
+
+        // The EXPLAIN thread exits when idle, so an instrumentation that is never closed does not keep a thread alive
+        this.explainExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(EXPLAIN_QUEUE_CAPACITY),
+                new DaemonThreadFactory("query-explain"), new ThreadPoolExecutor.DiscardPolicy());
+        this.explainExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Gets an instrumented connection to the application's database
+     * 
+     * @return a connection whose prepared statements are timed, or null if no connection could be obtained
+     */
+    public Connection getConnection() {
+        long start = System.nanoTime();
+        Connection connection = openConnection();
+        long waitNanos = System.nanoTime() - start;
+
+        connectionWait.observeNanos(waitNanos);
+        connectionWaitCount.increment();
+        connectionWaitNanos.add(waitNanos);
+        connectionWaitMaxNanos.accumulate(waitNanos);
+
+        if (connection == null) {
+            return null;
+        }
+
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class},
+                new ConnectionHandler(connection));
+    }
+
+    /**
+     * Registers a listener that is told the latency of every statement executed from now on
+     * 
+     * @param listener the listener to add
+     */
+    public void addLatencyListener(QueryLatencyListener listener) {
+        latencyListeners.add(listener);
+    }
+
+    /**
+     * Stops the background EXPLAIN thread, dropping the plans still waiting to be logged. Statements keep being timed.
+     */
+    public void close() {
+        explainExecutor.shutdownNow();
+    }
+
+    /**
+     * @return the totals of every SQL template executed so far, slowest total time first
+     */
+    public List<QueryStats> getQueryStats() {
+        List<QueryStats> stats = new ArrayList<>(queryStats.values());
+        stats.sort((a, b) -> Double.compare(b.getTotalMillis(), a.getTotalMillis()));
+
+        return stats;
+    }
+
+    /**
+     * @return the slowest recent executions, slowest first
+     */
+    public List<SlowQuery> getSlowQueries() {
+        return slowQueryLog.snapshot();
+    }
+
+    /**
+     * @return the number of connections obtained so far
+     */
+    public long getConnectionWaitCount() {
+        return connectionWaitCount.sum();
+    }
+
+    /**
+     * @return the mean time spent obtaining a connection
+     */
+    public double getConnectionWaitMeanMillis() {
+        long count = connectionWaitCount.sum();
+
+        return count == 0 ? 0 : connectionWaitNanos.sum() / 1e6 / count;
+    }
+
+    /**
+     * @return the longest time spent obtaining a connection
+     */
+    public double getConnectionWaitMaxMillis() {
+        return connectionWaitMaxNanos.get() / 1e6;
+    }
+
+    /**
+     * Names a statement for the metric labels by its type and the first table it targets, for example
+     * "select message" or "merge activity_hourly"
+     * 
+     * @param sql the SQL of the statement
+     * @return the lowercase statement name
+     */
+    static String statementName(String sql) {
+        String trimmed = sql.trim();
+        int verbEnd = 0;
+
+        while (verbEnd < trimmed.length() && Character.isLetter(trimmed.charAt(verbEnd))) {
+            verbEnd++;
+        }
+
+        String verb = trimmed.substring(0, verbEnd).toLowerCase();
+        Matcher target = STATEMENT_TARGET.matcher(trimmed);
+
+        return target.find() ? verb + " " + target.group(1).toLowerCase() : verb;
+    }
+
+    /**
+     * @return a new connection to the configured database, or null if no connection could be obtained
+     */
+    private Connection openConnection() {
+        if (dataSource == null) {
+            return ConnectionUtil.getConnection();
+        }
+
+        try {
+            return dataSource.getConnection();
+        }
+        catch (SQLException e) {
+            logger.error("Failed to connect to the database", e);
+            return null;
+        }
+    }
+
+    /**
+     * Records a finished execution and logs its plan if it was slow enough
+     * 
+     * @return the slow query log entry for the execution, or null if it was not slow enough to be kept
+     */
+    private SlowQuery recordExecution(String sql, Object[] parameters, long startMillis, long nanos, boolean failed) {
+        String statementName = statementName(sql);
+        queryStats.computeIfAbsent(sql, QueryStats::new).recordExecution(nanos, failed);
+        queryDuration.labels(statementName).observeNanos(nanos);
+
+        if (failed) {
+            queryErrors.labels(statementName).inc();
+        }
+
+        for (QueryLatencyListener listener : latencyListeners) {
+            listener.onQueryExecuted(sql, nanos);
+        }
+
+        SlowQuery slowQuery = new SlowQuery(sql, parameterTypes(parameters), nanos, startMillis);
+        boolean kept = slowQueryLog.offer(slowQuery);
+
+        if (!failed && nanos >= explainThresholdNanos) {
+            explain(sql, parameters.clone(), nanos);
+        }
+
+        return kept ? slowQuery : null;
+    }
+
+    /**
+     * Records rows returned by a query or affected by an update
+     */
+    private void recordRows(String sql, SlowQuery slowQuery, long rows) {
+        queryStats.computeIfAbsent(sql, QueryStats::new).recordRows(rows);
+        queryRows.labels(statementName(sql)).inc(rows);
+
+        if (slowQuery != null) {
+            slowQuery.recordRows(rows);
+        }
+    }
+
+    /**
+     * Queues the query plan of a slow execution to be logged, unless the template was explained within the last
+     * minute or too many plans are already waiting
+     */
+    private void explain(String sql, Object[] parameters, long nanos) {
+        long now = System.nanoTime();
+        Long lastExplained = lastExplainedNanos.get(sql);
+
+        if (lastExplained != null && now - lastExplained < EXPLAIN_INTERVAL_NANOS) {
+            return;
+        }
+
+        lastExplainedNanos.put(sql, now);
+        explainExecutor.execute(() -> logPlan(sql, parameters, nanos));
+    }
+
+    /**
+     * Logs the query plan of a slow execution from a connection of its own, re-binding its parameters so the plan
+     * matches what actually ran (H2 prints parameters as ?1, ?2... so their values do not appear in the log)
+     */
+    private void logPlan(String sql, Object[] parameters, long nanos) {
+        Connection explainConnection = openConnection();
+
+        if (explainConnection == null) {
+            logger.warn("Slow query ({} ms): {} (EXPLAIN failed: no connection)", String.format("%.1f", nanos / 1e6), sql);
+            return;
+        }
+
+        try (Connection connection = explainConnection;
+                PreparedStatement ps = connection.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                ps.setObject(i + 1, parameters[i]);
+            }
+
+            StringBuilder plan = new StringBuilder();
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    plan.append(rs.getString(1)).append('\n');
+                }
+            }
+
+            logger.warn("Slow query ({} ms): {}\n{}", String.format("%.1f", nanos / 1e6), sql, plan);
+        }
+        catch (SQLException e) {
+            logger.warn("Slow query ({} ms): {} (EXPLAIN failed: {})", String.format("%.1f", nanos / 1e6), sql, e.getMessage());
+        }
+    }
+
+    private static List<String> parameterTypes(Object[] parameters) {
+        if (parameters.length == 0) {
+            return Collections.emptyList();
+        }
+
+        String[] types = new String[parameters.length];
+
+        for (int i = 0; i < parameters.length; i++) {
+            types[i] = parameters[i] == null ? "null" : parameters[i].getClass().getSimpleName();
+        }
+
+        return Arrays.asList(types);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        }
+        catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Passes calls through to the real connection, wrapping the statements it prepares
+     */
+    private class ConnectionHandler implements InvocationHandler {
+        private final Connection connection;
+
+        ConnectionHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = QueryInstrumentation.invoke(connection, method, args);
+
+            if (method.getName().equals("prepareStatement") && result instanceof PreparedStatement) {
+                return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[] {PreparedStatement.class},
+                        new StatementHandler((String) args[0], (PreparedStatement) result));
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * Remembers bind parameters and times the execute methods of a prepared statement
+     */
+    private class StatementHandler implements InvocationHandler {
+        private final String sql;
+        private final PreparedStatement statement;
+        private Object[] parameters = new Object[0];
+
+        StatementHandler(String sql, PreparedStatement statement) {
+            this.sql = sql;
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                rememberParameter((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                return QueryInstrumentation.invoke(statement, method, args);
+            }
+
+            if (!name.startsWith("execute")) {
+                return QueryInstrumentation.invoke(statement, method, args);
+            }
+
+            long startMillis = System.currentTimeMillis();
+            long start = System.nanoTime();
+            Object result;
+
+            try {
+                result = QueryInstrumentation.invoke(statement, method, args);
+            }
+            catch (SQLException e) {
+                recordExecution(sql, parameters, startMillis, System.nanoTime() - start, true);
+                throw e;
+            }
+
+            SlowQuery slowQuery = recordExecution(sql, parameters, startMillis, System.nanoTime() - start, false);
+
+            if (result instanceof ResultSet) {
+                return Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] {ResultSet.class},
+                        new RowCountingHandler(sql, slowQuery, (ResultSet) result));
+            }
+
+            if (result instanceof Integer) {
+                recordRows(sql, slowQuery, (Integer) result);
+            }
+            else if (result instanceof int[]) {
+                recordRows(sql, slowQuery, Arrays.stream((int[]) result).filter(count -> count > 0).sum());
+            }
+
+            return result;
+        }
+
+        private void rememberParameter(int index, Object value) {
+            if (index > parameters.length) {
+                parameters = Arrays.copyOf(parameters, index);
+            }
+
+            parameters[index - 1] = value;
+        }
+    }
+
+    /**
+     * Counts the rows read from a query's result set
+     */
+    private class RowCountingHandler implements InvocationHandler {
+        private final QueryStats stats;
+        private final Counter.Child rows;
+        private final SlowQuery slowQuery;
+        private final ResultSet resultSet;
+
+        RowCountingHandler(String sql, SlowQuery slowQuery, ResultSet resultSet) {
+            // Resolve the per-template counters once rather than for every row
+            this.stats = queryStats.computeIfAbsent(sql, QueryStats::new);
+            this.rows = queryRows.labels(statementName(sql));
+            this.slowQuery = slowQuery;
+            this.resultSet = resultSet;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = QueryInstrumentation.invoke(resultSet, method, args);
+
+            if (method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+                stats.recordRows(1);
+                rows.inc();
+
+                if (slowQuery != null) {
+                    slowQuery.recordRows(1);
+                }
+            }
+
+            return result;
+        }
+    }
+}
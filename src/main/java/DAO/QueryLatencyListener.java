@@ -0,0 +1,14 @@
+package DAO;
+
+/**
+ * Receives the latency of every SQL statement executed through a QueryInstrumentation.
+ * 
+ * Listeners are called on the thread that ran the statement, so they must be cheap and must not block.
+ */
+public interface QueryLatencyListener {
+    /**
+     * @param sql the SQL template that was executed
+     * @param nanos the time the execution took
+     */
+    void onQueryExecuted(String sql, long nanos);
+}
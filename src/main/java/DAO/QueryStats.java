@@ -0,0 +1,73 @@
+package DAO;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals for every execution of one SQL template (the SQL text with its ? placeholders).
+ */
+public class QueryStats {
+    private final String sql;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    public QueryStats(String sql) {
+        this.sql = sql;
+    }
+
+    /**
+     * Records one execution of the template
+     * 
+     * @param nanos the time the execution took
+     * @param failed whether the execution threw a SQLException
+     */
+    void recordExecution(long nanos, boolean failed) {
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * Records rows returned by a query or affected by an update
+     */
+    void recordRows(long rowCount) {
+        rows.add(rowCount);
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getTotalMillis() {
+        return totalNanos.sum() / 1e6;
+    }
+
+    public double getMeanMillis() {
+        long executions = count.sum();
+
+        return executions == 0 ? 0 : totalNanos.sum() / 1e6 / executions;
+    }
+
+    public double getMaxMillis() {
+        return maxNanos.get() / 1e6;
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+}
@@ -0,0 +1,16 @@
+package DAO;
+
+import java.io.IOException;
+
+/**
+ * Receives the rows of a streamed query one at a time, as they are read from the database.
+ * 
+ * @param <T> the type that each row is mapped to
+ */
+public interface RowConsumer<T> {
+    /**
+     * @param row the row that was just read
+     * @throws IOException if the row could not be passed on, which stops the query
+     */
+    void accept(T row) throws IOException;
+}
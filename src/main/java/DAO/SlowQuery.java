@@ -0,0 +1,61 @@
+package DAO;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One slow execution of a SQL template, as kept by the SlowQueryLog.
+ * 
+ * Only the types of the bind parameters are kept - their values never leave the statement that used them.
+ */
+public class SlowQuery {
+    private final String sql;
+    private final List<String> parameterTypes;
+    private final long durationNanos;
+    private final long startedAtMillis;
+    private final LongAdder rows = new LongAdder();
+
+    /**
+     * @param sql the SQL template
+     * @param parameterTypes the Java type of each bind parameter, in order
+     * @param durationNanos the time the execution took
+     * @param startedAtMillis the wall clock time at which the execution started
+     */
+    public SlowQuery(String sql, List<String> parameterTypes, long durationNanos, long startedAtMillis) {
+        this.sql = sql;
+        this.parameterTypes = parameterTypes;
+        this.durationNanos = durationNanos;
+        this.startedAtMillis = startedAtMillis;
+    }
+
+    /**
+     * Records rows read from the execution's result set (rows can keep arriving after the entry is logged)
+     */
+    void recordRows(long rowCount) {
+        rows.add(rowCount);
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public List<String> getParameterTypes() {
+        return parameterTypes;
+    }
+
+    public double getDurationMillis() {
+        return durationNanos / 1e6;
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    public long getStartedAtMillis() {
+        return startedAtMillis;
+    }
+
+    long getDurationNanos() {
+        return durationNanos;
+    }
+}
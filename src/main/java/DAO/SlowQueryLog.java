@@ -0,0 +1,93 @@
+package DAO;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the N slowest query executions of a rolling time window.
+ * 
+ * Executions are collected in the current window while the previous window is kept for reporting, so a snapshot
+ * always covers between one and two windows of history. Once the current window is full, an execution faster than
+ * every entry is rejected with a single volatile read, so the common (fast) query never takes the lock.
+ */
+public class SlowQueryLog {
+    private static final Comparator<SlowQuery> BY_DURATION = Comparator.comparingLong(SlowQuery::getDurationNanos);
+
+    private final int capacity;
+    private final long windowNanos;
+    private PriorityQueue<SlowQuery> current = new PriorityQueue<>(BY_DURATION);
+    private PriorityQueue<SlowQuery> previous = new PriorityQueue<>(BY_DURATION);
+    private volatile long windowStartNanos = System.nanoTime();
+    private volatile long admissionNanos = 0;
+
+    /**
+     * @param capacity the number of slow executions to keep per window
+     * @param windowMillis the length of a window
+     */
+    public SlowQueryLog(int capacity, long windowMillis) {
+        this.capacity = capacity;
+        this.windowNanos = windowMillis * 1_000_000;
+    }
+
+    /**
+     * Offers an execution to the log
+     * 
+     * @param query the execution
+     * @return true if the execution was kept
+     */
+    public boolean offer(SlowQuery query) {
+        long now = System.nanoTime();
+
+        if (query.getDurationNanos() <= admissionNanos && now - windowStartNanos < windowNanos) {
+            return false;
+        }
+
+        synchronized (this) {
+            rotateIfExpired(now);
+
+            if (current.size() < capacity) {
+                current.add(query);
+            }
+            else if (query.getDurationNanos() > current.peek().getDurationNanos()) {
+                current.poll();
+                current.add(query);
+            }
+            else {
+                return false;
+            }
+
+            if (current.size() == capacity) {
+                admissionNanos = current.peek().getDurationNanos();
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * @return the slowest executions of the current and previous windows, slowest first
+     */
+    public synchronized List<SlowQuery> snapshot() {
+        rotateIfExpired(System.nanoTime());
+
+        List<SlowQuery> queries = new ArrayList<>(current);
+        queries.addAll(previous);
+        queries.sort(BY_DURATION.reversed());
+
+        return queries.size() > capacity ? new ArrayList<>(queries.subList(0, capacity)) : queries;
+    }
+
+    private void rotateIfExpired(long now) {
+        if (now - windowStartNanos < windowNanos) {
+            return;
+        }
+
+        // If more than one window passed without activity, the previous window is stale as well
+        previous = now - windowStartNanos < 2 * windowNanos ? current : new PriorityQueue<>(BY_DURATION);
+        current = new PriorityQueue<>(BY_DURATION);
+        windowStartNanos = now;
+        admissionNanos = 0;
+    }
+}
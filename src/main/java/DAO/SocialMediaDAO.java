@@ -1,11 +1,83 @@
 package DAO;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import Metrics.MetricsRegistry;
 import Model.*;
-import Util.ConnectionUtil;
 
 public class SocialMediaDAO {
+    private static final Logger logger = LoggerFactory.getLogger(SocialMediaDAO.class);
+
+    /**
+     * Copies a message row into the change log
+     */
+    private static final String APPEND_CHANGE_SQL = "INSERT INTO message_change(change_type, message_id, posted_by, message_text, time_posted_epoch) "
+            + "SELECT ?, message_id, posted_by, message_text, time_posted_epoch FROM Message WHERE message_id = ? AND deleted_at IS NULL";
+
+    /**
+     * Logs a change of a message that is not in the Message table (an archived message) from its values
+     */
+    private static final String APPEND_CHANGE_VALUES_SQL = "INSERT INTO message_change(change_type, message_id, posted_by, message_text, time_posted_epoch) "
+            + "VALUES (?, ?, ?, ?, ?)";
+
+    /**
+     * Adds messages to the per-account statistics of an account, creating its row if it has none yet
+     */
+    private static final String ADD_TO_ACCOUNT_STATS_SQL = "MERGE INTO account_stats s "
+            + "USING (VALUES (CAST(? AS INT), CAST(? AS INT), CAST(? AS BIGINT))) v(account_id, added, last_posted_epoch) ON s.account_id = v.account_id "
+            + "WHEN MATCHED THEN UPDATE SET message_count = s.message_count + v.added, "
+            + "last_posted_epoch = GREATEST(COALESCE(s.last_posted_epoch, v.last_posted_epoch), v.last_posted_epoch) "
+            + "WHEN NOT MATCHED THEN INSERT (account_id, message_count, last_posted_epoch) VALUES (v.account_id, v.added, v.last_posted_epoch)";
+
+    /**
+     * The epoch second at which the UTC day of a message's time_posted_epoch starts, rounding down for negative times
+     */
+    private static final String POSTED_DAY_SQL = "(time_posted_epoch - MOD(MOD(time_posted_epoch, 86400) + 86400, 86400))";
+
+    /**
+     * Held by every transaction that writes messages, and so the change log and the per-account statistics.
+     * Sequence numbers are assigned when a change is inserted, so without it a change could commit after a later
+     * numbered one, and a consumer that had already read past it would never see it. It also lets the statistics
+     * reconciliation compare the statistics with the messages without a write slipping in between.
+     */
+    private static final ReentrantLock MESSAGE_WRITE_LOCK = new ReentrantLock();
+
+    private QueryInstrumentation queryInstrumentation;
+
+    /**
+     * Creates a new SocialMediaDAO object whose query metrics are kept in a registry of its own
+     */
+    public SocialMediaDAO() {
+        this(new QueryInstrumentation(new MetricsRegistry()));
+    }
+
+    /**
+     * Creates a new SocialMediaDAO object
+     * 
+     * @param queryInstrumentation times the SQL statements run by this DAO
+     */
+    public SocialMediaDAO(QueryInstrumentation queryInstrumentation) {
+        this.queryInstrumentation = queryInstrumentation;
+    }
+
+    /**
+     * @return the instrumentation that times the SQL statements run by this DAO
+     */
+    public QueryInstrumentation getQueryInstrumentation() {
+        return queryInstrumentation;
+    }
+
     /**
      * Adds an account to the application's database
      * 
@@ -16,7 +88,7 @@ public class SocialMediaDAO {
     public Account addAccount(String username, String password) {
         try {
             // Get a connection to the application's database
-            Connection connection = ConnectionUtil.getConnection();
+            Connection connection = queryInstrumentation.getConnection();
 
             // Create a SQL statement that inserts an Account
             PreparedStatement ps = connection.prepareStatement("INSERT INTO Account(username, password) VALUES (?, ?)", Statement.RETURN_GENERATED_KEYS);
@@ -39,7 +111,7 @@ public class SocialMediaDAO {
             }
         }
         catch (SQLException e) {
-            e.printStackTrace();
+            logger.error("Failed to add account", e);
         }
 
         // If a SQLException occurred or the Account was not successfully inserted, then return null
@@ -47,7 +119,8 @@ public class SocialMediaDAO {
     }
 
     /**
-     * Adds a message to the application's database
+     * Adds a message to the application's database, logging its creation in the change log and counting it in its
+     * poster's statistics in the same transaction
      * 
      * @param posted_by the account ID of the account that posted the message
      * @param message_text the message text
@@ -55,34 +128,52 @@ public class SocialMediaDAO {
      * @return a Message with its message_id field populated, or null if the Message was not inserted.
      */
     public Message addMessage(int posted_by, String message_text, long time_posted_epoch) {
-        try {
-            // Get a connection to the application's database
-            Connection connection = ConnectionUtil.getConnection();
+        // Hold the message write lock so that changes are committed in sequence order
+        MESSAGE_WRITE_LOCK.lock();
 
-            // Create a SQL statement that inserts a Message
-            PreparedStatement ps = connection.prepareStatement("INSERT INTO Message(posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?)",
-                                                                Statement.RETURN_GENERATED_KEYS);
+        // Get a connection to the application's database, closing it once the transaction is over
+        try (Connection connection = queryInstrumentation.getConnection()) {
+            connection.setAutoCommit(false);
 
-            // Set the parameters of the SQL statement
-            ps.setInt(1, posted_by);
-            ps.setString(2, message_text);
-            ps.setLong(3, time_posted_epoch);
+            try {
+                // Create a SQL statement that inserts a Message
+                PreparedStatement ps = connection.prepareStatement("INSERT INTO Message(posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?)",
+                                                                    Statement.RETURN_GENERATED_KEYS);
 
-            // Run the SQL statement
-            ps.executeUpdate();
+                // Set the parameters of the SQL statement
+                ps.setInt(1, posted_by);
+                ps.setString(2, message_text);
+                ps.setLong(3, time_posted_epoch);
 
-            // Get the data returned from the SQL statement
-            ResultSet rs = ps.getGeneratedKeys();
+                // Run the SQL statement
+                ps.executeUpdate();
 
-            // Create and return a Message based on the information returned from the SQL statement (if a message was inserted at all)
-            while (rs.next()) {
-                int resultId = rs.getInt(1);
+                // Get the data returned from the SQL statement
+                ResultSet rs = ps.getGeneratedKeys();
 
-                return new Message(resultId, posted_by, message_text, time_posted_epoch);
+                // Log and return a Message based on the information returned from the SQL statement (if a message was inserted at all)
+                if (rs.next()) {
+                    int resultId = rs.getInt(1);
+
+                    appendChange(connection, MessageChange.CREATED, resultId);
+                    addToAccountStats(connection, posted_by, 1, time_posted_epoch);
+                    connection.commit();
+
+                    return new Message(resultId, posted_by, message_text, time_posted_epoch);
+                }
+
+                connection.rollback();
+            }
+            catch (SQLException e) {
+                connection.rollback();
+                throw e;
             }
         }
         catch (SQLException e) {
-            e.printStackTrace();
+            logger.error("Failed to add message", e);
+        }
+        finally {
+            MESSAGE_WRITE_LOCK.unlock();
         }
 
         // If a SQLException occurred or the Message was not successfully inserted, then return null
@@ -90,26 +181,508 @@ public class SocialMediaDAO {
     }
 
     /**
-     * Attempts to delete a message by ID from the application's database
+     * Adds a batch of messages to the application's database in a single transaction, which also logs their
+     * creation in the change log and counts them in their posters' statistics
      * 
-     * @param id the ID of the message to delete
+     * Either every message is inserted or, if any insert fails, none are.
+     * 
+     * @param messages the messages to add, disregarding any present message_id values
+     * @return the added Messages with their message_id fields populated, in the order they were supplied
+     * @throws SQLException if the batch could not be inserted, in which case the transaction was rolled back
      */
-    public void deleteMessageById(int id) {
-        try {
-            // Get a connection to the application's database
-            Connection connection = ConnectionUtil.getConnection();
+    public ArrayList<Message> addMessages(List<Message> messages) throws SQLException {
+        ArrayList<Message> addedMessages = new ArrayList<>(messages.size());
 
-            // Create a SQL statement that deletes the message with the matching ID
-            PreparedStatement ps = connection.prepareStatement("DELETE FROM Message WHERE message_id = ?");
+        // Hold the message write lock so that changes are committed in sequence order
+        MESSAGE_WRITE_LOCK.lock();
 
-            // Set the ID parameter of the SQL statement
-            ps.setInt(1, id);
+        // The transaction needs its own connection, so close it once the batch is committed or rolled back
+        try (Connection connection = queryInstrumentation.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try {
+                // Create a SQL statement that inserts a Message
+                PreparedStatement ps = connection.prepareStatement("INSERT INTO Message(posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?)",
+                                                                    Statement.RETURN_GENERATED_KEYS);
+
+                // Add the parameters of every message to the batch
+                for (Message message : messages) {
+                    ps.setInt(1, message.getPosted_by());
+                    ps.setString(2, message.getMessage_text());
+                    ps.setLong(3, message.getTime_posted_epoch());
+                    ps.addBatch();
+                }
+
+                // Run the whole batch
+                ps.executeBatch();
+
+                // Create a Message for each inserted row from the generated keys, which come back in insertion order
+                ResultSet rs = ps.getGeneratedKeys();
+
+                for (Message message : messages) {
+                    if (!rs.next()) {
+                        throw new SQLException("Expected " + messages.size() + " generated keys but got " + addedMessages.size());
+                    }
+
+                    addedMessages.add(new Message(rs.getInt(1), message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch()));
+                }
+
+                // Log the creation of every message in the batch
+                PreparedStatement changePs = connection.prepareStatement(APPEND_CHANGE_SQL);
+
+                for (Message addedMessage : addedMessages) {
+                    changePs.setString(1, MessageChange.CREATED);
+                    changePs.setInt(2, addedMessage.getMessage_id());
+                    changePs.addBatch();
+                }
+
+                changePs.executeBatch();
+
+                // Count the messages of each poster once, however many of the batch they posted
+                Map<Integer, long[]> postedByAccount = new TreeMap<>();
+
+                for (Message addedMessage : addedMessages) {
+                    long[] countAndLatest = postedByAccount.computeIfAbsent(addedMessage.getPosted_by(), id -> new long[] { 0, Long.MIN_VALUE });
+                    countAndLatest[0]++;
+                    countAndLatest[1] = Math.max(countAndLatest[1], addedMessage.getTime_posted_epoch());
+                }
+
+                for (Map.Entry<Integer, long[]> entry : postedByAccount.entrySet()) {
+                    addToAccountStats(connection, entry.getKey(), (int) entry.getValue()[0], entry.getValue()[1]);
+                }
+
+                connection.commit();
+            }
+            catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+        finally {
+            MESSAGE_WRITE_LOCK.unlock();
+        }
+
+        return addedMessages;
+    }
+
+    /**
+     * Adds changes in the number of messages posted to the persisted hourly and per-poster daily activity rollups,
+     * in a single transaction
+     * 
+     * The changes are added to the persisted counts rather than overwriting them, so a rollup held in memory never
+     * needs to have been loaded completely to save what it has counted since. Counts that reach zero are removed.
+     * 
+     * @param hourly the change in messages posted in each hour, by the epoch second the hour starts at
+     * @param dailyByPoster the change in messages posted by each account on each day, by the epoch second the day
+     *        starts at and then by account ID
+     * @throws SQLException if the changes could not be saved, in which case none were
+     */
+    public void addToActivityRollups(Map<Long, Long> hourly, Map<Long, Map<Integer, Long>> dailyByPoster) throws SQLException {
+        // The transaction needs its own connection, so close it once the changes are committed or rolled back
+        try (Connection connection = queryInstrumentation.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try {
+                // Create a SQL statement that adds to the count of an hour, creating its row if it has none yet
+                PreparedStatement hourlyPs = connection.prepareStatement("MERGE INTO activity_hourly h "
+                                                                    + "USING (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT))) v(hour_start, added) ON h.hour_start = v.hour_start "
+                                                                    + "WHEN MATCHED THEN UPDATE SET message_count = h.message_count + v.added "
+                                                                    + "WHEN NOT MATCHED THEN INSERT (hour_start, message_count) VALUES (v.hour_start, v.added)");
+
+                for (Map.Entry<Long, Long> entry : hourly.entrySet()) {
+                    hourlyPs.setLong(1, entry.getKey());
+                    hourlyPs.setLong(2, entry.getValue());
+                    hourlyPs.addBatch();
+                }
+
+                hourlyPs.executeBatch();
+
+                // Create a SQL statement that adds to the count of an account on a day, creating its row if it has none yet
+                PreparedStatement dailyPs = connection.prepareStatement("MERGE INTO activity_daily_poster d "
+                                                                    + "USING (VALUES (CAST(? AS BIGINT), CAST(? AS INT), CAST(? AS BIGINT))) v(day_start, account_id, added) "
+                                                                    + "ON d.day_start = v.day_start AND d.account_id = v.account_id "
+                                                                    + "WHEN MATCHED THEN UPDATE SET message_count = d.message_count + v.added "
+                                                                    + "WHEN NOT MATCHED THEN INSERT (day_start, account_id, message_count) VALUES (v.day_start, v.account_id, v.added)");
+
+                for (Map.Entry<Long, Map<Integer, Long>> day : dailyByPoster.entrySet()) {
+                    for (Map.Entry<Integer, Long> entry : day.getValue().entrySet()) {
+                        dailyPs.setLong(1, day.getKey());
+                        dailyPs.setInt(2, entry.getKey());
+                        dailyPs.setLong(3, entry.getValue());
+                        dailyPs.addBatch();
+                    }
+                }
+
+                dailyPs.executeBatch();
+
+                // Remove the rows of hours and posters whose messages have all been deleted
+                connection.prepareStatement("DELETE FROM activity_hourly WHERE message_count <= 0").executeUpdate();
+                connection.prepareStatement("DELETE FROM activity_daily_poster WHERE message_count <= 0").executeUpdate();
+
+                connection.commit();
+            }
+            catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Moves a block of the oldest messages posted before a time out of the Message table and into the compressed
+     * archive, where they can still be read by ID and by poster, and deleted, but no longer updated
+     * 
+     * A block only holds messages of one monthly partition of time_posted_epoch, so the messages of a month are
+     * archived together and each block stays small enough to decompress for a single read. Deleted messages are left
+     * for purgeDeletedMessages. The move is one transaction under the message write lock, so no update or delete of
+     * the moved messages can commit in between.
+     * 
+     * @param postedBeforeEpoch only messages with an earlier time_posted_epoch are archived
+     * @param blockSize the most messages in the block
+     * @return the number of messages archived (0 once none are old enough)
+     * @throws SQLException if the messages could not be archived, in which case none were
+     */
+    public int archiveMessages(long postedBeforeEpoch, int blockSize) throws SQLException {
+        // Hold the message write lock so that the moved messages cannot change while they are copied
+        MESSAGE_WRITE_LOCK.lock();
+
+        // Get a connection to the application's database, closing it once the transaction is over
+        try (Connection connection = queryInstrumentation.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try {
+                // Create a SQL statement that gets the oldest messages posted before the time
+                PreparedStatement ps = connection.prepareStatement("SELECT * FROM Message WHERE time_posted_epoch < ? AND deleted_at IS NULL "
+                                                                    + "ORDER BY time_posted_epoch, message_id LIMIT ?");
+                ps.setLong(1, postedBeforeEpoch);
+                ps.setInt(2, blockSize);
+                ResultSet rs = ps.executeQuery();
+
+                ArrayList<Message> block = new ArrayList<>();
+                int partitionMonth = 0;
+
+                while (rs.next()) {
+                    Message message = new Message(rs.getInt(1), rs.getInt(2), rs.getString(3), rs.getLong(4));
+                    int month = MessageArchiveCodec.partitionMonth(message.getTime_posted_epoch());
+
+                    // The messages of the next month go into a block of their own
+                    if (!block.isEmpty() && month != partitionMonth) {
+                        break;
+                    }
+
+                    partitionMonth = month;
+                    block.add(message);
+                }
+
+                if (block.isEmpty()) {
+                    connection.rollback();
+                    return 0;
+                }
+
+                // Write the block, then the locator rows that route reads by ID and by poster to it
+                byte[] uncompressed = MessageArchiveCodec.encode(block);
+                PreparedStatement blockPs = connection.prepareStatement("INSERT INTO message_archive_block(partition_month, message_count, uncompressed_bytes, payload) "
+                                                                    + "VALUES (?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS);
+                blockPs.setInt(1, partitionMonth);
+                blockPs.setInt(2, block.size());
+                blockPs.setInt(3, uncompressed.length);
+                blockPs.setBytes(4, MessageArchiveCodec.compress(uncompressed));
+                blockPs.executeUpdate();
+
+                ResultSet keyRs = blockPs.getGeneratedKeys();
+                keyRs.next();
+                int blockId = keyRs.getInt(1);
+
+                PreparedStatement locatorPs = connection.prepareStatement("INSERT INTO archived_message(message_id, posted_by, time_posted_epoch, block_id) "
+                                                                    + "VALUES (?, ?, ?, ?)");
+                Integer[] ids = new Integer[block.size()];
+
+                for (int i = 0; i < block.size(); i++) {
+                    Message message = block.get(i);
+                    ids[i] = message.getMessage_id();
+
+                    locatorPs.setInt(1, message.getMessage_id());
+                    locatorPs.setInt(2, message.getPosted_by());
+                    locatorPs.setLong(3, message.getTime_posted_epoch());
+                    locatorPs.setInt(4, blockId);
+                    locatorPs.addBatch();
+                }
+
+                locatorPs.executeBatch();
+
+                // Remove the archived messages from the Message table and its indexes
+                PreparedStatement deletePs = connection.prepareStatement("DELETE FROM Message WHERE message_id = ANY(?)");
+                deletePs.setArray(1, connection.createArrayOf("INTEGER", ids));
+                deletePs.executeUpdate();
+
+                connection.commit();
+
+                return block.size();
+            }
+            catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+        finally {
+            MESSAGE_WRITE_LOCK.unlock();
+        }
+    }
+
+    /**
+     * Removes the change log entries up to a sequence number that a later entry for the same message supersedes
+     * 
+     * A consumer that reads the compacted range still ends up with the latest state of every message, but reads
+     * fewer entries to get there.
+     * 
+     * @param throughSeq the highest sequence number that may be removed
+     * @return the number of entries removed
+     * @throws SQLException if the entries could not be removed
+     */
+    public int compactChangeLog(long throughSeq) throws SQLException {
+        try (Connection connection = queryInstrumentation.getConnection()) {
+            // Create a SQL statement that deletes every change with a later change to the same message
+            PreparedStatement ps = connection.prepareStatement("DELETE FROM message_change c WHERE c.seq <= ? AND EXISTS "
+                                                                + "(SELECT 1 FROM message_change d WHERE d.message_id = c.message_id AND d.seq > c.seq)");
+
+            // Set the sequence number parameter of the SQL statement
+            ps.setLong(1, throughSeq);
 
             // Run the SQL statement
-            ps.executeUpdate();
+            return ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Counts the distinct accounts that posted a message within a range of time, exactly, by scanning the messages
+     * of the range (including archived messages and excluding deleted ones)
+     * 
+     * This is the query that the active poster sketches replace, kept to measure them against.
+     * 
+     * @param fromEpoch the first time_posted_epoch of the range
+     * @param toEpoch the time_posted_epoch that the range ends before
+     * @return the number of distinct posters
+     * @throws SQLException if they could not be counted
+     */
+    public long countActivePosters(long fromEpoch, long toEpoch) throws SQLException {
+        try (Connection connection = queryInstrumentation.getConnection()) {
+            // Create a SQL statement that counts the posters of the messages in the range
+            PreparedStatement ps = connection.prepareStatement("SELECT COUNT(DISTINCT posted_by) FROM posted_message "
+                                                                + "WHERE time_posted_epoch >= ? AND time_posted_epoch < ?");
+
+            // Set the range parameters of the SQL statement
+            ps.setLong(1, fromEpoch);
+            ps.setLong(2, toEpoch);
+
+            // Run the SQL statement
+            ResultSet rs = ps.executeQuery();
+
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Counts the deleted messages whose tombstones have not been purged yet
+     * 
+     * @return the number of tombstones
+     * @throws SQLException if they could not be counted
+     */
+    public long countDeletedMessages() throws SQLException {
+        try (Connection connection = queryInstrumentation.getConnection()) {
+            // Create a SQL statement that counts the tombstones
+            PreparedStatement ps = connection.prepareStatement("SELECT COUNT(*) FROM Message WHERE deleted_at IS NOT NULL");
+
+            // Run the SQL statement
+            ResultSet rs = ps.executeQuery();
+
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Attempts to delete a message by ID from the application's database, logging its deletion in the change log and
+     * taking it out of its poster's statistics in the same transaction
+     * 
+     * The row is only marked deleted (a tombstone), which every read filters out, so that the request does not pay
+     * for removing it and maintaining the indexes. purgeDeletedMessages removes tombstones later, in the background.
+     * An archived message is tombstoned on its archived_message locator instead, which the archive reads filter on.
+     * That tombstone is kept, since its text stays in the compressed block of the other messages of its month.
+     * 
+     * @param id the ID of the message to delete
+     * @return the number of messages deleted: 1, or 0 if the message was not found, had already been deleted or
+     *         could not be deleted
+     */
+    public int deleteMessageById(int id) {
+        // Hold the message write lock so that changes are committed in sequence order
+        MESSAGE_WRITE_LOCK.lock();
+
+        // Get a connection to the application's database, closing it once the transaction is over
+        try (Connection connection = queryInstrumentation.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try {
+                // Log the message as it is before it is deleted (if it is in the Message table)
+                appendChange(connection, MessageChange.DELETED, id);
+
+                // Take the message out of its poster's statistics, finding the poster's previous latest message only if
+                // this was the latest
+                PreparedStatement statsPs = connection.prepareStatement("MERGE INTO account_stats s "
+                                                                    + "USING (SELECT message_id, posted_by, time_posted_epoch FROM posted_message WHERE message_id = ?) m "
+                                                                    + "ON s.account_id = m.posted_by "
+                                                                    + "WHEN MATCHED THEN UPDATE SET message_count = s.message_count - 1, "
+                                                                    + "last_posted_epoch = CASE WHEN s.last_posted_epoch > m.time_posted_epoch THEN s.last_posted_epoch "
+                                                                    + "ELSE (SELECT MAX(o.time_posted_epoch) FROM posted_message o WHERE o.posted_by = m.posted_by "
+                                                                    + "AND o.message_id <> m.message_id) END");
+                statsPs.setInt(1, id);
+                statsPs.executeUpdate();
+
+                // Create a SQL statement that marks the message with the matching ID as deleted
+                PreparedStatement ps = connection.prepareStatement("UPDATE Message SET deleted_at = ? WHERE message_id = ? AND deleted_at IS NULL");
+
+                // Set the deletion time and ID parameters of the SQL statement
+                ps.setLong(1, System.currentTimeMillis());
+                ps.setInt(2, id);
+
+                // Run the SQL statement
+                int deleted = ps.executeUpdate();
+
+                // A message that is not in the Message table may be in the archive
+                if (deleted == 0) {
+                    Message archivedMessage = readArchivedMessage(connection, id);
+
+                    if (archivedMessage != null) {
+                        appendChange(connection, MessageChange.DELETED, archivedMessage);
+
+                        PreparedStatement archivePs = connection.prepareStatement("UPDATE archived_message SET deleted_at = ? WHERE message_id = ? AND deleted_at IS NULL");
+                        archivePs.setLong(1, System.currentTimeMillis());
+                        archivePs.setInt(2, id);
+                        deleted = archivePs.executeUpdate();
+                    }
+                }
+
+                // Undo the change log entry and the statistics if the message was not found or another request deleted it
+                // first
+                if (deleted == 0) {
+                    connection.rollback();
+                    return 0;
+                }
+
+                connection.commit();
+                return deleted;
+            }
+            catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
         }
         catch (SQLException e) {
-            e.printStackTrace();
+            logger.error("Failed to delete message {}", id, e);
+        }
+        finally {
+            MESSAGE_WRITE_LOCK.unlock();
+        }
+
+        return 0;
+    }
+
+    /**
+     * Streams every account with an ID above a checkpoint, in ID order, from a forward-only cursor
+     * 
+     * Rows are read lazily, so only about fetchSize rows are held in memory at a time however many accounts there
+     * are. The password is not read, so the streamed Accounts have a null password.
+     * 
+     * @param afterAccountId the checkpoint - only accounts with a greater ID are streamed (0 streams every account)
+     * @param fetchSize the number of rows to fetch from the database at a time
+     * @param consumer receives each account as it is read
+     * @throws SQLException if the query fails
+     * @throws IOException if the consumer fails, which stops the query
+     */
+    public void exportAccounts(int afterAccountId, int fetchSize, RowConsumer<Account> consumer) throws SQLException, IOException {
+        // The connection holds the cursor open for the whole export, so close it once the export ends
+        try (Connection connection = queryInstrumentation.getConnection()) {
+            enableLazyQueryExecution(connection);
+
+            // Create a SQL statement that gets the accounts after the checkpoint in ID order
+            PreparedStatement ps = connection.prepareStatement("SELECT account_id, username FROM Account WHERE account_id > ? ORDER BY account_id",
+                                                                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+
+            // Set the checkpoint parameter of the SQL statement and the number of rows to fetch at a time
+            ps.setInt(1, afterAccountId);
+            ps.setFetchSize(fetchSize);
+
+            // Run the SQL statement and pass each account to the consumer as it is read
+            ResultSet rs = ps.executeQuery();
+
+            while (rs.next()) {
+                consumer.accept(new Account(rs.getInt(1), rs.getString(2), null));
+            }
+        }
+    }
+
+    /**
+     * Streams every message with an ID above a checkpoint, in ID order, from a forward-only cursor
+     * 
+     * Rows are read lazily, so only about fetchSize rows are held in memory at a time however many messages there
+     * are. Archived messages are merged in by ID from a second cursor over the archive.
+     * 
+     * @param afterMessageId the checkpoint - only messages with a greater ID are streamed (0 streams every message)
+     * @param fetchSize the number of rows to fetch from the database at a time
+     * @param consumer receives each message as it is read
+     * @throws SQLException if the query fails
+     * @throws IOException if the consumer fails, which stops the query
+     */
+    public void exportMessages(int afterMessageId, int fetchSize, RowConsumer<Message> consumer) throws SQLException, IOException {
+        // The connection holds the cursor open for the whole export, so close it once the export ends
+        try (Connection connection = queryInstrumentation.getConnection()) {
+            enableLazyQueryExecution(connection);
+
+            // Create a SQL statement that gets the messages after the checkpoint in ID order
+            PreparedStatement ps = connection.prepareStatement("SELECT * FROM Message WHERE message_id > ? AND deleted_at IS NULL ORDER BY message_id",
+                                                                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+
+            // Set the checkpoint parameter of the SQL statement and the number of rows to fetch at a time
+            ps.setInt(1, afterMessageId);
+            ps.setFetchSize(fetchSize);
+
+            // Run the SQL statement and pass each message to the consumer as it is read
+            ResultSet rs = ps.executeQuery();
+
+            // The archive is read over connections of its own, since the lazy message cursor holds this one. Its cursor
+            // is opened second, so a message archived in between is in both cursors rather than in neither
+            try (Connection locatorConnection = queryInstrumentation.getConnection();
+                    Connection blockConnection = queryInstrumentation.getConnection()) {
+                enableLazyQueryExecution(locatorConnection);
+
+                // Create a SQL statement that gets the locators of the archived messages after the checkpoint in ID order
+                PreparedStatement locatorPs = locatorConnection.prepareStatement("SELECT message_id, block_id FROM archived_message WHERE message_id > ? "
+                                                                    + "AND deleted_at IS NULL ORDER BY message_id", ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                locatorPs.setInt(1, afterMessageId);
+                locatorPs.setFetchSize(fetchSize);
+
+                ArchivedMessageCursor archive = new ArchivedMessageCursor(locatorPs.executeQuery(),
+                        blockConnection.prepareStatement("SELECT payload FROM message_archive_block WHERE block_id = ?"));
+                Message archivedMessage = archive.next();
+
+                while (rs.next()) {
+                    Message message = new Message(rs.getInt(1), rs.getInt(2), rs.getString(3), rs.getLong(4));
+
+                    // A message archived during the export can be in both cursors, and is only passed on once
+                    while (archivedMessage != null && archivedMessage.getMessage_id() <= message.getMessage_id()) {
+                        if (archivedMessage.getMessage_id() < message.getMessage_id()) {
+                            consumer.accept(archivedMessage);
+                        }
+
+                        archivedMessage = archive.next();
+                    }
+
+                    consumer.accept(message);
+                }
+
+                while (archivedMessage != null) {
+                    consumer.accept(archivedMessage);
+                    archivedMessage = archive.next();
+                }
+            }
         }
     }
 
@@ -123,7 +696,7 @@ public class SocialMediaDAO {
     public Account getAccountByCredentials(String username, String password) {
         try {
             // Get a connection to the application's database
-            Connection connection = ConnectionUtil.getConnection();
+            Connection connection = queryInstrumentation.getConnection();
 
             // Create a SQL statement that gets all accounts matching the supplied credentials (there should only be one)
             PreparedStatement ps = connection.prepareStatement("SELECT * FROM Account WHERE username = ? AND password = ?");
@@ -143,7 +716,7 @@ public class SocialMediaDAO {
             }
         }
         catch (SQLException e) {
-            e.printStackTrace();
+            logger.error("Failed to get account by credentials", e);
         }
 
         // If a SQLException occurred or an account with the desired credentials was not found, then return null
@@ -159,7 +732,7 @@ public class SocialMediaDAO {
     public Account getAccountById(int id) {
         try {
             // Get a connection to the application's database
-            Connection connection = ConnectionUtil.getConnection();
+            Connection connection = queryInstrumentation.getConnection();
 
             // Create a SQL statement that gets all accounts with the desired ID (there should only be one)
             PreparedStatement ps = connection.prepareStatement("SELECT * FROM Account WHERE account_id = ?");
@@ -179,7 +752,7 @@ public class SocialMediaDAO {
             }
         }
         catch (SQLException e) {
-            e.printStackTrace();
+            logger.error("Failed to get account {}", id, e);
         }
 
         // If a SQLException occurred or an account with the desired ID was not found, then return null
@@ -195,7 +768,7 @@ public class SocialMediaDAO {
     public Account getAccountByUsername(String username) {
         try {
             // Get a connection to the application's database
-            Connection connection = ConnectionUtil.getConnection();
+            Connection connection = queryInstrumentation.getConnection();
 
             // Create a SQL statement that gets all accounts with the desired username (there should only be one)
             PreparedStatement ps = connection.prepareStatement("SELECT * FROM Account WHERE username = ?");
@@ -215,7 +788,7 @@ public class SocialMediaDAO {
             }
         }
         catch (SQLException e) {
-            e.printStackTrace();
+            logger.error("Failed to get account by username", e);
         }
 
         // If a SQLException occurred or an account with the desired username was not found, then return null
@@ -223,19 +796,116 @@ public class SocialMediaDAO {
     }
 
     /**
-     * Gets all messages from the application's database
+     * Gets the message statistics of an account from the application's database
+     * 
+     * @param id the ID of the account
+     * @return the statistics, or null if the account is not in the database (or if a SQLException occurred)
+     */
+    public AccountStats getAccountStats(int id) {
+        try (Connection connection = queryInstrumentation.getConnection()) {
+            // Create a SQL statement that gets the statistics of the account, which has none yet if it never posted
+            PreparedStatement ps = connection.prepareStatement("SELECT COALESCE(s.message_count, 0), s.last_posted_epoch FROM Account a "
+                                                                + "LEFT JOIN account_stats s ON s.account_id = a.account_id WHERE a.account_id = ?");
+
+            // Set the ID parameter of the SQL statement
+            ps.setInt(1, id);
+
+            // Run the SQL statement
+            ResultSet rs = ps.executeQuery();
+
+            if (rs.next()) {
+                long lastPostedEpoch = rs.getLong(2);
+
+                return new AccountStats(id, rs.getInt(1), rs.wasNull() ? null : lastPostedEpoch);
+            }
+        }
+        catch (SQLException e) {
+            logger.error("Failed to get statistics of account {}", id, e);
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets the Accounts with any of the requested IDs from the application's database in a single query
+     * 
+     * The password is not read, so the returned Accounts have a null password and are safe to show to other users.
      * 
-     * @return a list of Message objects
+     * @param ids the IDs of the accounts to find in the database
+     * @return the Accounts that were found, in no particular order (IDs that are not in the database are skipped)
+     */
+    public ArrayList<Account> getAccountsByIds(List<Integer> ids) {
+        ArrayList<Account> accountList = new ArrayList<>();
+
+        // Get a connection to the application's database, and create a SQL statement that gets every account whose
+        // ID is in the array parameter
+        try (Connection connection = queryInstrumentation.getConnection();
+                PreparedStatement ps = connection.prepareStatement("SELECT account_id, username FROM Account WHERE account_id = ANY(?)")) {
+            // Set the IDs parameter of the SQL statement
+            ps.setArray(1, connection.createArrayOf("INTEGER", ids.toArray()));
+
+            // Run the SQL statement
+            try (ResultSet rs = ps.executeQuery()) {
+                // Create an Account from each row that was found and add it to the list
+                while (rs.next()) {
+                    int resultId = rs.getInt(1);
+                    String resultUsername = rs.getString(2);
+
+                    accountList.add(new Account(resultId, resultUsername, null));
+                }
+            }
+        }
+        catch (SQLException e) {
+            logger.error("Failed to get {} accounts by ID", ids.size(), e);
+        }
+
+        return accountList;
+    }
+
+    /**
+     * Gets the persisted active poster sketches of the days in a range
+     * 
+     * @param fromDayStart the start of the first day
+     * @param toDayStart the start of the last day
+     * @return the serialized sketch of each day that has one, by the epoch second the day starts at
+     * @throws SQLException if the sketches could not be read
+     */
+    public Map<Long, byte[]> getActivePosterSketches(long fromDayStart, long toDayStart) throws SQLException {
+        Map<Long, byte[]> sketches = new TreeMap<>();
+
+        try (Connection connection = queryInstrumentation.getConnection()) {
+            // Create a SQL statement that gets the sketches of the days in the range
+            PreparedStatement ps = connection.prepareStatement("SELECT day_start, registers FROM active_poster_sketch WHERE day_start BETWEEN ? AND ?");
+
+            // Set the range parameters of the SQL statement
+            ps.setLong(1, fromDayStart);
+            ps.setLong(2, toDayStart);
+
+            // Run the SQL statement
+            ResultSet rs = ps.executeQuery();
+
+            while (rs.next()) {
+                sketches.put(rs.getLong(1), rs.getBytes(2));
+            }
+        }
+
+        return sketches;
+    }
+
+    /**
+     * Gets all messages from the application's database, including the archived ones
+     * 
+     * @return a list of Message objects, in ID order
      */
     public ArrayList<Message> getAllMessages() {
         ArrayList<Message> messageList = new ArrayList<>();
 
         try {
             // Get a connection to the application's database
-            Connection connection = ConnectionUtil.getConnection();
+            Connection connection = queryInstrumentation.getConnection();
 
             // Create a SQL statement that gets all messages
-            PreparedStatement ps = connection.prepareStatement("SELECT * FROM Message");
+            PreparedStatement ps = connection.prepareStatement("SELECT * FROM Message WHERE deleted_at IS NULL ORDER BY message_id");
 
             // Run the SQL statement
             ResultSet rs = ps.executeQuery();
@@ -249,9 +919,13 @@ public class SocialMediaDAO {
 
                 messageList.add(new Message(message_id, posted_by, message_text, time_posted_epoch));
             }
+
+            // Merge in every archived message that has not been deleted
+            readArchivedMessages(connection, connection.prepareStatement("SELECT message_id, block_id FROM archived_message WHERE deleted_at IS NULL"),
+                    messageList);
         }
         catch (SQLException e) {
-            e.printStackTrace();
+            logger.error("Failed to get all messages", e);
         }
 
         return messageList;
@@ -261,17 +935,17 @@ public class SocialMediaDAO {
      * Gets all messages of a user with the requested account ID from the application's database
      * 
      * @param id the ID of the user to get all messages from
-     * @return a list of every message posted by the account with the requested ID (empty if the account does not exist)
+     * @return a list of every message posted by the account with the requested ID in ID order (empty if the account does not exist)
      */
     public ArrayList<Message> getAllMessagesByUser(int id) {
         ArrayList<Message> messageList = new ArrayList<>();
 
         try {
             // Get a connection to the application's database
-            Connection connection = ConnectionUtil.getConnection();
+            Connection connection = queryInstrumentation.getConnection();
 
             // Create a SQL statement that gets all messages
-            PreparedStatement ps = connection.prepareStatement("SELECT * FROM Message WHERE posted_by = ?");
+            PreparedStatement ps = connection.prepareStatement("SELECT * FROM Message WHERE posted_by = ? AND deleted_at IS NULL ORDER BY message_id");
 
             // Set the ID parameter of the SQL statement
             ps.setInt(1, id);
@@ -287,27 +961,319 @@ public class SocialMediaDAO {
 
                 messageList.add(new Message(message_id, id, message_text, time_posted_epoch));
             }
+
+            // Merge in the account's archived messages that have not been deleted
+            PreparedStatement archivePs = connection.prepareStatement("SELECT message_id, block_id FROM archived_message WHERE posted_by = ? AND deleted_at IS NULL");
+            archivePs.setInt(1, id);
+            readArchivedMessages(connection, archivePs, messageList);
         }
         catch (SQLException e) {
-            e.printStackTrace();
+            logger.error("Failed to get messages of account {}", id, e);
         }
 
         return messageList;
     }
 
     /**
-     * Attempts to get a message by ID from the application's database
+     * Gets the highest change log sequence number removed by truncateChangeLog
+     * 
+     * @return the sequence number, or 0 if the log has never been truncated
+     * @throws SQLException if the log could not be read
+     */
+    public long getChangeLogTruncatedThrough() throws SQLException {
+        try (Connection connection = queryInstrumentation.getConnection()) {
+            // Create a SQL statement that gets the truncation point
+            PreparedStatement ps = connection.prepareStatement("SELECT truncated_through FROM change_log_state WHERE id = 1");
+
+            // Run the SQL statement
+            ResultSet rs = ps.executeQuery();
+
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Gets the change log entries after a sequence number, in sequence order
+     * 
+     * @param afterSeq only entries with a greater sequence number are returned
+     * @param limit the most entries to return
+     * @return the entries, or an empty list if there are none (or if a SQLException occurred)
+     */
+    public ArrayList<MessageChange> getChangesAfter(long afterSeq, int limit) {
+        ArrayList<MessageChange> changeList = new ArrayList<>();
+
+        try (Connection connection = queryInstrumentation.getConnection()) {
+            // Create a SQL statement that gets the first changes after the sequence number
+            PreparedStatement ps = connection.prepareStatement("SELECT seq, change_type, changed_at, message_id, posted_by, message_text, time_posted_epoch "
+                                                                + "FROM message_change WHERE seq > ? ORDER BY seq LIMIT ?");
+
+            // Set the sequence number and limit parameters of the SQL statement
+            ps.setLong(1, afterSeq);
+            ps.setInt(2, limit);
+
+            // Run the SQL statement
+            ResultSet rs = ps.executeQuery();
+
+            // Create a MessageChange from each row and add it to the list
+            while (rs.next()) {
+                Message message = new Message(rs.getInt(4), rs.getInt(5), rs.getString(6), rs.getLong(7));
+
+                changeList.add(new MessageChange(rs.getLong(1), rs.getString(2), rs.getTimestamp(3).getTime(), message));
+            }
+        }
+        catch (SQLException e) {
+            logger.error("Failed to get changes after {}", afterSeq, e);
+        }
+
+        return changeList;
+    }
+
+    /**
+     * Gets the persisted number of messages posted by each account on each day
+     * 
+     * @return the counts by the epoch second the day starts at, then by account ID
+     * @throws SQLException if the rollup could not be read
+     */
+    public Map<Long, Map<Integer, Long>> getDailyPosterActivity() throws SQLException {
+        Map<Long, Map<Integer, Long>> dailyByPoster = new TreeMap<>();
+
+        try (Connection connection = queryInstrumentation.getConnection()) {
+            // Create a SQL statement that gets every row of the rollup
+            PreparedStatement ps = connection.prepareStatement("SELECT day_start, account_id, message_count FROM activity_daily_poster");
+
+            // Run the SQL statement
+            ResultSet rs = ps.executeQuery();
+
+            while (rs.next()) {
+                dailyByPoster.computeIfAbsent(rs.getLong(1), day -> new TreeMap<>()).put(rs.getInt(2), rs.getLong(3));
+            }
+        }
+
+        return dailyByPoster;
+    }
+
+    /**
+     * Gets the persisted number of messages posted in each hour
+     * 
+     * @return the counts by the epoch second the hour starts at
+     * @throws SQLException if the rollup could not be read
+     */
+    public Map<Long, Long> getHourlyActivity() throws SQLException {
+        Map<Long, Long> hourly = new TreeMap<>();
+
+        try (Connection connection = queryInstrumentation.getConnection()) {
+            // Create a SQL statement that gets every row of the rollup
+            PreparedStatement ps = connection.prepareStatement("SELECT hour_start, message_count FROM activity_hourly");
+
+            // Run the SQL statement
+            ResultSet rs = ps.executeQuery();
+
+            while (rs.next()) {
+                hourly.put(rs.getLong(1), rs.getLong(2));
+            }
+        }
+
+        return hourly;
+    }
+
+    /**
+     * Gets the highest change log sequence number of the entries written before a time
+     * 
+     * @param beforeMillis the epoch time in milliseconds
+     * @return the sequence number, or 0 if no entry is that old
+     * @throws SQLException if the log could not be read
+     */
+    public long getLastChangeSeqBefore(long beforeMillis) throws SQLException {
+        try (Connection connection = queryInstrumentation.getConnection()) {
+            // Create a SQL statement that gets the newest sequence number older than the time
+            PreparedStatement ps = connection.prepareStatement("SELECT MAX(seq) FROM message_change WHERE changed_at < ?");
+
+            // Set the time parameter of the SQL statement
+            ps.setTimestamp(1, new Timestamp(beforeMillis));
+
+            // Run the SQL statement
+            ResultSet rs = ps.executeQuery();
+
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Gets the highest change log sequence number written so far
+     * 
+     * @return the sequence number, or 0 if the log is empty
+     * @throws SQLException if the log could not be read
+     */
+    public long getLatestChangeSeq() throws SQLException {
+        try (Connection connection = queryInstrumentation.getConnection()) {
+            // Create a SQL statement that gets the latest sequence number
+            PreparedStatement ps = connection.prepareStatement("SELECT MAX(seq) FROM message_change");
+
+            // Run the SQL statement
+            ResultSet rs = ps.executeQuery();
+
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Attempts to get a message by ID from the application's database, reading it from the archive if it is not
+     * in the Message table
      * 
      * @param id the ID of the message to query for
      * @return the Message with a matching ID, or null if a matching Message record is not found
      */
     public Message getMessageById(int id) {
+        Message message = getWritableMessageById(id);
+
+        if (message != null) {
+            return message;
+        }
+
+        try (Connection connection = queryInstrumentation.getConnection()) {
+            return readArchivedMessage(connection, id);
+        }
+        catch (SQLException e) {
+            logger.error("Failed to get archived message {}", id, e);
+        }
+
+        // If a SQLException occurred or a message with the desired ID was not found, then return null
+        return null;
+    }
+
+    /**
+     * Gets the messages with any of the requested IDs from the application's database in a single query
+     * 
+     * @param ids the IDs of the messages to query for
+     * @return the Messages that were found, in no particular order (IDs that are not in the database are skipped)
+     */
+    public ArrayList<Message> getMessagesByIds(List<Integer> ids) {
+        ArrayList<Message> messageList = new ArrayList<>();
+
+        // Get a connection to the application's database, and create a SQL statement that gets every message whose
+        // ID is in the array parameter
+        try (Connection connection = queryInstrumentation.getConnection();
+                PreparedStatement ps = connection.prepareStatement("SELECT * FROM Message WHERE message_id = ANY(?) AND deleted_at IS NULL ORDER BY message_id")) {
+            // Set the IDs parameter of the SQL statement
+            ps.setArray(1, connection.createArrayOf("INTEGER", ids.toArray()));
+
+            // Run the SQL statement
+            try (ResultSet rs = ps.executeQuery()) {
+                // Create a Message from each row that was found and add it to the list
+                while (rs.next()) {
+                    int message_id = rs.getInt(1);
+                    int posted_by = rs.getInt(2);
+                    String message_text = rs.getString(3);
+                    long time_posted_epoch = rs.getLong(4);
+
+                    messageList.add(new Message(message_id, posted_by, message_text, time_posted_epoch));
+                }
+            }
+
+            // The IDs that are not in the Message table are looked for in the archive
+            Set<Integer> missingIds = new HashSet<>(ids);
+
+            for (Message message : messageList) {
+                missingIds.remove(message.getMessage_id());
+            }
+
+            if (!missingIds.isEmpty()) {
+                try (PreparedStatement archivePs = connection.prepareStatement("SELECT message_id, block_id FROM archived_message "
+                                                                    + "WHERE message_id = ANY(?) AND deleted_at IS NULL")) {
+                    archivePs.setArray(1, connection.createArrayOf("INTEGER", missingIds.toArray()));
+                    readArchivedMessages(connection, archivePs, messageList);
+                }
+            }
+        }
+        catch (SQLException e) {
+            logger.error("Failed to get {} messages by ID", ids.size(), e);
+        }
+
+        return messageList;
+    }
+
+    /**
+     * Gets the IDs of the accounts that have posted the most messages
+     * 
+     * @param limit the most IDs to return
+     * @return the account IDs, most messages first (or an empty list if a SQLException occurred)
+     */
+    public ArrayList<Integer> getMostActiveAccountIds(int limit) {
+        ArrayList<Integer> idList = new ArrayList<>();
+
+        try (Connection connection = queryInstrumentation.getConnection()) {
+            // Create a SQL statement that gets the accounts with the highest message counts
+            PreparedStatement ps = connection.prepareStatement("SELECT account_id FROM account_stats ORDER BY message_count DESC, account_id LIMIT ?");
+
+            // Set the limit parameter of the SQL statement
+            ps.setInt(1, limit);
+
+            // Run the SQL statement
+            ResultSet rs = ps.executeQuery();
+
+            while (rs.next()) {
+                idList.add(rs.getInt(1));
+            }
+        }
+        catch (SQLException e) {
+            logger.error("Failed to get the most active accounts", e);
+        }
+
+        return idList;
+    }
+
+    /**
+     * Gets the most recently added messages below an ID, newest first, so that the newest messages can be read a
+     * page at a time
+     * 
+     * @param beforeMessageId only messages with a lower ID are returned
+     * @param limit the most messages to return
+     * @return a list of Message objects (empty if there are none or if a SQLException occurred)
+     */
+    public ArrayList<Message> getRecentMessages(int beforeMessageId, int limit) {
+        ArrayList<Message> messageList = new ArrayList<>();
+
+        try (Connection connection = queryInstrumentation.getConnection()) {
+            // Create a SQL statement that gets the messages with the highest IDs below the given one
+            PreparedStatement ps = connection.prepareStatement("SELECT * FROM Message WHERE message_id < ? AND deleted_at IS NULL ORDER BY message_id DESC LIMIT ?");
+
+            // Set the ID and limit parameters of the SQL statement
+            ps.setInt(1, beforeMessageId);
+            ps.setInt(2, limit);
+
+            // Run the SQL statement
+            ResultSet rs = ps.executeQuery();
+
+            while (rs.next()) {
+                int message_id = rs.getInt(1);
+                int posted_by = rs.getInt(2);
+                String message_text = rs.getString(3);
+                long time_posted_epoch = rs.getLong(4);
+
+                messageList.add(new Message(message_id, posted_by, message_text, time_posted_epoch));
+            }
+        }
+        catch (SQLException e) {
+            logger.error("Failed to get recent messages", e);
+        }
+
+        return messageList;
+    }
+
+    /**
+     * Attempts to get a message that can still be updated by ID from the application's database: one in the
+     * Message table, not in the archive
+     * 
+     * @param id the ID of the message to query for
+     * @return the Message with a matching ID, or null if a matching Message record is not found
+     */
+    public Message getWritableMessageById(int id) {
         try {
             // Get a connection to the application's database
-            Connection connection = ConnectionUtil.getConnection();
+            Connection connection = queryInstrumentation.getConnection();
 
             // Create a SQL statement that gets the message with the matching ID
-            PreparedStatement ps = connection.prepareStatement("SELECT * FROM Message WHERE message_id = ?");
+            PreparedStatement ps = connection.prepareStatement("SELECT * FROM Message WHERE message_id = ? AND deleted_at IS NULL");
 
             // Set the ID parameter of the SQL statement
             ps.setInt(1, id);
@@ -325,7 +1291,7 @@ public class SocialMediaDAO {
             }
         }
         catch (SQLException e) {
-            e.printStackTrace();
+            logger.error("Failed to get message {}", id, e);
         }
 
         // If a SQLException occurred or a message with the desired ID was not found, then return null
@@ -333,28 +1299,368 @@ public class SocialMediaDAO {
     }
 
     /**
-     * Attempts to update the text of a message by ID from the application's database
+     * Physically removes a batch of deleted messages, oldest ID first
+     * 
+     * @param deletedBeforeMillis only messages deleted before this epoch time in milliseconds are removed
+     * @param limit the most messages to remove
+     * @return the number of messages removed
+     * @throws SQLException if the messages could not be removed
+     */
+    public int purgeDeletedMessages(long deletedBeforeMillis, int limit) throws SQLException {
+        try (Connection connection = queryInstrumentation.getConnection()) {
+            // Create a SQL statement that removes the first tombstones old enough to purge
+            PreparedStatement ps = connection.prepareStatement("DELETE FROM Message WHERE message_id IN (SELECT message_id FROM Message "
+                                                                + "WHERE deleted_at < ? ORDER BY message_id LIMIT ?)");
+
+            // Set the time and limit parameters of the SQL statement
+            ps.setLong(1, deletedBeforeMillis);
+            ps.setInt(2, limit);
+
+            // Run the SQL statement
+            return ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Recomputes the message statistics of every account whose statistics do not match its messages
+     * 
+     * Accounts that look out of step are found without blocking writers. Each one is then recomputed and compared
+     * again under the message write lock, so statistics that only looked wrong because a write was in flight are
+     * left alone.
+     * 
+     * @return the IDs of the accounts whose statistics were wrong and have been corrected
+     * @throws SQLException if the statistics could not be read or corrected
+     */
+    public ArrayList<Integer> reconcileAccountStats() throws SQLException {
+        ArrayList<Integer> suspectIds = new ArrayList<>();
+        ArrayList<Integer> correctedIds = new ArrayList<>();
+
+        try (Connection connection = queryInstrumentation.getConnection()) {
+            // Create a SQL statement that finds the accounts whose statistics differ from an aggregate of their messages
+            PreparedStatement ps = connection.prepareStatement("SELECT a.account_id FROM Account a "
+                                                                + "LEFT JOIN account_stats s ON s.account_id = a.account_id "
+                                                                + "LEFT JOIN (SELECT posted_by, COUNT(*) message_count, MAX(time_posted_epoch) last_posted_epoch "
+                                                                + "FROM posted_message GROUP BY posted_by) m ON m.posted_by = a.account_id "
+                                                                + "WHERE COALESCE(s.message_count, 0) <> COALESCE(m.message_count, 0) "
+                                                                + "OR s.last_posted_epoch IS DISTINCT FROM m.last_posted_epoch");
+            ResultSet rs = ps.executeQuery();
+
+            while (rs.next()) {
+                suspectIds.add(rs.getInt(1));
+            }
+
+            // Create a SQL statement that overwrites the statistics of an account if they differ from its messages
+            PreparedStatement repairPs = connection.prepareStatement("MERGE INTO account_stats s "
+                                                                + "USING (SELECT CAST(? AS INT) account_id, COUNT(*) message_count, MAX(time_posted_epoch) last_posted_epoch "
+                                                                + "FROM posted_message WHERE posted_by = ?) m ON s.account_id = m.account_id "
+                                                                + "WHEN MATCHED AND (s.message_count <> m.message_count OR s.last_posted_epoch IS DISTINCT FROM m.last_posted_epoch) "
+                                                                + "THEN UPDATE SET message_count = m.message_count, last_posted_epoch = m.last_posted_epoch "
+                                                                + "WHEN NOT MATCHED AND m.message_count > 0 "
+                                                                + "THEN INSERT (account_id, message_count, last_posted_epoch) VALUES (m.account_id, m.message_count, m.last_posted_epoch)");
+
+            for (int id : suspectIds) {
+                repairPs.setInt(1, id);
+                repairPs.setInt(2, id);
+
+                // Lock out message writes only for the one account, so that writers are never held up for long
+                MESSAGE_WRITE_LOCK.lock();
+
+                try {
+                    if (repairPs.executeUpdate() > 0) {
+                        correctedIds.add(id);
+                    }
+                }
+                finally {
+                    MESSAGE_WRITE_LOCK.unlock();
+                }
+            }
+        }
+
+        return correctedIds;
+    }
+
+    /**
+     * Writes the active poster sketches of days, replacing the sketches persisted for those days, in a single
+     * transaction
+     * 
+     * @param sketches the serialized sketch of each day, by the epoch second the day starts at
+     * @throws SQLException if the sketches could not be written, in which case none were
+     */
+    public void saveActivePosterSketches(Map<Long, byte[]> sketches) throws SQLException {
+        // The transaction needs its own connection, so close it once the sketches are committed or rolled back
+        try (Connection connection = queryInstrumentation.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try {
+                // Create a SQL statement that writes the sketch of a day
+                PreparedStatement ps = connection.prepareStatement("MERGE INTO active_poster_sketch(day_start, registers) KEY (day_start) VALUES (?, ?)");
+
+                for (Map.Entry<Long, byte[]> entry : sketches.entrySet()) {
+                    ps.setLong(1, entry.getKey());
+                    ps.setBytes(2, entry.getValue());
+                    ps.addBatch();
+                }
+
+                ps.executeBatch();
+                connection.commit();
+            }
+            catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Streams the distinct posters of every day that has messages but no persisted active poster sketch, from a
+     * forward-only cursor, so that the sketches of those days can be built once
+     * 
+     * @param consumer receives the start of the day and the ID of an account that posted on it, for each pair
+     * @throws SQLException if the query fails
+     * @throws IOException if the consumer fails, which stops the query
+     */
+    public void scanPostersOfUnsketchedDays(RowConsumer<long[]> consumer) throws SQLException, IOException {
+        // The connection holds the cursor open for the whole scan, so close it once the scan ends
+        try (Connection connection = queryInstrumentation.getConnection()) {
+            enableLazyQueryExecution(connection);
+
+            // Create a SQL statement that gets each day and poster pair of the days without a sketch
+            PreparedStatement ps = connection.prepareStatement("SELECT DISTINCT " + POSTED_DAY_SQL + ", posted_by FROM posted_message m "
+                                                                + "WHERE NOT EXISTS (SELECT 1 FROM active_poster_sketch s WHERE s.day_start = " + POSTED_DAY_SQL + ")",
+                                                                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+
+            // Run the SQL statement and pass each pair to the consumer as it is read
+            ResultSet rs = ps.executeQuery();
+
+            while (rs.next()) {
+                consumer.accept(new long[] { rs.getLong(1), rs.getInt(2) });
+            }
+        }
+    }
+
+    /**
+     * Removes every change log entry up to a sequence number and records the truncation point, so that consumers
+     * who have not read that far can be told they missed changes
+     * 
+     * @param throughSeq the highest sequence number to remove
+     * @return the number of entries removed
+     * @throws SQLException if the entries could not be removed, in which case none were
+     */
+    public int truncateChangeLog(long throughSeq) throws SQLException {
+        try (Connection connection = queryInstrumentation.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try {
+                // Move the truncation point forward (never backward)
+                PreparedStatement statePs = connection.prepareStatement("UPDATE change_log_state SET truncated_through = ? WHERE id = 1 AND truncated_through < ?");
+                statePs.setLong(1, throughSeq);
+                statePs.setLong(2, throughSeq);
+                statePs.executeUpdate();
+
+                // Create a SQL statement that deletes the changes up to the truncation point
+                PreparedStatement ps = connection.prepareStatement("DELETE FROM message_change WHERE seq <= ?");
+                ps.setLong(1, throughSeq);
+                int removed = ps.executeUpdate();
+
+                connection.commit();
+                return removed;
+            }
+            catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Attempts to update the text of a message by ID from the application's database, logging the updated message
+     * in the change log in the same transaction
      * 
      * @param id the ID of the message to update
      * @param newMessage the new text to update the Message with
      */
     public void updateMessageById(int id, String newMessage) {
-        try {
-            // Get a connection to the application's database
-            Connection connection = ConnectionUtil.getConnection();
+        // Hold the message write lock so that changes are committed in sequence order
+        MESSAGE_WRITE_LOCK.lock();
 
-            // Create a SQL statement that deletes the message with the matching ID
-            PreparedStatement ps = connection.prepareStatement("UPDATE Message SET message_text = ? WHERE message_id = ?");
+        // Get a connection to the application's database, closing it once the transaction is over
+        try (Connection connection = queryInstrumentation.getConnection()) {
+            connection.setAutoCommit(false);
 
-            // Set the message_text and ID parameters of the SQL statement
-            ps.setString(1, newMessage);
-            ps.setInt(2, id);
+            try {
+                // Create a SQL statement that updates the message with the matching ID
+                PreparedStatement ps = connection.prepareStatement("UPDATE Message SET message_text = ? WHERE message_id = ? AND deleted_at IS NULL");
 
-            // Run the SQL statement
-            ps.executeUpdate();
+                // Set the message_text and ID parameters of the SQL statement
+                ps.setString(1, newMessage);
+                ps.setInt(2, id);
+
+                // Run the SQL statement, and log the message as it is after the update
+                if (ps.executeUpdate() > 0) {
+                    appendChange(connection, MessageChange.UPDATED, id);
+                }
+
+                connection.commit();
+            }
+            catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
         }
         catch (SQLException e) {
-            e.printStackTrace();
+            logger.error("Failed to update message {}", id, e);
+        }
+        finally {
+            MESSAGE_WRITE_LOCK.unlock();
+        }
+    }
+
+    /**
+     * Adds newly posted messages to the statistics of the account that posted them
+     * 
+     * @param connection the connection of the transaction that added the messages
+     * @param accountId the ID of the account
+     * @param added the number of messages added
+     * @param lastPostedEpoch the latest time_posted_epoch among the added messages
+     * @throws SQLException if the statistics could not be updated
+     */
+    private void addToAccountStats(Connection connection, int accountId, int added, long lastPostedEpoch) throws SQLException {
+        PreparedStatement ps = connection.prepareStatement(ADD_TO_ACCOUNT_STATS_SQL);
+
+        ps.setInt(1, accountId);
+        ps.setInt(2, added);
+        ps.setLong(3, lastPostedEpoch);
+        ps.executeUpdate();
+    }
+
+    /**
+     * Copies a message, as it is in the Message table, into the change log
+     * 
+     * @param connection the connection of the transaction that changed the message
+     * @param changeType what happened to the message
+     * @param messageId the ID of the message
+     * @throws SQLException if the change could not be logged
+     */
+    private void appendChange(Connection connection, String changeType, int messageId) throws SQLException {
+        PreparedStatement ps = connection.prepareStatement(APPEND_CHANGE_SQL);
+
+        ps.setString(1, changeType);
+        ps.setInt(2, messageId);
+        ps.executeUpdate();
+    }
+
+    /**
+     * Logs a change of a message from its values, for a message that is not in the Message table
+     * 
+     * @param connection the connection of the transaction that makes the change
+     * @param changeType the type of the change
+     * @param message the message as it is logged
+     */
+    private void appendChange(Connection connection, String changeType, Message message) throws SQLException {
+        PreparedStatement ps = connection.prepareStatement(APPEND_CHANGE_VALUES_SQL);
+
+        ps.setString(1, changeType);
+        ps.setInt(2, message.getMessage_id());
+        ps.setInt(3, message.getPosted_by());
+        ps.setString(4, message.getMessage_text());
+        ps.setLong(5, message.getTime_posted_epoch());
+        ps.executeUpdate();
+    }
+
+    /**
+     * Reads a message from the archive, unless it has been deleted
+     * 
+     * @param connection the connection to read with
+     * @param id the ID of the message
+     * @return the archived Message, or null if no archived message that has not been deleted has the ID
+     * @throws SQLException if the message could not be read or decoded
+     */
+    private Message readArchivedMessage(Connection connection, int id) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT message_id, block_id FROM archived_message WHERE message_id = ? AND deleted_at IS NULL")) {
+            ps.setInt(1, id);
+
+            ArrayList<Message> messageList = new ArrayList<>(1);
+            readArchivedMessages(connection, ps, messageList);
+
+            return messageList.isEmpty() ? null : messageList.get(0);
+        }
+    }
+
+    /**
+     * Merges the archived messages whose locators a query selects into a list, in ID order
+     * 
+     * The locators decide which messages are read, so a deleted archived message, whose locator the query filters
+     * out, is never returned from its block. Each block is decompressed once however many of its messages are
+     * selected. Messages already in the list are skipped, since a message archived between reading the Message
+     * table and reading the archive is in both.
+     * 
+     * @param connection the connection to read the blocks with
+     * @param locatorPs a statement whose results are the message_id and block_id of archived messages
+     * @param messageList the list to merge the messages into, which is in ID order
+     * @throws SQLException if the locators or blocks could not be read or decoded
+     */
+    private void readArchivedMessages(Connection connection, PreparedStatement locatorPs, List<Message> messageList) throws SQLException {
+        Map<Integer, Set<Integer>> idsByBlock = new HashMap<>();
+
+        try (ResultSet rs = locatorPs.executeQuery()) {
+            while (rs.next()) {
+                idsByBlock.computeIfAbsent(rs.getInt(2), blockId -> new HashSet<>()).add(rs.getInt(1));
+            }
+        }
+
+        if (idsByBlock.isEmpty()) {
+            return;
+        }
+
+        ArrayList<Message> archivedMessages = new ArrayList<>();
+
+        try (PreparedStatement blockPs = connection.prepareStatement("SELECT block_id, payload FROM message_archive_block WHERE block_id = ANY(?)")) {
+            blockPs.setArray(1, connection.createArrayOf("INTEGER", idsByBlock.keySet().toArray()));
+
+            try (ResultSet rs = blockPs.executeQuery()) {
+                while (rs.next()) {
+                    Set<Integer> ids = idsByBlock.get(rs.getInt(1));
+
+                    for (Message message : MessageArchiveCodec.decode(rs.getBytes(2))) {
+                        if (ids.contains(message.getMessage_id())) {
+                            archivedMessages.add(message);
+                        }
+                    }
+                }
+            }
+        }
+
+        archivedMessages.sort(Comparator.comparingInt(Message::getMessage_id));
+
+        // Merge the two ID ordered lists
+        ArrayList<Message> merged = new ArrayList<>(messageList.size() + archivedMessages.size());
+        int listed = 0;
+
+        for (Message archivedMessage : archivedMessages) {
+            while (listed < messageList.size() && messageList.get(listed).getMessage_id() < archivedMessage.getMessage_id()) {
+                merged.add(messageList.get(listed++));
+            }
+
+            if (listed == messageList.size() || messageList.get(listed).getMessage_id() != archivedMessage.getMessage_id()) {
+                merged.add(archivedMessage);
+            }
+        }
+
+        merged.addAll(messageList.subList(listed, messageList.size()));
+        messageList.clear();
+        messageList.addAll(merged);
+    }
+
+    /**
+     * Makes H2 read query results on demand instead of materializing the whole result before returning the first
+     * row, which is what lets an export stream a table larger than memory
+     * 
+     * @param connection the connection to run lazily
+     * @throws SQLException if the setting cannot be changed
+     */
+    private void enableLazyQueryExecution(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET LAZY_QUERY_EXECUTION TRUE");
         }
     }
-}
\ No newline at end of file
+}
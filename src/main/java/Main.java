@@ -10,5 +10,8 @@ public class Main {
         SocialMediaController controller = new SocialMediaController();
         Javalin app = controller.startAPI();
         app.start(8080);
+
+        // Serve straight away, but only report ready once the caches are warm
+        controller.warmUp(8080);
     }
 }
@@ -0,0 +1,60 @@
+package Metrics;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * A monotonically increasing count, such as the number of requests served. A total that something else already keeps
+ * (such as the JVM's garbage collection count or time) can be read from it when metrics are scraped instead.
+ */
+public class Counter extends MetricFamily<Counter.Child> {
+    /**
+     * The count for one combination of label values
+     */
+    public static class Child {
+        private final LongAdder count = new LongAdder();
+        private volatile DoubleSupplier source;
+
+        public void inc() {
+            count.increment();
+        }
+
+        public void inc(long amount) {
+            count.add(amount);
+        }
+
+        /**
+         * Reads the total from a callback from now on, for totals kept outside the registry. The callback must
+         * never decrease.
+         */
+        public void setSource(DoubleSupplier totalSource) {
+            source = totalSource;
+        }
+
+        public double get() {
+            DoubleSupplier totalSource = source;
+
+            return totalSource != null ? totalSource.getAsDouble() : count.sum();
+        }
+    }
+
+    public Counter(String name, String help, String... labelNames) {
+        super(name, help, labelNames);
+    }
+
+    @Override
+    protected String getType() {
+        return "counter";
+    }
+
+    @Override
+    protected Child newChild(List<String> labelValues) {
+        return new Child();
+    }
+
+    @Override
+    protected void writeChild(StringBuilder out, List<String> labelValues, Child child) {
+        writeSample(out, "", labelValues, null, null, child.get());
+    }
+}
@@ -0,0 +1,48 @@
+package Metrics;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.DoubleSupplier;
+
+/**
+ * A value that can go up and down, such as heap usage. The value is computed by a callback whenever metrics are
+ * scraped, so nothing is recorded on any hot path.
+ */
+public class Gauge extends MetricFamily<Gauge.Child> {
+    /**
+     * The value source for one combination of label values
+     */
+    public static class Child {
+        private final AtomicReference<DoubleSupplier> supplier = new AtomicReference<>(() -> 0);
+
+        /**
+         * Sets the callback that computes this gauge's value
+         */
+        public void set(DoubleSupplier valueSupplier) {
+            supplier.set(valueSupplier);
+        }
+
+        public double get() {
+            return supplier.get().getAsDouble();
+        }
+    }
+
+    public Gauge(String name, String help, String... labelNames) {
+        super(name, help, labelNames);
+    }
+
+    @Override
+    protected String getType() {
+        return "gauge";
+    }
+
+    @Override
+    protected Child newChild(List<String> labelValues) {
+        return new Child();
+    }
+
+    @Override
+    protected void writeChild(StringBuilder out, List<String> labelValues, Child child) {
+        writeSample(out, "", labelValues, null, null, child.get());
+    }
+}
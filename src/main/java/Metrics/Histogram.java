@@ -0,0 +1,110 @@
+package Metrics;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A distribution of durations, exposed as cumulative buckets plus a sum and count in seconds.
+ * 
+ * Each observation increments exactly one striped bucket counter (buckets are only made cumulative when scraped),
+ * so recording costs a short scan of the bucket bounds and two LongAdder updates.
+ */
+public class Histogram extends MetricFamily<Histogram.Child> {
+    /**
+     * Default bucket upper bounds in seconds, from half a millisecond to ten seconds
+     */
+    public static final double[] DEFAULT_BUCKETS = {0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    private final double[] bucketSeconds;
+    private final long[] bucketNanos;
+
+    /**
+     * The distribution for one combination of label values
+     */
+    public static class Child {
+        private final long[] bucketNanos;
+        private final LongAdder[] buckets;
+        private final LongAdder sumNanos = new LongAdder();
+
+        private Child(long[] bucketNanos) {
+            this.bucketNanos = bucketNanos;
+            this.buckets = new LongAdder[bucketNanos.length + 1];
+
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Records one duration
+         * 
+         * @param nanos the duration in nanoseconds
+         */
+        public void observeNanos(long nanos) {
+            int bucket = 0;
+
+            while (bucket < bucketNanos.length && nanos > bucketNanos[bucket]) {
+                bucket++;
+            }
+
+            buckets[bucket].increment();
+            sumNanos.add(nanos);
+        }
+
+        /**
+         * @return the number of durations recorded
+         */
+        public long getCount() {
+            long count = 0;
+
+            for (LongAdder bucket : buckets) {
+                count += bucket.sum();
+            }
+
+            return count;
+        }
+    }
+
+    public Histogram(String name, String help, String... labelNames) {
+        this(name, help, DEFAULT_BUCKETS, labelNames);
+    }
+
+    /**
+     * @param bucketSeconds the upper bounds of the buckets in seconds, in increasing order
+     */
+    public Histogram(String name, String help, double[] bucketSeconds, String... labelNames) {
+        super(name, help, labelNames);
+
+        this.bucketSeconds = bucketSeconds.clone();
+        this.bucketNanos = new long[bucketSeconds.length];
+
+        for (int i = 0; i < bucketSeconds.length; i++) {
+            bucketNanos[i] = (long) (bucketSeconds[i] * 1e9);
+        }
+    }
+
+    @Override
+    protected String getType() {
+        return "histogram";
+    }
+
+    @Override
+    protected Child newChild(List<String> labelValues) {
+        return new Child(bucketNanos);
+    }
+
+    @Override
+    protected void writeChild(StringBuilder out, List<String> labelValues, Child child) {
+        long cumulative = 0;
+
+        for (int i = 0; i < bucketSeconds.length; i++) {
+            cumulative += child.buckets[i].sum();
+            writeSample(out, "_bucket", labelValues, "le", Double.toString(bucketSeconds[i]), cumulative);
+        }
+
+        cumulative += child.buckets[bucketSeconds.length].sum();
+        writeSample(out, "_bucket", labelValues, "le", "+Inf", cumulative);
+        writeSample(out, "_sum", labelValues, null, null, child.sumNanos.sum() / 1e9);
+        writeSample(out, "_count", labelValues, null, null, cumulative);
+    }
+}
@@ -0,0 +1,46 @@
+package Metrics;
+
+/**
+ * Records the count and latency of every HTTP request, labelled by method, route template and status.
+ * 
+ * Route templates (such as /messages/{message_id}) are used rather than raw paths so that the number of label
+ * combinations stays bounded.
+ */
+public class HttpMetrics {
+    /**
+     * Preformatted status code labels, so that recording a request does not format an integer
+     */
+    private static final String[] STATUS_LABELS = new String[600];
+
+    static {
+        for (int status = 0; status < STATUS_LABELS.length; status++) {
+            STATUS_LABELS[status] = Integer.toString(status);
+        }
+    }
+
+    private final Counter requests;
+    private final Histogram requestDuration;
+
+    /**
+     * @param registry the registry that the HTTP metrics are added to
+     */
+    public HttpMetrics(MetricsRegistry registry) {
+        requests = registry.counter("http_requests_total", "HTTP requests served", "method", "route", "status");
+        requestDuration = registry.histogram("http_request_duration_seconds", "Time spent serving HTTP requests", "method", "route");
+    }
+
+    /**
+     * Records one served request
+     * 
+     * @param method the HTTP method
+     * @param route the route template that handled the request
+     * @param status the HTTP response status
+     * @param durationNanos the time spent serving the request
+     */
+    public void recordRequest(String method, String route, int status, long durationNanos) {
+        String statusLabel = status >= 0 && status < STATUS_LABELS.length ? STATUS_LABELS[status] : Integer.toString(status);
+
+        requests.labels(method, route, statusLabel).inc();
+        requestDuration.labels(method, route).observeNanos(durationNanos);
+    }
+}
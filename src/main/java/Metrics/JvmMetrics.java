@@ -0,0 +1,44 @@
+package Metrics;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.RuntimeMXBean;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Gauges for the JVM's heap and threads, and counters of its garbage collections and the time they took. Values are
+ * read from the platform MXBeans when metrics are scraped.
+ */
+public class JvmMetrics {
+    /**
+     * Adds the JVM metrics to a registry
+     * 
+     * @param registry the registry that the metrics are added to
+     */
+    public static void register(MetricsRegistry registry) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        Gauge heap = registry.gauge("jvm_memory_heap_bytes", "Heap memory usage", "area");
+        heap.labels("used").set(() -> memory.getHeapMemoryUsage().getUsed());
+        heap.labels("committed").set(() -> memory.getHeapMemoryUsage().getCommitted());
+        heap.labels("max").set(() -> memory.getHeapMemoryUsage().getMax());
+        registry.gauge("jvm_memory_nonheap_used_bytes", "Non-heap memory in use").labels().set(() -> memory.getNonHeapMemoryUsage().getUsed());
+
+        Counter gcCollections = registry.counter("jvm_gc_collections_total", "Garbage collections since the JVM started", "gc");
+        Counter gcSeconds = registry.counter("jvm_gc_collection_seconds_total", "Time spent in garbage collection since the JVM started", "gc");
+
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCollections.labels(collector.getName()).setSource(collector::getCollectionCount);
+            gcSeconds.labels(collector.getName()).setSource(() -> collector.getCollectionTime() / 1000.0);
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Gauge threadCount = registry.gauge("jvm_threads", "JVM thread counts", "state");
+        threadCount.labels("live").set(threads::getThreadCount);
+        threadCount.labels("daemon").set(threads::getDaemonThreadCount);
+        threadCount.labels("peak").set(threads::getPeakThreadCount);
+
+        RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+        registry.gauge("process_uptime_seconds", "Time since the JVM started").labels().set(() -> runtime.getUptime() / 1000.0);
+    }
+}
@@ -0,0 +1,138 @@
+package Metrics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * A named metric with a fixed set of label names, holding one child per distinct combination of label values.
+ * 
+ * Looking up an existing child is a lock-free ConcurrentHashMap read, and the children themselves are built from
+ * striped LongAdders, so recording a value never takes a lock. Callers on hot paths can also keep a reference to a
+ * child and skip the lookup entirely.
+ * 
+ * @param <C> the type of the children (for example Counter.Child)
+ */
+public abstract class MetricFamily<C> {
+    private final String name;
+    private final String help;
+    private final String[] labelNames;
+    private final Map<List<String>, C> children = new ConcurrentHashMap<>();
+    private final Function<List<String>, C> childFactory = this::newChild;
+
+    protected MetricFamily(String name, String help, String... labelNames) {
+        this.name = name;
+        this.help = help;
+        this.labelNames = labelNames;
+    }
+
+    /**
+     * Gets the child for a combination of label values, creating it on first use
+     * 
+     * @param labelValues one value for each of the family's label names, in the same order
+     * @return the child that records values for those labels
+     */
+    public C labels(String... labelValues) {
+        if (labelValues.length != labelNames.length) {
+            throw new IllegalArgumentException(name + " expects " + labelNames.length + " label values but got " + labelValues.length);
+        }
+
+        List<String> key = Arrays.asList(labelValues);
+        C child = children.get(key);
+
+        return child != null ? child : children.computeIfAbsent(key, childFactory);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Writes the family in the Prometheus text exposition format
+     * 
+     * @param out the builder that the exposition is appended to
+     */
+    public void writeTo(StringBuilder out) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(getType()).append('\n');
+
+        for (Map.Entry<List<String>, C> entry : children.entrySet()) {
+            writeChild(out, entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * @return the Prometheus metric type ("counter", "gauge" or "histogram")
+     */
+    protected abstract String getType();
+
+    /**
+     * Creates the child for a new combination of label values
+     */
+    protected abstract C newChild(List<String> labelValues);
+
+    /**
+     * Appends the samples of one child
+     */
+    protected abstract void writeChild(StringBuilder out, List<String> labelValues, C child);
+
+    /**
+     * Appends one sample line, for example: name_suffix{method="GET",le="0.005"} 42
+     */
+    protected void writeSample(StringBuilder out, String suffix, List<String> labelValues, String extraLabel, String extraValue, double value) {
+        out.append(name).append(suffix);
+
+        if (!labelValues.isEmpty() || extraLabel != null) {
+            out.append('{');
+
+            for (int i = 0; i < labelNames.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+
+                out.append(labelNames[i]).append("=\"");
+                escapeLabelValue(out, labelValues.get(i));
+                out.append('"');
+            }
+
+            if (extraLabel != null) {
+                if (labelNames.length > 0) {
+                    out.append(',');
+                }
+
+                out.append(extraLabel).append("=\"").append(extraValue).append('"');
+            }
+
+            out.append('}');
+        }
+
+        out.append(' ');
+
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            out.append((long) value);
+        }
+        else {
+            out.append(value);
+        }
+
+        out.append('\n');
+    }
+
+    private static void escapeLabelValue(StringBuilder out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c == '\\' || c == '"') {
+                out.append('\\').append(c);
+            }
+            else if (c == '\n') {
+                out.append("\\n");
+            }
+            else {
+                out.append(c);
+            }
+        }
+    }
+}
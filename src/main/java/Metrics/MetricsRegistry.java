@@ -0,0 +1,81 @@
+package Metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+/**
+ * Holds the application's metric families and renders them in the Prometheus text exposition format.
+ * 
+ * Registering a family under a name that is already taken returns the existing family, so components can look up
+ * the metrics they record to without coordinating who creates them.
+ */
+public class MetricsRegistry {
+    /**
+     * The content type of the Prometheus text exposition format
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final Map<String, MetricFamily<?>> families = new ConcurrentSkipListMap<>();
+
+    /**
+     * Gets or creates a counter family
+     * 
+     * @param name the metric name, ending in _total by convention
+     * @param help a one line description of the metric
+     * @param labelNames the names of the labels that distinguish the family's children
+     * @return the registered Counter
+     */
+    public Counter counter(String name, String help, String... labelNames) {
+        return register(name, Counter.class, () -> new Counter(name, help, labelNames));
+    }
+
+    /**
+     * Gets or creates a gauge family
+     * 
+     * @param name the metric name
+     * @param help a one line description of the metric
+     * @param labelNames the names of the labels that distinguish the family's children
+     * @return the registered Gauge
+     */
+    public Gauge gauge(String name, String help, String... labelNames) {
+        return register(name, Gauge.class, () -> new Gauge(name, help, labelNames));
+    }
+
+    /**
+     * Gets or creates a histogram family with the default duration buckets
+     * 
+     * @param name the metric name, ending in _seconds by convention
+     * @param help a one line description of the metric
+     * @param labelNames the names of the labels that distinguish the family's children
+     * @return the registered Histogram
+     */
+    public Histogram histogram(String name, String help, String... labelNames) {
+        return register(name, Histogram.class, () -> new Histogram(name, help, labelNames));
+    }
+
+    /**
+     * Renders every registered family in the Prometheus text exposition format
+     * 
+     * @return the text served by GET /metrics
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(8192);
+
+        for (MetricFamily<?> family : families.values()) {
+            family.writeTo(out);
+        }
+
+        return out.toString();
+    }
+
+    private <T extends MetricFamily<?>> T register(String name, Class<T> type, Supplier<T> factory) {
+        MetricFamily<?> family = families.computeIfAbsent(name, key -> factory.get());
+
+        if (!type.isInstance(family)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.getType());
+        }
+
+        return type.cast(family);
+    }
+}
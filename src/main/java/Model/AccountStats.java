@@ -0,0 +1,110 @@
+package Model;
+
+import java.util.Objects;
+
+/**
+ * This is a class that models the message statistics of an account, which are kept up to date as messages are
+ * added and deleted.
+ */
+public class AccountStats {
+    /**
+     * The ID of the account
+     */
+    public int account_id;
+    /**
+     * The number of messages the account has posted that have not been deleted
+     */
+    public int message_count;
+    /**
+     * The latest time_posted_epoch among those messages, or null if there are none
+     */
+    public Long last_posted_epoch;
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public AccountStats(){
+    }
+    /**
+     * When retrieving statistics from the database, all fields will be needed.
+     * @param account_id
+     * @param message_count
+     * @param last_posted_epoch
+     */
+    public AccountStats(int account_id, int message_count, Long last_posted_epoch) {
+        this.account_id = account_id;
+        this.message_count = message_count;
+        this.last_posted_epoch = last_posted_epoch;
+    }
+    /**
+     * @return account_id
+     */
+    public int getAccount_id() {
+        return account_id;
+    }
+    /**
+     * @param account_id
+     */
+    public void setAccount_id(int account_id) {
+        this.account_id = account_id;
+    }
+    /**
+     * @return message_count
+     */
+    public int getMessage_count() {
+        return message_count;
+    }
+    /**
+     * @param message_count
+     */
+    public void setMessage_count(int message_count) {
+        this.message_count = message_count;
+    }
+    /**
+     * @return last_posted_epoch
+     */
+    public Long getLast_posted_epoch() {
+        return last_posted_epoch;
+    }
+    /**
+     * @param last_posted_epoch
+     */
+    public void setLast_posted_epoch(Long last_posted_epoch) {
+        this.last_posted_epoch = last_posted_epoch;
+    }
+    /**
+     * Overriding the default equals() method adds functionality to tell when two objects are identical, allowing
+     * Assert.assertEquals and List.contains to function.
+     * @param o the other object.
+     * @return true if o is equal to this object.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AccountStats that = (AccountStats) o;
+        return account_id == that.account_id && message_count == that.message_count
+                && Objects.equals(last_posted_epoch, that.last_posted_epoch);
+    }
+    /**
+     * Overriding the default hashCode() method keeps it consistent with equals(), so that equal objects can be used
+     * as keys of a HashMap or members of a HashSet.
+     * @return a hash of the fields that equals() compares.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(account_id, message_count, last_posted_epoch);
+    }
+    /**
+     * Overriding the default toString() method allows for easy debugging.
+     * @return a String representation of this class.
+     */
+    @Override
+    public String toString() {
+        return "AccountStats{" +
+                "account_id=" + account_id +
+                ", message_count=" + message_count +
+                ", last_posted_epoch=" + last_posted_epoch +
+                '}';
+    }
+}
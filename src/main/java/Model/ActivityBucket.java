@@ -0,0 +1,112 @@
+package Model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * This is a class that models the posting activity of an hour or a day, as kept by the activity rollup.
+ */
+public class ActivityBucket {
+    /**
+     * The epoch second the bucket starts at, in UTC
+     */
+    public long bucket_start;
+    /**
+     * The number of messages posted in the bucket that have not been deleted
+     */
+    public long message_count;
+    /**
+     * The accounts that posted the most messages in the bucket, most first, or null for hourly buckets
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public List<PosterCount> top_posters;
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public ActivityBucket(){
+    }
+    /**
+     * When reading a bucket from the activity rollup, all fields will be needed.
+     * @param bucket_start
+     * @param message_count
+     * @param top_posters
+     */
+    public ActivityBucket(long bucket_start, long message_count, List<PosterCount> top_posters) {
+        this.bucket_start = bucket_start;
+        this.message_count = message_count;
+        this.top_posters = top_posters;
+    }
+    /**
+     * @return bucket_start
+     */
+    public long getBucket_start() {
+        return bucket_start;
+    }
+    /**
+     * @param bucket_start
+     */
+    public void setBucket_start(long bucket_start) {
+        this.bucket_start = bucket_start;
+    }
+    /**
+     * @return message_count
+     */
+    public long getMessage_count() {
+        return message_count;
+    }
+    /**
+     * @param message_count
+     */
+    public void setMessage_count(long message_count) {
+        this.message_count = message_count;
+    }
+    /**
+     * @return top_posters
+     */
+    public List<PosterCount> getTop_posters() {
+        return top_posters;
+    }
+    /**
+     * @param top_posters
+     */
+    public void setTop_posters(List<PosterCount> top_posters) {
+        this.top_posters = top_posters;
+    }
+    /**
+     * Overriding the default equals() method adds functionality to tell when two objects are identical, allowing
+     * Assert.assertEquals and List.contains to function.
+     * @param o the other object.
+     * @return true if o is equal to this object.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ActivityBucket that = (ActivityBucket) o;
+        return bucket_start == that.bucket_start && message_count == that.message_count
+                && Objects.equals(top_posters, that.top_posters);
+    }
+    /**
+     * Overriding the default hashCode() method keeps it consistent with equals(), so that equal objects can be used
+     * as keys of a HashMap or members of a HashSet.
+     * @return a hash of the fields that equals() compares.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(bucket_start, message_count, top_posters);
+    }
+    /**
+     * Overriding the default toString() method allows for easy debugging.
+     * @return a String representation of this class.
+     */
+    @Override
+    public String toString() {
+        return "ActivityBucket{" +
+                "bucket_start=" + bucket_start +
+                ", message_count=" + message_count +
+                ", top_posters=" + top_posters +
+                '}';
+    }
+}
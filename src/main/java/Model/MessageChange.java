@@ -0,0 +1,107 @@
+package Model;
+/**
+ * This is a class that models an entry of the message change log: a message as it was right after it was created
+ * or updated, or right before it was deleted.
+ */
+public class MessageChange {
+    public static final String CREATED = "created";
+    public static final String UPDATED = "updated";
+    public static final String DELETED = "deleted";
+
+    /**
+     * The position of this change in the log, generated by the database. Later changes have higher numbers.
+     */
+    public long seq;
+    /**
+     * What happened to the message: "created", "updated" or "deleted"
+     */
+    public String change_type;
+    /**
+     * The epoch time in milliseconds when the change was written to the log
+     */
+    public long changed_at;
+    /**
+     * The message after the change (or before it, for a deletion)
+     */
+    public Message message;
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public MessageChange(){
+    }
+    /**
+     * When retrieving a change from the database, all fields will be needed.
+     * @param seq
+     * @param change_type
+     * @param changed_at
+     * @param message
+     */
+    public MessageChange(long seq, String change_type, long changed_at, Message message) {
+        this.seq = seq;
+        this.change_type = change_type;
+        this.changed_at = changed_at;
+        this.message = message;
+    }
+    /**
+     * @return seq
+     */
+    public long getSeq() {
+        return seq;
+    }
+    /**
+     * @param seq
+     */
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+    /**
+     * @return change_type
+     */
+    public String getChange_type() {
+        return change_type;
+    }
+    /**
+     * @param change_type
+     */
+    public void setChange_type(String change_type) {
+        this.change_type = change_type;
+    }
+    /**
+     * @return changed_at
+     */
+    public long getChanged_at() {
+        return changed_at;
+    }
+    /**
+     * @param changed_at
+     */
+    public void setChanged_at(long changed_at) {
+        this.changed_at = changed_at;
+    }
+    /**
+     * @return message
+     */
+    public Message getMessage() {
+        return message;
+    }
+    /**
+     * @param message
+     */
+    public void setMessage(Message message) {
+        this.message = message;
+    }
+    /**
+     * Overriding the default toString() method allows for easy debugging.
+     * @return a String representation of this class.
+     */
+    @Override
+    public String toString() {
+        return "MessageChange{" +
+                "seq=" + seq +
+                ", change_type='" + change_type + '\'' +
+                ", changed_at=" + changed_at +
+                ", message=" + message +
+                '}';
+    }
+}
@@ -0,0 +1,89 @@
+package Model;
+
+import java.util.Objects;
+
+/**
+ * This is a class that models how many messages an account posted within a bucket of time.
+ */
+public class PosterCount {
+    /**
+     * The ID of the account
+     */
+    public int account_id;
+    /**
+     * The number of messages the account posted in the bucket that have not been deleted
+     */
+    public long message_count;
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public PosterCount(){
+    }
+    /**
+     * When reading a count from the activity rollup, all fields will be needed.
+     * @param account_id
+     * @param message_count
+     */
+    public PosterCount(int account_id, long message_count) {
+        this.account_id = account_id;
+        this.message_count = message_count;
+    }
+    /**
+     * @return account_id
+     */
+    public int getAccount_id() {
+        return account_id;
+    }
+    /**
+     * @param account_id
+     */
+    public void setAccount_id(int account_id) {
+        this.account_id = account_id;
+    }
+    /**
+     * @return message_count
+     */
+    public long getMessage_count() {
+        return message_count;
+    }
+    /**
+     * @param message_count
+     */
+    public void setMessage_count(long message_count) {
+        this.message_count = message_count;
+    }
+    /**
+     * Overriding the default equals() method adds functionality to tell when two objects are identical, allowing
+     * Assert.assertEquals and List.contains to function.
+     * @param o the other object.
+     * @return true if o is equal to this object.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PosterCount that = (PosterCount) o;
+        return account_id == that.account_id && message_count == that.message_count;
+    }
+    /**
+     * Overriding the default hashCode() method keeps it consistent with equals(), so that equal objects can be used
+     * as keys of a HashMap or members of a HashSet.
+     * @return a hash of the fields that equals() compares.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(account_id, message_count);
+    }
+    /**
+     * Overriding the default toString() method allows for easy debugging.
+     * @return a String representation of this class.
+     */
+    @Override
+    public String toString() {
+        return "PosterCount{" +
+                "account_id=" + account_id +
+                ", message_count=" + message_count +
+                '}';
+    }
+}
@@ -0,0 +1,76 @@
+package Service;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import Metrics.*;
+import Util.DaemonThreadFactory;
+
+/**
+ * Periodically recomputes the per-account message statistics from the messages themselves.
+ *
+ * The statistics are maintained incrementally by every message write, so they should never drift. Any drift that
+ * is found (from a write made outside the application, say) is corrected, logged and counted, so that it can be
+ * alerted on.
+ */
+public class AccountStatsReconciler {
+    private static final Logger logger = LoggerFactory.getLogger(AccountStatsReconciler.class);
+
+    private final SocialMediaService socialMediaService;
+    private final ScheduledExecutorService executor;
+    private final AtomicLong lastDrift = new AtomicLong();
+
+    private final Counter.Child runs;
+    private final Counter.Child drifted;
+    private final Counter.Child failures;
+
+    /**
+     * @param socialMediaService the service that owns the statistics
+     * @param intervalMillis how often the statistics are reconciled
+     * @param registry the registry that the reconciliation metrics are added to
+     */
+    public AccountStatsReconciler(SocialMediaService socialMediaService, long intervalMillis, MetricsRegistry registry) {
+        this.socialMediaService = socialMediaService;
+
+        this.runs = registry.counter("account_stats_reconciliations_total", "Account statistics reconciliation runs").labels();
+        this.drifted = registry.counter("account_stats_drift_total", "Accounts whose statistics had drifted and were corrected").labels();
+        this.failures = registry.counter("account_stats_reconciliation_failures_total", "Account statistics reconciliation runs that failed").labels();
+        registry.gauge("account_stats_last_drift", "Accounts corrected by the latest reconciliation run").labels().set(lastDrift::get);
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("account-stats-reconciler"));
+        this.executor.scheduleWithFixedDelay(this::runOnce, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reconciles the statistics of every account once
+     */
+    public void runOnce() {
+        try {
+            ArrayList<Integer> correctedIds = socialMediaService.reconcileAccountStats();
+
+            runs.inc();
+            drifted.inc(correctedIds.size());
+            lastDrift.set(correctedIds.size());
+
+            if (!correctedIds.isEmpty()) {
+                logger.warn("Corrected drifted statistics of {} accounts: {}", correctedIds.size(), correctedIds);
+            }
+        }
+        catch (SQLException e) {
+            failures.inc();
+            logger.error("Account statistics reconciliation failed", e);
+        }
+    }
+
+    /**
+     * Stops scheduling reconciliation
+     */
+    public void close() {
+        executor.shutdownNow();
+    }
+}
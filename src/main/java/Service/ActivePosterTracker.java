@@ -0,0 +1,190 @@
+package Service;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import Metrics.*;
+import Model.Message;
+import Util.DaemonThreadFactory;
+
+/**
+ * Estimates how many distinct accounts posted within any range of days, without counting distinct posters over the
+ * message table.
+ *
+ * Every UTC day of time_posted_epoch has a HyperLogLog sketch of the accounts that posted on it, updated as messages
+ * are created. A range of days is answered by merging the sketches of its days, so daily, weekly and monthly active
+ * posters all cost a few kilobytes of work per day. Posters are counted when they post, so deleting a message does
+ * not uncount its poster.
+ *
+ * The sketches of changed days are saved in the background and once more when the tracker is closed. Saving merges
+ * the persisted sketch of each day in first, which loses nothing because merging is idempotent, so a tracker that
+ * failed to load never overwrites what was saved before. Days with messages but no saved sketch (the messages
+ * posted before the sketches existed) are sketched once at startup from a scan of their posters.
+ */
+public class ActivePosterTracker implements MessageEventListener {
+    private static final Logger logger = LoggerFactory.getLogger(ActivePosterTracker.class);
+
+    public static final long DAY_SECONDS = 86_400;
+
+    private final SocialMediaService socialMediaService;
+    private final int precision;
+    private final ScheduledExecutorService executor;
+
+    private final Map<Long, HyperLogLog> days = new ConcurrentHashMap<>();
+    private final Set<Long> unsavedDays = ConcurrentHashMap.newKeySet();
+
+    private final Counter.Child saves;
+    private final Counter.Child failures;
+
+    /**
+     * Loads the persisted sketches, sketches the days that have none, and starts saving changed days
+     *
+     * @param socialMediaService the service that persists the sketches
+     * @param precision the precision of the sketches (see HyperLogLog), which must not change between restarts since
+     *        sketches of different precisions cannot be merged
+     * @param saveIntervalMillis how often changed days are saved
+     * @param registry the registry that the tracker metrics are added to
+     */
+    public ActivePosterTracker(SocialMediaService socialMediaService, int precision, long saveIntervalMillis, MetricsRegistry registry) {
+        this.socialMediaService = socialMediaService;
+        this.precision = precision;
+
+        this.saves = registry.counter("active_poster_sketch_saves_total", "Active poster sketch saves").labels();
+        this.failures = registry.counter("active_poster_sketch_failures_total", "Active poster sketch loads and saves that failed").labels();
+        registry.gauge("active_poster_sketch_days", "Days with an active poster sketch held in memory").labels().set(days::size);
+
+        load();
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("active-poster-tracker"));
+        this.executor.scheduleWithFixedDelay(this::runOnce, saveIntervalMillis, saveIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param fromDayStart the start of the first day of the range
+     * @param toDayStart the start of the last day of the range
+     * @return the estimated number of distinct accounts that posted on any day of the range
+     */
+    public long countActivePosters(long fromDayStart, long toDayStart) {
+        HyperLogLog union = new HyperLogLog(precision);
+
+        for (long dayStart = fromDayStart; dayStart <= toDayStart; dayStart += DAY_SECONDS) {
+            HyperLogLog day = days.get(dayStart);
+
+            if (day != null) {
+                union.merge(day);
+            }
+        }
+
+        return union.estimate();
+    }
+
+    /**
+     * @return the relative standard error of the estimates
+     */
+    public double getStandardError() {
+        return HyperLogLog.standardError(precision);
+    }
+
+    /**
+     * Counts the poster of a created message on the message's day
+     */
+    @Override
+    public void onMessageEvent(MessageEventType type, Message message) {
+        if (type == MessageEventType.CREATED) {
+            add(message.getTime_posted_epoch(), message.getPosted_by());
+        }
+    }
+
+    /**
+     * Saves the sketches of the days changed since the last save, merged with what is persisted for them. Days
+     * that fail to save are kept for the next attempt.
+     */
+    public synchronized void runOnce() {
+        List<Long> changedDays = new ArrayList<>();
+
+        for (Long dayStart : unsavedDays) {
+            if (unsavedDays.remove(dayStart)) {
+                changedDays.add(dayStart);
+            }
+        }
+
+        if (changedDays.isEmpty()) {
+            return;
+        }
+
+        try {
+            Map<Long, byte[]> persisted = socialMediaService.getActivePosterSketches(Collections.min(changedDays), Collections.max(changedDays));
+            Map<Long, byte[]> sketches = new TreeMap<>();
+
+            for (long dayStart : changedDays) {
+                HyperLogLog day = sketch(dayStart);
+                byte[] persistedDay = persisted.get(dayStart);
+
+                if (persistedDay != null) {
+                    day.merge(HyperLogLog.fromBytes(persistedDay));
+                }
+
+                sketches.put(dayStart, day.toBytes());
+            }
+
+            socialMediaService.saveActivePosterSketches(sketches);
+            saves.inc();
+        }
+        catch (SQLException | IllegalArgumentException e) {
+            failures.inc();
+            logger.error("Saving the active poster sketches failed", e);
+            unsavedDays.addAll(changedDays);
+        }
+    }
+
+    /**
+     * Stops scheduling saves, and saves the days changed since the last one
+     */
+    public void close() {
+        executor.shutdown();
+        runOnce();
+    }
+
+    private void add(long timePostedEpoch, int postedBy) {
+        long dayStart = Math.floorDiv(timePostedEpoch, DAY_SECONDS) * DAY_SECONDS;
+
+        sketch(dayStart).add(CountMinSketch.hash(postedBy));
+        unsavedDays.add(dayStart);
+    }
+
+    /**
+     * Loads the persisted sketches, then sketches the days that have messages but no persisted sketch. If either
+     * fails, the days it missed are counted from the messages created from then on.
+     */
+    private void load() {
+        try {
+            for (Map.Entry<Long, byte[]> entry : socialMediaService.getActivePosterSketches(Long.MIN_VALUE, Long.MAX_VALUE).entrySet()) {
+                sketch(entry.getKey()).merge(HyperLogLog.fromBytes(entry.getValue()));
+            }
+
+            socialMediaService.scanPostersOfUnsketchedDays(row -> {
+                sketch(row[0]).add(CountMinSketch.hash(row[1]));
+                unsavedDays.add(row[0]);
+            });
+        }
+        catch (SQLException | IOException | IllegalArgumentException e) {
+            failures.inc();
+            logger.error("Loading the active poster sketches failed, so active posters are counted from now on", e);
+        }
+    }
+
+    private HyperLogLog sketch(long dayStart) {
+        return days.computeIfAbsent(dayStart, key -> new HyperLogLog(precision));
+    }
+}
@@ -0,0 +1,277 @@
+package Service;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import Metrics.*;
+import Model.*;
+import Util.DaemonThreadFactory;
+
+/**
+ * Counts the messages posted in every hour, and by every account on every day, as messages are created and deleted,
+ * so that posting activity can be read without scanning the messages.
+ *
+ * The counts are held in memory and updated by every committed write, bucketed by time_posted_epoch in UTC. The
+ * changes are added to the persisted rollups in the background and once more when the rollup is closed, so a crash
+ * loses at most one interval of changes. Reading a bucket costs the same however many messages it counts; the top
+ * posters of a day are only recomputed once the day has changed.
+ */
+public class ActivityRollup implements MessageEventListener {
+    private static final Logger logger = LoggerFactory.getLogger(ActivityRollup.class);
+
+    public static final long HOUR_SECONDS = 3_600;
+    public static final long DAY_SECONDS = 86_400;
+
+    /**
+     * The counts of one day, and its top posters as of the latest version they were computed for
+     */
+    private static class Day {
+        final AtomicLong messageCount = new AtomicLong();
+        final ConcurrentHashMap<Integer, AtomicLong> byPoster = new ConcurrentHashMap<>();
+        final AtomicLong version = new AtomicLong();
+        volatile TopPosters topPosters;
+    }
+
+    private static class TopPosters {
+        final long version;
+        final List<PosterCount> posters;
+
+        TopPosters(long version, List<PosterCount> posters) {
+            this.version = version;
+            this.posters = posters;
+        }
+    }
+
+    private static final Comparator<PosterCount> MOST_MESSAGES_FIRST = Comparator.comparingLong(PosterCount::getMessage_count).reversed()
+            .thenComparingInt(PosterCount::getAccount_id);
+
+    private final SocialMediaService socialMediaService;
+    private final int topPosterCount;
+    private final ScheduledExecutorService executor;
+
+    private final ConcurrentHashMap<Long, AtomicLong> hourly = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Day> daily = new ConcurrentHashMap<>();
+
+    /**
+     * The changes counted since they were last saved, removed key by key as they are saved so that no concurrent
+     * change is lost
+     */
+    private final ConcurrentHashMap<Long, Long> unsavedHourly = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, ConcurrentHashMap<Integer, Long>> unsavedDaily = new ConcurrentHashMap<>();
+
+    private final Counter.Child saves;
+    private final Counter.Child failures;
+
+    /**
+     * Loads the persisted rollups and starts saving changes to them
+     *
+     * @param socialMediaService the service that persists the rollups
+     * @param topPosterCount the most top posters listed per day
+     * @param saveIntervalMillis how often changes are saved
+     * @param registry the registry that the rollup metrics are added to
+     */
+    public ActivityRollup(SocialMediaService socialMediaService, int topPosterCount, long saveIntervalMillis, MetricsRegistry registry) {
+        this.socialMediaService = socialMediaService;
+        this.topPosterCount = topPosterCount;
+
+        this.saves = registry.counter("activity_rollup_saves_total", "Activity rollup changes saved to the database").labels();
+        this.failures = registry.counter("activity_rollup_failures_total", "Activity rollup loads and saves that failed").labels();
+        registry.gauge("activity_rollup_hours", "Hours with posting activity held in memory").labels().set(hourly::size);
+        registry.gauge("activity_rollup_days", "Days with posting activity held in memory").labels().set(daily::size);
+
+        load();
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("activity-rollup"));
+        this.executor.scheduleWithFixedDelay(this::runOnce, saveIntervalMillis, saveIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param from the epoch second to start at, which is rounded down to the start of its bucket
+     * @param to the epoch second to end before
+     * @param bucketSeconds HOUR_SECONDS or DAY_SECONDS
+     * @return the number of buckets that getActivity() would return
+     */
+    public static long countBuckets(long from, long to, long bucketSeconds) {
+        return Math.max(0, Math.floorDiv(to - 1, bucketSeconds) - Math.floorDiv(from, bucketSeconds) + 1);
+    }
+
+    /**
+     * Gets the posting activity of every bucket in a range of time, including the buckets without any
+     *
+     * @param from the epoch second to start at, which is rounded down to the start of its bucket
+     * @param to the epoch second to end before
+     * @param bucketSeconds HOUR_SECONDS, or DAY_SECONDS to also list the top posters of each day
+     * @return the buckets, oldest first
+     */
+    public ArrayList<ActivityBucket> getActivity(long from, long to, long bucketSeconds) {
+        long buckets = countBuckets(from, to, bucketSeconds);
+        long start = Math.floorDiv(from, bucketSeconds) * bucketSeconds;
+        ArrayList<ActivityBucket> activity = new ArrayList<>((int) Math.min(buckets, 1_000));
+
+        for (long i = 0; i < buckets; i++) {
+            long bucketStart = start + i * bucketSeconds;
+
+            if (bucketSeconds == DAY_SECONDS) {
+                Day day = daily.get(bucketStart);
+
+                activity.add(day == null ? new ActivityBucket(bucketStart, 0, List.of())
+                        : new ActivityBucket(bucketStart, day.messageCount.get(), topPosters(day)));
+            }
+            else {
+                AtomicLong count = hourly.get(bucketStart);
+
+                activity.add(new ActivityBucket(bucketStart, count == null ? 0 : count.get(), null));
+            }
+        }
+
+        return activity;
+    }
+
+    /**
+     * Counts a created message, or uncounts a deleted one. Updates only change the text, which is not counted.
+     */
+    @Override
+    public void onMessageEvent(MessageEventType type, Message message) {
+        if (type == MessageEventType.CREATED) {
+            add(message.getPosted_by(), message.getTime_posted_epoch(), 1);
+        }
+        else if (type == MessageEventType.DELETED) {
+            add(message.getPosted_by(), message.getTime_posted_epoch(), -1);
+        }
+    }
+
+    /**
+     * Saves the changes counted since the last save. Changes that fail to save are kept for the next attempt.
+     */
+    public synchronized void runOnce() {
+        Map<Long, Long> hourlyChanges = new TreeMap<>();
+        Map<Long, Map<Integer, Long>> dailyChanges = new TreeMap<>();
+
+        for (Long hour : unsavedHourly.keySet()) {
+            Long change = unsavedHourly.remove(hour);
+
+            if (change != null && change != 0) {
+                hourlyChanges.put(hour, change);
+            }
+        }
+
+        for (Map.Entry<Long, ConcurrentHashMap<Integer, Long>> day : unsavedDaily.entrySet()) {
+            for (Integer accountId : day.getValue().keySet()) {
+                Long change = day.getValue().remove(accountId);
+
+                if (change != null && change != 0) {
+                    dailyChanges.computeIfAbsent(day.getKey(), key -> new TreeMap<>()).put(accountId, change);
+                }
+            }
+        }
+
+        if (hourlyChanges.isEmpty() && dailyChanges.isEmpty()) {
+            return;
+        }
+
+        try {
+            socialMediaService.addToActivityRollups(hourlyChanges, dailyChanges);
+            saves.inc();
+        }
+        catch (SQLException e) {
+            failures.inc();
+            logger.error("Saving the activity rollups failed", e);
+
+            // Put the changes back, adding them to any counted since
+            hourlyChanges.forEach((hour, change) -> unsavedHourly.merge(hour, change, Long::sum));
+            dailyChanges.forEach((day, changes) -> changes.forEach((accountId, change) ->
+                    unsavedDaily.computeIfAbsent(day, key -> new ConcurrentHashMap<>()).merge(accountId, change, Long::sum)));
+        }
+    }
+
+    /**
+     * Stops scheduling saves, and saves the changes counted since the last one
+     */
+    public void close() {
+        executor.shutdown();
+        runOnce();
+    }
+
+    private void add(int postedBy, long timePostedEpoch, long change) {
+        long hourStart = Math.floorDiv(timePostedEpoch, HOUR_SECONDS) * HOUR_SECONDS;
+        long dayStart = Math.floorDiv(timePostedEpoch, DAY_SECONDS) * DAY_SECONDS;
+
+        hourly.computeIfAbsent(hourStart, key -> new AtomicLong()).addAndGet(change);
+
+        Day day = daily.computeIfAbsent(dayStart, key -> new Day());
+        day.messageCount.addAndGet(change);
+        day.byPoster.computeIfAbsent(postedBy, key -> new AtomicLong()).addAndGet(change);
+        day.version.incrementAndGet();
+
+        unsavedHourly.merge(hourStart, change, Long::sum);
+        unsavedDaily.computeIfAbsent(dayStart, key -> new ConcurrentHashMap<>()).merge(postedBy, change, Long::sum);
+    }
+
+    /**
+     * Fills the in-memory counts from the persisted rollups. If they cannot be read the counts start from zero,
+     * and the changes counted from then on are still added to the persisted rollups.
+     */
+    private void load() {
+        try {
+            socialMediaService.getHourlyActivity().forEach((hour, count) -> hourly.put(hour, new AtomicLong(count)));
+
+            socialMediaService.getDailyPosterActivity().forEach((dayStart, counts) -> {
+                Day day = daily.computeIfAbsent(dayStart, key -> new Day());
+
+                counts.forEach((accountId, count) -> {
+                    day.byPoster.put(accountId, new AtomicLong(count));
+                    day.messageCount.addAndGet(count);
+                });
+            });
+        }
+        catch (SQLException e) {
+            failures.inc();
+            logger.error("Loading the activity rollups failed, so activity is counted from zero", e);
+        }
+    }
+
+    /**
+     * @param day a day of the rollup
+     * @return the accounts that posted the most messages on the day, most first
+     */
+    private List<PosterCount> topPosters(Day day) {
+        TopPosters cached = day.topPosters;
+        long version = day.version.get();
+
+        if (cached != null && cached.version == version) {
+            return cached.posters;
+        }
+
+        // Keep only the topPosterCount largest counts while walking the day's posters
+        PriorityQueue<PosterCount> top = new PriorityQueue<>(MOST_MESSAGES_FIRST.reversed());
+
+        day.byPoster.forEach((accountId, count) -> {
+            long messageCount = count.get();
+
+            if (messageCount > 0) {
+                top.add(new PosterCount(accountId, messageCount));
+
+                if (top.size() > topPosterCount) {
+                    top.poll();
+                }
+            }
+        });
+
+        ArrayList<PosterCount> posters = new ArrayList<>(top);
+        posters.sort(MOST_MESSAGES_FIRST);
+        day.topPosters = new TopPosters(version, List.copyOf(posters));
+
+        return day.topPosters.posters;
+    }
+}
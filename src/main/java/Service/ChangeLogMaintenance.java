@@ -0,0 +1,74 @@
+package Service;
+
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import Metrics.*;
+import Util.DaemonThreadFactory;
+
+/**
+ * Periodically keeps the message change log bounded.
+ *
+ * Entries older than the compaction age are compacted down to the latest change of each message, which is all a
+ * reader that is catching up needs. Entries older than the retention period are removed outright; readers that
+ * fall behind the retention period are told to resynchronize from an export instead.
+ */
+public class ChangeLogMaintenance {
+    private static final Logger logger = LoggerFactory.getLogger(ChangeLogMaintenance.class);
+
+    private final SocialMediaService socialMediaService;
+    private final long retentionMillis;
+    private final long compactAfterMillis;
+    private final ScheduledExecutorService executor;
+
+    private final Counter.Child truncated;
+    private final Counter.Child compacted;
+    private final Counter.Child failures;
+
+    /**
+     * @param socialMediaService the service that owns the change log
+     * @param retentionMillis how long entries are kept
+     * @param compactAfterMillis how old entries must be before they are compacted
+     * @param intervalMillis how often maintenance runs
+     * @param registry the registry that the maintenance metrics are added to
+     */
+    public ChangeLogMaintenance(SocialMediaService socialMediaService, long retentionMillis, long compactAfterMillis, long intervalMillis,
+            MetricsRegistry registry) {
+        this.socialMediaService = socialMediaService;
+        this.retentionMillis = retentionMillis;
+        this.compactAfterMillis = compactAfterMillis;
+
+        this.truncated = registry.counter("change_log_truncated_total", "Change log entries removed by retention").labels();
+        this.compacted = registry.counter("change_log_compacted_total", "Superseded change log entries removed by compaction").labels();
+        this.failures = registry.counter("change_log_maintenance_failures_total", "Change log maintenance runs that failed").labels();
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("change-log-maintenance"));
+        this.executor.scheduleWithFixedDelay(this::runOnce, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Truncates and compacts the change log once
+     */
+    public void runOnce() {
+        long now = System.currentTimeMillis();
+
+        try {
+            truncated.inc(socialMediaService.truncateChangeLog(now - retentionMillis));
+            compacted.inc(socialMediaService.compactChangeLog(now - compactAfterMillis));
+        }
+        catch (SQLException e) {
+            failures.inc();
+            logger.error("Change log maintenance failed", e);
+        }
+    }
+
+    /**
+     * Stops scheduling maintenance
+     */
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,98 @@
+package Service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Count-Min Sketch: estimates how often each key has been added in a fixed amount of memory, however many
+ * distinct keys there are.
+ *
+ * Each key is counted in one counter of every row, and its estimate is the smallest of those counters. Estimates
+ * never undercount; with width w and depth d they overcount by more than e/w of the total added with probability
+ * at most e^-d. Counters are updated without locking, so adds from many threads never wait on each other.
+ */
+public class CountMinSketch {
+    private final int width;
+    private final int depth;
+    private final AtomicLongArray counters;
+
+    /**
+     * @param width the counters per row, which bounds the overcount
+     * @param depth the rows, which bounds the probability of exceeding it
+     */
+    public CountMinSketch(int width, int depth) {
+        this.width = width;
+        this.depth = depth;
+        this.counters = new AtomicLongArray(width * depth);
+    }
+
+    /**
+     * Hashes a string to the 64 bits that add() and estimate() take (FNV-1a over its characters, then mixed)
+     *
+     * @param key the string
+     * @return the hash
+     */
+    public static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+
+        for (int i = 0; i < key.length(); i++) {
+            hash = (hash ^ key.charAt(i)) * 0x100000001b3L;
+        }
+
+        return hash(hash);
+    }
+
+    /**
+     * Hashes a number to the 64 bits that add() and estimate() take (the SplitMix64 finalizer)
+     *
+     * @param key the number
+     * @return the hash
+     */
+    public static long hash(long key) {
+        long hash = key;
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+
+    /**
+     * @param hash the hash of the key
+     * @param count how many times to count it
+     */
+    public void add(long hash, long count) {
+        for (int row = 0; row < depth; row++) {
+            counters.addAndGet(index(hash, row), count);
+        }
+    }
+
+    /**
+     * @param hash the hash of the key
+     * @return how many times the key has been added, or a little more
+     */
+    public long estimate(long hash) {
+        long estimate = Long.MAX_VALUE;
+
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(index(hash, row)));
+        }
+
+        return estimate;
+    }
+
+    /**
+     * Sets every counter back to zero. Adds made while clearing may be partly kept.
+     */
+    public void clear() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+    }
+
+    /**
+     * Picks the counter of a key in a row, deriving the row's hash from the two halves of the key's hash
+     */
+    private int index(long hash, int row) {
+        int combined = (int) hash + row * (int) (hash >>> 32);
+
+        return row * width + Math.floorMod(combined, width);
+    }
+}
@@ -0,0 +1,218 @@
+package Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.ToLongFunction;
+
+/**
+ * Finds the keys added most often within a sliding window of time, in fixed memory.
+ *
+ * The window is split into slices, each counted by a Count-Min Sketch of its own, and a key's count is the sum of
+ * its estimates in the slices still in the window. When time moves into a new slice, the oldest slice is cleared
+ * and reused, so the window covers between slices - 1 and slices whole slices. Alongside the sketches, a bounded
+ * set of candidates holds the keys with the highest counts seen; a key only displaces a candidate once its count
+ * exceeds the lowest candidate's, so most adds are a sketch update and a map lookup.
+ *
+ * @param <K> the type of the keys
+ */
+public class HeavyHitters<K> {
+    /**
+     * A key and its estimated count within the window
+     *
+     * @param <K> the type of the key
+     */
+    public static class Hitter<K> {
+        private final K key;
+        private final long count;
+
+        Hitter(K key, long count) {
+            this.key = key;
+            this.count = count;
+        }
+
+        /**
+         * @return the key
+         */
+        public K getKey() {
+            return key;
+        }
+
+        /**
+         * @return the estimated number of times it was added within the window
+         */
+        public long getCount() {
+            return count;
+        }
+    }
+
+    private final CountMinSketch[] slices;
+    private final AtomicLongArray sliceNumbers;
+    private final long sliceMillis;
+    private final ToLongFunction<K> hasher;
+    private final int capacity;
+
+    private final Map<K, Long> candidates = new ConcurrentHashMap<>();
+
+    /**
+     * The lowest count among the candidates once there are as many as the capacity, below which a key is not worth
+     * the lock that admitting it takes
+     */
+    private volatile long admissionThreshold;
+
+    /**
+     * @param windowMillis the length of the window
+     * @param sliceCount the number of slices the window is split into
+     * @param width the counters per row of each slice's sketch
+     * @param depth the rows of each slice's sketch
+     * @param capacity the most candidates kept, which should be a few times the number of keys that top() is asked for
+     * @param hasher hashes a key for the sketches
+     */
+    public HeavyHitters(long windowMillis, int sliceCount, int width, int depth, int capacity, ToLongFunction<K> hasher) {
+        this.slices = new CountMinSketch[sliceCount];
+        this.sliceNumbers = new AtomicLongArray(sliceCount);
+        this.sliceMillis = Math.max(1, windowMillis / sliceCount);
+        this.hasher = hasher;
+        this.capacity = capacity;
+
+        for (int i = 0; i < sliceCount; i++) {
+            slices[i] = new CountMinSketch(width, depth);
+            sliceNumbers.set(i, -1);
+        }
+    }
+
+    /**
+     * Counts a key once
+     *
+     * @param key the key
+     * @param nowMillis the current epoch time in milliseconds
+     */
+    public void add(K key, long nowMillis) {
+        long sliceNumber = nowMillis / sliceMillis;
+        long hash = hasher.applyAsLong(key);
+
+        currentSlice(sliceNumber).add(hash, 1);
+        long count = estimate(hash, sliceNumber);
+
+        if (candidates.replace(key, count) != null) {
+            return;
+        }
+
+        if (candidates.size() < capacity || count > admissionThreshold) {
+            synchronized (this) {
+                candidates.put(key, count);
+
+                if (candidates.size() > capacity) {
+                    candidates.remove(lowestCandidate());
+                }
+
+                admissionThreshold = candidates.size() < capacity ? 0 : candidates.get(lowestCandidate());
+            }
+        }
+    }
+
+    /**
+     * @return the length of a slice, which is how often the window moves
+     */
+    public long getSliceMillis() {
+        return sliceMillis;
+    }
+
+    /**
+     * Gets the keys added most often within the window
+     *
+     * @param limit the most keys to return
+     * @param nowMillis the current epoch time in milliseconds
+     * @return the keys with their estimated counts, highest first
+     */
+    public List<Hitter<K>> top(int limit, long nowMillis) {
+        long sliceNumber = nowMillis / sliceMillis;
+        ArrayList<Hitter<K>> hitters = new ArrayList<>(candidates.size());
+
+        // The candidates' counts were taken when they were last added, so count them again as of now
+        for (K key : candidates.keySet()) {
+            long count = estimate(hasher.applyAsLong(key), sliceNumber);
+
+            if (count > 0) {
+                hitters.add(new Hitter<>(key, count));
+            }
+        }
+
+        hitters.sort(Comparator.comparingLong(Hitter<K>::getCount).reversed());
+
+        return new ArrayList<>(hitters.subList(0, Math.min(limit, hitters.size())));
+    }
+
+    /**
+     * Gets the slice that counts a slice number, clearing and reusing the oldest slice if time has moved on
+     */
+    private CountMinSketch currentSlice(long sliceNumber) {
+        int index = (int) (sliceNumber % slices.length);
+
+        if (sliceNumbers.get(index) != sliceNumber) {
+            synchronized (this) {
+                if (sliceNumbers.get(index) < sliceNumber) {
+                    slices[index].clear();
+                    sliceNumbers.set(index, sliceNumber);
+                    refreshCandidates(sliceNumber);
+                }
+            }
+        }
+
+        return slices[index];
+    }
+
+    /**
+     * Sums the estimates of a key in the slices that are still within the window
+     */
+    private long estimate(long hash, long sliceNumber) {
+        long count = 0;
+
+        for (int i = 0; i < slices.length; i++) {
+            if (sliceNumber - sliceNumbers.get(i) < slices.length) {
+                count += slices[i].estimate(hash);
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Recounts the candidates after the window has moved, dropping those that fell out of it, so that the
+     * admission threshold does not stay at counts from slices that are gone. Called holding the lock.
+     */
+    private void refreshCandidates(long sliceNumber) {
+        for (K key : candidates.keySet()) {
+            long count = estimate(hasher.applyAsLong(key), sliceNumber);
+
+            if (count > 0) {
+                candidates.put(key, count);
+            }
+            else {
+                candidates.remove(key);
+            }
+        }
+
+        admissionThreshold = candidates.size() < capacity ? 0 : candidates.get(lowestCandidate());
+    }
+
+    /**
+     * Finds the candidate with the lowest count. Called holding the lock.
+     */
+    private K lowestCandidate() {
+        K lowest = null;
+        long lowestCount = Long.MAX_VALUE;
+
+        for (Map.Entry<K, Long> entry : candidates.entrySet()) {
+            if (entry.getValue() < lowestCount) {
+                lowest = entry.getKey();
+                lowestCount = entry.getValue();
+            }
+        }
+
+        return lowest;
+    }
+}
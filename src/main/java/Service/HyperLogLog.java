@@ -0,0 +1,165 @@
+package Service;
+
+/**
+ * A HyperLogLog sketch: estimates how many distinct keys have been added in a few kilobytes, however many there are.
+ *
+ * Each key's hash picks one of 2^precision registers, which keeps the longest run of leading zero bits seen among
+ * the rest of the hashes it was picked by. The relative standard error of the estimate is 1.04 / sqrt(2^precision)
+ * (1.6% at the default precision of 12), and small counts are estimated exactly enough by linear counting of the
+ * empty registers. Sketches of the same precision merge into the sketch of the union of their keys, which is what
+ * lets daily sketches answer for any range of days.
+ */
+public class HyperLogLog {
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 16;
+
+    /**
+     * The bits each register is packed into by toBytes(), which holds any run length of a 64 bit hash
+     */
+    private static final int REGISTER_BITS = 6;
+
+    private final int precision;
+    private final byte[] registers;
+
+    /**
+     * @param precision the number of hash bits that pick a register, between MIN_PRECISION and MAX_PRECISION
+     */
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("HyperLogLog precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION + ", not " + precision);
+        }
+
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Reads a sketch written by toBytes()
+     *
+     * @param bytes the precision followed by the packed registers
+     * @return the sketch
+     * @throws IllegalArgumentException if the bytes are not a sketch
+     */
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        HyperLogLog sketch = new HyperLogLog(bytes.length > 0 ? bytes[0] : 0);
+
+        if (bytes.length != packedLength(sketch.registers.length) + 1) {
+            throw new IllegalArgumentException("HyperLogLog of precision " + sketch.precision + " cannot be " + bytes.length + " bytes");
+        }
+
+        for (int i = 0; i < sketch.registers.length; i++) {
+            int bit = i * REGISTER_BITS;
+            int packed = (bytes[1 + bit / 8] & 0xff) | (bit / 8 + 2 < bytes.length ? (bytes[2 + bit / 8] & 0xff) << 8 : 0);
+
+            sketch.registers[i] = (byte) ((packed >>> (bit % 8)) & ((1 << REGISTER_BITS) - 1));
+        }
+
+        return sketch;
+    }
+
+    /**
+     * @param precision the precision of a sketch
+     * @return the relative standard error of its estimates
+     */
+    public static double standardError(int precision) {
+        return 1.04 / Math.sqrt(1 << precision);
+    }
+
+    /**
+     * @param hash a well mixed 64 bit hash of the key
+     */
+    public synchronized void add(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+
+        // The sentinel bit caps the run at the bits left after the index
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1);
+
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    /**
+     * @return the estimated number of distinct keys added
+     */
+    public synchronized long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int emptyRegisters = 0;
+
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+
+            if (register == 0) {
+                emptyRegisters++;
+            }
+        }
+
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+
+        // Few keys leave many registers empty, and counting those is more accurate than the harmonic mean
+        if (estimate <= 2.5 * m && emptyRegisters > 0) {
+            estimate = m * Math.log((double) m / emptyRegisters);
+        }
+
+        return Math.round(estimate);
+    }
+
+    /**
+     * @return the number of hash bits that pick a register
+     */
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Adds every key of another sketch to this one
+     *
+     * @param other a sketch of the same precision
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge a HyperLogLog of precision " + other.precision + " into one of precision " + precision);
+        }
+
+        byte[] otherRegisters;
+
+        synchronized (other) {
+            otherRegisters = other.registers.clone();
+        }
+
+        synchronized (this) {
+            for (int i = 0; i < registers.length; i++) {
+                if (otherRegisters[i] > registers[i]) {
+                    registers[i] = otherRegisters[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the precision followed by the registers packed into 6 bits each (3 KB at precision 12)
+     */
+    public synchronized byte[] toBytes() {
+        byte[] bytes = new byte[packedLength(registers.length) + 1];
+        bytes[0] = (byte) precision;
+
+        for (int i = 0; i < registers.length; i++) {
+            int bit = i * REGISTER_BITS;
+            int shifted = registers[i] << (bit % 8);
+
+            bytes[1 + bit / 8] |= (byte) shifted;
+
+            if (bit % 8 + REGISTER_BITS > 8) {
+                bytes[2 + bit / 8] |= (byte) (shifted >>> 8);
+            }
+        }
+
+        return bytes;
+    }
+
+    private static int packedLength(int registerCount) {
+        return (registerCount * REGISTER_BITS + 7) / 8;
+    }
+}
@@ -0,0 +1,28 @@
+package Service;
+
+import Model.Message;
+
+/**
+ * A record read by a MessageSource, along with the line of the input that it started on
+ */
+public class ImportRecord {
+    private final int line;
+    private final Message message;
+
+    /**
+     * @param line the line of the input that the record started on (the first line is 1)
+     * @param message the message the record describes, or null if the record does not describe a message
+     */
+    public ImportRecord(int line, Message message) {
+        this.line = line;
+        this.message = message;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,74 @@
+package Service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The outcome of a bulk message import, serialized as the response of POST /import/messages.
+ * 
+ * Only the first MAX_REJECTED_LINES rejected line numbers are listed, so that the summary of a large, badly
+ * formatted import stays small. The rejected count is always exact.
+ */
+public class ImportSummary {
+    public static final int MAX_REJECTED_LINES = 1_000;
+
+    private long imported;
+    private long rejected;
+    private List<Integer> rejectedLines = new ArrayList<>();
+    private String error;
+
+    /**
+     * @param count the number of messages that were committed to the database
+     */
+    void addImported(int count) {
+        imported += count;
+    }
+
+    /**
+     * @param line the line of a record that failed validation
+     */
+    void addRejected(int line) {
+        rejected++;
+
+        if (rejectedLines.size() < MAX_REJECTED_LINES) {
+            rejectedLines.add(line);
+        }
+    }
+
+    /**
+     * @return the number of messages that were committed to the database
+     */
+    public long getImported() {
+        return imported;
+    }
+
+    /**
+     * @return the number of records that failed validation and were skipped
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return the line numbers of the first rejected records, in input order
+     */
+    public List<Integer> getRejected_lines() {
+        return rejectedLines;
+    }
+
+    /**
+     * @return why the import stopped before the end of the input, or null if it read the whole input
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @param error why the import stopped before the end of the input
+     */
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,102 @@
+package Service;
+
+import java.sql.SQLException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import Metrics.*;
+import Util.DaemonThreadFactory;
+
+/**
+ * Periodically moves old messages out of the message table and into the compressed archive, where they can still be
+ * read and deleted but no longer updated.
+ *
+ * Old messages are rarely read, but while they stay in the message table every insert pays to maintain their index
+ * entries. Messages are archived a whole monthly partition at a time: the cutoff is the start of the month that
+ * was the given number of days ago, by time_posted_epoch in UTC. Blocks are moved one transaction at a time and only
+ * while the server is quiet, like the purge of deleted messages.
+ */
+public class MessageArchiver {
+    private static final Logger logger = LoggerFactory.getLogger(MessageArchiver.class);
+
+    private final SocialMediaService socialMediaService;
+    private final BooleanSupplier quiet;
+    private final long afterDays;
+    private final int blockSize;
+    private final ScheduledExecutorService executor;
+
+    private final Counter.Child archived;
+    private final Counter.Child blocks;
+    private final Counter.Child deferred;
+    private final Counter.Child failures;
+
+    /**
+     * @param socialMediaService the service that owns the messages
+     * @param quiet tells whether the server is idle enough to archive
+     * @param afterDays how many days old a month must be before its messages are archived (0 never archives)
+     * @param blockSize the most messages per archive block
+     * @param intervalMillis how often the archiver looks for messages to archive
+     * @param registry the registry that the archive metrics are added to
+     */
+    public MessageArchiver(SocialMediaService socialMediaService, BooleanSupplier quiet, long afterDays, int blockSize,
+            long intervalMillis, MetricsRegistry registry) {
+        this.socialMediaService = socialMediaService;
+        this.quiet = quiet;
+        this.afterDays = afterDays;
+        this.blockSize = blockSize;
+
+        this.archived = registry.counter("message_archived_total", "Messages moved into the archive").labels();
+        this.blocks = registry.counter("message_archive_blocks_total", "Archive blocks written").labels();
+        this.deferred = registry.counter("message_archive_deferred_total", "Archive runs put off because the server was busy").labels();
+        this.failures = registry.counter("message_archive_failures_total", "Archive runs that failed").labels();
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("message-archiver"));
+
+        if (afterDays > 0) {
+            this.executor.scheduleWithFixedDelay(this::runOnce, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Archives blocks of messages until none are old enough, the server gets busy or the archiver is closed
+     */
+    public void runOnce() {
+        long cutoffEpoch = ZonedDateTime.now(ZoneOffset.UTC).minusDays(afterDays).withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS).toEpochSecond();
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (!quiet.getAsBoolean()) {
+                    deferred.inc();
+                    break;
+                }
+
+                int moved = socialMediaService.archiveMessages(cutoffEpoch, blockSize);
+
+                // A block ends at the end of its month, so only an empty block means there is nothing left to archive
+                if (moved == 0) {
+                    break;
+                }
+
+                blocks.inc();
+                archived.inc(moved);
+            }
+        }
+        catch (SQLException e) {
+            failures.inc();
+            logger.error("Archiving messages failed", e);
+        }
+    }
+
+    /**
+     * Stops scheduling archive runs, interrupting one in progress between blocks
+     */
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,16 @@
+package Service;
+
+import Model.Message;
+
+/**
+ * Receives every change to a message once the SocialMediaService has committed it to the database.
+ * 
+ * Listeners are called on the thread that made the change, so they must be cheap and must not block.
+ */
+public interface MessageEventListener {
+    /**
+     * @param type what happened to the message
+     * @param message the message as it is after the change (or as it was before being deleted)
+     */
+    void onMessageEvent(MessageEventType type, Message message);
+}
@@ -0,0 +1,17 @@
+package Service;
+
+/**
+ * The kinds of change to a message that the SocialMediaService announces to its MessageEventListeners
+ */
+public enum MessageEventType {
+    CREATED,
+    UPDATED,
+    DELETED;
+
+    /**
+     * @return the lower case name of the event, as used in event streams
+     */
+    public String getName() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,112 @@
+package Service;
+
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import Metrics.*;
+import Util.DaemonThreadFactory;
+
+/**
+ * Periodically removes deleted messages from the database.
+ *
+ * Deleting a message only marks it deleted, so that deletes cost no more than an update. The purger removes those
+ * tombstones later in small batches, paced to a row rate, and only while the server is quiet, so that the purge never
+ * competes with live traffic for the message table. How many tombstones are waiting is exported as a gauge so that a
+ * purge that cannot keep up is noticed.
+ */
+public class MessagePurger {
+    private static final Logger logger = LoggerFactory.getLogger(MessagePurger.class);
+
+    private final SocialMediaService socialMediaService;
+    private final BooleanSupplier quiet;
+    private final int batchSize;
+    private final double maxRowsPerSecond;
+    private final long minAgeMillis;
+    private final ScheduledExecutorService executor;
+    private final AtomicLong backlog = new AtomicLong();
+
+    private final Counter.Child purged;
+    private final Counter.Child batches;
+    private final Counter.Child deferred;
+    private final Counter.Child failures;
+
+    /**
+     * @param socialMediaService the service that owns the messages
+     * @param quiet tells whether the server is idle enough to purge
+     * @param batchSize the most messages removed per statement
+     * @param maxRowsPerSecond the most messages removed per second (0 for no limit)
+     * @param minAgeMillis how long a message stays deleted before it is removed
+     * @param intervalMillis how often the purger looks for deleted messages
+     * @param registry the registry that the purge metrics are added to
+     */
+    public MessagePurger(SocialMediaService socialMediaService, BooleanSupplier quiet, int batchSize, double maxRowsPerSecond,
+            long minAgeMillis, long intervalMillis, MetricsRegistry registry) {
+        this.socialMediaService = socialMediaService;
+        this.quiet = quiet;
+        this.batchSize = batchSize;
+        this.maxRowsPerSecond = maxRowsPerSecond;
+        this.minAgeMillis = minAgeMillis;
+
+        this.purged = registry.counter("message_purged_total", "Deleted messages removed from the database").labels();
+        this.batches = registry.counter("message_purge_batches_total", "Batches of deleted messages removed").labels();
+        this.deferred = registry.counter("message_purge_deferred_total", "Purge batches put off because the server was busy").labels();
+        this.failures = registry.counter("message_purge_failures_total", "Purge runs that failed").labels();
+        registry.gauge("message_purge_backlog", "Deleted messages waiting to be removed, as of the latest purge run").labels().set(backlog::get);
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("message-purger"));
+        this.executor.scheduleWithFixedDelay(this::runOnce, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Removes batches of deleted messages until none are old enough, the server gets busy or the purger is closed
+     */
+    public void runOnce() {
+        long deletedBefore = System.currentTimeMillis() - minAgeMillis;
+        long pauseNanos = maxRowsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) * batchSize / maxRowsPerSecond) : 0;
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (!quiet.getAsBoolean()) {
+                    deferred.inc();
+                    break;
+                }
+
+                long started = System.nanoTime();
+                int removed = socialMediaService.purgeDeletedMessages(deletedBefore, batchSize);
+
+                if (removed > 0) {
+                    batches.inc();
+                    purged.inc(removed);
+                }
+
+                if (removed < batchSize) {
+                    break;
+                }
+
+                // Pace the batches so that the purge stays under its row rate
+                TimeUnit.NANOSECONDS.sleep(Math.max(0, pauseNanos - (System.nanoTime() - started)));
+            }
+
+            backlog.set(socialMediaService.countDeletedMessages());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (SQLException e) {
+            failures.inc();
+            logger.error("Purging deleted messages failed", e);
+        }
+    }
+
+    /**
+     * Stops scheduling purges, interrupting one in progress between batches
+     */
+    public void close() {
+        executor.shutdownNow();
+    }
+}
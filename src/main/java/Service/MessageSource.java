@@ -0,0 +1,15 @@
+package Service;
+
+import java.io.IOException;
+
+/**
+ * Supplies the records of a bulk message import one at a time, reading more input only when asked for the next
+ * record.
+ */
+public interface MessageSource {
+    /**
+     * @return the next record, or null once the input is exhausted
+     * @throws IOException if the input cannot be read or is not well-formed, which stops the import
+     */
+    ImportRecord next() throws IOException;
+}
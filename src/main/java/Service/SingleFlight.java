@@ -0,0 +1,66 @@
+package Service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import Metrics.Counter;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller runs the load and every caller that arrives while it
+ * is in flight waits for and shares its result instead of running the load again.
+ * 
+ * Nothing is remembered once the load finishes - caching the result is up to the caller.
+ * 
+ * @param <K> the type of the keys
+ * @param <V> the type of the loaded values
+ */
+public class SingleFlight<K, V> {
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter.Child absorbed;
+
+    /**
+     * @param absorbed counts the calls that shared another call's load instead of running their own
+     */
+    public SingleFlight(Counter.Child absorbed) {
+        this.absorbed = absorbed;
+    }
+
+    /**
+     * Loads the value of a key, or waits for the load of the same key that is already in flight
+     * 
+     * @param key the key to load
+     * @param loader loads the value (may return null)
+     * @return the loaded value
+     */
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+
+        if (existing != null) {
+            absorbed.inc();
+
+            try {
+                return existing.join();
+            }
+            catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
+        try {
+            V value = loader.get();
+            future.complete(value);
+
+            return value;
+        }
+        catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        }
+        finally {
+            inFlight.remove(key, future);
+        }
+    }
+}
@@ -1,17 +1,117 @@
 package Service;
 
+import DAO.RowConsumer;
 import DAO.SocialMediaDAO;
+import java.io.IOException;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import Metrics.*;
 import Model.*;
 
 public class SocialMediaService {
     private SocialMediaDAO socialMediaDao;
+    private TtlCache<Integer, Message> messageCache;
+    private TtlCache<Integer, ArrayList<Message>> userMessagesCache;
+    private TtlCache<Integer, Account> accountCache;
+    private TtlCache<Integer, AccountStats> accountStatsCache;
+    private SingleFlight<Integer, Message> messageLoads;
+    private SingleFlight<Integer, ArrayList<Message>> userMessagesLoads;
+
+    /**
+     * Incremented after every write to the message table, so that a load which overlapped a write can tell that
+     * its result may be stale and must not be cached
+     */
+    private AtomicLong writeGeneration = new AtomicLong();
+
+    /**
+     * The number of rows an export fetches from the database at a time
+     */
+    private int exportFetchSize = Integer.getInteger("export.fetchSize", 1_000);
+
+    /**
+     * The number of accounts or messages that cache warming loads at a time
+     */
+    private static final int WARM_PAGE_SIZE = 100;
+
+    private List<Consumer<Account>> accountListeners = new CopyOnWriteArrayList<>();
+    private List<MessageEventListener> messageEventListeners = new CopyOnWriteArrayList<>();
+    private List<IntConsumer> messageReadListeners = new CopyOnWriteArrayList<>();
 
     /**
      * Creates a new SocialMediaService object
      */
     public SocialMediaService() {
-        socialMediaDao = new SocialMediaDAO();
+        this(new SocialMediaDAO());
+    }
+
+    /**
+     * Creates a new SocialMediaService object that uses the supplied DAO
+     * 
+     * @param socialMediaDao the DAO used to access the application's database
+     */
+    public SocialMediaService(SocialMediaDAO socialMediaDao) {
+        this(socialMediaDao, new MetricsRegistry());
+    }
+
+    /**
+     * Creates a new SocialMediaService object that uses the supplied DAO and reports its cache metrics to the
+     * supplied registry
+     * 
+     * @param socialMediaDao the DAO used to access the application's database
+     * @param metricsRegistry the registry that cache and request coalescing metrics are added to
+     */
+    public SocialMediaService(SocialMediaDAO socialMediaDao, MetricsRegistry metricsRegistry) {
+        this.socialMediaDao = socialMediaDao;
+        this.messageCache = new TtlCache<>("messages", Long.getLong("cache.messages.ttlMillis", 30_000),
+                Integer.getInteger("cache.messages.maxSize", 100_000), metricsRegistry);
+        this.userMessagesCache = new TtlCache<>("user_messages", Long.getLong("cache.userMessages.ttlMillis", 30_000),
+                Integer.getInteger("cache.userMessages.maxSize", 10_000), metricsRegistry);
+        this.accountCache = new TtlCache<>("accounts", Long.getLong("cache.accounts.ttlMillis", 300_000),
+                Integer.getInteger("cache.accounts.maxSize", 100_000), metricsRegistry);
+        this.accountStatsCache = new TtlCache<>("account_stats", Long.getLong("cache.accountStats.ttlMillis", 30_000),
+                Integer.getInteger("cache.accountStats.maxSize", 100_000), metricsRegistry);
+
+        Counter absorbed = metricsRegistry.counter("singleflight_absorbed_total", "Lookups that shared a concurrent identical database call", "operation");
+        this.messageLoads = new SingleFlight<>(absorbed.labels("getMessageById"));
+        this.userMessagesLoads = new SingleFlight<>(absorbed.labels("getAllMessagesByUser"));
+    }
+
+    /**
+     * Registers a listener to be told about every account that is added from now on
+     * 
+     * @param listener the listener to add
+     */
+    public void addAccountListener(Consumer<Account> listener) {
+        accountListeners.add(listener);
+    }
+
+    /**
+     * Registers a listener to be told about every message that is created, updated or deleted from now on
+     * 
+     * @param listener the listener to add
+     */
+    public void addMessageEventListener(MessageEventListener listener) {
+        messageEventListeners.add(listener);
+    }
+
+    /**
+     * Registers a listener to be told the ID of every message that getMessageById serves from now on
+     * 
+     * Listeners are called on the thread that read the message, so they must be cheap and must not block.
+     * 
+     * @param listener the listener to add
+     */
+    public void addMessageReadListener(IntConsumer listener) {
+        messageReadListeners.add(listener);
     }
 
     /**
@@ -41,7 +141,15 @@ public class SocialMediaService {
         }
 
         // Add an account using the desired username and password fields
-        return socialMediaDao.addAccount(accountToAdd.getUsername(), accountToAdd.getPassword());
+        Account addedAccount = socialMediaDao.addAccount(accountToAdd.getUsername(), accountToAdd.getPassword());
+
+        if (addedAccount != null) {
+            for (Consumer<Account> listener : accountListeners) {
+                listener.accept(addedAccount);
+            }
+        }
+
+        return addedAccount;
     }
 
     /**
@@ -56,7 +164,7 @@ public class SocialMediaService {
      */
     public Message addMessage(Message messageToAdd) {
         // Reject messages that fail to meet the necessary message length conditions
-        if (messageToAdd.getMessage_text().length() == 0 || messageToAdd.getMessage_text().length() >= 255) {
+        if (!isValidMessageText(messageToAdd.getMessage_text())) {
             return null;
         }
 
@@ -66,28 +174,201 @@ public class SocialMediaService {
         }
 
         // Add a message using the desired posted_by, message_text, and time_posted_epoch fields
-        return socialMediaDao.addMessage(messageToAdd.getPosted_by(), messageToAdd.getMessage_text(), messageToAdd.getTime_posted_epoch());
+        Message addedMessage = socialMediaDao.addMessage(messageToAdd.getPosted_by(), messageToAdd.getMessage_text(), messageToAdd.getTime_posted_epoch());
+
+        // The poster's cached message list no longer includes every message
+        if (addedMessage != null) {
+            invalidateCachedMessage(addedMessage);
+            publishMessageEvent(MessageEventType.CREATED, addedMessage);
+        }
+
+        return addedMessage;
+    }
+
+    /**
+     * Adds changes in the number of messages posted to the persisted activity rollups
+     * 
+     * @param hourly the change in messages posted in each hour, by the epoch second the hour starts at
+     * @param dailyByPoster the change in messages posted by each account on each day, by the epoch second the day
+     *        starts at and then by account ID
+     * @throws SQLException if the changes could not be saved, in which case none were
+     */
+    public void addToActivityRollups(Map<Long, Long> hourly, Map<Long, Map<Integer, Long>> dailyByPoster) throws SQLException {
+        socialMediaDao.addToActivityRollups(hourly, dailyByPoster);
+    }
+
+    /**
+     * Moves a block of messages posted before a time into the compressed archive
+     * 
+     * Archived messages read the same as before, so nothing that clients can see changes and no cache needs to be
+     * invalidated. They can still be deleted, but no longer updated.
+     * 
+     * @param postedBeforeEpoch only messages with an earlier time_posted_epoch are archived
+     * @param blockSize the most messages to archive
+     * @return the number of messages archived (0 once none are old enough)
+     * @throws SQLException if the messages could not be archived
+     */
+    public int archiveMessages(long postedBeforeEpoch, int blockSize) throws SQLException {
+        return socialMediaDao.archiveMessages(postedBeforeEpoch, blockSize);
+    }
+
+    /**
+     * Removes change log entries that were superseded by a later change to the same message, keeping only the
+     * latest change of every message among the entries older than a time
+     * 
+     * @param olderThanMillis the epoch time in milliseconds before which entries are compacted
+     * @return the number of entries removed
+     * @throws SQLException if the log could not be compacted
+     */
+    public int compactChangeLog(long olderThanMillis) throws SQLException {
+        long throughSeq = socialMediaDao.getLastChangeSeqBefore(olderThanMillis);
+
+        return throughSeq > 0 ? socialMediaDao.compactChangeLog(throughSeq) : 0;
+    }
+
+    /**
+     * Counts the distinct accounts that posted a message within a range of time, exactly, by scanning the messages
+     * 
+     * @param fromEpoch the first time_posted_epoch of the range
+     * @param toEpoch the time_posted_epoch that the range ends before
+     * @return the number of distinct posters
+     * @throws SQLException if they could not be counted
+     */
+    public long countActivePosters(long fromEpoch, long toEpoch) throws SQLException {
+        return socialMediaDao.countActivePosters(fromEpoch, toEpoch);
+    }
+
+    /**
+     * Counts the deleted messages that are still waiting to be purged
+     * 
+     * @return the number of deleted messages not yet purged
+     * @throws SQLException if they could not be counted
+     */
+    public long countDeletedMessages() throws SQLException {
+        return socialMediaDao.countDeletedMessages();
     }
 
     /**
      * Attempts to delete a message by ID from the application's database
      * 
+     * Archived messages can be deleted as well.
+     * 
      * @param id the ID of the message to delete
-     * @return the Message with a matching ID, or null if a matching Message record is not found
+     * @return the Message with a matching ID, or null if a matching Message record is not found or another request
+     *         deleted it first
      */
     public Message deleteMessageById(int id) {
         // Get the message by ID if it exists - deleting the message would not return it, so it needs to be obtained now
         Message returnedMessage = socialMediaDao.getMessageById(id);
 
-        // If the message exists, then delete it
+        // If the message exists, then delete it, and only report it deleted if this request is the one that deleted it
         if (returnedMessage != null)
         {
-            socialMediaDao.deleteMessageById(id);
+            if (socialMediaDao.deleteMessageById(id) != 1) {
+                return null;
+            }
+
+            invalidateCachedMessage(returnedMessage);
+            publishMessageEvent(MessageEventType.DELETED, returnedMessage);
         }
 
         return returnedMessage;
     }
 
+    /**
+     * Streams every account registered after a checkpoint, in ID order, without reading them all into memory
+     * 
+     * @param afterAccountId only accounts with a greater ID are streamed (0 streams every account)
+     * @param consumer receives each account, without its password, as it is read from the database
+     * @throws SQLException if the database query fails
+     * @throws IOException if the consumer fails, which stops the export
+     */
+    public void exportAccounts(int afterAccountId, RowConsumer<Account> consumer) throws SQLException, IOException {
+        socialMediaDao.exportAccounts(afterAccountId, exportFetchSize, consumer);
+    }
+
+    /**
+     * Streams every message posted after a checkpoint, in ID order, without reading them all into memory
+     * 
+     * @param afterMessageId only messages with a greater ID are streamed (0 streams every message)
+     * @param consumer receives each message as it is read from the database
+     * @throws SQLException if the database query fails
+     * @throws IOException if the consumer fails, which stops the export
+     */
+    public void exportMessages(int afterMessageId, RowConsumer<Message> consumer) throws SQLException, IOException {
+        socialMediaDao.exportMessages(afterMessageId, exportFetchSize, consumer);
+    }
+
+    /**
+     * Gets the message statistics of an account from the cache or the application's database
+     * 
+     * @param id the ID of the account
+     * @return the statistics, or null if the account does not exist
+     */
+    public AccountStats getAccountStats(int id) {
+        AccountStats cachedStats = accountStatsCache.get(id);
+
+        if (cachedStats != null) {
+            return cachedStats;
+        }
+
+        long generation = writeGeneration.get();
+        AccountStats loadedStats = socialMediaDao.getAccountStats(id);
+
+        // Only cache the statistics if no message was written while they loaded, since the write may have changed them
+        if (loadedStats != null) {
+            cacheIfUnwritten(accountStatsCache, id, loadedStats, generation);
+        }
+
+        return loadedStats;
+    }
+
+    /**
+     * Gets the accounts with the requested IDs, reading only the IDs that are not cached from the application's
+     * database (in a single query)
+     * 
+     * Accounts are never changed once registered, so they are cached without invalidation.
+     * 
+     * @param ids the IDs of the accounts to get
+     * @return the accounts in the requested order, without their passwords (IDs of accounts that do not exist are skipped)
+     */
+    public ArrayList<Account> getAccountsByIds(List<Integer> ids) {
+        Map<Integer, Account> foundAccounts = new HashMap<>();
+        ArrayList<Integer> missingIds = new ArrayList<>();
+
+        for (int id : new LinkedHashSet<>(ids)) {
+            Account cachedAccount = accountCache.get(id);
+
+            if (cachedAccount != null) {
+                foundAccounts.put(id, cachedAccount);
+            }
+            else {
+                missingIds.add(id);
+            }
+        }
+
+        if (!missingIds.isEmpty()) {
+            for (Account loadedAccount : socialMediaDao.getAccountsByIds(missingIds)) {
+                foundAccounts.put(loadedAccount.getAccount_id(), loadedAccount);
+                accountCache.put(loadedAccount.getAccount_id(), loadedAccount);
+            }
+        }
+
+        return inRequestedOrder(ids, foundAccounts);
+    }
+
+    /**
+     * Gets the persisted active poster sketches of the days in a range
+     * 
+     * @param fromDayStart the start of the first day
+     * @param toDayStart the start of the last day
+     * @return the serialized sketch of each day that has one, by the epoch second the day starts at
+     * @throws SQLException if the sketches could not be read
+     */
+    public Map<Long, byte[]> getActivePosterSketches(long fromDayStart, long toDayStart) throws SQLException {
+        return socialMediaDao.getActivePosterSketches(fromDayStart, toDayStart);
+    }
+
     /**
      * Gets all messages from the application's database
      * 
@@ -98,23 +379,203 @@ public class SocialMediaService {
     }
 
     /**
-     * Gets all messages of a user with the requested account ID from the application's database
+     * Gets all messages of a user with the requested account ID from the cache or the application's database
+     * 
+     * Concurrent lookups of the same account that miss the cache share a single database call.
      * 
      * @param id the ID of the user to get all messages from
      * @return a list of every message posted by the account with the requested ID (empty if the account does not exist)
      */
     public ArrayList<Message> getAllMessagesByUser(int id) {
-        return socialMediaDao.getAllMessagesByUser(id);
+        ArrayList<Message> messageList = userMessagesCache.get(id);
+
+        if (messageList == null) {
+            messageList = userMessagesLoads.execute(id, () -> {
+                long generation = writeGeneration.get();
+                ArrayList<Message> loadedList = socialMediaDao.getAllMessagesByUser(id);
+
+                // Only cache the list if no message was written while it loaded, since the write may have changed it
+                cacheIfUnwritten(userMessagesCache, id, loadedList, generation);
+
+                return loadedList;
+            });
+        }
+
+        // The cached list is shared, so callers get their own copy
+        return new ArrayList<>(messageList);
+    }
+
+    /**
+     * Gets the highest change log sequence number that has been removed by retention. Readers that have not yet
+     * seen every change up to it have missed changes and must resynchronize from an export.
+     * 
+     * @return the sequence number, or 0 if the log has never been truncated
+     * @throws SQLException if the log could not be read
+     */
+    public long getChangeLogTruncatedThrough() throws SQLException {
+        return socialMediaDao.getChangeLogTruncatedThrough();
+    }
+
+    /**
+     * Gets the changes to messages committed after a position in the change log, oldest first
+     * 
+     * @param afterSeq only changes with a greater sequence number are returned (0 returns the log from the start)
+     * @param limit the maximum number of changes to return
+     * @return a list of MessageChange objects
+     */
+    public ArrayList<MessageChange> getChangesAfter(long afterSeq, int limit) {
+        return socialMediaDao.getChangesAfter(afterSeq, limit);
+    }
+
+    /**
+     * Gets the persisted number of messages posted by each account on each day
+     * 
+     * @return the counts by the epoch second the day starts at, then by account ID
+     * @throws SQLException if the rollup could not be read
+     */
+    public Map<Long, Map<Integer, Long>> getDailyPosterActivity() throws SQLException {
+        return socialMediaDao.getDailyPosterActivity();
     }
 
     /**
-     * Attempts to get a message by ID from the application's database
+     * Gets the persisted number of messages posted in each hour
+     * 
+     * @return the counts by the epoch second the hour starts at
+     * @throws SQLException if the rollup could not be read
+     */
+    public Map<Long, Long> getHourlyActivity() throws SQLException {
+        return socialMediaDao.getHourlyActivity();
+    }
+
+    /**
+     * Gets the sequence number of the latest change in the change log
+     * 
+     * @return the sequence number, which is never lower than the truncation point
+     * @throws SQLException if the log could not be read
+     */
+    public long getLatestChangeSeq() throws SQLException {
+        return Math.max(socialMediaDao.getLatestChangeSeq(), socialMediaDao.getChangeLogTruncatedThrough());
+    }
+
+    /**
+     * Attempts to get a message by ID from the cache or the application's database
+     * 
+     * Concurrent lookups of the same message that miss the cache share a single database call. Every message that
+     * is found is reported to the message read listeners.
      * 
      * @param id the ID of the message to query for
      * @return the Message with a matching ID, or null if a matching Message record is not found
      */
     public Message getMessageById(int id) {
-        return socialMediaDao.getMessageById(id);
+        Message message = messageCache.get(id);
+
+        if (message == null) {
+            message = messageLoads.execute(id, () -> {
+                long generation = writeGeneration.get();
+                Message loadedMessage = socialMediaDao.getMessageById(id);
+
+                // Only cache the message if no message was written while it loaded, since the write may have changed it
+                if (loadedMessage != null) {
+                    cacheIfUnwritten(messageCache, id, loadedMessage, generation);
+                }
+
+                return loadedMessage;
+            });
+        }
+
+        if (message != null) {
+            for (IntConsumer listener : messageReadListeners) {
+                listener.accept(id);
+            }
+        }
+
+        return message;
+    }
+
+    /**
+     * Gets the messages with the requested IDs, reading only the IDs that are not cached from the application's
+     * database (in a single query)
+     * 
+     * @param ids the IDs of the messages to get
+     * @return the messages in the requested order (IDs of messages that do not exist are skipped)
+     */
+    public ArrayList<Message> getMessagesByIds(List<Integer> ids) {
+        Map<Integer, Message> foundMessages = new HashMap<>();
+        ArrayList<Integer> missingIds = new ArrayList<>();
+
+        for (int id : new LinkedHashSet<>(ids)) {
+            Message cachedMessage = messageCache.get(id);
+
+            if (cachedMessage != null) {
+                foundMessages.put(id, cachedMessage);
+            }
+            else {
+                missingIds.add(id);
+            }
+        }
+
+        if (!missingIds.isEmpty()) {
+            long generation = writeGeneration.get();
+            ArrayList<Message> loadedMessages = socialMediaDao.getMessagesByIds(missingIds);
+
+            // Only cache the messages if no message was written while they loaded, since the write may have changed them
+            for (Message loadedMessage : loadedMessages) {
+                foundMessages.put(loadedMessage.getMessage_id(), loadedMessage);
+                cacheIfUnwritten(messageCache, loadedMessage.getMessage_id(), loadedMessage, generation);
+            }
+        }
+
+        return inRequestedOrder(ids, foundMessages);
+    }
+
+    /**
+     * Gets the ID of the account that posted a message, for checking its limits before the message is changed
+     * 
+     * Unlike getMessageById, this is not a read of the message: read listeners are not told about it and a message
+     * loaded from the database is not cached.
+     * 
+     * @param id the ID of the message
+     * @return the ID of the account that posted it, or null if it does not exist
+     */
+    public Integer getPosterOfMessage(int id) {
+        Message message = messageCache.get(id);
+
+        if (message == null) {
+            message = socialMediaDao.getMessageById(id);
+        }
+
+        return message == null ? null : message.getPosted_by();
+    }
+
+    /**
+     * Imports messages in bulk, validating each record with the same rules as addMessage and inserting the valid
+     * ones in batched transactions.
+     * 
+     * Each batch is committed before the next record is read, so the source is read no faster than the database
+     * can take its messages. Batches that were committed stay committed if the import stops early.
+     * 
+     * @param source supplies the records to import
+     * @param batchSize the number of records to validate and insert per transaction
+     * @param summary counts the imported and rejected records, and is up to date even if the import stops early
+     * @throws IOException if the source fails, which stops the import
+     * @throws SQLException if a batch could not be inserted, which stops the import
+     */
+    public void importMessages(MessageSource source, int batchSize, ImportSummary summary) throws IOException, SQLException {
+        ArrayList<ImportRecord> batch = new ArrayList<>(batchSize);
+        ImportRecord record;
+
+        while ((record = source.next()) != null) {
+            batch.add(record);
+
+            if (batch.size() >= batchSize) {
+                importBatch(batch, summary);
+                batch.clear();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            importBatch(batch, summary);
+        }
     }
 
     /**
@@ -131,30 +592,312 @@ public class SocialMediaService {
         return socialMediaDao.getAccountByCredentials(accountToAdd.getUsername(), accountToAdd.getPassword());
     }
 
+    /**
+     * Pins messages in the message cache, so that they are not evicted to make room for others, replacing the
+     * messages pinned before
+     * 
+     * Pinned messages still expire and are still invalidated by writes; they are cached again on their next read.
+     * 
+     * @param ids the IDs of the messages to pin
+     */
+    public void pinMessages(List<Integer> ids) {
+        messageCache.pin(ids);
+    }
+
+    /**
+     * Physically removes a batch of messages that were deleted before a time
+     * 
+     * Deleted messages are already hidden from every read, so this only reclaims their space and changes nothing
+     * that clients can see.
+     * 
+     * @param deletedBeforeMillis the epoch time in milliseconds before which deleted messages are removed
+     * @param limit the most messages to remove
+     * @return the number of messages removed
+     * @throws SQLException if the messages could not be removed
+     */
+    public int purgeDeletedMessages(long deletedBeforeMillis, int limit) throws SQLException {
+        return socialMediaDao.purgeDeletedMessages(deletedBeforeMillis, limit);
+    }
+
+    /**
+     * Corrects the message statistics of every account whose statistics no longer match its messages, and drops
+     * the cached statistics of those accounts
+     * 
+     * @return the IDs of the accounts whose statistics had drifted
+     * @throws SQLException if the statistics could not be reconciled
+     */
+    public ArrayList<Integer> reconcileAccountStats() throws SQLException {
+        ArrayList<Integer> correctedIds = socialMediaDao.reconcileAccountStats();
+
+        if (!correctedIds.isEmpty()) {
+            writeGeneration.incrementAndGet();
+
+            for (int id : correctedIds) {
+                accountStatsCache.invalidate(id);
+            }
+        }
+
+        return correctedIds;
+    }
+
+    /**
+     * Writes the active poster sketches of days, replacing the sketches persisted for those days
+     * 
+     * @param sketches the serialized sketch of each day, by the epoch second the day starts at
+     * @throws SQLException if the sketches could not be written, in which case none were
+     */
+    public void saveActivePosterSketches(Map<Long, byte[]> sketches) throws SQLException {
+        socialMediaDao.saveActivePosterSketches(sketches);
+    }
+
+    /**
+     * Streams the distinct posters of every day that has messages but no persisted active poster sketch
+     * 
+     * @param consumer receives the start of the day and the ID of an account that posted on it, for each pair
+     * @throws SQLException if the query fails
+     * @throws IOException if the consumer fails, which stops the scan
+     */
+    public void scanPostersOfUnsketchedDays(RowConsumer<long[]> consumer) throws SQLException, IOException {
+        socialMediaDao.scanPostersOfUnsketchedDays(consumer);
+    }
+
+    /**
+     * Removes every change log entry older than a time, and records how far the log has been truncated
+     * 
+     * @param olderThanMillis the epoch time in milliseconds before which entries are removed
+     * @return the number of entries removed
+     * @throws SQLException if the log could not be truncated
+     */
+    public int truncateChangeLog(long olderThanMillis) throws SQLException {
+        long throughSeq = socialMediaDao.getLastChangeSeqBefore(olderThanMillis);
+
+        return throughSeq > 0 ? socialMediaDao.truncateChangeLog(throughSeq) : 0;
+    }
+
     /**
      * Attempts to update the text of a message by ID from the application's database
      * 
+     * The text of an archived message is compressed together with the other messages of its month and cannot be
+     * changed, so archived messages are not found. They can still be deleted.
+     * 
      * @param id the ID of the message to delete
      * @param newMessage the new text to update the Message with
      * @return the updated Message or null if a matching Message record is not found
      */
     public Message updateMessageById(int id, String newMessage) {
         // Reject new messages that fail to meet the necessary message length conditions
-        if (newMessage.length() == 0 || newMessage.length() >= 255) {
+        if (!isValidMessageText(newMessage)) {
             return null;
         }
 
         // Get the message by ID if it exists - updating the message would not return it, so it needs to be obtained now
-        Message returnedMessage = socialMediaDao.getMessageById(id);
+        Message returnedMessage = socialMediaDao.getWritableMessageById(id);
 
         // If the message exists, then update it
         if (returnedMessage != null) {
             socialMediaDao.updateMessageById(id, newMessage);
+            invalidateCachedMessage(returnedMessage);
 
             // Replace returnedMessage with the updated message data to verify that message_text was changed
-            returnedMessage = socialMediaDao.getMessageById(id);
+            returnedMessage = socialMediaDao.getWritableMessageById(id);
+
+            if (returnedMessage != null) {
+                publishMessageEvent(MessageEventType.UPDATED, returnedMessage);
+            }
         }
 
         return returnedMessage;
     }
+
+    /**
+     * Loads the accounts that post the most, and their statistics, into the caches ahead of traffic
+     * 
+     * @param limit the most accounts to load
+     * @return the number of accounts loaded
+     */
+    public int warmAccountCaches(int limit) {
+        ArrayList<Integer> ids = socialMediaDao.getMostActiveAccountIds(limit);
+
+        for (int start = 0; start < ids.size(); start += WARM_PAGE_SIZE) {
+            List<Integer> page = ids.subList(start, Math.min(ids.size(), start + WARM_PAGE_SIZE));
+
+            // getAccountsByIds and getAccountStats cache what they load
+            getAccountsByIds(page);
+
+            for (int id : page) {
+                getAccountStats(id);
+            }
+        }
+
+        return ids.size();
+    }
+
+    /**
+     * Loads the most recently added messages into the message cache ahead of traffic, a page at a time
+     * 
+     * A page that a message write overlapped is not cached, since the write may have changed it.
+     * 
+     * @param limit the most messages to load
+     * @return the number of messages cached
+     */
+    public int warmMessageCache(int limit) {
+        int read = 0;
+        int cached = 0;
+        int beforeMessageId = Integer.MAX_VALUE;
+
+        while (read < limit) {
+            long generation = writeGeneration.get();
+            ArrayList<Message> page = socialMediaDao.getRecentMessages(beforeMessageId, Math.min(WARM_PAGE_SIZE, limit - read));
+
+            if (page.isEmpty()) {
+                break;
+            }
+
+            read += page.size();
+
+            for (Message message : page) {
+                if (cacheIfUnwritten(messageCache, message.getMessage_id(), message, generation)) {
+                    cached++;
+                }
+            }
+
+            beforeMessageId = page.get(page.size() - 1).getMessage_id();
+        }
+
+        return cached;
+    }
+
+    /**
+     * Caches a value loaded from the database unless a message was written since the load began
+     * 
+     * The generation is checked again after the put: a write that bumped it between the first check and the put
+     * may have invalidated the key before the put, so the entry is removed rather than left stale until it expires.
+     * 
+     * @param cache the cache to put the value in
+     * @param key the key of the value
+     * @param value the value that was loaded
+     * @param generation the write generation read before the load began
+     * @return true if the value was left cached
+     */
+    private <K, V> boolean cacheIfUnwritten(TtlCache<K, V> cache, K key, V value, long generation) {
+        if (writeGeneration.get() != generation) {
+            return false;
+        }
+
+        cache.put(key, value);
+
+        if (writeGeneration.get() != generation) {
+            cache.invalidate(key);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Validates a batch of import records and inserts the valid ones in a single transaction
+     * 
+     * @param batch the records to import
+     * @param summary counts the imported and rejected records
+     * @throws SQLException if the batch could not be inserted
+     */
+    private void importBatch(List<ImportRecord> batch, ImportSummary summary) throws SQLException {
+        // Look up every posting account of the batch at once rather than once per record
+        ArrayList<Integer> postedByIds = new ArrayList<>();
+
+        for (ImportRecord record : batch) {
+            if (record.getMessage() != null) {
+                postedByIds.add(record.getMessage().getPosted_by());
+            }
+        }
+
+        HashSet<Integer> existingAccountIds = new HashSet<>();
+
+        for (Account account : getAccountsByIds(postedByIds)) {
+            existingAccountIds.add(account.getAccount_id());
+        }
+
+        // Reject the records that addMessage would reject, keeping the rest in input order
+        ArrayList<Message> messagesToAdd = new ArrayList<>(batch.size());
+
+        for (ImportRecord record : batch) {
+            Message message = record.getMessage();
+
+            if (message == null || !isValidMessageText(message.getMessage_text()) || !existingAccountIds.contains(message.getPosted_by())) {
+                summary.addRejected(record.getLine());
+            }
+            else {
+                messagesToAdd.add(message);
+            }
+        }
+
+        if (messagesToAdd.isEmpty()) {
+            return;
+        }
+
+        ArrayList<Message> addedMessages = socialMediaDao.addMessages(messagesToAdd);
+        summary.addImported(addedMessages.size());
+
+        for (Message addedMessage : addedMessages) {
+            invalidateCachedMessage(addedMessage);
+            publishMessageEvent(MessageEventType.CREATED, addedMessage);
+        }
+    }
+
+    /**
+     * Lists the values found for the requested IDs in the order they were requested
+     * 
+     * @param ids the requested IDs
+     * @param found the values that were found, by ID
+     * @return a value for each requested ID that was found (repeated IDs are repeated)
+     */
+    private static <T> ArrayList<T> inRequestedOrder(List<Integer> ids, Map<Integer, T> found) {
+        ArrayList<T> orderedList = new ArrayList<>(ids.size());
+
+        for (int id : ids) {
+            T value = found.get(id);
+
+            if (value != null) {
+                orderedList.add(value);
+            }
+        }
+
+        return orderedList;
+    }
+
+    /**
+     * Removes a message, and the cached message list and statistics of the account that posted it, from the caches
+     * after the message was written to the database
+     * 
+     * @param message the message that was added, updated or deleted
+     */
+    private void invalidateCachedMessage(Message message) {
+        // Bump the generation first so that loads which read the old row do not cache it after it is invalidated
+        writeGeneration.incrementAndGet();
+        messageCache.invalidate(message.getMessage_id());
+        userMessagesCache.invalidate(message.getPosted_by());
+        accountStatsCache.invalidate(message.getPosted_by());
+    }
+
+    /**
+     * Checks the message text rule shared by adding, updating and importing messages
+     * 
+     * @param messageText the text of a message (may be null)
+     * @return true if the text is between 1 and 254 (inclusive) characters long
+     */
+    private static boolean isValidMessageText(String messageText) {
+        return messageText != null && messageText.length() > 0 && messageText.length() < 255;
+    }
+
+    /**
+     * Tells every registered listener about a change to a message that has been committed
+     * 
+     * @param type what happened to the message
+     * @param message the message as it is after the change (or as it was before being deleted)
+     */
+    private void publishMessageEvent(MessageEventType type, Message message) {
+        for (MessageEventListener listener : messageEventListeners) {
+            listener.onMessageEvent(type, message);
+        }
+    }
 }
@@ -0,0 +1,157 @@
+package Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import Metrics.*;
+import Model.Message;
+import Util.DaemonThreadFactory;
+
+/**
+ * Tracks the terms that are trending in newly posted messages and the messages that are read most, within a sliding
+ * window of time, without reading the message table.
+ *
+ * Terms are the runs of letters and digits in the text of created messages, lowercased, counted once per message.
+ * Terms shorter than MIN_TERM_LENGTH characters (mostly stop words) or longer than MAX_TERM_LENGTH are skipped.
+ * Reads are counted as getMessageById serves them, cached or not. Both are counted by HeavyHitters, so memory stays
+ * fixed however many distinct terms and messages there are.
+ *
+ * Once per slice of the window the hottest messages are pinned in the message cache, so that a burst of reads of
+ * other messages cannot evict them.
+ */
+public class TrendingTracker implements MessageEventListener {
+    public static final int MIN_TERM_LENGTH = 3;
+    public static final int MAX_TERM_LENGTH = 32;
+
+    private final SocialMediaService socialMediaService;
+    private final HeavyHitters<String> terms;
+    private final HeavyHitters<Integer> messageReads;
+    private final int topK;
+    private final int pinnedMessages;
+    private final ScheduledExecutorService executor;
+
+    /**
+     * @param socialMediaService the service whose message cache the hottest messages are pinned in
+     * @param windowMillis the length of the sliding window
+     * @param sliceCount the number of slices the window is split into
+     * @param width the counters per row of each slice's sketch
+     * @param depth the rows of each slice's sketch
+     * @param topK the most terms and messages reported
+     * @param pinnedMessages how many of the hottest messages to pin in the message cache (0 pins none)
+     * @param registry the registry that the tracking metrics are added to
+     */
+    public TrendingTracker(SocialMediaService socialMediaService, long windowMillis, int sliceCount, int width, int depth, int topK,
+            int pinnedMessages, MetricsRegistry registry) {
+        this.socialMediaService = socialMediaService;
+        this.topK = topK;
+        this.pinnedMessages = Math.min(pinnedMessages, topK);
+
+        // Keep a few times as many candidates as are reported, so that keys near the cut are not lost to churn
+        this.terms = new HeavyHitters<>(windowMillis, sliceCount, width, depth, topK * 4, CountMinSketch::hash);
+        this.messageReads = new HeavyHitters<>(windowMillis, sliceCount, width, depth, topK * 4, CountMinSketch::hash);
+
+        registry.gauge("trending_sketch_counters", "Count-Min Sketch counters held for trending terms and message reads").labels()
+                .set(() -> 2L * sliceCount * width * depth);
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("trending-pinner"));
+
+        if (this.pinnedMessages > 0) {
+            long sliceMillis = messageReads.getSliceMillis();
+            this.executor.scheduleWithFixedDelay(this::runOnce, sliceMillis, sliceMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @param limit the most messages to return
+     * @return the IDs of the messages read most within the window, with their estimated read counts, highest first
+     */
+    public List<HeavyHitters.Hitter<Integer>> getHotMessages(int limit) {
+        return messageReads.top(Math.min(limit, topK), System.currentTimeMillis());
+    }
+
+    /**
+     * @param limit the most terms to return
+     * @return the terms posted most within the window, with their estimated message counts, highest first
+     */
+    public List<HeavyHitters.Hitter<String>> getTrendingTerms(int limit) {
+        return terms.top(Math.min(limit, topK), System.currentTimeMillis());
+    }
+
+    /**
+     * Counts the terms of a created message
+     */
+    @Override
+    public void onMessageEvent(MessageEventType type, Message message) {
+        if (type != MessageEventType.CREATED) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+
+        for (String term : terms(message.getMessage_text())) {
+            terms.add(term, now);
+        }
+    }
+
+    /**
+     * Counts a read of a message
+     *
+     * @param messageId the ID of the message that was served
+     */
+    public void recordMessageRead(int messageId) {
+        messageReads.add(messageId, System.currentTimeMillis());
+    }
+
+    /**
+     * Pins the hottest messages in the message cache, unpinning those that have cooled
+     */
+    public void runOnce() {
+        ArrayList<Integer> hotIds = new ArrayList<>(pinnedMessages);
+
+        for (HeavyHitters.Hitter<Integer> hitter : getHotMessages(pinnedMessages)) {
+            hotIds.add(hitter.getKey());
+        }
+
+        socialMediaService.pinMessages(hotIds);
+    }
+
+    /**
+     * Stops pinning messages
+     */
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @param text the text of a message
+     * @return the distinct terms of the text
+     */
+    static Set<String> terms(String text) {
+        Set<String> found = new HashSet<>();
+        int start = -1;
+
+        for (int i = 0; i <= text.length(); i++) {
+            boolean termCharacter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+
+            if (termCharacter && start < 0) {
+                start = i;
+            }
+            else if (!termCharacter && start >= 0) {
+                int length = i - start;
+
+                if (length >= MIN_TERM_LENGTH && length <= MAX_TERM_LENGTH) {
+                    found.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                }
+
+                start = -1;
+            }
+        }
+
+        return found;
+    }
+}
@@ -0,0 +1,131 @@
+package Service;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import Metrics.*;
+
+/**
+ * A bounded in-memory cache whose entries expire a fixed time after they are written.
+ * 
+ * Reads are a single ConcurrentHashMap lookup. When a write would take the cache past its maximum size, a batch of
+ * entries (expired or not) is evicted in the map's iteration order, which approximates random eviction without
+ * tracking recency on every read. Keys can be pinned to exempt them from eviction, for entries known to be hot.
+ * 
+ * @param <K> the type of the cache keys
+ * @param <V> the type of the cached values
+ */
+public class TtlCache<K, V> {
+    private static final class Entry<V> {
+        final V value;
+        final long expiresAtNanos;
+
+        Entry(V value, long expiresAtNanos) {
+            this.value = value;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final int maxSize;
+    private final Counter.Child hits;
+    private final Counter.Child misses;
+    private volatile Set<K> pinned = Set.of();
+
+    /**
+     * @param name the name of the cache in the cache_requests_total metric
+     * @param ttlMillis how long an entry stays valid after it is written
+     * @param maxSize the maximum number of entries held
+     * @param registry the registry that the hit and miss counts are added to
+     */
+    public TtlCache(String name, long ttlMillis, int maxSize, MetricsRegistry registry) {
+        this.ttlNanos = ttlMillis * 1_000_000;
+        this.maxSize = maxSize;
+
+        Counter requests = registry.counter("cache_requests_total", "Cache lookups by outcome", "cache", "result");
+        this.hits = requests.labels(name, "hit");
+        this.misses = requests.labels(name, "miss");
+
+        registry.gauge("cache_entries", "Entries held in a cache", "cache").labels(name).set(entries::size);
+        registry.gauge("cache_pinned_keys", "Keys exempt from eviction in a cache", "cache").labels(name).set(() -> pinned.size());
+    }
+
+    /**
+     * Gets a cached value
+     * 
+     * @param key the key of the value
+     * @return the cached value, or null if the key is not cached or its entry has expired
+     */
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+
+        if (entry == null || System.nanoTime() - entry.expiresAtNanos > 0) {
+            misses.inc();
+            return null;
+        }
+
+        hits.inc();
+        return entry.value;
+    }
+
+    /**
+     * Caches a value, replacing any value already cached for the key
+     * 
+     * @param key the key of the value
+     * @param value the value to cache (must not be null)
+     */
+    public void put(K key, V value) {
+        if (entries.size() >= maxSize) {
+            evictBatch();
+        }
+
+        entries.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+    }
+
+    /**
+     * Exempts keys from eviction, replacing the keys pinned before. Pinned entries still expire and can still be
+     * invalidated, and pinning a key that is not cached keeps it from being evicted once it is.
+     * 
+     * @param keys the keys to pin
+     */
+    public void pin(Collection<K> keys) {
+        pinned = Set.copyOf(keys);
+    }
+
+    /**
+     * Removes a key from the cache
+     * 
+     * @param key the key to remove
+     */
+    public void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Removes every entry from the cache
+     */
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    /**
+     * Evicts about 1% of the maximum size (at least one entry), other than pinned entries, to make room for new entries
+     */
+    private void evictBatch() {
+        int toEvict = Math.max(1, maxSize / 100);
+        Set<K> pinnedKeys = pinned;
+        Iterator<K> keys = entries.keySet().iterator();
+
+        while (toEvict > 0 && keys.hasNext()) {
+            if (pinnedKeys.contains(keys.next())) {
+                continue;
+            }
+
+            keys.remove();
+            toEvict--;
+        }
+    }
+}
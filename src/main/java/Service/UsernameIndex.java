@@ -0,0 +1,61 @@
+package Service;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import Metrics.*;
+import Model.Account;
+
+/**
+ * Finds accounts by a prefix of their username without querying the account table, for autocompleting mentions.
+ *
+ * Every username is held in a UsernameTrie, filled at startup from a streaming scan of the accounts and kept up to
+ * date as accounts are added. Usernames never change and accounts are never deleted, so additions are all it needs
+ * to follow.
+ */
+public class UsernameIndex implements Consumer<Account> {
+    private static final Logger logger = LoggerFactory.getLogger(UsernameIndex.class);
+
+    private final UsernameTrie trie = new UsernameTrie();
+
+    /**
+     * Fills the index with every account's username
+     *
+     * @param socialMediaService the service whose accounts are scanned
+     * @param registry the registry that the index metrics are added to
+     */
+    public UsernameIndex(SocialMediaService socialMediaService, MetricsRegistry registry) {
+        registry.gauge("username_index_accounts", "Usernames held in the username prefix index").labels().set(trie::size);
+        registry.gauge("username_index_bytes", "Approximate memory held by the username prefix index").labels().set(trie::getMemoryBytes);
+
+        long startMillis = System.currentTimeMillis();
+
+        try {
+            socialMediaService.exportAccounts(0, this::accept);
+            logger.info("Indexed {} usernames in {} ms", trie.size(), System.currentTimeMillis() - startMillis);
+        }
+        catch (SQLException | IOException e) {
+            logger.error("Scanning the accounts failed, so the username index only holds the accounts scanned before it failed and those added from now on", e);
+        }
+    }
+
+    /**
+     * Indexes the username of an account that was added
+     */
+    @Override
+    public void accept(Account account) {
+        trie.add(account.getUsername(), account.getAccount_id());
+    }
+
+    /**
+     * @param prefix the prefix, which usernames match case-sensitively
+     * @param limit the most accounts to return
+     * @return the accounts whose usernames start with the prefix, first in username order, without passwords
+     */
+    public List<Account> search(String prefix, int limit) {
+        return trie.search(prefix, limit);
+    }
+}
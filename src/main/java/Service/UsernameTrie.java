@@ -0,0 +1,306 @@
+package Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import Model.Account;
+
+/**
+ * A radix tree of usernames, mapping each to its account ID, that finds the usernames starting with a prefix.
+ *
+ * Nodes are rows of parallel int arrays rather than objects, and every edge label is a range of one shared char
+ * array, so millions of usernames cost a few tens of bytes each. A node's children are a linked list of siblings
+ * sorted by the first char of their labels, which makes a depth-first walk return usernames in sorted order. Only
+ * the suffix of a username below the node it branches from is appended to the labels, and splitting an edge only
+ * splits its range, so the labels hold each shared prefix once.
+ *
+ * Searches share a read lock and additions take the write lock. A search allocates its buffers once and one String
+ * per result, never per char it compares.
+ */
+public class UsernameTrie {
+    private static final int NONE = -1;
+    private static final int ROOT = 0;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private char[] labels = new char[1024];
+    private int labelsLength;
+
+    private int[] labelStarts = new int[64];
+    private int[] labelLengths = new int[64];
+    private int[] firstChildren = new int[64];
+    private int[] nextSiblings = new int[64];
+
+    /**
+     * The account ID of the username that ends at each node, or 0 if none does
+     */
+    private int[] accountIds = new int[64];
+
+    private int nodeCount;
+    private int size;
+    private int maxUsernameLength;
+
+    public UsernameTrie() {
+        newNode(0, 0);
+    }
+
+    /**
+     * Adds a username, or changes the account ID of one already added
+     *
+     * @param username the username
+     * @param accountId the ID of its account, which is positive
+     */
+    public void add(String username, int accountId) {
+        lock.writeLock().lock();
+
+        try {
+            int node = ROOT;
+            int matched = 0;
+
+            while (matched < username.length()) {
+                char next = username.charAt(matched);
+                int previous = NONE;
+                int child = firstChildren[node];
+
+                while (child != NONE && labels[labelStarts[child]] < next) {
+                    previous = child;
+                    child = nextSiblings[child];
+                }
+
+                if (child == NONE || labels[labelStarts[child]] != next) {
+                    // No edge starts with the next char, so the rest of the username becomes a new leaf
+                    int leaf = newNode(appendLabel(username, matched), username.length() - matched);
+                    link(node, previous, leaf, child);
+                    node = leaf;
+                    break;
+                }
+
+                int common = commonLength(child, username, matched);
+
+                if (common < labelLengths[child]) {
+                    // The username leaves the edge part way along, so split it where they part
+                    int middle = newNode(labelStarts[child], common);
+                    link(node, previous, middle, nextSiblings[child]);
+
+                    labelStarts[child] += common;
+                    labelLengths[child] -= common;
+                    nextSiblings[child] = NONE;
+                    firstChildren[middle] = child;
+                    child = middle;
+                }
+
+                node = child;
+                matched += common;
+            }
+
+            if (accountIds[node] == 0) {
+                size++;
+            }
+
+            accountIds[node] = accountId;
+            maxUsernameLength = Math.max(maxUsernameLength, username.length());
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the approximate number of bytes that the arrays of the trie take, including their spare capacity
+     */
+    public long getMemoryBytes() {
+        lock.readLock().lock();
+
+        try {
+            return 2L * labels.length + 4L * 5 * labelStarts.length;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of nodes in the trie
+     */
+    public int getNodeCount() {
+        lock.readLock().lock();
+
+        try {
+            return nodeCount;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the usernames that start with a prefix
+     *
+     * @param prefix the prefix, which the usernames match case-sensitively
+     * @param limit the most accounts to return
+     * @return the accounts of the first usernames in sorted (UTF-16) order that start with the prefix, without passwords
+     */
+    public List<Account> search(String prefix, int limit) {
+        ArrayList<Account> found = new ArrayList<>(Math.min(limit, 16));
+        lock.readLock().lock();
+
+        try {
+            // Find the node whose path first covers the whole prefix
+            int node = ROOT;
+            int matched = 0;
+            int labelDepth = 0;
+
+            while (matched < prefix.length()) {
+                node = findChild(node, prefix.charAt(matched));
+
+                if (node == NONE) {
+                    return found;
+                }
+
+                int common = commonLength(node, prefix, matched);
+
+                if (matched + common < prefix.length() && common < labelLengths[node]) {
+                    return found;
+                }
+
+                labelDepth = matched;
+                matched += common;
+            }
+
+            // The usernames below the node start with the part of the prefix above its label
+            char[] username = new char[maxUsernameLength];
+            prefix.getChars(0, labelDepth, username, 0);
+
+            // Walk the subtree depth first, stacking each node's next sibling beneath its first child
+            int[] stackNodes = new int[maxUsernameLength + 2];
+            int[] stackDepths = new int[maxUsernameLength + 2];
+            int stackSize = 0;
+
+            stackNodes[stackSize] = node;
+            stackDepths[stackSize++] = labelDepth;
+
+            while (stackSize > 0 && found.size() < limit) {
+                int current = stackNodes[--stackSize];
+                int depth = stackDepths[stackSize];
+                int end = depth + labelLengths[current];
+
+                System.arraycopy(labels, labelStarts[current], username, depth, labelLengths[current]);
+
+                if (accountIds[current] != 0) {
+                    found.add(new Account(accountIds[current], new String(username, 0, end), null));
+                }
+
+                if (current != node && nextSiblings[current] != NONE) {
+                    stackNodes[stackSize] = nextSiblings[current];
+                    stackDepths[stackSize++] = depth;
+                }
+
+                if (firstChildren[current] != NONE) {
+                    stackNodes[stackSize] = firstChildren[current];
+                    stackDepths[stackSize++] = end;
+                }
+            }
+
+            return found;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of usernames in the trie
+     */
+    public int size() {
+        lock.readLock().lock();
+
+        try {
+            return size;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Appends the rest of a username to the labels
+     *
+     * @return where it starts in the labels
+     */
+    private int appendLabel(String username, int from) {
+        int length = username.length() - from;
+
+        if (labelsLength + length > labels.length) {
+            labels = Arrays.copyOf(labels, Math.max(labelsLength + length, labels.length + (labels.length >> 1)));
+        }
+
+        username.getChars(from, username.length(), labels, labelsLength);
+        labelsLength += length;
+
+        return labelsLength - length;
+    }
+
+    /**
+     * @return how many chars of a node's label match the string from an offset
+     */
+    private int commonLength(int node, String string, int from) {
+        int limit = Math.min(labelLengths[node], string.length() - from);
+        int start = labelStarts[node];
+        int common = 0;
+
+        while (common < limit && labels[start + common] == string.charAt(from + common)) {
+            common++;
+        }
+
+        return common;
+    }
+
+    /**
+     * @return the child of a node whose label starts with a char, or NONE
+     */
+    private int findChild(int node, char first) {
+        int child = firstChildren[node];
+
+        while (child != NONE && labels[labelStarts[child]] < first) {
+            child = nextSiblings[child];
+        }
+
+        return child != NONE && labels[labelStarts[child]] == first ? child : NONE;
+    }
+
+    /**
+     * Puts a node into a parent's children between two siblings (either of which may be NONE)
+     */
+    private void link(int parent, int previous, int node, int next) {
+        nextSiblings[node] = next;
+
+        if (previous == NONE) {
+            firstChildren[parent] = node;
+        }
+        else {
+            nextSiblings[previous] = node;
+        }
+    }
+
+    private int newNode(int labelStart, int labelLength) {
+        if (nodeCount == labelStarts.length) {
+            int capacity = nodeCount + (nodeCount >> 1);
+
+            labelStarts = Arrays.copyOf(labelStarts, capacity);
+            labelLengths = Arrays.copyOf(labelLengths, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+            accountIds = Arrays.copyOf(accountIds, capacity);
+        }
+
+        labelStarts[nodeCount] = labelStart;
+        labelLengths[nodeCount] = labelLength;
+        firstChildren[nodeCount] = NONE;
+        nextSiblings[nodeCount] = NONE;
+        accountIds[nodeCount] = 0;
+
+        return nodeCount++;
+    }
+}
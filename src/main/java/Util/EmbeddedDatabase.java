@@ -0,0 +1,165 @@
+package Util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.h2.tools.RunScript;
+
+/**
+ * A private in-memory H2 database with the application's schema and seed data, for running a server (most often a
+ * test server) without touching the shared database file of ConnectionUtil.
+ *
+ * Every instance has a database of its own, so servers using different instances never see each other's data.
+ * After the schema script has run, the seed rows are kept as a snapshot of INSERT statements, and reset() returns
+ * the database to the snapshot by truncating every table and replaying them, which is much faster than dropping
+ * and recreating the schema.
+ */
+public class EmbeddedDatabase implements AutoCloseable {
+    private static final String SCHEMA_RESOURCE = "/SocialMedia.sql";
+
+    /**
+     * The schema script, read from the classpath once for every instance
+     */
+    private static volatile String schemaScript;
+
+    private final JdbcDataSource dataSource;
+
+    /**
+     * Kept open for the life of the instance, because an in-memory database is dropped when its last connection closes
+     */
+    private final Connection keepAlive;
+
+    private final List<String> tables = new ArrayList<>();
+    private final Map<String, String> identityColumns = new LinkedHashMap<>();
+    private final List<String> seedInserts = new ArrayList<>();
+
+    /**
+     * Creates a new database, runs the schema script against it and takes the snapshot that reset() returns to
+     *
+     * @throws SQLException if the database could not be created
+     */
+    public EmbeddedDatabase() throws SQLException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID());
+        dataSource.setUser("sa");
+        dataSource.setPassword("sa");
+
+        keepAlive = dataSource.getConnection();
+        RunScript.execute(keepAlive, new StringReader(getSchemaScript()));
+        takeSnapshot();
+    }
+
+    /**
+     * @return the data source that connects to this database
+     */
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * Returns the database to the state it was in right after it was created: the seed rows only, with every
+     * auto-increment column continuing from the highest seeded value
+     *
+     * @throws SQLException if the database could not be reset
+     */
+    public synchronized void reset() throws SQLException {
+        try (Statement statement = keepAlive.createStatement()) {
+            statement.execute("SET REFERENTIAL_INTEGRITY FALSE");
+
+            try {
+                for (String table : tables) {
+                    statement.execute("TRUNCATE TABLE " + table + " RESTART IDENTITY");
+                }
+
+                for (String insert : seedInserts) {
+                    statement.execute(insert);
+                }
+
+                for (Map.Entry<String, String> identity : identityColumns.entrySet()) {
+                    ResultSet rs = statement.executeQuery("SELECT COALESCE(MAX(" + identity.getValue() + "), 0) + 1 FROM " + identity.getKey());
+                    rs.next();
+                    long next = rs.getLong(1);
+
+                    statement.execute("ALTER TABLE " + identity.getKey() + " ALTER COLUMN " + identity.getValue() + " RESTART WITH " + next);
+                }
+            }
+            finally {
+                statement.execute("SET REFERENTIAL_INTEGRITY TRUE");
+            }
+        }
+    }
+
+    /**
+     * Drops the database
+     */
+    @Override
+    public void close() {
+        try (Statement statement = keepAlive.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+        catch (SQLException e) {
+            // The database is being discarded anyway
+        }
+    }
+
+    /**
+     * Records the tables, their auto-increment columns and the seed rows as INSERT statements
+     */
+    private void takeSnapshot() throws SQLException {
+        try (Statement statement = keepAlive.createStatement()) {
+            ResultSet tableRs = statement.executeQuery("SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_TYPE = 'BASE TABLE'");
+
+            while (tableRs.next()) {
+                tables.add("\"" + tableRs.getString(1) + "\"");
+            }
+
+            ResultSet identityRs = statement.executeQuery("SELECT TABLE_NAME, COLUMN_NAME FROM INFORMATION_SCHEMA.COLUMNS "
+                    + "WHERE TABLE_SCHEMA = 'PUBLIC' AND IS_IDENTITY = 'YES'");
+
+            while (identityRs.next()) {
+                identityColumns.put("\"" + identityRs.getString(1) + "\"", "\"" + identityRs.getString(2) + "\"");
+            }
+
+            ResultSet scriptRs = statement.executeQuery("SCRIPT SIMPLE NOPASSWORDS NOSETTINGS");
+
+            while (scriptRs.next()) {
+                String line = scriptRs.getString(1);
+
+                if (line.startsWith("INSERT INTO")) {
+                    seedInserts.add(line);
+                }
+            }
+        }
+    }
+
+    private static String getSchemaScript() {
+        if (schemaScript == null) {
+            try (InputStream input = EmbeddedDatabase.class.getResourceAsStream(SCHEMA_RESOURCE)) {
+                if (input == null) {
+                    throw new IllegalStateException(SCHEMA_RESOURCE + " is not on the classpath");
+                }
+
+                schemaScript = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        return schemaScript;
+    }
+}
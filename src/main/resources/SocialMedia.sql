@@ -1,3 +1,12 @@
+drop view if exists posted_message;
+drop table if exists account_stats;
+drop table if exists activity_hourly;
+drop table if exists activity_daily_poster;
+drop table if exists active_poster_sketch;
+drop table if exists archived_message;
+drop table if exists message_archive_block;
+drop table if exists change_log_state;
+drop table if exists message_change;
 drop table if exists message;
 drop table if exists account;
 create table account (
@@ -10,8 +19,78 @@ create table message (
     posted_by int,
     message_text varchar(255),
     time_posted_epoch bigint,
+    deleted_at bigint,
     foreign key (posted_by) references  account(account_id)
 );
+create index message_deleted_at on message(deleted_at);
+create index message_time_posted_epoch on message(time_posted_epoch);
+create table message_archive_block (
+    block_id int primary key auto_increment,
+    partition_month int not null,
+    message_count int not null,
+    uncompressed_bytes int not null,
+    payload blob not null
+);
+create index message_archive_block_partition_month on message_archive_block(partition_month);
+create table archived_message (
+    message_id int primary key,
+    posted_by int not null,
+    time_posted_epoch bigint not null,
+    block_id int not null,
+    deleted_at bigint,
+    foreign key (block_id) references message_archive_block(block_id)
+);
+create index archived_message_posted_by on archived_message(posted_by);
+create view posted_message as
+    select message_id, posted_by, time_posted_epoch from message where deleted_at is null
+    union all
+    select message_id, posted_by, time_posted_epoch from archived_message where deleted_at is null;
+create table message_change (
+    seq bigint primary key auto_increment,
+    change_type varchar(16) not null,
+    message_id int not null,
+    posted_by int,
+    message_text varchar(255),
+    time_posted_epoch bigint,
+    changed_at timestamp default current_timestamp not null
+);
+create index message_change_message_id on message_change(message_id);
+create index message_change_changed_at on message_change(changed_at);
+create table change_log_state (
+    id int primary key,
+    truncated_through bigint not null
+);
+create table account_stats (
+    account_id int primary key,
+    message_count int not null,
+    last_posted_epoch bigint,
+    foreign key (account_id) references account(account_id)
+);
+create table activity_hourly (
+    hour_start bigint primary key,
+    message_count bigint not null
+);
+create table activity_daily_poster (
+    day_start bigint not null,
+    account_id int not null,
+    message_count bigint not null,
+    primary key (day_start, account_id)
+);
+create table active_poster_sketch (
+    day_start bigint primary key,
+    registers varbinary(65536) not null
+);
 
 insert into account (username, password) values ('testuser1', 'password');
 insert into message (posted_by, message_text, time_posted_epoch) values (1,'test message 1',1669947792);
+insert into message_change (change_type, message_id, posted_by, message_text, time_posted_epoch)
+    select 'created', message_id, posted_by, message_text, time_posted_epoch from message;
+insert into change_log_state (id, truncated_through) values (1, 0);
+insert into account_stats (account_id, message_count, last_posted_epoch)
+    select posted_by, count(*), max(time_posted_epoch) from message group by posted_by;
+insert into activity_hourly (hour_start, message_count)
+    select time_posted_epoch - mod(mod(time_posted_epoch, 3600) + 3600, 3600), count(*) from posted_message
+    group by time_posted_epoch - mod(mod(time_posted_epoch, 3600) + 3600, 3600);
+insert into activity_daily_poster (day_start, account_id, message_count)
+    select time_posted_epoch - mod(mod(time_posted_epoch, 86400) + 86400, 86400), posted_by, count(*) from posted_message
+    group by time_posted_epoch - mod(mod(time_posted_epoch, 86400) + 86400, 86400), posted_by;
@@ -0,0 +1,70 @@
+package Benchmark;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import DAO.SocialMediaDAO;
+import Service.CountMinSketch;
+import Service.HyperLogLog;
+
+/**
+ * Compares counting the distinct posters of a week exactly over the message table with merging the week's daily
+ * HyperLogLog sketches, and prints how far the estimate is from the exact count.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class ActivePostersBenchmark {
+    private static final long DAY_SECONDS = 86_400;
+    private static final int PRECISION = 12;
+
+    private SocialMediaDAO socialMediaDao;
+    private Map<Long, HyperLogLog> days;
+    private long firstDay;
+    private long lastDay;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkDataset dataset) throws SQLException, IOException {
+        socialMediaDao = new SocialMediaDAO();
+        days = new HashMap<>();
+
+        // A freshly seeded dataset has no saved sketches, so the scan covers the posters of every day
+        socialMediaDao.scanPostersOfUnsketchedDays(row ->
+                days.computeIfAbsent(row[0], key -> new HyperLogLog(PRECISION)).add(CountMinSketch.hash(row[1])));
+
+        // The last week of the dataset, or all of it when it spans less
+        lastDay = Math.floorDiv(DatasetSeeder.FIRST_EPOCH + dataset.messageCount, DAY_SECONDS) * DAY_SECONDS;
+        firstDay = Math.max(lastDay - 6 * DAY_SECONDS, Math.floorDiv(DatasetSeeder.FIRST_EPOCH, DAY_SECONDS) * DAY_SECONDS);
+
+        long exact = exactWeek();
+        long estimate = estimatedWeek();
+        System.out.printf("%nActive posters of the week: exact %d, estimated %d, error %.2f%% (standard error %.2f%%)%n",
+                exact, estimate, 100.0 * (estimate - exact) / exact, 100 * HyperLogLog.standardError(PRECISION));
+    }
+
+    @Benchmark
+    public long exactWeek() throws SQLException {
+        return socialMediaDao.countActivePosters(firstDay, lastDay + DAY_SECONDS);
+    }
+
+    @Benchmark
+    public long estimatedWeek() {
+        HyperLogLog union = new HyperLogLog(PRECISION);
+
+        for (long dayStart = firstDay; dayStart <= lastDay; dayStart += DAY_SECONDS) {
+            HyperLogLog day = days.get(dayStart);
+
+            if (day != null) {
+                union.merge(day);
+            }
+        }
+
+        return union.estimate();
+    }
+}
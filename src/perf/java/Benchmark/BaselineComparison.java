@@ -0,0 +1,125 @@
+package Benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares two JMH JSON result files and reports how each benchmark's score and allocation rate changed.
+ * 
+ * Benchmarks are matched by name and parameter values. A benchmark counts as a regression when its score moved in
+ * the wrong direction for its mode (lower throughput, or higher time per operation) by more than the threshold.
+ * 
+ * Usage: java -cp target/benchmarks.jar Benchmark.BaselineComparison baseline.json current.json [thresholdPercent]
+ */
+public class BaselineComparison {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineComparison <baseline.json> <current.json> [thresholdPercent]");
+            System.exit(2);
+        }
+
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        int regressions = compare(args[0], args[1], threshold, System.out);
+
+        System.exit(regressions > 0 ? 1 : 0);
+    }
+
+    /**
+     * Compares a result file against a baseline result file and prints one line per benchmark found in both
+     * 
+     * @param baselineFile the path of the saved baseline JSON results
+     * @param currentFile the path of the JSON results to check
+     * @param thresholdPercent how far (in percent) a score may move in the wrong direction before it is a regression
+     * @param out where the comparison report is printed
+     * @return the number of regressed benchmarks
+     */
+    public static int compare(String baselineFile, String currentFile, double thresholdPercent, PrintStream out) throws IOException {
+        Map<String, JsonNode> baseline = readResults(baselineFile);
+        Map<String, JsonNode> current = readResults(currentFile);
+        int regressions = 0;
+
+        out.printf("%-90s %14s %14s %9s %12s%n", "Benchmark", "Baseline", "Current", "Change", "Alloc B/op");
+
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode baselineResult = baseline.get(entry.getKey());
+
+            if (baselineResult == null) {
+                out.printf("%-90s %14s%n", entry.getKey(), "(new)");
+                continue;
+            }
+
+            JsonNode currentResult = entry.getValue();
+            double baselineScore = baselineResult.path("primaryMetric").path("score").asDouble();
+            double currentScore = currentResult.path("primaryMetric").path("score").asDouble();
+            double changePercent = baselineScore == 0 ? 0 : (currentScore - baselineScore) / baselineScore * 100;
+
+            // Throughput regresses when it drops; every other mode measures time, which regresses when it rises
+            boolean higherIsBetter = "thrpt".equals(currentResult.path("mode").asText());
+            boolean regressed = higherIsBetter ? changePercent < -thresholdPercent : changePercent > thresholdPercent;
+
+            if (regressed) {
+                regressions++;
+            }
+
+            out.printf("%-90s %14.3f %14.3f %+8.1f%% %12s%s%n", entry.getKey(), baselineScore, currentScore, changePercent,
+                    allocationChange(baselineResult, currentResult), regressed ? "  REGRESSION" : "");
+        }
+
+        out.printf("%d regression(s) beyond %.1f%%%n", regressions, thresholdPercent);
+
+        return regressions;
+    }
+
+    /**
+     * Reads a JMH JSON result file into a map keyed by benchmark name and parameters
+     */
+    private static Map<String, JsonNode> readResults(String file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+
+        for (JsonNode result : new ObjectMapper().readTree(new File(file))) {
+            StringBuilder key = new StringBuilder(result.path("benchmark").asText());
+            result.path("params").fields().forEachRemaining(param -> key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText()));
+
+            results.put(key.toString(), result);
+        }
+
+        return results;
+    }
+
+    /**
+     * Formats the change in normalized allocation rate reported by the GC profiler, if both runs recorded it
+     */
+    private static String allocationChange(JsonNode baselineResult, JsonNode currentResult) {
+        JsonNode baselineAllocation = allocationMetric(baselineResult);
+        JsonNode currentAllocation = allocationMetric(currentResult);
+
+        if (baselineAllocation == null || currentAllocation == null) {
+            return "-";
+        }
+
+        return String.format("%.0f->%.0f", baselineAllocation.path("score").asDouble(), currentAllocation.path("score").asDouble());
+    }
+
+    /**
+     * Finds the gc.alloc.rate.norm secondary metric (older JMH versions prefix its name with a middle dot)
+     */
+    private static JsonNode allocationMetric(JsonNode result) {
+        JsonNode secondaryMetrics = result.path("secondaryMetrics");
+
+        for (Iterator<String> names = secondaryMetrics.fieldNames(); names.hasNext(); ) {
+            String name = names.next();
+
+            if (name.endsWith("gc.alloc.rate.norm")) {
+                return secondaryMetrics.get(name);
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,60 @@
+package Benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * JMH state that seeds the database with a dataset of the requested size before each trial.
+ * 
+ * Benchmarks that take this state as a parameter are run once for every messageCount value, which can be
+ * narrowed from the command line (for example: -p messageCount=1000,100000).
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDataset {
+    /**
+     * The total number of messages in the database during the trial
+     */
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int messageCount;
+
+    /**
+     * The total number of accounts in the database during the trial
+     */
+    public int accountCount;
+
+    /**
+     * Source of unique suffixes for accounts created while benchmarking registrations
+     */
+    private static final AtomicLong uniqueSuffix = new AtomicLong();
+
+    /**
+     * Seeds the database before the trial starts
+     */
+    @Setup(Level.Trial)
+    public void seed() {
+        DatasetSeeder.seed(messageCount);
+        accountCount = DatasetSeeder.accountCountFor(messageCount);
+    }
+
+    /**
+     * @return the ID of a random seeded message
+     */
+    public int randomMessageId() {
+        return ThreadLocalRandom.current().nextInt(1, messageCount + 1);
+    }
+
+    /**
+     * @return the ID of a random seeded account
+     */
+    public int randomAccountId() {
+        return ThreadLocalRandom.current().nextInt(1, accountCount + 1);
+    }
+
+    /**
+     * @return a username that is not used by any existing account
+     */
+    public String uniqueUsername() {
+        return "bench_new_" + System.nanoTime() + "_" + uniqueSuffix.incrementAndGet();
+    }
+}
@@ -0,0 +1,67 @@
+package Benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of target/benchmarks.jar
+ * 
+ * Accepts the standard JMH command line options, but unless they are overridden it also:
+ * attaches the GC profiler (allocation rate per operation and collection counts),
+ * writes JSON results to target/jmh-result.json,
+ * and, if the "baseline" system property names a saved result file, compares the new results against it and
+ * exits with status 1 when a regression is found.
+ * 
+ * Example: java -Dbaseline=baselines/jmh-result.json -jar target/benchmarks.jar -p messageCount=1000,100000 DAO
+ */
+public class BenchmarkRunner {
+    /**
+     * Where results are written when no -rff option is given
+     */
+    public static final String DEFAULT_RESULT_FILE = "target/jmh-result.json";
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+
+        if (commandLineOptions.shouldHelp()) {
+            commandLineOptions.showHelp();
+            return;
+        }
+
+        ChainedOptionsBuilder optionsBuilder = new OptionsBuilder().parent(commandLineOptions);
+
+        if (commandLineOptions.getProfilers().isEmpty()) {
+            optionsBuilder.addProfiler(GCProfiler.class);
+        }
+
+        if (!commandLineOptions.getResultFormat().hasValue()) {
+            optionsBuilder.resultFormat(ResultFormatType.JSON);
+        }
+
+        String resultFile = commandLineOptions.getResult().orElse(DEFAULT_RESULT_FILE);
+        optionsBuilder.result(resultFile);
+
+        Runner runner = new Runner(optionsBuilder.build());
+
+        if (commandLineOptions.shouldList()) {
+            runner.list();
+            return;
+        }
+
+        runner.run();
+
+        // Compare the new results against a saved baseline if one was requested
+        String baselineFile = System.getProperty("baseline");
+
+        if (baselineFile != null) {
+            double threshold = Double.parseDouble(System.getProperty("baseline.threshold", "10"));
+            int regressions = BaselineComparison.compare(baselineFile, resultFile, threshold, System.out);
+
+            System.exit(regressions > 0 ? 1 : 0);
+        }
+    }
+}
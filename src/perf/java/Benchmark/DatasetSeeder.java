@@ -0,0 +1,166 @@
+package Benchmark;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.h2.tools.RunScript;
+import Util.ConnectionUtil;
+
+/**
+ * Bulk loads the application's database with a synthetic dataset for benchmarking.
+ * 
+ * Rows are generated inside the database with INSERT ... SELECT over H2's SYSTEM_RANGE table function, so no
+ * per-row round trips are needed and even the 10M message dataset loads in seconds. The resulting message and
+ * account IDs are contiguous (1 through messageCount and 1 through accountCount), which lets benchmarks pick
+ * existing rows at random without querying for them first.
+ * 
+ * The tables derived from the messages (the change log, the account statistics and the activity rollups) are then
+ * rebuilt by the INSERT ... SELECT statements that SocialMedia.sql seeds them with, so benchmarks of the paths that
+ * read them see the same state that the application would have built.
+ */
+public class DatasetSeeder {
+    /**
+     * The number of messages generated for each seeded account
+     */
+    public static final int MESSAGES_PER_ACCOUNT = 100;
+
+    /**
+     * The password shared by every seeded account (including the account created by SocialMedia.sql)
+     */
+    public static final String PASSWORD = "password";
+
+    /**
+     * The time_posted_epoch of the first seeded message - each following message is posted one second later
+     */
+    public static final long FIRST_EPOCH = 1669947792L;
+
+    /**
+     * The number of rows inserted by a single INSERT ... SELECT statement, which bounds H2's undo log size
+     */
+    private static final int CHUNK_SIZE = 500_000;
+
+    private static final String SCHEMA_SCRIPT = "src/main/resources/SocialMedia.sql";
+
+    /**
+     * Resets the database and fills it with messageCount messages spread across accountCountFor(messageCount) accounts
+     * 
+     * If the database already holds exactly that dataset, then it is left untouched so that consecutive trials with
+     * the same dataset size do not pay for reseeding.
+     * 
+     * @param messageCount the total number of messages that the database should contain
+     */
+    public static void seed(int messageCount) {
+        int accountCount = accountCountFor(messageCount);
+
+        try (Connection connection = ConnectionUtil.getConnection()) {
+            if (isSeeded(connection, messageCount, accountCount)) {
+                return;
+            }
+
+            // Recreate the tables (along with account 1 and message 1) from SocialMedia.sql
+            try (Reader schema = new FileReader(SCHEMA_SCRIPT)) {
+                RunScript.execute(connection, schema);
+            }
+
+            try (PreparedStatement accountInsert = connection.prepareStatement(
+                    "INSERT INTO Account(username, password) SELECT CONCAT('bench_user_', X), ? FROM SYSTEM_RANGE(?, ?)")) {
+                for (int from = 2; from <= accountCount; from += CHUNK_SIZE) {
+                    accountInsert.setString(1, PASSWORD);
+                    accountInsert.setInt(2, from);
+                    accountInsert.setInt(3, Math.min(accountCount, from + CHUNK_SIZE - 1));
+                    accountInsert.executeUpdate();
+                }
+            }
+
+            try (PreparedStatement messageInsert = connection.prepareStatement(
+                    "INSERT INTO Message(posted_by, message_text, time_posted_epoch) " +
+                    "SELECT MOD(X, ?) + 1, CONCAT('benchmark message ', X), ? + X FROM SYSTEM_RANGE(?, ?)")) {
+                for (int from = 2; from <= messageCount; from += CHUNK_SIZE) {
+                    messageInsert.setInt(1, accountCount);
+                    messageInsert.setLong(2, FIRST_EPOCH);
+                    messageInsert.setInt(3, from);
+                    messageInsert.setInt(4, Math.min(messageCount, from + CHUNK_SIZE - 1));
+                    messageInsert.executeUpdate();
+                }
+            }
+
+            refreshDerivedTables(connection);
+        }
+        catch (SQLException | IOException e) {
+            throw new IllegalStateException("Failed to seed a dataset of " + messageCount + " messages", e);
+        }
+    }
+
+    /**
+     * Gets the number of accounts that seed(messageCount) creates
+     * 
+     * @param messageCount the total number of messages in the dataset
+     * @return the total number of accounts in the dataset (at least 1)
+     */
+    public static int accountCountFor(int messageCount) {
+        return Math.max(1, messageCount / MESSAGES_PER_ACCOUNT);
+    }
+
+    /**
+     * Gets the username of a seeded account
+     * 
+     * @param accountId the ID of a seeded account
+     * @return the username that seed() gave the account
+     */
+    public static String usernameOf(int accountId) {
+        // Account 1 comes from SocialMedia.sql rather than from the seeder
+        return accountId == 1 ? "testuser1" : "bench_user_" + accountId;
+    }
+
+    /**
+     * Empties every table that SocialMedia.sql seeds with an INSERT ... SELECT, and runs that statement again over
+     * the seeded rows
+     */
+    private static void refreshDerivedTables(Connection connection) throws SQLException, IOException {
+        List<String> derivedSeeds = new ArrayList<>();
+
+        for (String statement : Files.readString(Path.of(SCHEMA_SCRIPT)).split(";")) {
+            String normalized = statement.trim().replaceAll("\\s+", " ");
+            String lowercase = normalized.toLowerCase(Locale.ROOT);
+
+            if (lowercase.startsWith("insert into ") && lowercase.contains(" select ")) {
+                derivedSeeds.add(normalized);
+            }
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            for (String seed : derivedSeeds) {
+                String table = seed.split(" ")[2];
+
+                statement.execute("DELETE FROM " + table);
+                statement.execute(seed);
+            }
+        }
+    }
+
+    /**
+     * Checks whether the database already holds the dataset that seed() would create
+     */
+    private static boolean isSeeded(Connection connection, int messageCount, int accountCount) {
+        try (Statement statement = connection.createStatement()) {
+            ResultSet rs = statement.executeQuery(
+                    "SELECT (SELECT COUNT(*) FROM Message), (SELECT MAX(message_id) FROM Message), " +
+                    "(SELECT COUNT(*) FROM Account), (SELECT MAX(account_id) FROM Account)");
+
+            rs.next();
+
+            return rs.getInt(1) == messageCount && rs.getInt(2) == messageCount
+                    && rs.getInt(3) == accountCount && rs.getInt(4) == accountCount;
+        }
+        catch (SQLException e) {
+            // The tables do not exist yet
+            return false;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package Benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import Metrics.*;
+
+/**
+ * Measures the per-request cost of recording HTTP metrics, uncontended and with several threads recording into the
+ * same children, along with the cost of rendering a scrape.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HttpMetricsBenchmark {
+    private static final String[] ROUTES = {"/messages", "/messages/{message_id}", "/accounts/{account_id}/messages", "/login", "/register"};
+    private static final int[] STATUSES = {200, 200, 200, 400, 401};
+
+    private MetricsRegistry metricsRegistry;
+    private HttpMetrics httpMetrics;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        metricsRegistry = new MetricsRegistry();
+        httpMetrics = new HttpMetrics(metricsRegistry);
+        JvmMetrics.register(metricsRegistry);
+
+        // Create every child up front, as a warmed-up server would have
+        for (String route : ROUTES) {
+            for (int status : STATUSES) {
+                httpMetrics.recordRequest("GET", route, status, 1_000_000);
+            }
+        }
+    }
+
+    @Benchmark
+    public void recordRequest() {
+        int i = ThreadLocalRandom.current().nextInt(ROUTES.length);
+        httpMetrics.recordRequest("GET", ROUTES[i], STATUSES[i], 1_500_000);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordRequestContended() {
+        int i = ThreadLocalRandom.current().nextInt(ROUTES.length);
+        httpMetrics.recordRequest("GET", ROUTES[i], STATUSES[i], 1_500_000);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String scrape() {
+        return metricsRegistry.scrape();
+    }
+}
@@ -0,0 +1,47 @@
+package Benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import Controller.RateLimiter;
+
+/**
+ * Measures the cost of a rate limiter check with few and with 100k distinct keys, uncontended and with several
+ * threads hitting the limiter at once.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RateLimiterBenchmark {
+    @Param({"100", "100000"})
+    public int keyCount;
+
+    private RateLimiter<Integer> rateLimiter;
+    private Integer[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // A generous limit, so that most checks take a token like ordinary traffic does
+        rateLimiter = new RateLimiter<>(1_000_000, 1000, 60_000);
+        keys = new Integer[keyCount];
+
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = i;
+            rateLimiter.tryAcquire(keys[i]);
+        }
+    }
+
+    @Benchmark
+    public long tryAcquire() {
+        return rateLimiter.tryAcquire(keys[ThreadLocalRandom.current().nextInt(keyCount)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long tryAcquireContended() {
+        return rateLimiter.tryAcquire(keys[ThreadLocalRandom.current().nextInt(keyCount)]);
+    }
+}
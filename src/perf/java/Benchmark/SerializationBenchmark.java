@@ -0,0 +1,59 @@
+package Benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import Controller.ContentNegotiator;
+import Model.Message;
+
+/**
+ * Compares encoding and decoding a message list (the body of GET /messages) as JSON, Smile and CBOR.
+ *
+ * The encoded size of each list is printed once per trial, so that the run shows the bandwidth saved along with
+ * the CPU time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+    private static final TypeReference<ArrayList<Message>> MESSAGE_LIST = new TypeReference<>() {};
+
+    @Param({ContentNegotiator.JSON, ContentNegotiator.SMILE, ContentNegotiator.CBOR})
+    public String mediaType;
+
+    @Param({"10", "1000"})
+    public int messageCount;
+
+    private ObjectMapper mapper;
+    private ArrayList<Message> messages;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mapper = ContentNegotiator.mapperFor(mediaType);
+        messages = new ArrayList<>(messageCount);
+
+        for (int i = 1; i <= messageCount; i++) {
+            messages.add(new Message(i, 1 + i % 100, "benchmark message number " + i, DatasetSeeder.FIRST_EPOCH + i));
+        }
+
+        encoded = mapper.writeValueAsBytes(messages);
+        System.out.printf("%n%s encodes %d messages in %d bytes%n", mediaType, messageCount, encoded.length);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return mapper.writeValueAsBytes(messages);
+    }
+
+    @Benchmark
+    public ArrayList<Message> decode() throws IOException {
+        return mapper.readValue(encoded, MESSAGE_LIST);
+    }
+}
@@ -0,0 +1,90 @@
+package Benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import DAO.SocialMediaDAO;
+import Model.*;
+
+/**
+ * Measures the SocialMediaDAO methods behind the original API (adding accounts and messages, looking accounts up by
+ * credentials, ID and username, reading messages by ID, by account and in full, and updating and deleting messages)
+ * against seeded datasets of increasing size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class SocialMediaDAOBenchmark {
+    private SocialMediaDAO socialMediaDao;
+
+    /**
+     * A message inserted before each invocation so that deletions always target an existing row
+     */
+    @State(Scope.Thread)
+    public static class InsertedMessage {
+        int messageId;
+
+        @Setup(Level.Invocation)
+        public void insert(BenchmarkDataset dataset) {
+            messageId = new SocialMediaDAO().addMessage(dataset.randomAccountId(), "message to delete", DatasetSeeder.FIRST_EPOCH).getMessage_id();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        socialMediaDao = new SocialMediaDAO();
+    }
+
+    @Benchmark
+    public Account addAccount(BenchmarkDataset dataset) {
+        return socialMediaDao.addAccount(dataset.uniqueUsername(), DatasetSeeder.PASSWORD);
+    }
+
+    @Benchmark
+    public Message addMessage(BenchmarkDataset dataset) {
+        return socialMediaDao.addMessage(dataset.randomAccountId(), "benchmark message", DatasetSeeder.FIRST_EPOCH);
+    }
+
+    @Benchmark
+    public int deleteMessageById(InsertedMessage insertedMessage) {
+        return socialMediaDao.deleteMessageById(insertedMessage.messageId);
+    }
+
+    @Benchmark
+    public Account getAccountByCredentials(BenchmarkDataset dataset) {
+        return socialMediaDao.getAccountByCredentials(DatasetSeeder.usernameOf(dataset.randomAccountId()), DatasetSeeder.PASSWORD);
+    }
+
+    @Benchmark
+    public Account getAccountById(BenchmarkDataset dataset) {
+        return socialMediaDao.getAccountById(dataset.randomAccountId());
+    }
+
+    @Benchmark
+    public Account getAccountByUsername(BenchmarkDataset dataset) {
+        return socialMediaDao.getAccountByUsername(DatasetSeeder.usernameOf(dataset.randomAccountId()));
+    }
+
+    @Benchmark
+    public ArrayList<Message> getAllMessages(BenchmarkDataset dataset) {
+        return socialMediaDao.getAllMessages();
+    }
+
+    @Benchmark
+    public ArrayList<Message> getAllMessagesByUser(BenchmarkDataset dataset) {
+        return socialMediaDao.getAllMessagesByUser(dataset.randomAccountId());
+    }
+
+    @Benchmark
+    public Message getMessageById(BenchmarkDataset dataset) {
+        return socialMediaDao.getMessageById(dataset.randomMessageId());
+    }
+
+    @Benchmark
+    public void updateMessageById(BenchmarkDataset dataset) {
+        socialMediaDao.updateMessageById(dataset.randomMessageId(), "updated benchmark message");
+    }
+}
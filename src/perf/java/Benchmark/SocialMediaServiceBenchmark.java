@@ -0,0 +1,81 @@
+package Benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import DAO.SocialMediaDAO;
+import Model.*;
+import Service.SocialMediaService;
+
+/**
+ * Measures the SocialMediaService methods behind the original API (registering, logging in, posting, reading messages
+ * by ID, by account and in full, and updating and deleting messages), validation plus DAO calls, against seeded
+ * datasets of increasing size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class SocialMediaServiceBenchmark {
+    private SocialMediaService socialMediaService;
+
+    /**
+     * A message inserted before each invocation so that deletions always target an existing row
+     */
+    @State(Scope.Thread)
+    public static class InsertedMessage {
+        int messageId;
+
+        @Setup(Level.Invocation)
+        public void insert(BenchmarkDataset dataset) {
+            messageId = new SocialMediaDAO().addMessage(dataset.randomAccountId(), "message to delete", DatasetSeeder.FIRST_EPOCH).getMessage_id();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        socialMediaService = new SocialMediaService();
+    }
+
+    @Benchmark
+    public Account addAccount(BenchmarkDataset dataset) {
+        return socialMediaService.addAccount(new Account(dataset.uniqueUsername(), DatasetSeeder.PASSWORD));
+    }
+
+    @Benchmark
+    public Message addMessage(BenchmarkDataset dataset) {
+        return socialMediaService.addMessage(new Message(dataset.randomAccountId(), "benchmark message", DatasetSeeder.FIRST_EPOCH));
+    }
+
+    @Benchmark
+    public Message deleteMessageById(InsertedMessage insertedMessage) {
+        return socialMediaService.deleteMessageById(insertedMessage.messageId);
+    }
+
+    @Benchmark
+    public ArrayList<Message> getAllMessages(BenchmarkDataset dataset) {
+        return socialMediaService.getAllMessages();
+    }
+
+    @Benchmark
+    public ArrayList<Message> getAllMessagesByUser(BenchmarkDataset dataset) {
+        return socialMediaService.getAllMessagesByUser(dataset.randomAccountId());
+    }
+
+    @Benchmark
+    public Message getMessageById(BenchmarkDataset dataset) {
+        return socialMediaService.getMessageById(dataset.randomMessageId());
+    }
+
+    @Benchmark
+    public Account loginToAccount(BenchmarkDataset dataset) {
+        return socialMediaService.loginToAccount(new Account(DatasetSeeder.usernameOf(dataset.randomAccountId()), DatasetSeeder.PASSWORD));
+    }
+
+    @Benchmark
+    public Message updateMessageById(BenchmarkDataset dataset) {
+        return socialMediaService.updateMessageById(dataset.randomMessageId(), "updated benchmark message");
+    }
+}
@@ -0,0 +1,76 @@
+package Benchmark;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.*;
+import Model.Account;
+import Service.UsernameTrie;
+
+/**
+ * Measures username prefix searches and additions on a UsernameTrie holding up to 10M of the seeded usernames, and
+ * prints how long it took to build and how much memory it holds.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class UsernameTrieBenchmark {
+    @Param({"100000", "1000000", "10000000"})
+    public int accountCount;
+
+    private UsernameTrie trie;
+    private final AtomicLong uniqueSuffix = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+        long startNanos = System.nanoTime();
+
+        trie = new UsernameTrie();
+
+        for (int accountId = 1; accountId <= accountCount; accountId++) {
+            trie.add(DatasetSeeder.usernameOf(accountId), accountId);
+        }
+
+        long buildMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        System.gc();
+        long heapAfter = runtime.totalMemory() - runtime.freeMemory();
+
+        System.out.printf("%nUsername trie of %d accounts: %d nodes, built in %d ms, %d MB of arrays, %d MB of heap%n",
+                trie.size(), trie.getNodeCount(), buildMillis, trie.getMemoryBytes() >> 20, (heapAfter - heapBefore) >> 20);
+    }
+
+    /**
+     * A prefix that is most of a random username, matching a handful of accounts like a mention being typed
+     */
+    @Benchmark
+    public List<Account> searchNarrowPrefix() {
+        String username = DatasetSeeder.usernameOf(ThreadLocalRandom.current().nextInt(1, accountCount + 1));
+        return trie.search(username.substring(0, username.length() - 1), 10);
+    }
+
+    /**
+     * A prefix shared by every seeded account, so the walk stops at the limit rather than at the end of the matches
+     */
+    @Benchmark
+    public List<Account> searchBroadPrefix() {
+        return trie.search("bench_user_", 10);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public List<Account> searchNarrowPrefixContended() {
+        return searchNarrowPrefix();
+    }
+
+    @Benchmark
+    public void add() {
+        trie.add("bench_new_" + uniqueSuffix.incrementAndGet(), accountCount + 1);
+    }
+}
@@ -0,0 +1,244 @@
+package LoadTest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import Controller.ContentNegotiator;
+import Model.*;
+
+/**
+ * Sends a weighted mix of API requests to a running server using an open-loop arrival model.
+ * 
+ * Requests are scheduled at fixed (or exponentially distributed) intervals regardless of whether earlier requests
+ * have completed, and each latency is measured from the request's scheduled send time. A closed-loop generator that
+ * waits for each response before sending the next request slows down together with the server and hides the very
+ * stalls we want to see (coordinated omission); an open-loop generator keeps arriving at the target rate, as real
+ * clients do.
+ * 
+ * Request and response bodies are JSON unless another encoding that the API negotiates (Smile or CBOR) is chosen,
+ * in which case every request sends its body in that encoding and asks for its response in it.
+ */
+public class LoadGenerator {
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    private final String baseUrl;
+    private final TrafficMix trafficMix;
+    private final HttpClient httpClient;
+    private final ExecutorService responseExecutor;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String mediaType;
+    private final ObjectMapper bodyMapper;
+    private final SampleRing<Account> accounts = new SampleRing<>(10_000);
+    private final SampleRing<Integer> messageIds = new SampleRing<>(100_000);
+    private final AtomicLong uniqueSuffix = new AtomicLong();
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+
+    /**
+     * @param baseUrl the URL of the server, for example http://localhost:8080
+     * @param trafficMix the share of requests each route receives
+     */
+    public LoadGenerator(String baseUrl, TrafficMix trafficMix) {
+        this(baseUrl, trafficMix, ContentNegotiator.JSON);
+    }
+
+    /**
+     * @param baseUrl the URL of the server, for example http://localhost:8080
+     * @param trafficMix the share of requests each route receives
+     * @param mediaType the encoding of request and response bodies (see ContentNegotiator)
+     */
+    public LoadGenerator(String baseUrl, TrafficMix trafficMix, String mediaType) {
+        this.baseUrl = baseUrl;
+        this.trafficMix = trafficMix;
+        this.mediaType = mediaType;
+        this.bodyMapper = ContentNegotiator.mapperFor(mediaType);
+        this.responseExecutor = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(REQUEST_TIMEOUT)
+                .executor(responseExecutor)
+                .build();
+    }
+
+    /**
+     * Registers accounts and posts messages so that the reads, updates and deletes of the first run have data to hit
+     * 
+     * @param accountCount the number of accounts to register
+     * @param messageCount the number of messages to post (spread across the registered accounts)
+     */
+    public void prepare(int accountCount, int messageCount) throws Exception {
+        for (int i = 0; i < accountCount; i++) {
+            HttpResponse<byte[]> response = httpClient.send(buildRequest(Route.REGISTER), HttpResponse.BodyHandlers.ofByteArray());
+            collectIds(Route.REGISTER, response);
+        }
+
+        for (int i = 0; i < messageCount; i++) {
+            HttpResponse<byte[]> response = httpClient.send(buildRequest(Route.POST), HttpResponse.BodyHandlers.ofByteArray());
+            collectIds(Route.POST, response);
+        }
+    }
+
+    /**
+     * Generates load at a fixed arrival rate and waits for the outstanding requests to complete
+     * 
+     * @param rate the number of requests to schedule per second
+     * @param duration how long to keep scheduling requests
+     * @param poisson whether to use exponentially distributed inter-arrival times instead of a constant interval
+     * @return the latencies and outcomes recorded during the run
+     */
+    public LoadReport run(double rate, Duration duration, boolean poisson) throws InterruptedException {
+        Map<Route, RouteStats> routeStats = new EnumMap<>(Route.class);
+        for (Route route : Route.values()) {
+            routeStats.put(route, new RouteStats());
+        }
+
+        AtomicInteger outstanding = new AtomicInteger();
+        Random random = new Random();
+        double meanIntervalNanos = 1e9 / rate;
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        long intendedStart = start;
+
+        while (intendedStart < end) {
+            // Sleep until the scheduled send time - if we are running late, send immediately without rescheduling
+            long wait = intendedStart - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            send(trafficMix.next(random), intendedStart, routeStats, outstanding);
+
+            intendedStart += poisson ? (long) (-Math.log(1 - random.nextDouble()) * meanIntervalNanos) : (long) meanIntervalNanos;
+        }
+
+        // Let the last requests finish (each one times out on its own after REQUEST_TIMEOUT)
+        long drainDeadline = System.nanoTime() + REQUEST_TIMEOUT.toNanos() * 2;
+        while (outstanding.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+
+        return new LoadReport(rate, System.nanoTime() - start, routeStats);
+    }
+
+    /**
+     * Stops the threads that process responses
+     */
+    public void shutdown() throws InterruptedException {
+        responseExecutor.shutdown();
+        responseExecutor.awaitTermination(REQUEST_TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+    }
+
+    /**
+     * Sends one request asynchronously and records its outcome when it completes
+     */
+    private void send(Route route, long intendedStart, Map<Route, RouteStats> routeStats, AtomicInteger outstanding) {
+        RouteStats stats = routeStats.get(route);
+        outstanding.incrementAndGet();
+
+        httpClient.sendAsync(buildRequest(route), HttpResponse.BodyHandlers.ofByteArray()).whenComplete((response, error) -> {
+            long latencyNanos = System.nanoTime() - intendedStart;
+
+            if (error != null) {
+                stats.recordFailure(latencyNanos);
+            }
+            else {
+                stats.recordResponse(latencyNanos, response.statusCode(), response.body().length);
+                collectIds(route, response);
+            }
+
+            outstanding.decrementAndGet();
+        });
+    }
+
+    /**
+     * Builds a request for a route, targeting accounts and messages that earlier requests created
+     */
+    private HttpRequest buildRequest(Route route) {
+        Account account = accounts.random();
+        Integer messageId = messageIds.random();
+        int accountId = account == null ? 1 : account.getAccount_id();
+        int targetMessageId = messageId == null ? 1 : messageId;
+
+        switch (route) {
+            case REGISTER:
+                return jsonRequest("/register", "POST", "{\"username\":\"load_" + runId + "_" + uniqueSuffix.incrementAndGet() + "\",\"password\":\"password\"}");
+            case LOGIN:
+                String username = account == null ? "testuser1" : account.getUsername();
+                return jsonRequest("/login", "POST", "{\"username\":\"" + username + "\",\"password\":\"password\"}");
+            case POST:
+                return jsonRequest("/messages", "POST", "{\"posted_by\":" + accountId + ",\"message_text\":\"load test message "
+                        + ThreadLocalRandom.current().nextInt(1_000_000) + "\",\"time_posted_epoch\":" + System.currentTimeMillis() / 1000 + "}");
+            case GET:
+                return jsonRequest("/messages/" + targetMessageId, "GET", null);
+            case LIST:
+                return jsonRequest("/messages", "GET", null);
+            case USER_MESSAGES:
+                return jsonRequest("/accounts/" + accountId + "/messages", "GET", null);
+            case PATCH:
+                return jsonRequest("/messages/" + targetMessageId, "PATCH", "{\"message_text\":\"updated load test message\"}");
+            case DELETE:
+                return jsonRequest("/messages/" + targetMessageId, "DELETE", null);
+            default:
+                throw new IllegalArgumentException("Unsupported route: " + route);
+        }
+    }
+
+    /**
+     * Builds a request from a JSON body, re-encoded in the chosen encoding
+     */
+    private HttpRequest jsonRequest(String path, String method, String body) {
+        HttpRequest.BodyPublisher bodyPublisher = HttpRequest.BodyPublishers.noBody();
+
+        if (body != null) {
+            try {
+                bodyPublisher = HttpRequest.BodyPublishers.ofByteArray(bodyMapper.writeValueAsBytes(objectMapper.readTree(body)));
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        return HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", mediaType)
+                .header("Accept", mediaType)
+                .method(method, bodyPublisher)
+                .build();
+    }
+
+    /**
+     * Remembers the accounts and messages created by successful requests so that later requests can target them
+     */
+    private void collectIds(Route route, HttpResponse<byte[]> response) {
+        if (response.statusCode() != 200 || response.body().length == 0) {
+            return;
+        }
+
+        try {
+            if (route == Route.REGISTER) {
+                accounts.add(bodyMapper.readValue(response.body(), Account.class));
+            }
+            else if (route == Route.POST) {
+                messageIds.add(bodyMapper.readValue(response.body(), Message.class).getMessage_id());
+            }
+        }
+        catch (Exception e) {
+            // The response was not the body we expected, which the status counts already reflect
+        }
+    }
+}
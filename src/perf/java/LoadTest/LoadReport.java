@@ -0,0 +1,157 @@
+package LoadTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+import org.HdrHistogram.Histogram;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * The results of one load test run at a fixed arrival rate: per-route latency percentiles, throughput and error rates.
+ */
+public class LoadReport {
+    private final double targetRate;
+    private final long elapsedNanos;
+    private final Map<Route, RouteStats> routeStats;
+
+    /**
+     * @param targetRate the arrival rate (requests per second) the run was scheduled at
+     * @param elapsedNanos the time from the first scheduled request until the last response arrived
+     * @param routeStats the statistics recorded for each route
+     */
+    public LoadReport(double targetRate, long elapsedNanos, Map<Route, RouteStats> routeStats) {
+        this.targetRate = targetRate;
+        this.elapsedNanos = elapsedNanos;
+        this.routeStats = new EnumMap<>(routeStats);
+    }
+
+    public double getTargetRate() {
+        return targetRate;
+    }
+
+    /**
+     * @return the latency distribution of all routes combined (microseconds)
+     */
+    public Histogram getOverallLatencyMicros() {
+        Histogram overall = new Histogram(3);
+
+        for (RouteStats stats : routeStats.values()) {
+            overall.add(stats.getLatencyMicros());
+        }
+
+        return overall;
+    }
+
+    /**
+     * @return the fraction of all requests that failed or received an error status
+     */
+    public double getErrorRate() {
+        long requests = 0;
+        long errors = 0;
+
+        for (RouteStats stats : routeStats.values()) {
+            requests += stats.getRequestCount();
+            errors += stats.getErrorCount();
+        }
+
+        return requests == 0 ? 0 : (double) errors / requests;
+    }
+
+    /**
+     * @return the mean size of the response bodies received, in bytes
+     */
+    public double getMeanResponseBodyBytes() {
+        long responses = 0;
+        long bytes = 0;
+
+        for (RouteStats stats : routeStats.values()) {
+            responses += stats.getRequestCount() - stats.getFailureCount();
+            bytes += stats.getResponseBodyBytes();
+        }
+
+        return responses == 0 ? 0 : (double) bytes / responses;
+    }
+
+    /**
+     * @return the number of responses completed per second
+     */
+    public double getThroughput() {
+        return getOverallLatencyMicros().getTotalCount() / (elapsedNanos / 1e9);
+    }
+
+    /**
+     * Prints a table of per-route and overall results
+     * 
+     * @param out where the table is printed
+     */
+    public void print(PrintStream out) {
+        out.printf("Target rate %.1f req/s, achieved %.1f req/s over %.1f s, %.1f response body bytes on average%n", targetRate,
+                getThroughput(), elapsedNanos / 1e9, getMeanResponseBodyBytes());
+        out.printf("%-38s %9s %9s %9s %9s %9s %9s %8s  %s%n", "Route", "Count", "Req/s", "p50 ms", "p99 ms", "p99.9 ms", "Max ms", "Errors", "Statuses");
+
+        for (Map.Entry<Route, RouteStats> entry : routeStats.entrySet()) {
+            RouteStats stats = entry.getValue();
+
+            printRow(out, entry.getKey().getLabel(), stats.getLatencyMicros(),
+                    stats.getRequestCount() == 0 ? 0 : (double) stats.getErrorCount() / stats.getRequestCount(),
+                    stats.getStatusCounts().toString());
+        }
+
+        printRow(out, "ALL", getOverallLatencyMicros(), getErrorRate(), "");
+    }
+
+    /**
+     * Writes the report as JSON so that runs can be compared by other tools
+     * 
+     * @param file where the JSON is written
+     */
+    public void writeJson(File file) throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        ObjectNode root = objectMapper.createObjectNode();
+
+        root.put("targetRate", targetRate);
+        root.put("throughput", getThroughput());
+        root.put("errorRate", getErrorRate());
+        root.put("meanResponseBodyBytes", getMeanResponseBodyBytes());
+        root.set("overall", latencyJson(objectMapper, getOverallLatencyMicros()));
+
+        ArrayNode routes = root.putArray("routes");
+        for (Map.Entry<Route, RouteStats> entry : routeStats.entrySet()) {
+            ObjectNode route = latencyJson(objectMapper, entry.getValue().getLatencyMicros());
+
+            route.put("route", entry.getKey().getLabel());
+            route.put("errors", entry.getValue().getErrorCount());
+            route.put("failures", entry.getValue().getFailureCount());
+            route.put("throttled", entry.getValue().getThrottledCount());
+            route.put("responseBodyBytes", entry.getValue().getResponseBodyBytes());
+            route.set("statuses", objectMapper.valueToTree(entry.getValue().getStatusCounts()));
+            routes.add(route);
+        }
+
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(file, root);
+    }
+
+    private void printRow(PrintStream out, String label, Histogram latencyMicros, double errorRate, String statuses) {
+        out.printf("%-38s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %7.2f%%  %s%n", label, latencyMicros.getTotalCount(),
+                latencyMicros.getTotalCount() / (elapsedNanos / 1e9),
+                latencyMicros.getValueAtPercentile(50) / 1000.0, latencyMicros.getValueAtPercentile(99) / 1000.0,
+                latencyMicros.getValueAtPercentile(99.9) / 1000.0, latencyMicros.getMaxValue() / 1000.0,
+                errorRate * 100, statuses);
+    }
+
+    private static ObjectNode latencyJson(ObjectMapper objectMapper, Histogram latencyMicros) {
+        ObjectNode node = objectMapper.createObjectNode();
+
+        node.put("count", latencyMicros.getTotalCount());
+        node.put("p50Millis", latencyMicros.getValueAtPercentile(50) / 1000.0);
+        node.put("p99Millis", latencyMicros.getValueAtPercentile(99) / 1000.0);
+        node.put("p999Millis", latencyMicros.getValueAtPercentile(99.9) / 1000.0);
+        node.put("maxMillis", latencyMicros.getMaxValue() / 1000.0);
+
+        return node;
+    }
+}
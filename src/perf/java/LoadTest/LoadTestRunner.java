@@ -0,0 +1,296 @@
+package LoadTest;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import Controller.ContentNegotiator;
+import Controller.ServerConfig;
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Command line entry point of the HTTP load test.
+ * 
+ * Without --url, the database is reset and the API from SocialMediaController.startAPI() is started in this JVM
+ * on --port. All of the synthetic traffic comes from one IP address and a few accounts, so the in-process server's
+ * rate limits are raised out of reach unless the rateLimit.* System properties are set, and ramping finds where the
+ * server saturates rather than where the limiters start answering 429. Options (all optional):
+ * 
+ * --url=http://host:port     load an already running server instead of starting one
+ * --port=8080                port of the in-process server
+ * --profile=default          server profile of the in-process server (see ServerConfig)
+ * --profiles=a,b,...         run the whole test once per server profile, each against a fresh in-process server,
+ *                            and compare them; --profiles=all runs every shipped profile
+ * --format=json              encoding of request and response bodies: json, smile or cbor
+ * --formats=a,b,...          run the whole test once per encoding and compare them; --formats=all runs every one
+ * --mix=get=50,post=20,...   traffic mix (see TrafficMix.DEFAULT_MIX)
+ * --rate=200                 arrival rate in requests per second
+ * --duration=30              seconds of measured load (per step when ramping)
+ * --warmup=10                seconds of unmeasured load before measuring
+ * --poisson                  use exponentially distributed inter-arrival times
+ * --accounts=100             accounts registered before the first run
+ * --messages=1000            messages posted before the first run
+ * --out=target/loadtest-result.json
+ * 
+ * Ramp mode (--ramp) starts at --rate and raises the rate by --step-percent=25 after every step until the overall
+ * p99 latency exceeds --slo-p99-ms=50, the error rate exceeds --max-error-rate=0.01, or --max-rate is reached.
+ * The last rate that met the SLO is reported as the saturation point.
+ * 
+ * With --profiles or --formats, each variant's report is written next to --out with the variant's name appended,
+ * and a table comparing the variants (their saturation points, when ramping) is printed at the end. This is how a
+ * change to a profile in src/main/resources/server-profiles is validated, and how the encodings' latency and
+ * response sizes are compared. The variants run one after another in one JVM, so keep --warmup long enough that
+ * later variants do not gain from code the earlier ones already warmed up.
+ * 
+ * Example: java -cp target/benchmarks.jar LoadTest.LoadTestRunner --ramp --rate=100 --duration=15
+ *          java -cp target/benchmarks.jar LoadTest.LoadTestRunner --profiles=all --ramp --rate=100 --duration=15
+ *          java -cp target/benchmarks.jar LoadTest.LoadTestRunner --formats=all --mix=list=50,get=50 --rate=200
+ */
+public class LoadTestRunner {
+    /**
+     * The encodings accepted by --format, by their short names
+     */
+    private static final Map<String, String> FORMATS = Map.of(
+            "json", ContentNegotiator.JSON,
+            "smile", ContentNegotiator.SMILE,
+            "cbor", ContentNegotiator.CBOR);
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        File out = new File(options.getOrDefault("out", "target/loadtest-result.json"));
+
+        if (options.containsKey("profiles") && options.containsKey("formats")) {
+            throw new IllegalArgumentException("--profiles and --formats cannot be combined, compare one at a time");
+        }
+
+        String variantOption = options.containsKey("profiles") ? "profiles" : options.containsKey("formats") ? "formats" : null;
+
+        if (variantOption == null) {
+            if (options.containsKey("profile")) {
+                System.setProperty(ServerConfig.PROFILE_PROPERTY, options.get("profile"));
+            }
+
+            runLoadTest(options, out);
+            return;
+        }
+
+        if (options.containsKey("url") && variantOption.equals("profiles")) {
+            throw new IllegalArgumentException("--profiles starts its own servers and cannot be combined with --url");
+        }
+
+        String variantList = options.get(variantOption);
+        List<String> variants;
+
+        if (variantList.equals("all")) {
+            variants = variantOption.equals("profiles") ? ServerConfig.PROFILES : List.of("json", "smile", "cbor");
+        }
+        else {
+            variants = Arrays.asList(variantList.split(","));
+        }
+
+        Map<String, LoadReport> reports = new LinkedHashMap<>();
+
+        for (String variant : variants) {
+            if (variantOption.equals("profiles")) {
+                System.out.println("=== Server profile " + variant + " ===");
+                System.setProperty(ServerConfig.PROFILE_PROPERTY, variant);
+            }
+            else {
+                System.out.println("=== Encoding " + variant + " ===");
+                options.put("format", variant);
+            }
+
+            reports.put(variant, runLoadTest(options, variantOutput(out, variant)));
+        }
+
+        printComparison(variantOption.equals("profiles") ? "Profile" : "Encoding", reports, System.out);
+    }
+
+    /**
+     * Raises the in-process server's per-account and per-IP rate limits out of reach, leaving any that were set on
+     * the command line
+     */
+    private static void disableRateLimitsUnlessConfigured() {
+        for (String limiter : List.of("messages", "auth")) {
+            if (System.getProperty("rateLimit." + limiter + ".perSecond") == null) {
+                System.setProperty("rateLimit." + limiter + ".perSecond", "1000000000");
+            }
+
+            if (System.getProperty("rateLimit." + limiter + ".burst") == null) {
+                System.setProperty("rateLimit." + limiter + ".burst", "1000000000");
+            }
+        }
+    }
+
+    /**
+     * Runs the load test once, starting an in-process server unless --url is given
+     * 
+     * @param options the command line options
+     * @param out where the report is written
+     * @return the report of the run, or when ramping, of the last step within the SLO (null if none was)
+     */
+    private static LoadReport runLoadTest(Map<String, String> options, File out) throws Exception {
+        String url = options.get("url");
+        Javalin app = null;
+
+        if (url == null) {
+            int port = Integer.parseInt(options.getOrDefault("port", "8080"));
+
+            ConnectionUtil.resetTestDatabase();
+            disableRateLimitsUnlessConfigured();
+            app = new SocialMediaController().startAPI().start(port);
+            url = "http://localhost:" + port;
+        }
+
+        TrafficMix trafficMix = TrafficMix.parse(options.getOrDefault("mix", TrafficMix.DEFAULT_MIX));
+        double rate = Double.parseDouble(options.getOrDefault("rate", "200"));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "30")));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "10")));
+        boolean poisson = options.containsKey("poisson");
+        String format = options.getOrDefault("format", "json");
+        String mediaType = FORMATS.get(format);
+
+        if (mediaType == null) {
+            throw new IllegalArgumentException("Unknown format \"" + format + "\", expected one of json, smile or cbor");
+        }
+
+        System.out.println("Load testing " + url + " with mix " + trafficMix + " in " + mediaType);
+
+        LoadGenerator loadGenerator = new LoadGenerator(url, trafficMix, mediaType);
+
+        try {
+            loadGenerator.prepare(Integer.parseInt(options.getOrDefault("accounts", "100")), Integer.parseInt(options.getOrDefault("messages", "1000")));
+
+            if (!warmup.isZero()) {
+                loadGenerator.run(rate, warmup, poisson);
+            }
+
+            if (options.containsKey("ramp")) {
+                return ramp(loadGenerator, rate, duration, poisson, options, out);
+            }
+
+            LoadReport report = loadGenerator.run(rate, duration, poisson);
+
+            report.print(System.out);
+            report.writeJson(out);
+
+            return report;
+        }
+        finally {
+            loadGenerator.shutdown();
+
+            if (app != null) {
+                app.stop();
+            }
+        }
+    }
+
+    /**
+     * Raises the arrival rate step by step until the SLO is breached, then reports the saturation point
+     */
+    private static LoadReport ramp(LoadGenerator loadGenerator, double startRate, Duration stepDuration, boolean poisson,
+                             Map<String, String> options, File out) throws Exception {
+        double stepPercent = Double.parseDouble(options.getOrDefault("step-percent", "25"));
+        double sloP99Millis = Double.parseDouble(options.getOrDefault("slo-p99-ms", "50"));
+        double maxErrorRate = Double.parseDouble(options.getOrDefault("max-error-rate", "0.01"));
+        double maxRate = Double.parseDouble(options.getOrDefault("max-rate", "1000000"));
+
+        LoadReport lastPassing = null;
+        double rate = startRate;
+
+        while (rate <= maxRate) {
+            LoadReport report = loadGenerator.run(rate, stepDuration, poisson);
+            double p99Millis = report.getOverallLatencyMicros().getValueAtPercentile(99) / 1000.0;
+            boolean passed = p99Millis <= sloP99Millis && report.getErrorRate() <= maxErrorRate;
+
+            System.out.printf("Step at %.1f req/s: achieved %.1f req/s, p99 %.2f ms, errors %.2f%% -> %s%n", rate,
+                    report.getThroughput(), p99Millis, report.getErrorRate() * 100, passed ? "within SLO" : "SLO breached");
+
+            if (!passed) {
+                report.print(System.out);
+                break;
+            }
+
+            lastPassing = report;
+            rate *= 1 + stepPercent / 100;
+        }
+
+        if (lastPassing == null) {
+            System.out.printf("The SLO (p99 <= %.1f ms, errors <= %.2f%%) was breached at the starting rate of %.1f req/s%n",
+                    sloP99Millis, maxErrorRate * 100, startRate);
+            return null;
+        }
+
+        System.out.printf("Saturation point: %.1f req/s (last rate meeting p99 <= %.1f ms and errors <= %.2f%%)%n",
+                lastPassing.getTargetRate(), sloP99Millis, maxErrorRate * 100);
+        lastPassing.print(System.out);
+        lastPassing.writeJson(out);
+
+        return lastPassing;
+    }
+
+    /**
+     * @return the report file of one profile or encoding: target/loadtest-result.json becomes
+     *         target/loadtest-result-low-latency.json
+     */
+    private static File variantOutput(File out, String variant) {
+        String name = out.getName();
+        int dot = name.lastIndexOf('.');
+        String variantName = dot < 0 ? name + "-" + variant : name.substring(0, dot) + "-" + variant + name.substring(dot);
+
+        return new File(out.getParentFile(), variantName);
+    }
+
+    /**
+     * Prints one line per profile or encoding with the rate it was run at (its saturation point, when ramping), its
+     * latencies and the mean size of its response bodies
+     */
+    private static void printComparison(String variantHeading, Map<String, LoadReport> reports, PrintStream out) {
+        out.printf("%-18s %12s %12s %9s %9s %9s %8s %9s%n", variantHeading, "Target req/s", "Req/s", "p50 ms", "p99 ms", "p99.9 ms", "Errors", "Body B");
+
+        for (Map.Entry<String, LoadReport> entry : reports.entrySet()) {
+            LoadReport report = entry.getValue();
+
+            if (report == null) {
+                out.printf("%-18s %s%n", entry.getKey(), "breached the SLO at the starting rate");
+                continue;
+            }
+
+            Histogram latency = report.getOverallLatencyMicros();
+            out.printf("%-18s %12.1f %12.1f %9.2f %9.2f %9.2f %7.2f%% %9.1f%n", entry.getKey(), report.getTargetRate(), report.getThroughput(),
+                    latency.getValueAtPercentile(50) / 1000.0, latency.getValueAtPercentile(99) / 1000.0,
+                    latency.getValueAtPercentile(99.9) / 1000.0, report.getErrorRate() * 100, report.getMeanResponseBodyBytes());
+        }
+    }
+
+    /**
+     * Parses --name=value and --flag arguments
+     */
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+
+            int equals = arg.indexOf('=');
+
+            if (equals < 0) {
+                options.put(arg.substring(2), "true");
+            }
+            else {
+                options.put(arg.substring(2, equals), arg.substring(equals + 1));
+            }
+        }
+
+        return options;
+    }
+}
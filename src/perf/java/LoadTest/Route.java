@@ -0,0 +1,53 @@
+package LoadTest;
+
+/**
+ * The API routes exercised by the load test, along with the name used to weight them in a TrafficMix.
+ */
+public enum Route {
+    REGISTER("register", "POST /register"),
+    LOGIN("login", "POST /login"),
+    POST("post", "POST /messages"),
+    GET("get", "GET /messages/{message_id}"),
+    LIST("list", "GET /messages"),
+    USER_MESSAGES("user", "GET /accounts/{account_id}/messages"),
+    PATCH("patch", "PATCH /messages/{message_id}"),
+    DELETE("delete", "DELETE /messages/{message_id}");
+
+    private final String mixName;
+    private final String label;
+
+    Route(String mixName, String label) {
+        this.mixName = mixName;
+        this.label = label;
+    }
+
+    /**
+     * @return the short name used for this route in a traffic mix specification (for example: "get=50")
+     */
+    public String getMixName() {
+        return mixName;
+    }
+
+    /**
+     * @return the HTTP method and path template of this route
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Finds a route by its traffic mix name
+     * 
+     * @param mixName the short name of the route
+     * @return the matching Route
+     */
+    public static Route fromMixName(String mixName) {
+        for (Route route : values()) {
+            if (route.mixName.equalsIgnoreCase(mixName)) {
+                return route;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown route in traffic mix: " + mixName);
+    }
+}
@@ -0,0 +1,109 @@
+package LoadTest;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Latency distribution and outcome counts of one route during one load test run.
+ * 
+ * Latencies are recorded in microseconds, measured from when a request was scheduled to be sent (not from when it
+ * was actually sent), so time a request spends waiting behind a stalled server is included.
+ */
+public class RouteStats {
+    private final ConcurrentHistogram latencyMicros = new ConcurrentHistogram(3);
+    private final Map<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder responseBodyBytes = new LongAdder();
+
+    /**
+     * Records a completed HTTP exchange
+     * 
+     * Responses with a 5xx status (including the 503 of the load shedder) count as errors. Responses with the 429
+     * status of the rate limiters are counted as throttled instead, since they are the server working as configured.
+     * 
+     * @param latencyNanos the time from the scheduled send time until the response arrived
+     * @param status the HTTP response status
+     * @param bodyBytes the size of the response body
+     */
+    public void recordResponse(long latencyNanos, int status, int bodyBytes) {
+        latencyMicros.recordValue(Math.max(1, latencyNanos / 1000));
+        statusCounts.computeIfAbsent(status, key -> new LongAdder()).increment();
+        responseBodyBytes.add(bodyBytes);
+
+        if (status >= 500) {
+            errors.increment();
+        }
+        else if (status == 429) {
+            throttled.increment();
+        }
+    }
+
+    /**
+     * Records a request that did not receive a response (connection failure or timeout)
+     * 
+     * @param latencyNanos the time from the scheduled send time until the failure was noticed
+     */
+    public void recordFailure(long latencyNanos) {
+        latencyMicros.recordValue(Math.max(1, latencyNanos / 1000));
+        failures.increment();
+        errors.increment();
+    }
+
+    /**
+     * @return a copy of the recorded latency distribution (microseconds)
+     */
+    public Histogram getLatencyMicros() {
+        return latencyMicros.copy();
+    }
+
+    /**
+     * @return the number of responses received for each HTTP status
+     */
+    public Map<Integer, Long> getStatusCounts() {
+        Map<Integer, Long> counts = new TreeMap<>();
+        statusCounts.forEach((status, count) -> counts.put(status, count.sum()));
+
+        return counts;
+    }
+
+    /**
+     * @return the total number of requests recorded, whether or not they succeeded
+     */
+    public long getRequestCount() {
+        return latencyMicros.getTotalCount();
+    }
+
+    /**
+     * @return the number of requests that failed without a response
+     */
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    /**
+     * @return the number of requests that failed or received an error status
+     */
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    /**
+     * @return the number of requests rejected by a rate limiter with 429
+     */
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    /**
+     * @return the total size of the response bodies received
+     */
+    public long getResponseBodyBytes() {
+        return responseBodyBytes.sum();
+    }
+}
@@ -0,0 +1,41 @@
+package LoadTest;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A fixed-size, thread-safe ring of recently seen values (account credentials, message IDs) that requests can
+ * sample from. Once the ring is full, new values overwrite the oldest ones.
+ */
+public class SampleRing<T> {
+    private final AtomicReferenceArray<T> values;
+    private final AtomicLong added = new AtomicLong();
+
+    /**
+     * @param capacity the maximum number of values kept
+     */
+    public SampleRing(int capacity) {
+        this.values = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Adds a value, replacing the oldest value if the ring is full
+     */
+    public void add(T value) {
+        values.set((int) (added.getAndIncrement() % values.length()), value);
+    }
+
+    /**
+     * @return a random value from the ring, or null if nothing has been added yet
+     */
+    public T random() {
+        long size = Math.min(added.get(), values.length());
+
+        if (size == 0) {
+            return null;
+        }
+
+        return values.get(ThreadLocalRandom.current().nextInt((int) size));
+    }
+}
@@ -0,0 +1,97 @@
+package LoadTest;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A weighted selection of routes that determines what share of the generated traffic each route receives.
+ * 
+ * A mix is written as comma separated route=weight pairs, for example "get=50,list=5,post=20,login=10".
+ * Weights are relative, so they do not need to add up to 100.
+ */
+public class TrafficMix {
+    /**
+     * A read-heavy mix resembling production traffic
+     */
+    public static final String DEFAULT_MIX = "register=2,login=10,post=15,get=45,list=3,user=10,patch=10,delete=5";
+
+    private final Route[] routes;
+    private final double[] cumulativeWeights;
+    private final Map<Route, Double> weights;
+
+    private TrafficMix(Map<Route, Double> weights) {
+        this.weights = weights;
+        this.routes = weights.keySet().toArray(new Route[0]);
+        this.cumulativeWeights = new double[routes.length];
+
+        double total = 0;
+        for (int i = 0; i < routes.length; i++) {
+            total += weights.get(routes[i]);
+            cumulativeWeights[i] = total;
+        }
+
+        if (total <= 0) {
+            throw new IllegalArgumentException("A traffic mix needs at least one route with a positive weight");
+        }
+    }
+
+    /**
+     * Parses a traffic mix specification
+     * 
+     * @param specification comma separated route=weight pairs
+     * @return the parsed TrafficMix
+     */
+    public static TrafficMix parse(String specification) {
+        Map<Route, Double> weights = new EnumMap<>(Route.class);
+
+        for (String pair : specification.split(",")) {
+            String[] parts = pair.trim().split("=");
+
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected route=weight but found: " + pair);
+            }
+
+            double weight = Double.parseDouble(parts[1].trim());
+
+            if (weight > 0) {
+                weights.put(Route.fromMixName(parts[0].trim()), weight);
+            }
+        }
+
+        return new TrafficMix(weights);
+    }
+
+    /**
+     * Picks the route of the next request
+     * 
+     * @param random the source of randomness (one per sending thread)
+     * @return a route chosen in proportion to its weight
+     */
+    public Route next(Random random) {
+        double point = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (point < cumulativeWeights[i]) {
+                return routes[i];
+            }
+        }
+
+        return routes[routes.length - 1];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+
+        for (Map.Entry<Route, Double> entry : weights.entrySet()) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+
+            builder.append(entry.getKey().getMixName()).append('=').append(entry.getValue());
+        }
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,143 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaServer;
+import Model.Account;
+import Util.EmbeddedDatabase;
+
+public class AccountSearchTest {
+    static EmbeddedDatabase database;
+    SocialMediaServer server;
+    String baseUrl;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before the tests of this class run, create the in-memory database that they share.
+     * @throws SQLException
+     */
+    @BeforeClass
+    public static void createDatabase() throws SQLException {
+        database = new EmbeddedDatabase();
+    }
+
+    @AfterClass
+    public static void dropDatabase() {
+        database.close();
+    }
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws SQLException
+     */
+    @Before
+    public void setUp() throws SQLException {
+        database.reset();
+        startServer();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * Registering accounts whose usernames share prefixes, then sending http requests to
+     * GET localhost:8080/accounts/search with several prefixes and limits, before and after restarting the server
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the accounts whose usernames start with the prefix, case-sensitively and in username order,
+     *  including the seeded account found by the startup scan
+     */
+    @Test
+    public void searchByUsernamePrefix() throws IOException, InterruptedException, SQLException {
+        for (String username : List.of("alice", "alicia", "al", "Alex", "bob", "alic")) {
+            register(username);
+        }
+
+        for (int run = 0; run < 2; run++) {
+            Assert.assertEquals(List.of("al", "alic", "alice", "alicia"), searchUsernames("?prefix=a"));
+            Assert.assertEquals(List.of("al", "alic"), searchUsernames("?prefix=al&limit=2"));
+            Assert.assertEquals(List.of("alic"), searchUsernames("?prefix=alic&limit=1"));
+            Assert.assertEquals(List.of("alice"), searchUsernames("?prefix=alice"));
+            Assert.assertEquals(List.of("Alex"), searchUsernames("?prefix=A"));
+            Assert.assertEquals(List.of("testuser1"), searchUsernames("?prefix=test"));
+            Assert.assertEquals(List.of(), searchUsernames("?prefix=alicex"));
+
+            // The next server builds its index from a scan of the accounts
+            server.stop();
+            startServer();
+        }
+
+        HttpResponse<String> response = get("/accounts/search?prefix=bo");
+        Account[] accounts = objectMapper.readValue(response.body(), Account[].class);
+        Assert.assertEquals(1, accounts.length);
+        Assert.assertEquals(6, accounts[0].getAccount_id());
+        Assert.assertNull(accounts[0].getPassword());
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/accounts/search without a prefix, with an empty prefix and with
+     * limits outside 1 to 100
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void invalidSearchesAreRejected() throws IOException, InterruptedException {
+        for (String query : List.of("", "?prefix=", "?prefix=a&limit=0", "?prefix=a&limit=101", "?prefix=a&limit=ten")) {
+            Assert.assertEquals(query, 400, get("/accounts/search" + query).statusCode());
+        }
+    }
+
+    private void startServer() throws SQLException {
+        server = SocialMediaServer.builder().dataSource(database.getDataSource()).port(0).warmUp(false).start().join();
+        baseUrl = server.getBaseUrl();
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create(baseUrl + path)).build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private List<String> searchUsernames(String query) throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/accounts/search" + query);
+        Assert.assertEquals(200, response.statusCode());
+
+        List<String> usernames = new ArrayList<>();
+
+        for (Account account : objectMapper.readValue(response.body(), Account[].class)) {
+            usernames.add(account.getUsername());
+        }
+
+        return usernames;
+    }
+
+    private void register(String username) throws IOException, InterruptedException {
+        HttpRequest registerRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/register"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\": \"" + username + "\", \"password\": \"password\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(registerRequest, HttpResponse.BodyHandlers.discarding()).statusCode());
+    }
+}
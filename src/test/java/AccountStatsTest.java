@@ -0,0 +1,172 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaServer;
+import Model.AccountStats;
+import Util.EmbeddedDatabase;
+
+public class AccountStatsTest {
+    static EmbeddedDatabase database;
+    SocialMediaServer server;
+    String baseUrl;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before the tests of this class run, create the in-memory database that they share.
+     * @throws SQLException
+     */
+    @BeforeClass
+    public static void createDatabase() throws SQLException {
+        database = new EmbeddedDatabase();
+    }
+
+    @AfterClass
+    public static void dropDatabase() {
+        database.close();
+    }
+
+    /**
+     * Before every test, shorten the reconciliation interval, reset the database, restart the Javalin app, and
+     * create a new webClient and ObjectMapper for interacting locally on the web.
+     * @throws SQLException
+     */
+    @Before
+    public void setUp() throws SQLException {
+        System.setProperty("accountStats.reconcileIntervalSeconds", "1");
+        database.reset();
+        server = SocialMediaServer.builder().dataSource(database.getDataSource()).port(0).warmUp(false).start().join();
+        baseUrl = server.getBaseUrl();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+        System.clearProperty("accountStats.reconcileIntervalSeconds");
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/stats
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the count and latest time of the seeded message
+     */
+    @Test
+    public void getAccountStats() throws IOException, InterruptedException {
+        Assert.assertEquals(new AccountStats(1, 1, 1669947792L), getStats(1));
+    }
+
+    /**
+     * Posting two messages, then deleting the latest and then the other one, sending an http request to
+     * GET localhost:8080/accounts/1/stats after each write
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: statistics that follow every write, falling back to the previous latest time when the latest
+     *  message is deleted
+     */
+    @Test
+    public void getAccountStatsAfterWrites() throws IOException, InterruptedException {
+        postMessage("latest message", 1669947800);
+        postMessage("earlier message", 1669947795);
+        Assert.assertEquals(new AccountStats(1, 3, 1669947800L), getStats(1));
+
+        deleteMessage(2);
+        Assert.assertEquals(new AccountStats(1, 2, 1669947795L), getStats(1));
+
+        deleteMessage(1);
+        Assert.assertEquals(new AccountStats(1, 1, 1669947795L), getStats(1));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/9/stats for an account that does not exist
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body:
+     */
+    @Test
+    public void getAccountStatsAccountNotFound() throws IOException, InterruptedException {
+        HttpRequest statsRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/accounts/9/stats"))
+                .build();
+        HttpResponse<String> response = webClient.send(statsRequest, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals("", response.body());
+    }
+
+    /**
+     * Corrupting the statistics of account 1 in the database, waiting for the reconciliation job, then sending http
+     * requests to GET localhost:8080/accounts/1/stats and GET localhost:8080/metrics
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the corrected statistics, and the drift counted in the metrics
+     */
+    @Test(timeout = 10000)
+    public void reconciliationCorrectsDrift() throws IOException, InterruptedException, SQLException {
+        try (Connection connection = database.getDataSource().getConnection(); Statement statement = connection.createStatement()) {
+            statement.executeUpdate("UPDATE account_stats SET message_count = 7 WHERE account_id = 1");
+        }
+
+        HttpRequest metricsRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/metrics"))
+                .build();
+
+        // Poll until the reconciliation job has counted the drift
+        while (!webClient.send(metricsRequest, HttpResponse.BodyHandlers.ofString()).body().contains("account_stats_drift_total 1\n")) {
+            Thread.sleep(50);
+        }
+
+        Assert.assertEquals(new AccountStats(1, 1, 1669947792L), getStats(1));
+    }
+
+    private AccountStats getStats(int accountId) throws IOException, InterruptedException {
+        HttpRequest statsRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/accounts/" + accountId + "/stats"))
+                .build();
+        HttpResponse<String> response = webClient.send(statsRequest, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), AccountStats.class);
+    }
+
+    private void postMessage(String messageText, long timePostedEpoch) throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"" + messageText + "\", " +
+                        "\"time_posted_epoch\": " + timePostedEpoch + "}"))
+                .header("Content-Type", "application/json")
+                .build();
+        webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void deleteMessage(int messageId) throws IOException, InterruptedException {
+        HttpRequest deleteMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages/" + messageId))
+                .DELETE()
+                .build();
+        webClient.send(deleteMessageRequest, HttpResponse.BodyHandlers.ofString());
+    }
+}
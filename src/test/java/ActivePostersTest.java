@@ -0,0 +1,156 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaServer;
+import Util.EmbeddedDatabase;
+
+public class ActivePostersTest {
+    /**
+     * The start of the UTC day that the seeded message was posted in
+     */
+    static final long SEED_DAY = 1669939200;
+
+    static EmbeddedDatabase database;
+    SocialMediaServer server;
+    String baseUrl;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before the tests of this class run, create the in-memory database that they share.
+     * @throws SQLException
+     */
+    @BeforeClass
+    public static void createDatabase() throws SQLException {
+        database = new EmbeddedDatabase();
+    }
+
+    @AfterClass
+    public static void dropDatabase() {
+        database.close();
+    }
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws SQLException
+     */
+    @Before
+    public void setUp() throws SQLException {
+        database.reset();
+        startServer();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * Registering two more accounts, posting from the second on the seeded message's day and from the third three
+     * days later, then sending http requests to GET localhost:8080/stats/active-posters for a day, a week and a range
+     * of days, before and after restarting the server
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: two posters on the seeded day, three in the week to the third account's day and one on that
+     *  day alone, the same after the restart
+     */
+    @Test
+    public void activePostersPerWindowSurviveRestart() throws IOException, InterruptedException, SQLException {
+        register("poster2");
+        register("poster3");
+
+        postMessage(2, SEED_DAY + 10);
+        postMessage(2, SEED_DAY + 20);
+        postMessage(3, SEED_DAY + 3 * 86_400 + 10);
+
+        String lastDayEnd = String.valueOf(SEED_DAY + 4 * 86_400);
+
+        for (int run = 0; run < 2; run++) {
+            JsonNode day = getActivePosters("?to=" + (SEED_DAY + 86_400));
+            Assert.assertEquals(SEED_DAY, day.get("from").asLong());
+            Assert.assertEquals(SEED_DAY + 86_400, day.get("to").asLong());
+            Assert.assertEquals(2, day.get("active_posters").asLong());
+
+            JsonNode week = getActivePosters("?window=week&to=" + lastDayEnd);
+            Assert.assertEquals(SEED_DAY - 3 * 86_400, week.get("from").asLong());
+            Assert.assertEquals(3, week.get("active_posters").asLong());
+            Assert.assertEquals(0.01625, week.get("standard_error").asDouble(), 0.0001);
+
+            JsonNode range = getActivePosters("?from=" + (SEED_DAY + 2 * 86_400 + 500) + "&to=" + lastDayEnd);
+            Assert.assertEquals(SEED_DAY + 2 * 86_400, range.get("from").asLong());
+            Assert.assertEquals(1, range.get("active_posters").asLong());
+
+            // Stopping the server saves the sketches, and the next server loads them
+            server.stop();
+            startServer();
+        }
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/stats/active-posters with an unknown window, a range that ends
+     * before it starts, an end time that is not a number and a range of more than 1000 days
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void invalidWindowsAreRejected() throws IOException, InterruptedException {
+        for (String query : List.of("?window=year", "?from=100&to=100", "?to=tomorrow", "?from=0&to=86400001")) {
+            HttpRequest request = HttpRequest.newBuilder().uri(URI.create(baseUrl + "/stats/active-posters" + query)).build();
+            Assert.assertEquals(query, 400, webClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode());
+        }
+    }
+
+    private void startServer() throws SQLException {
+        server = SocialMediaServer.builder().dataSource(database.getDataSource()).port(0).warmUp(false).start().join();
+        baseUrl = server.getBaseUrl();
+    }
+
+    private JsonNode getActivePosters(String query) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create(baseUrl + "/stats/active-posters" + query)).build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readTree(response.body());
+    }
+
+    private void register(String username) throws IOException, InterruptedException {
+        HttpRequest registerRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/register"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\": \"" + username + "\", \"password\": \"password\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(registerRequest, HttpResponse.BodyHandlers.discarding()).statusCode());
+    }
+
+    private void postMessage(int postedBy, long timePostedEpoch) throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":" + postedBy + ", " +
+                        "\"message_text\": \"active poster message\", " +
+                        "\"time_posted_epoch\": " + timePostedEpoch + "}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(postMessageRequest, HttpResponse.BodyHandlers.discarding()).statusCode());
+    }
+}
@@ -0,0 +1,206 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaServer;
+import Model.ActivityBucket;
+import Model.PosterCount;
+import Util.EmbeddedDatabase;
+
+public class ActivityStatsTest {
+    /**
+     * The start of the UTC day and of the UTC hour that the seeded message was posted in
+     */
+    static final long SEED_DAY = 1669939200;
+    static final long SEED_HOUR = 1669946400;
+
+    static EmbeddedDatabase database;
+    SocialMediaServer server;
+    String baseUrl;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before the tests of this class run, create the in-memory database that they share.
+     * @throws SQLException
+     */
+    @BeforeClass
+    public static void createDatabase() throws SQLException {
+        database = new EmbeddedDatabase();
+    }
+
+    @AfterClass
+    public static void dropDatabase() {
+        database.close();
+    }
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws SQLException
+     */
+    @Before
+    public void setUp() throws SQLException {
+        database.reset();
+        startServer();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * Posting two messages in the seeded message's hour and one in the next hour, deleting one of them, then sending
+     * an http request to GET localhost:8080/stats/activity for the hours of the seeded message's day
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: 24 hourly buckets, counting two messages in the seeded hour and one in the next
+     */
+    @Test
+    public void hourlyActivityFollowsWrites() throws IOException, InterruptedException {
+        postMessage(1, SEED_HOUR + 60);
+        int deletedId = postMessage(1, SEED_HOUR + 120);
+        postMessage(1, SEED_HOUR + 3_600);
+
+        HttpRequest deleteRequest = HttpRequest.newBuilder().uri(URI.create(baseUrl + "/messages/" + deletedId)).DELETE().build();
+        Assert.assertEquals(200, webClient.send(deleteRequest, HttpResponse.BodyHandlers.discarding()).statusCode());
+
+        ActivityBucket[] hours = getActivity("?from=" + SEED_DAY + "&to=" + (SEED_DAY + 86_400));
+
+        Assert.assertEquals(24, hours.length);
+        Assert.assertEquals(new ActivityBucket(SEED_DAY, 0, null), hours[0]);
+        Assert.assertEquals(new ActivityBucket(SEED_HOUR, 2, null), hours[2]);
+        Assert.assertEquals(new ActivityBucket(SEED_HOUR + 3_600, 1, null), hours[3]);
+    }
+
+    /**
+     * Posting two messages in the seeded message's hour, then sending eight concurrent http requests to DELETE
+     * localhost:8080/messages/{message_id} for one of them, then GET localhost:8080/stats/activity
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the message from exactly one of the deletes, and the seeded hour counting the seeded message
+     *  and the message that was not deleted
+     */
+    @Test
+    public void concurrentDeletesCountOnce() throws IOException, InterruptedException {
+        postMessage(1, SEED_HOUR + 60);
+        int deletedId = postMessage(1, SEED_HOUR + 120);
+
+        HttpRequest deleteRequest = HttpRequest.newBuilder().uri(URI.create(baseUrl + "/messages/" + deletedId)).DELETE().build();
+        List<CompletableFuture<HttpResponse<String>>> deletes = new ArrayList<>();
+
+        for (int i = 0; i < 8; i++) {
+            deletes.add(webClient.sendAsync(deleteRequest, HttpResponse.BodyHandlers.ofString()));
+        }
+
+        int deletedCount = 0;
+
+        for (CompletableFuture<HttpResponse<String>> delete : deletes) {
+            HttpResponse<String> response = delete.join();
+
+            Assert.assertEquals(200, response.statusCode());
+            deletedCount += response.body().isEmpty() ? 0 : 1;
+        }
+
+        Assert.assertEquals(1, deletedCount);
+        Assert.assertEquals(new ActivityBucket(SEED_HOUR, 2, null), getActivity("?from=" + SEED_DAY + "&to=" + (SEED_DAY + 86_400))[2]);
+    }
+
+    /**
+     * Registering a second account and posting two messages from it on the seeded message's day, then sending an
+     * http request to GET localhost:8080/stats/activity?bucket=day before and after restarting the server
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: three messages on the seeded day with the second account the top poster, and an empty next
+     *  day, the same after the restart
+     */
+    @Test
+    public void dailyTopPostersSurviveRestart() throws IOException, InterruptedException, SQLException {
+        HttpRequest registerRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/register"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\": \"poster2\", \"password\": \"password\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(registerRequest, HttpResponse.BodyHandlers.discarding()).statusCode());
+
+        postMessage(2, SEED_DAY + 10);
+        postMessage(2, SEED_DAY + 80_000);
+
+        ActivityBucket[] expected = {
+                new ActivityBucket(SEED_DAY, 3, List.of(new PosterCount(2, 2), new PosterCount(1, 1))),
+                new ActivityBucket(SEED_DAY + 86_400, 0, List.of())};
+        String query = "?bucket=day&from=" + (SEED_DAY + 500) + "&to=" + (SEED_DAY + 2 * 86_400);
+
+        Assert.assertArrayEquals(expected, getActivity(query));
+
+        // Stopping the server saves the counts, and the next server loads them
+        server.stop();
+        startServer();
+
+        Assert.assertArrayEquals(expected, getActivity(query));
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/stats/activity with an unknown bucket, a range that ends before it
+     * starts, a start time that is not a number and a range of more than 1000 hours
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void invalidRangesAreRejected() throws IOException, InterruptedException {
+        for (String query : List.of("?bucket=week", "?from=100&to=100", "?from=yesterday", "?from=0&to=3600001")) {
+            HttpRequest request = HttpRequest.newBuilder().uri(URI.create(baseUrl + "/stats/activity" + query)).build();
+            Assert.assertEquals(query, 400, webClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode());
+        }
+    }
+
+    private void startServer() throws SQLException {
+        server = SocialMediaServer.builder().dataSource(database.getDataSource()).port(0).warmUp(false).start().join();
+        baseUrl = server.getBaseUrl();
+    }
+
+    private ActivityBucket[] getActivity(String query) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create(baseUrl + "/stats/activity" + query)).build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), ActivityBucket[].class);
+    }
+
+    private int postMessage(int postedBy, long timePostedEpoch) throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":" + postedBy + ", " +
+                        "\"message_text\": \"activity message\", " +
+                        "\"time_posted_epoch\": " + timePostedEpoch + "}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readTree(response.body()).get("message_id").asInt();
+    }
+}
@@ -0,0 +1,198 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaServer;
+import Model.Message;
+import Util.EmbeddedDatabase;
+
+public class ChangesTest {
+    static EmbeddedDatabase database;
+    SocialMediaServer server;
+    String baseUrl;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before the tests of this class run, create the in-memory database that they share.
+     * @throws SQLException
+     */
+    @BeforeClass
+    public static void createDatabase() throws SQLException {
+        database = new EmbeddedDatabase();
+    }
+
+    @AfterClass
+    public static void dropDatabase() {
+        database.close();
+    }
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws SQLException
+     */
+    @Before
+    public void setUp() throws SQLException {
+        database.reset();
+        server = SocialMediaServer.builder().dataSource(database.getDataSource()).port(0).warmUp(false).start().join();
+        baseUrl = server.getBaseUrl();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/changes
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the change that created the seeded message, and its sequence number as "next"
+     */
+    @Test
+    public void getChangesFromStart() throws IOException, InterruptedException {
+        JsonNode page = getChanges(baseUrl + "/changes", 200);
+
+        Assert.assertEquals(1, page.get("changes").size());
+        JsonNode change = page.get("changes").get(0);
+        Assert.assertEquals(1, change.get("seq").asLong());
+        Assert.assertEquals("created", change.get("change_type").asText());
+        Assert.assertEquals(new Message(1, 1, "test message 1", 1669947792), objectMapper.treeToValue(change.get("message"), Message.class));
+        Assert.assertEquals(1, page.get("next").asLong());
+    }
+
+    /**
+     * Posting, updating and deleting a message, then sending http requests to GET localhost:8080/changes?after=1
+     * with and without a limit
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the three changes in the order they were committed, or the first two with "next" pointing
+     *  at the second
+     */
+    @Test
+    public void getChangesAfterWrites() throws IOException, InterruptedException {
+        postMessage("hello message");
+
+        HttpRequest updateMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages/2"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"updated message\" }"))
+                .header("Content-Type", "application/json")
+                .build();
+        webClient.send(updateMessageRequest, HttpResponse.BodyHandlers.ofString());
+
+        HttpRequest deleteMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages/2"))
+                .DELETE()
+                .build();
+        webClient.send(deleteMessageRequest, HttpResponse.BodyHandlers.ofString());
+
+        JsonNode page = getChanges(baseUrl + "/changes?after=1", 200);
+
+        Assert.assertEquals(3, page.get("changes").size());
+        Assert.assertEquals("created", page.get("changes").get(0).get("change_type").asText());
+        Assert.assertEquals("updated", page.get("changes").get(1).get("change_type").asText());
+        Assert.assertEquals("updated message", page.get("changes").get(1).get("message").get("message_text").asText());
+        Assert.assertEquals("deleted", page.get("changes").get(2).get("change_type").asText());
+        Assert.assertEquals(2, page.get("changes").get(2).get("message").get("message_id").asInt());
+        Assert.assertEquals(4, page.get("next").asLong());
+
+        JsonNode limitedPage = getChanges(baseUrl + "/changes?after=1&limit=2", 200);
+
+        Assert.assertEquals(2, limitedPage.get("changes").size());
+        Assert.assertEquals(3, limitedPage.get("next").asLong());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/changes?after=1&wait=20, then posting a message while it waits
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the change that created the posted message, returned as soon as it was committed
+     */
+    @Test(timeout = 10000)
+    public void getChangesLongPollWakesOnWrite() throws IOException, InterruptedException, ExecutionException {
+        HttpRequest pollRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/changes?after=1&wait=20"))
+                .build();
+        CompletableFuture<HttpResponse<String>> poll = webClient.sendAsync(pollRequest, HttpResponse.BodyHandlers.ofString());
+
+        // Wait until the server holds the request open, so that the post below is what wakes it
+        HttpRequest metricsRequest = HttpRequest.newBuilder().uri(URI.create(baseUrl + "/metrics")).build();
+
+        while (!webClient.send(metricsRequest, HttpResponse.BodyHandlers.ofString()).body().contains("changes_waiting_requests 1\n")) {
+            Thread.sleep(20);
+        }
+
+        Assert.assertFalse(poll.isDone());
+
+        postMessage("hello message");
+
+        HttpResponse<String> response = poll.get();
+        Assert.assertEquals(200, response.statusCode());
+
+        JsonNode page = objectMapper.readTree(response.body());
+        Assert.assertEquals(1, page.get("changes").size());
+        Assert.assertEquals("hello message", page.get("changes").get(0).get("message").get("message_text").asText());
+        Assert.assertEquals(2, page.get("next").asLong());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/changes?limit=0
+     *
+     * Expected Response:
+     *  Status Code: 400
+     *  Response Body:
+     */
+    @Test
+    public void getChangesInvalidLimit() throws IOException, InterruptedException {
+        HttpRequest changesRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/changes?limit=0"))
+                .build();
+        HttpResponse<String> response = webClient.send(changesRequest, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(400, response.statusCode());
+        Assert.assertEquals("", response.body());
+    }
+
+    private JsonNode getChanges(String url, int expectedStatus) throws IOException, InterruptedException {
+        HttpRequest changesRequest = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .build();
+        HttpResponse<String> response = webClient.send(changesRequest, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(expectedStatus, response.statusCode());
+        return objectMapper.readTree(response.body());
+    }
+
+    private void postMessage(String messageText) throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"" + messageText + "\", " +
+                        "\"time_posted_epoch\": 1669947793}"))
+                .header("Content-Type", "application/json")
+                .build();
+        webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+    }
+}
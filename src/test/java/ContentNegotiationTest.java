@@ -0,0 +1,131 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+
+import Controller.SocialMediaServer;
+import Model.Message;
+import Util.EmbeddedDatabase;
+
+public class ContentNegotiationTest {
+    static EmbeddedDatabase database;
+    SocialMediaServer server;
+    String baseUrl;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before the tests of this class run, create the in-memory database that they share.
+     * @throws SQLException
+     */
+    @BeforeClass
+    public static void createDatabase() throws SQLException {
+        database = new EmbeddedDatabase();
+    }
+
+    @AfterClass
+    public static void dropDatabase() {
+        database.close();
+    }
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws SQLException
+     */
+    @Before
+    public void setUp() throws SQLException {
+        database.reset();
+        server = SocialMediaServer.builder().dataSource(database.getDataSource()).port(0).warmUp(false).start().join();
+        baseUrl = server.getBaseUrl();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with Accept: application/cbor
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the CBOR encoding of the message list
+     */
+    @Test
+    public void getAllMessagesAsCbor() throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = getMessages("application/cbor");
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals("application/cbor", response.headers().firstValue("Content-Type").orElse(""));
+        Assert.assertEquals("Accept", response.headers().firstValue("Vary").orElse(""));
+
+        Message[] messages = new CBORMapper().readValue(response.body(), Message[].class);
+        Assert.assertArrayEquals(new Message[] {new Message(1, 1, "test message 1", 1669947792)}, messages);
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages with a Smile body and Accept: application/x-jackson-smile
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the Smile encoding of the new message
+     */
+    @Test
+    public void postMessageAsSmile() throws IOException, InterruptedException {
+        SmileMapper smileMapper = new SmileMapper();
+        byte[] body = smileMapper.writeValueAsBytes(new Message(1, "hello message", 1669947793));
+
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages"))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .header("Content-Type", "application/x-jackson-smile")
+                .header("Accept", "application/x-jackson-smile")
+                .build();
+        HttpResponse<byte[]> response = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofByteArray());
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals(new Message(2, 1, "hello message", 1669947793), smileMapper.readValue(response.body(), Message.class));
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/messages with an Accept header preferring JSON over CBOR, and with
+     * an Accept header naming only unsupported types
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON both times
+     */
+    @Test
+    public void jsonWhenPreferredOrNothingSupportedIsAccepted() throws IOException, InterruptedException {
+        HttpResponse<byte[]> preferred = getMessages("application/cbor;q=0.5, application/json");
+        HttpResponse<byte[]> unsupported = getMessages("application/xml");
+
+        Assert.assertEquals("application/json", preferred.headers().firstValue("Content-Type").orElse(""));
+        Assert.assertEquals("application/json", unsupported.headers().firstValue("Content-Type").orElse(""));
+        Assert.assertEquals(1, objectMapper.readValue(unsupported.body(), Message[].class).length);
+    }
+
+    private HttpResponse<byte[]> getMessages(String accept) throws IOException, InterruptedException {
+        HttpRequest getMessagesRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages"))
+                .header("Accept", accept)
+                .build();
+        return webClient.send(getMessagesRequest, HttpResponse.BodyHandlers.ofByteArray());
+    }
+}
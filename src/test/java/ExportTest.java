@@ -0,0 +1,197 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaServer;
+import Model.Message;
+import Util.EmbeddedDatabase;
+
+public class ExportTest {
+    static EmbeddedDatabase database;
+    SocialMediaServer server;
+    String baseUrl;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before the tests of this class run, create the in-memory database that they share.
+     * @throws SQLException
+     */
+    @BeforeClass
+    public static void createDatabase() throws SQLException {
+        database = new EmbeddedDatabase();
+    }
+
+    @AfterClass
+    public static void dropDatabase() {
+        database.close();
+    }
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws SQLException
+     */
+    @Before
+    public void setUp() throws SQLException {
+        database.reset();
+        server = SocialMediaServer.builder().dataSource(database.getDataSource()).port(0).warmUp(false).start().join();
+        baseUrl = server.getBaseUrl();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * Posting a second message, then sending an http request to GET localhost:8080/export/messages
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: one line of JSON per message, in ID order
+     */
+    @Test
+    public void exportMessages() throws IOException, InterruptedException {
+        postMessage("hello message", 1669947793);
+
+        HttpRequest exportRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/export/messages"))
+                .build();
+        HttpResponse<String> response = webClient.send(exportRequest, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals("application/x-ndjson", response.headers().firstValue("Content-Type").orElse(""));
+
+        String[] lines = response.body().split("\n");
+        Assert.assertEquals(2, lines.length);
+        Assert.assertEquals(new Message(1, 1, "test message 1", 1669947792), objectMapper.readValue(lines[0], Message.class));
+        Assert.assertEquals(new Message(2, 1, "hello message", 1669947793), objectMapper.readValue(lines[1], Message.class));
+        Assert.assertTrue(response.body().endsWith("\n"));
+    }
+
+    /**
+     * Posting a second message, then sending an http request to GET localhost:8080/export/messages?after=1
+     * with gzip accepted
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: gzip encoded JSON line of the message after the checkpoint only
+     */
+    @Test
+    public void exportMessagesAfterCheckpointGzipped() throws IOException, InterruptedException {
+        postMessage("hello message", 1669947793);
+
+        HttpRequest exportRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/export/messages?after=1"))
+                .header("Accept-Encoding", "gzip")
+                .build();
+        HttpResponse<InputStream> response = webClient.send(exportRequest, HttpResponse.BodyHandlers.ofInputStream());
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals("gzip", response.headers().firstValue("Content-Encoding").orElse(""));
+
+        String body;
+        try (InputStream input = new GZIPInputStream(response.body())) {
+            body = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        Assert.assertEquals("{\"message_id\":2,\"posted_by\":1,\"message_text\":\"hello message\",\"time_posted_epoch\":1669947793}\n", body);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/export/accounts
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: one line of JSON per account, without passwords
+     */
+    @Test
+    public void exportAccountsWithoutPasswords() throws IOException, InterruptedException {
+        HttpRequest exportRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/export/accounts"))
+                .build();
+        HttpResponse<String> response = webClient.send(exportRequest, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals("{\"account_id\":1,\"username\":\"testuser1\"}\n", response.body());
+    }
+
+    /**
+     * Posting a second message, then sending an http request to GET localhost:8080/export/messages?rate=1 and, once
+     * its first line has arrived, GET localhost:8080/metrics
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: no read request is in flight for the load shedder while the throttled export is still running
+     */
+    @Test(timeout = 10000)
+    public void throttledExportReleasesLoadSheddingPermit() throws IOException, InterruptedException {
+        postMessage("hello message", 1669947793);
+
+        HttpRequest exportRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/export/messages?rate=1"))
+                .build();
+        HttpResponse<Stream<String>> response = webClient.send(exportRequest, HttpResponse.BodyHandlers.ofLines());
+
+        try (Stream<String> lines = response.body()) {
+            Iterator<String> rows = lines.iterator();
+            Assert.assertTrue(rows.next().contains("\"message_id\":1"));
+
+            HttpRequest metricsRequest = HttpRequest.newBuilder().uri(URI.create(baseUrl + "/metrics")).build();
+            String metrics = webClient.send(metricsRequest, HttpResponse.BodyHandlers.ofString()).body();
+            Assert.assertTrue(metrics.contains("load_shedder_in_flight{class=\"read\"} 0\n"));
+
+            Assert.assertTrue(rows.next().contains("\"message_id\":2"));
+        }
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/export/messages?after=abc
+     *
+     * Expected Response:
+     *  Status Code: 400
+     *  Response Body:
+     */
+    @Test
+    public void exportMessagesInvalidCheckpoint() throws IOException, InterruptedException {
+        HttpRequest exportRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/export/messages?after=abc"))
+                .build();
+        HttpResponse<String> response = webClient.send(exportRequest, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(400, response.statusCode());
+        Assert.assertEquals("", response.body());
+    }
+
+    private void postMessage(String messageText, long timePostedEpoch) throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"" + messageText + "\", " +
+                        "\"time_posted_epoch\": " + timePostedEpoch + "}"))
+                .header("Content-Type", "application/json")
+                .build();
+        webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+    }
+}
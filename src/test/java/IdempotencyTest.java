@@ -0,0 +1,176 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaServer;
+import Model.Account;
+import Model.Message;
+import Util.EmbeddedDatabase;
+
+public class IdempotencyTest {
+    static EmbeddedDatabase database;
+    SocialMediaServer server;
+    String baseUrl;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before the tests of this class run, create the in-memory database that they share.
+     * @throws SQLException
+     */
+    @BeforeClass
+    public static void createDatabase() throws SQLException {
+        database = new EmbeddedDatabase();
+    }
+
+    @AfterClass
+    public static void dropDatabase() {
+        database.close();
+    }
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws SQLException
+     */
+    @Before
+    public void setUp() throws SQLException {
+        database.reset();
+        server = SocialMediaServer.builder().dataSource(database.getDataSource()).port(0).warmUp(false).start().join();
+        baseUrl = server.getBaseUrl();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * Sending the same http request to POST localhost:8080/messages twice with the same Idempotency-Key, then
+     * GET localhost:8080/messages
+     *
+     * Expected Response:
+     *  Status Code: 200 both times
+     *  Response Body: the same message both times, the second marked as replayed, and only one message created
+     */
+    @Test
+    public void retriedMessageIsCreatedOnce() throws IOException, InterruptedException {
+        HttpResponse<String> first = webClient.send(postMessageRequest("retry-1", "hello message"), HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> retry = webClient.send(postMessageRequest("retry-1", "hello message"), HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, first.statusCode());
+        Assert.assertEquals(200, retry.statusCode());
+        Assert.assertEquals(first.body(), retry.body());
+        Assert.assertFalse(first.headers().firstValue("Idempotent-Replayed").isPresent());
+        Assert.assertEquals("true", retry.headers().firstValue("Idempotent-Replayed").orElse(""));
+        Assert.assertEquals(new Message(2, 1, "hello message", 1669947793), objectMapper.readValue(retry.body(), Message.class));
+
+        Assert.assertEquals(2, getAllMessages().length);
+    }
+
+    /**
+     * Sending several http requests to POST localhost:8080/messages with the same Idempotency-Key at once, then
+     * GET localhost:8080/messages
+     *
+     * Expected Response:
+     *  Status Code: 200 for every request
+     *  Response Body: the same message for every request, and only one message created
+     */
+    @Test(timeout = 10000)
+    public void concurrentDuplicatesShareOneExecution() throws IOException, InterruptedException {
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+
+        for (int i = 0; i < 8; i++) {
+            responses.add(webClient.sendAsync(postMessageRequest("concurrent-1", "hello message"), HttpResponse.BodyHandlers.ofString()));
+        }
+
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            Assert.assertEquals(200, response.join().statusCode());
+            Assert.assertEquals(new Message(2, 1, "hello message", 1669947793), objectMapper.readValue(response.join().body(), Message.class));
+        }
+
+        Assert.assertEquals(2, getAllMessages().length);
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages, then another with the same Idempotency-Key and a
+     * different body
+     *
+     * Expected Response:
+     *  Status Code: 422 for the second request
+     *  Response Body:
+     */
+    @Test
+    public void reusedKeyWithDifferentBodyIsRejected() throws IOException, InterruptedException {
+        webClient.send(postMessageRequest("reused-1", "hello message"), HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> response = webClient.send(postMessageRequest("reused-1", "other message"), HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(422, response.statusCode());
+        Assert.assertEquals("", response.body());
+        Assert.assertEquals(2, getAllMessages().length);
+    }
+
+    /**
+     * Sending the same http request to POST localhost:8080/register twice with the same Idempotency-Key
+     *
+     * Expected Response:
+     *  Status Code: 200 both times, rather than 400 for a duplicate username on the retry
+     *  Response Body: the same account both times
+     */
+    @Test
+    public void retriedRegistrationReturnsTheAccount() throws IOException, InterruptedException {
+        HttpResponse<String> first = webClient.send(registerRequest("register-1"), HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> retry = webClient.send(registerRequest("register-1"), HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, first.statusCode());
+        Assert.assertEquals(200, retry.statusCode());
+        Assert.assertEquals(new Account(2, "user", "password"), objectMapper.readValue(retry.body(), Account.class));
+    }
+
+    private Message[] getAllMessages() throws IOException, InterruptedException {
+        HttpRequest getMessagesRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages"))
+                .build();
+        return objectMapper.readValue(webClient.send(getMessagesRequest, HttpResponse.BodyHandlers.ofString()).body(), Message[].class);
+    }
+
+    private HttpRequest postMessageRequest(String idempotencyKey, String messageText) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"" + messageText + "\", " +
+                        "\"time_posted_epoch\": 1669947793}"))
+                .header("Content-Type", "application/json")
+                .header("Idempotency-Key", idempotencyKey)
+                .build();
+    }
+
+    private HttpRequest registerRequest(String idempotencyKey) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/register"))
+                .POST(HttpRequest.BodyPublishers.ofString("{" +
+                        "\"username\": \"user\", " +
+                        "\"password\": \"password\" }"))
+                .header("Content-Type", "application/json")
+                .header("Idempotency-Key", idempotencyKey)
+                .build();
+    }
+}
@@ -0,0 +1,133 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaServer;
+import Model.Message;
+import Util.EmbeddedDatabase;
+
+public class ImportTest {
+    static EmbeddedDatabase database;
+    SocialMediaServer server;
+    String baseUrl;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before the tests of this class run, create the in-memory database that they share.
+     * @throws SQLException
+     */
+    @BeforeClass
+    public static void createDatabase() throws SQLException {
+        database = new EmbeddedDatabase();
+    }
+
+    @AfterClass
+    public static void dropDatabase() {
+        database.close();
+    }
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws SQLException
+     */
+    @Before
+    public void setUp() throws SQLException {
+        database.reset();
+        server = SocialMediaServer.builder().dataSource(database.getDataSource()).port(0).warmUp(false).start().join();
+        baseUrl = server.getBaseUrl();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/import/messages?batch_size=2 with three valid records, a record
+     * with blank text, a record from an account that does not exist and a record with a field of the wrong type,
+     * then GET localhost:8080/accounts/1/messages
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: a summary of 3 imported and 3 rejected records with the rejected line numbers, after which the
+     *  imported messages are listed
+     */
+    @Test
+    public void importMessagesWithRejectedRecords() throws IOException, InterruptedException {
+        String body = "{\"posted_by\":1,\"message_text\":\"first\",\"time_posted_epoch\":1669947793}\n" +
+                "{\"posted_by\":1,\"message_text\":\"\",\"time_posted_epoch\":1669947794}\n" +
+                "{\"posted_by\":1,\"message_text\":\"second\",\"time_posted_epoch\":1669947795}\n" +
+                "{\"posted_by\":9,\"message_text\":\"nobody\",\"time_posted_epoch\":1669947796}\n" +
+                "{\"posted_by\":\"one\",\"message_text\":\"typo\",\"time_posted_epoch\":1669947797}\n" +
+                "{\"posted_by\":1,\"message_text\":\"third\",\"time_posted_epoch\":1669947798}\n";
+
+        HttpRequest importRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/import/messages?batch_size=2"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/x-ndjson")
+                .build();
+        HttpResponse<String> response = webClient.send(importRequest, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+
+        JsonNode summary = objectMapper.readTree(response.body());
+        Assert.assertEquals(3, summary.get("imported").asInt());
+        Assert.assertEquals(3, summary.get("rejected").asInt());
+        Assert.assertEquals("[2,4,5]", summary.get("rejected_lines").toString());
+        Assert.assertFalse(summary.has("error"));
+
+        HttpRequest getMessagesRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/accounts/1/messages"))
+                .build();
+        HttpResponse<String> messagesResponse = webClient.send(getMessagesRequest, HttpResponse.BodyHandlers.ofString());
+
+        Message[] messages = objectMapper.readValue(messagesResponse.body(), Message[].class);
+        Assert.assertEquals(4, messages.length);
+        Assert.assertEquals(new Message(2, 1, "first", 1669947793), messages[1]);
+        Assert.assertEquals(new Message(3, 1, "second", 1669947795), messages[2]);
+        Assert.assertEquals(new Message(4, 1, "third", 1669947798), messages[3]);
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/import/messages?batch_size=1 whose second line is malformed
+     *
+     * Expected Response:
+     *  Status Code: 400
+     *  Response Body: a summary of the record imported before the malformed line, and the line of the error
+     */
+    @Test
+    public void importMessagesMalformedJson() throws IOException, InterruptedException {
+        String body = "{\"posted_by\":1,\"message_text\":\"first\",\"time_posted_epoch\":1669947793}\n" +
+                "{\"posted_by\":1,\"message_text\":\n";
+
+        HttpRequest importRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/import/messages?batch_size=1"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        HttpResponse<String> response = webClient.send(importRequest, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(400, response.statusCode());
+
+        JsonNode summary = objectMapper.readTree(response.body());
+        Assert.assertEquals(1, summary.get("imported").asInt());
+        Assert.assertEquals(0, summary.get("rejected").asInt());
+        Assert.assertTrue(summary.get("error").asText().startsWith("Malformed JSON on line "));
+    }
+}
@@ -0,0 +1,110 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import Controller.SocialMediaServer;
+import Util.EmbeddedDatabase;
+
+public class LoadSheddingTest {
+    static EmbeddedDatabase database;
+    SocialMediaServer server;
+    String baseUrl;
+    HttpClient webClient;
+
+    /**
+     * Before the tests of this class run, create the in-memory database that they share.
+     * @throws SQLException
+     */
+    @BeforeClass
+    public static void createDatabase() throws SQLException {
+        database = new EmbeddedDatabase();
+    }
+
+    @AfterClass
+    public static void dropDatabase() {
+        database.close();
+    }
+
+    /**
+     * Before every test, close the read limit entirely, reset the database, restart the Javalin app, and create a
+     * new webClient for interacting locally on the web.
+     * @throws SQLException
+     */
+    @Before
+    public void setUp() throws SQLException {
+        System.setProperty("loadShedding.read.initialLimit", "0");
+        System.setProperty("loadShedding.read.minLimit", "0");
+        System.setProperty("loadShedding.read.maxLimit", "0");
+        database.reset();
+        server = SocialMediaServer.builder().dataSource(database.getDataSource()).port(0).warmUp(false).start().join();
+        baseUrl = server.getBaseUrl();
+        webClient = HttpClient.newHttpClient();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+        System.clearProperty("loadShedding.read.initialLimit");
+        System.clearProperty("loadShedding.read.minLimit");
+        System.clearProperty("loadShedding.read.maxLimit");
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages while the read limit is 0
+     * 
+     * Expected Response:
+     *  Status Code: 503 with a Retry-After header
+     *  Response Body: 
+     */
+    @Test
+    public void getAllMessagesShed() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(503, response.statusCode());
+        Assert.assertEquals("", response.body());
+        Assert.assertEquals("1", response.headers().firstValue("Retry-After").orElse(""));
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages, then to GET localhost:8080/metrics, while the read
+     * limit is 0
+     * 
+     * Expected Response:
+     *  Status Code: 200 for both, since writes have their own limit and the metrics endpoint is never shed
+     *  Response Body: the metrics show the current limits
+     */
+    @Test
+    public void writesAndMetricsNotShed() throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"hello message\", " +
+                        "\"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpRequest getMetricsRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/metrics"))
+                .build();
+        HttpResponse<String> response = webClient.send(getMetricsRequest, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertTrue(response.body().contains("load_shedder_limit{class=\"read\"} 0\n"));
+        Assert.assertTrue(response.body().contains("load_shedder_limit{class=\"write\"}"));
+    }
+}
@@ -0,0 +1,196 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaServer;
+import Model.AccountStats;
+import Model.Message;
+import Util.EmbeddedDatabase;
+
+public class MessageArchiveTest {
+    static EmbeddedDatabase database;
+    SocialMediaServer server;
+    String baseUrl;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    long now;
+
+    /**
+     * Before the tests of this class run, create the in-memory database that they share.
+     * @throws SQLException
+     */
+    @BeforeClass
+    public static void createDatabase() throws SQLException {
+        database = new EmbeddedDatabase();
+    }
+
+    @AfterClass
+    public static void dropDatabase() {
+        database.close();
+    }
+
+    /**
+     * Before every test, archive months older than 30 days every second in blocks of two messages, reset the
+     * database, restart the Javalin app, and create a new webClient and ObjectMapper for interacting locally on the
+     * web. Then post a second December 2022 message, a January 2023 message and a message posted now, and wait
+     * until the three old messages have been archived.
+     * @throws SQLException
+     */
+    @Before
+    public void setUp() throws SQLException, IOException, InterruptedException {
+        System.setProperty("archive.afterDays", "30");
+        System.setProperty("archive.intervalSeconds", "1");
+        System.setProperty("archive.blockSize", "2");
+        database.reset();
+        server = SocialMediaServer.builder().dataSource(database.getDataSource()).port(0).warmUp(false).start().join();
+        baseUrl = server.getBaseUrl();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        now = System.currentTimeMillis() / 1000;
+
+        postMessage("december message", 1669947793);
+        postMessage("january message", 1673000000);
+        postMessage("recent message", now);
+
+        while (!get("/metrics").body().contains("message_archived_total 3\n")) {
+            Thread.sleep(100);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+        System.clearProperty("archive.afterDays");
+        System.clearProperty("archive.intervalSeconds");
+        System.clearProperty("archive.blockSize");
+    }
+
+    /**
+     * Reading the archived messages back through GET localhost:8080/messages/1, GET localhost:8080/messages,
+     * GET localhost:8080/messages?ids=3,4, GET localhost:8080/accounts/1/messages, GET localhost:8080/accounts/1/stats
+     * and GET localhost:8080/export/messages
+     *
+     * Expected Response:
+     *  Every read returns the archived messages as before, in ID order, with only the recent message left in the
+     *  message table and one archive block per month
+     */
+    @Test(timeout = 10000)
+    public void archivedMessagesStayReadable() throws IOException, InterruptedException, SQLException {
+        Message[] expected = {
+                new Message(1, 1, "test message 1", 1669947792),
+                new Message(2, 1, "december message", 1669947793),
+                new Message(3, 1, "january message", 1673000000),
+                new Message(4, 1, "recent message", now)};
+
+        Assert.assertEquals(expected[0], objectMapper.readValue(get("/messages/1").body(), Message.class));
+        Assert.assertArrayEquals(expected, objectMapper.readValue(get("/messages").body(), Message[].class));
+        Assert.assertArrayEquals(new Message[] {expected[2], expected[3]}, objectMapper.readValue(get("/messages?ids=3,4").body(), Message[].class));
+        Assert.assertArrayEquals(expected, objectMapper.readValue(get("/accounts/1/messages").body(), Message[].class));
+        Assert.assertEquals(4, objectMapper.readValue(get("/accounts/1/stats").body(), AccountStats.class).message_count);
+
+        String[] lines = get("/export/messages").body().split("\n");
+        Assert.assertEquals(4, lines.length);
+
+        for (int i = 0; i < lines.length; i++) {
+            Assert.assertEquals(expected[i], objectMapper.readValue(lines[i], Message.class));
+        }
+
+        Assert.assertEquals(1, count("SELECT COUNT(*) FROM message"));
+        Assert.assertEquals(2, count("SELECT COUNT(*) FROM message_archive_block"));
+    }
+
+    /**
+     * Updating the archived message with PATCH localhost:8080/messages/1
+     *
+     * Expected Response:
+     *  Status Code: 400, and the message is unchanged
+     */
+    @Test(timeout = 10000)
+    public void archivedMessagesCannotBeUpdated() throws IOException, InterruptedException {
+        HttpResponse<String> updateResponse = send(HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages/1"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"updated message\" }"))
+                .header("Content-Type", "application/json")
+                .build());
+        Assert.assertEquals(400, updateResponse.statusCode());
+
+        Assert.assertEquals("test message 1", objectMapper.readValue(get("/messages/1").body(), Message.class).getMessage_text());
+    }
+
+    /**
+     * Deleting the archived message with DELETE localhost:8080/messages/2 twice, then reading the messages back
+     * through every read of the archive
+     *
+     * Expected Response:
+     *  Status Code: 200 with the message for the first delete and a blank body for the second, after which no read
+     *  returns the message and the account's statistics no longer count it
+     */
+    @Test(timeout = 10000)
+    public void archivedMessagesCanBeDeleted() throws IOException, InterruptedException, SQLException {
+        Message deleted = new Message(2, 1, "december message", 1669947793);
+        Message[] remaining = {
+                new Message(1, 1, "test message 1", 1669947792),
+                new Message(3, 1, "january message", 1673000000),
+                new Message(4, 1, "recent message", now)};
+
+        HttpRequest deleteRequest = HttpRequest.newBuilder().uri(URI.create(baseUrl + "/messages/2")).DELETE().build();
+        HttpResponse<String> deleteResponse = send(deleteRequest);
+        Assert.assertEquals(200, deleteResponse.statusCode());
+        Assert.assertEquals(deleted, objectMapper.readValue(deleteResponse.body(), Message.class));
+        Assert.assertEquals("", send(deleteRequest).body());
+
+        Assert.assertEquals("", get("/messages/2").body());
+        Assert.assertArrayEquals(remaining, objectMapper.readValue(get("/messages").body(), Message[].class));
+        Assert.assertArrayEquals(new Message[] {remaining[0]}, objectMapper.readValue(get("/messages?ids=1,2").body(), Message[].class));
+        Assert.assertArrayEquals(remaining, objectMapper.readValue(get("/accounts/1/messages").body(), Message[].class));
+        Assert.assertEquals(3, objectMapper.readValue(get("/accounts/1/stats").body(), AccountStats.class).message_count);
+        Assert.assertEquals(3, get("/export/messages").body().split("\n").length);
+
+        Assert.assertEquals(1, count("SELECT COUNT(*) FROM archived_message WHERE deleted_at IS NOT NULL"));
+        Assert.assertEquals(1, count("SELECT COUNT(*) FROM message_change WHERE change_type = 'deleted' AND message_id = 2"));
+    }
+
+    private long count(String sql) throws SQLException {
+        try (Connection connection = database.getDataSource().getConnection();
+                Statement statement = connection.createStatement();
+                ResultSet rs = statement.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder().uri(URI.create(baseUrl + path)).build());
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void postMessage(String messageText, long timePostedEpoch) throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"" + messageText + "\", " +
+                        "\"time_posted_epoch\": " + timePostedEpoch + "}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, send(postMessageRequest).statusCode());
+    }
+}
@@ -0,0 +1,123 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaServer;
+import Model.Message;
+import Util.EmbeddedDatabase;
+
+public class MessageCacheTest {
+    static EmbeddedDatabase database;
+    SocialMediaServer server;
+    String baseUrl;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before the tests of this class run, create the in-memory database that they share.
+     * @throws SQLException
+     */
+    @BeforeClass
+    public static void createDatabase() throws SQLException {
+        database = new EmbeddedDatabase();
+    }
+
+    @AfterClass
+    public static void dropDatabase() {
+        database.close();
+    }
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws SQLException
+     */
+    @Before
+    public void setUp() throws SQLException {
+        database.reset();
+        server = SocialMediaServer.builder().dataSource(database.getDataSource()).port(0).warmUp(false).start().join();
+        baseUrl = server.getBaseUrl();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * Sending two http requests to GET localhost:8080/messages/1, then GET localhost:8080/metrics
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: Prometheus text counting one miss and one hit of the message cache
+     */
+    @Test
+    public void getMessageTwiceHitsCache() throws IOException, InterruptedException {
+        HttpRequest getMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages/1"))
+                .build();
+        webClient.send(getMessageRequest, HttpResponse.BodyHandlers.ofString());
+        webClient.send(getMessageRequest, HttpResponse.BodyHandlers.ofString());
+
+        HttpRequest getMetricsRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/metrics"))
+                .build();
+        HttpResponse<String> response = webClient.send(getMetricsRequest, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertTrue(response.body().contains("cache_requests_total{cache=\"messages\",result=\"miss\"} 1\n"));
+        Assert.assertTrue(response.body().contains("cache_requests_total{cache=\"messages\",result=\"hit\"} 1\n"));
+        Assert.assertTrue(response.body().contains("singleflight_absorbed_total{operation=\"getMessageById\"}"));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/1 and GET localhost:8080/accounts/1/messages, then
+     * PATCH localhost:8080/messages/1, then the same GET requests again
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the updated message rather than the cached copy from before the update
+     */
+    @Test
+    public void getMessageAfterUpdateIsNotStale() throws IOException, InterruptedException {
+        HttpRequest getMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages/1"))
+                .build();
+        HttpRequest getUserMessagesRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/accounts/1/messages"))
+                .build();
+        webClient.send(getMessageRequest, HttpResponse.BodyHandlers.ofString());
+        webClient.send(getUserMessagesRequest, HttpResponse.BodyHandlers.ofString());
+
+        HttpRequest updateMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages/1"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"updated message\" }"))
+                .header("Content-Type", "application/json")
+                .build();
+        webClient.send(updateMessageRequest, HttpResponse.BodyHandlers.ofString());
+
+        Message expectedResult = new Message(1, 1, "updated message", 1669947792);
+
+        HttpResponse<String> messageResponse = webClient.send(getMessageRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, messageResponse.statusCode());
+        Assert.assertEquals(expectedResult, objectMapper.readValue(messageResponse.body(), Message.class));
+
+        HttpResponse<String> userMessagesResponse = webClient.send(getUserMessagesRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, userMessagesResponse.statusCode());
+        Assert.assertEquals(expectedResult, objectMapper.readValue(userMessagesResponse.body(), Message[].class)[0]);
+    }
+}
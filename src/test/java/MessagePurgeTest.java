@@ -0,0 +1,147 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaServer;
+import Model.Message;
+import Util.EmbeddedDatabase;
+
+public class MessagePurgeTest {
+    static EmbeddedDatabase database;
+    SocialMediaServer server;
+    String baseUrl;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before the tests of this class run, create the in-memory database that they share.
+     * @throws SQLException
+     */
+    @BeforeClass
+    public static void createDatabase() throws SQLException {
+        database = new EmbeddedDatabase();
+    }
+
+    @AfterClass
+    public static void dropDatabase() {
+        database.close();
+    }
+
+    /**
+     * Before every test, make deleted messages purgeable at once, reset the database, restart the Javalin app, and
+     * create a new webClient and ObjectMapper for interacting locally on the web.
+     * @throws SQLException
+     */
+    @Before
+    public void setUp() throws SQLException {
+        System.setProperty("purge.minAgeSeconds", "0");
+        System.setProperty("purge.intervalSeconds", "1");
+        database.reset();
+        server = SocialMediaServer.builder().dataSource(database.getDataSource()).port(0).warmUp(false).start().join();
+        baseUrl = server.getBaseUrl();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+        System.clearProperty("purge.minAgeSeconds");
+        System.clearProperty("purge.intervalSeconds");
+    }
+
+    /**
+     * Posting a second message and deleting it with DELETE localhost:8080/messages/2, then reading it back through
+     * GET localhost:8080/messages, GET localhost:8080/messages/2 and GET localhost:8080/accounts/1/messages, and
+     * updating it with PATCH localhost:8080/messages/2
+     *
+     * Expected Response:
+     *  The deleted message is in none of the reads, and the update is rejected with status code 400
+     */
+    @Test
+    public void deletedMessageIsHidden() throws IOException, InterruptedException {
+        postMessage("hello message");
+        Assert.assertEquals(200, send(HttpRequest.newBuilder().uri(URI.create(baseUrl + "/messages/2")).DELETE().build()).statusCode());
+
+        Message[] messages = objectMapper.readValue(get("/messages").body(), Message[].class);
+        Assert.assertEquals(1, messages.length);
+        Assert.assertEquals(1, messages[0].getMessage_id());
+
+        Assert.assertEquals("", get("/messages/2").body());
+        Assert.assertEquals(1, objectMapper.readValue(get("/accounts/1/messages").body(), Message[].class).length);
+
+        HttpResponse<String> updateResponse = send(HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages/2"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"updated message\" }"))
+                .header("Content-Type", "application/json")
+                .build());
+        Assert.assertEquals(400, updateResponse.statusCode());
+
+        HttpResponse<String> deleteAgainResponse = send(HttpRequest.newBuilder().uri(URI.create(baseUrl + "/messages/2")).DELETE().build());
+        Assert.assertEquals(200, deleteAgainResponse.statusCode());
+        Assert.assertEquals("", deleteAgainResponse.body());
+    }
+
+    /**
+     * Deleting the seeded message with DELETE localhost:8080/messages/1, then waiting for the purger to run and
+     * sending an http request to GET localhost:8080/metrics
+     *
+     * Expected Response:
+     *  The message row is removed from the database and the purge backlog drops to 0
+     */
+    @Test(timeout = 10000)
+    public void deletedMessageIsPurged() throws IOException, InterruptedException, SQLException {
+        send(HttpRequest.newBuilder().uri(URI.create(baseUrl + "/messages/1")).DELETE().build());
+
+        String metrics = get("/metrics").body();
+        while (!metrics.contains("message_purged_total 1\n")) {
+            Thread.sleep(100);
+            metrics = get("/metrics").body();
+        }
+
+        Assert.assertTrue(metrics.contains("message_purge_backlog 0\n"));
+        Assert.assertTrue(metrics.contains("message_purge_batches_total 1\n"));
+
+        try (Connection connection = database.getDataSource().getConnection();
+                Statement statement = connection.createStatement();
+                ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM message")) {
+            rs.next();
+            Assert.assertEquals(0, rs.getInt(1));
+        }
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder().uri(URI.create(baseUrl + path)).build());
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void postMessage(String messageText) throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"" + messageText + "\", " +
+                        "\"time_posted_epoch\": 1669947793}"))
+                .header("Content-Type", "application/json")
+                .build();
+        send(postMessageRequest);
+    }
+}
@@ -0,0 +1,213 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import Controller.SocialMediaServer;
+import Util.EmbeddedDatabase;
+
+public class MessageStreamTest {
+    static EmbeddedDatabase database;
+    SocialMediaServer server;
+    String baseUrl;
+    HttpClient webClient;
+
+    /**
+     * Before the tests of this class run, create the in-memory database that they share, and deliver events from a
+     * single thread with a ring that holds every event a test publishes.
+     * @throws SQLException
+     */
+    @BeforeClass
+    public static void createDatabase() throws SQLException {
+        System.setProperty("messageStream.deliveryThreads", "1");
+        System.setProperty("messageStream.capacity", "65536");
+        database = new EmbeddedDatabase();
+    }
+
+    @AfterClass
+    public static void dropDatabase() {
+        database.close();
+        System.clearProperty("messageStream.deliveryThreads");
+        System.clearProperty("messageStream.capacity");
+    }
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient for interacting
+     * locally on the web.
+     * @throws SQLException
+     */
+    @Before
+    public void setUp() throws SQLException {
+        database.reset();
+        server = SocialMediaServer.builder().dataSource(database.getDataSource()).port(0).warmUp(false).start().join();
+        baseUrl = server.getBaseUrl();
+        webClient = HttpClient.newHttpClient();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * Subscribing to GET localhost:8080/messages/stream?posted_by=1, then sending an http request to
+     * POST localhost:8080/messages
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: an SSE "created" event carrying the JSON of the new message
+     */
+    @Test(timeout = 10000)
+    public void streamCreatedEvent() throws IOException, InterruptedException {
+        HttpResponse<Stream<String>> subscription = subscribe(baseUrl + "/messages/stream?posted_by=1", null);
+
+        Assert.assertEquals(200, subscription.statusCode());
+        Assert.assertEquals("text/event-stream", subscription.headers().firstValue("Content-Type").orElse(""));
+
+        postMessage("hello message");
+
+        try (Stream<String> lines = subscription.body()) {
+            Iterator<String> events = lines.filter(line -> !line.isEmpty() && !line.startsWith(":")).iterator();
+
+            Assert.assertTrue(events.next().matches("id: [0-9a-z]+-1"));
+            Assert.assertEquals("event: created", events.next());
+            Assert.assertEquals("data: {\"message_id\":2,\"posted_by\":1,\"message_text\":\"hello message\",\"time_posted_epoch\":1669947793}",
+                    events.next());
+        }
+    }
+
+    /**
+     * Receiving a "created" event, then updating the message, then subscribing to
+     * GET localhost:8080/messages/stream with the ID of the "created" event as the Last-Event-ID
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the "updated" event that was published after the last event the client received
+     */
+    @Test(timeout = 10000)
+    public void streamResumesAfterLastEventId() throws IOException, InterruptedException {
+        HttpResponse<Stream<String>> subscription = subscribe(baseUrl + "/messages/stream", null);
+        postMessage("hello message");
+
+        String lastEventId;
+        try (Stream<String> lines = subscription.body()) {
+            lastEventId = lines.filter(line -> line.startsWith("id: ")).findFirst().get().substring(4);
+        }
+
+        HttpRequest updateMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages/2"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"updated message\" }"))
+                .header("Content-Type", "application/json")
+                .build();
+        webClient.send(updateMessageRequest, HttpResponse.BodyHandlers.ofString());
+
+        HttpResponse<Stream<String>> resumed = subscribe(baseUrl + "/messages/stream", lastEventId);
+
+        try (Stream<String> lines = resumed.body()) {
+            Iterator<String> events = lines.filter(line -> !line.isEmpty() && !line.startsWith(":")).iterator();
+
+            Assert.assertTrue(events.next().endsWith("-2"));
+            Assert.assertEquals("event: updated", events.next());
+            Assert.assertTrue(events.next().contains("\"message_text\":\"updated message\""));
+        }
+    }
+
+    /**
+     * Subscribing to GET localhost:8080/messages/stream with a Last-Event-ID from another server run
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: a "reset" event telling the client to reload
+     */
+    @Test(timeout = 10000)
+    public void streamResetsUnknownLastEventId() throws IOException, InterruptedException {
+        HttpResponse<Stream<String>> subscription = subscribe(baseUrl + "/messages/stream", "previousrun-7");
+
+        try (Stream<String> lines = subscription.body()) {
+            Assert.assertEquals("event: reset", lines.filter(line -> line.startsWith("event: ")).findFirst().get());
+        }
+    }
+
+    /**
+     * Subscribing to GET localhost:8080/messages/stream from a client that never reads, and from one that does, then
+     * importing enough messages to fill the first client's connection, then sending an http request to
+     * POST localhost:8080/messages
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the reading client receives the "created" event of the posted message, although the only
+     *  delivery thread cannot write any more to the client that does not read
+     */
+    @Test(timeout = 20000)
+    public void slowSubscriberDoesNotHoldUpOthers() throws IOException, InterruptedException {
+        try (Socket stalled = new Socket()) {
+            stalled.setReceiveBufferSize(4096);
+            stalled.connect(new InetSocketAddress("localhost", URI.create(baseUrl).getPort()));
+
+            OutputStream request = stalled.getOutputStream();
+            request.write("GET /messages/stream HTTP/1.1\r\nHost: localhost\r\nAccept: text/event-stream\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            request.flush();
+
+            HttpResponse<Stream<String>> subscription = subscribe(baseUrl + "/messages/stream", null);
+
+            StringBuilder body = new StringBuilder();
+            String record = "{\"posted_by\":1,\"message_text\":\"" + "x".repeat(250) + "\",\"time_posted_epoch\":1669947793}\n";
+
+            for (int i = 0; i < 30_000; i++) {
+                body.append(record);
+            }
+
+            HttpRequest importRequest = HttpRequest.newBuilder()
+                    .uri(URI.create(baseUrl + "/import/messages"))
+                    .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                    .header("Content-Type", "application/x-ndjson")
+                    .build();
+            Assert.assertEquals(200, webClient.send(importRequest, HttpResponse.BodyHandlers.discarding()).statusCode());
+
+            postMessage("last message");
+
+            try (Stream<String> lines = subscription.body()) {
+                Assert.assertTrue(lines.anyMatch(line -> line.contains("\"message_text\":\"last message\"")));
+            }
+        }
+    }
+
+    private HttpResponse<Stream<String>> subscribe(String url, String lastEventId) throws IOException, InterruptedException {
+        HttpRequest.Builder subscribeRequest = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .header("Accept", "text/event-stream");
+
+        if (lastEventId != null) {
+            subscribeRequest.header("Last-Event-ID", lastEventId);
+        }
+
+        return webClient.send(subscribeRequest.build(), HttpResponse.BodyHandlers.ofLines());
+    }
+
+    private void postMessage(String messageText) throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"" + messageText + "\", " +
+                        "\"time_posted_epoch\": 1669947793}"))
+                .header("Content-Type", "application/json")
+                .build();
+        webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,111 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import Controller.SocialMediaServer;
+import Util.EmbeddedDatabase;
+
+public class MetricsEndpointTest {
+    static EmbeddedDatabase database;
+    SocialMediaServer server;
+    String baseUrl;
+    HttpClient webClient;
+
+    /**
+     * Before the tests of this class run, create the in-memory database that they share.
+     * @throws SQLException
+     */
+    @BeforeClass
+    public static void createDatabase() throws SQLException {
+        database = new EmbeddedDatabase();
+    }
+
+    @AfterClass
+    public static void dropDatabase() {
+        database.close();
+    }
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient for interacting
+     * locally on the web.
+     * @throws SQLException
+     */
+    @Before
+    public void setUp() throws SQLException {
+        database.reset();
+        server = SocialMediaServer.builder().dataSource(database.getDataSource()).port(0).warmUp(false).start().join();
+        baseUrl = server.getBaseUrl();
+        webClient = HttpClient.newHttpClient();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/metrics after serving GET localhost:8080/messages
+     * 
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: Prometheus text containing the request count and latency histogram of GET /messages
+     */
+    @Test
+    public void getMetricsAfterRequest() throws IOException, InterruptedException {
+        HttpRequest getMessagesRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages"))
+                .build();
+        webClient.send(getMessagesRequest, HttpResponse.BodyHandlers.ofString());
+
+        HttpRequest getMetricsRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/metrics"))
+                .build();
+        HttpResponse<String> response = webClient.send(getMetricsRequest, HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+        Assert.assertEquals(200, status);
+
+        String body = response.body();
+        Assert.assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("text/plain"));
+        Assert.assertTrue(body.contains("http_requests_total{method=\"GET\",route=\"/messages\",status=\"200\"} 1\n"));
+        Assert.assertTrue(body.contains("http_request_duration_seconds_count{method=\"GET\",route=\"/messages\"} 1\n"));
+        Assert.assertTrue(body.contains("http_request_duration_seconds_bucket{method=\"GET\",route=\"/messages\",le=\"+Inf\"} 1\n"));
+        Assert.assertTrue(body.contains("jvm_memory_heap_bytes{area=\"used\"}"));
+        Assert.assertTrue(body.contains("jvm_threads{state=\"live\"}"));
+        Assert.assertTrue(body.contains("# TYPE jvm_gc_collections_total counter"));
+        Assert.assertTrue(body.contains("# TYPE jvm_gc_collection_seconds_total counter"));
+    }
+
+    /**
+     * Sending an http request to a path without an endpoint, then to GET localhost:8080/metrics
+     * 
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: Prometheus text counting the request under the "unmatched" route instead of its raw path
+     */
+    @Test
+    public void getMetricsAfterUnmatchedRequest() throws IOException, InterruptedException {
+        HttpRequest unmatchedRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/no/such/path"))
+                .build();
+        webClient.send(unmatchedRequest, HttpResponse.BodyHandlers.ofString());
+
+        HttpRequest getMetricsRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/metrics"))
+                .build();
+        HttpResponse<String> response = webClient.send(getMetricsRequest, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertTrue(response.body().contains("http_requests_total{method=\"GET\",route=\"unmatched\",status=\"404\"} 1\n"));
+        Assert.assertFalse(response.body().contains("/no/such/path"));
+    }
+}
@@ -0,0 +1,148 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaServer;
+import Model.Account;
+import Model.Message;
+import Util.EmbeddedDatabase;
+
+public class MultiGetTest {
+    static EmbeddedDatabase database;
+    SocialMediaServer server;
+    String baseUrl;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before the tests of this class run, create the in-memory database that they share.
+     * @throws SQLException
+     */
+    @BeforeClass
+    public static void createDatabase() throws SQLException {
+        database = new EmbeddedDatabase();
+    }
+
+    @AfterClass
+    public static void dropDatabase() {
+        database.close();
+    }
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws SQLException
+     */
+    @Before
+    public void setUp() throws SQLException {
+        database.reset();
+        server = SocialMediaServer.builder().dataSource(database.getDataSource()).port(0).warmUp(false).start().join();
+        baseUrl = server.getBaseUrl();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * Posting a second message, then sending an http request to GET localhost:8080/messages?ids=2,5,1
+     * (message 5 does not exist)
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON list of messages 2 and 1, in that order
+     */
+    @Test
+    public void getMessagesByIdsInRequestedOrder() throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"hello message\", " +
+                        "\"time_posted_epoch\": 1669947793}"))
+                .header("Content-Type", "application/json")
+                .build();
+        webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+
+        HttpRequest getMessagesRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages?ids=2,5,1"))
+                .build();
+        HttpResponse<String> response = webClient.send(getMessagesRequest, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+
+        Message[] actualResult = objectMapper.readValue(response.body(), Message[].class);
+        Assert.assertArrayEquals(new Message[] {
+                new Message(2, 1, "hello message", 1669947793),
+                new Message(1, 1, "test message 1", 1669947792)
+        }, actualResult);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?ids=1,abc
+     *
+     * Expected Response:
+     *  Status Code: 400
+     *  Response Body:
+     */
+    @Test
+    public void getMessagesByIdsInvalidList() throws IOException, InterruptedException {
+        HttpRequest getMessagesRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages?ids=1,abc"))
+                .build();
+        HttpResponse<String> response = webClient.send(getMessagesRequest, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(400, response.statusCode());
+        Assert.assertEquals("", response.body());
+    }
+
+    /**
+     * Registering a second account, then sending an http request to GET localhost:8080/accounts?ids=2,1
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON list of accounts 2 and 1, in that order, without their passwords
+     */
+    @Test
+    public void getAccountsByIdsInRequestedOrder() throws IOException, InterruptedException {
+        HttpRequest registerRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/register"))
+                .POST(HttpRequest.BodyPublishers.ofString("{" +
+                        "\"username\": \"user\", " +
+                        "\"password\": \"password\" }"))
+                .header("Content-Type", "application/json")
+                .build();
+        webClient.send(registerRequest, HttpResponse.BodyHandlers.ofString());
+
+        HttpRequest getAccountsRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/accounts?ids=2,1"))
+                .build();
+        HttpResponse<String> response = webClient.send(getAccountsRequest, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+
+        Account[] actualResult = objectMapper.readValue(response.body(), Account[].class);
+        Assert.assertEquals(2, actualResult.length);
+        Assert.assertEquals(2, actualResult[0].getAccount_id());
+        Assert.assertEquals("user", actualResult[0].getUsername());
+        Assert.assertNull(actualResult[0].getPassword());
+        Assert.assertEquals(1, actualResult[1].getAccount_id());
+        Assert.assertEquals("testuser1", actualResult[1].getUsername());
+        Assert.assertNull(actualResult[1].getPassword());
+    }
+}
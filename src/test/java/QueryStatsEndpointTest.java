@@ -0,0 +1,109 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaServer;
+import Util.EmbeddedDatabase;
+
+public class QueryStatsEndpointTest {
+    static EmbeddedDatabase database;
+    SocialMediaServer server;
+    String baseUrl;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before the tests of this class run, create the in-memory database that they share.
+     * @throws SQLException
+     */
+    @BeforeClass
+    public static void createDatabase() throws SQLException {
+        database = new EmbeddedDatabase();
+    }
+
+    @AfterClass
+    public static void dropDatabase() {
+        database.close();
+    }
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws SQLException
+     */
+    @Before
+    public void setUp() throws SQLException {
+        database.reset();
+        server = SocialMediaServer.builder().dataSource(database.getDataSource()).port(0).warmUp(false).start().join();
+        baseUrl = server.getBaseUrl();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/admin/queries after logging in
+     * 
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON statistics for the login query template, without the bound username or password, and
+     *  database metrics labelled by statement name
+     */
+    @Test
+    public void getQueryStatsAfterLogin() throws IOException, InterruptedException {
+        HttpRequest loginRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{" +
+                        "\"username\": \"testuser1\", " +
+                        "\"password\": \"password\" }"))
+                .header("Content-Type", "application/json")
+                .build();
+        webClient.send(loginRequest, HttpResponse.BodyHandlers.ofString());
+
+        HttpRequest queryStatsRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/admin/queries"))
+                .build();
+        HttpResponse<String> response = webClient.send(queryStatsRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+
+        JsonNode body = objectMapper.readTree(response.body());
+        JsonNode loginQuery = null;
+        for (JsonNode query : body.get("queries")) {
+            if (query.get("sql").asText().equals("SELECT * FROM Account WHERE username = ? AND password = ?")) {
+                loginQuery = query;
+            }
+        }
+
+        Assert.assertNotNull(loginQuery);
+        Assert.assertEquals(1, loginQuery.get("count").asLong());
+        Assert.assertEquals(1, loginQuery.get("rows").asLong());
+        Assert.assertEquals(0, loginQuery.get("errors").asLong());
+        Assert.assertTrue(body.get("slowQueries").size() > 0);
+        Assert.assertTrue(body.get("connectionWait").get("count").asLong() > 0);
+        Assert.assertFalse(response.body().contains("testuser1"));
+        Assert.assertFalse(response.body().contains("\"password\""));
+
+        // The metrics name the statement by its type and table rather than by its SQL
+        HttpRequest metricsRequest = HttpRequest.newBuilder().uri(URI.create(baseUrl + "/metrics")).build();
+        String metrics = webClient.send(metricsRequest, HttpResponse.BodyHandlers.ofString()).body();
+        Assert.assertTrue(metrics.contains("db_query_rows_total{query=\"select account\"}"));
+        Assert.assertFalse(metrics.contains("WHERE username"));
+    }
+}
@@ -0,0 +1,119 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import Controller.SocialMediaServer;
+import Util.EmbeddedDatabase;
+
+public class RateLimitTest {
+    static EmbeddedDatabase database;
+    SocialMediaServer server;
+    String baseUrl;
+    HttpClient webClient;
+
+    /**
+     * Before the tests of this class run, create the in-memory database that they share.
+     * @throws SQLException
+     */
+    @BeforeClass
+    public static void createDatabase() throws SQLException {
+        database = new EmbeddedDatabase();
+    }
+
+    @AfterClass
+    public static void dropDatabase() {
+        database.close();
+    }
+
+    /**
+     * Before every test, lower the rate limits, reset the database, restart the Javalin app, and create a new
+     * webClient for interacting locally on the web.
+     * @throws SQLException
+     */
+    @Before
+    public void setUp() throws SQLException {
+        System.setProperty("rateLimit.messages.burst", "2");
+        System.setProperty("rateLimit.messages.perSecond", "0.1");
+        System.setProperty("rateLimit.auth.burst", "1");
+        System.setProperty("rateLimit.auth.perSecond", "0.1");
+        database.reset();
+        server = SocialMediaServer.builder().dataSource(database.getDataSource()).port(0).warmUp(false).start().join();
+        baseUrl = server.getBaseUrl();
+        webClient = HttpClient.newHttpClient();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+        System.clearProperty("rateLimit.messages.burst");
+        System.clearProperty("rateLimit.messages.perSecond");
+        System.clearProperty("rateLimit.auth.burst");
+        System.clearProperty("rateLimit.auth.perSecond");
+    }
+
+    /**
+     * Sending three http requests to POST localhost:8080/messages for the same account when its burst is 2
+     * 
+     * Expected Response:
+     *  Status Code: 200, 200, then 429 with a Retry-After header
+     *  Response Body: empty for the rejected request
+     */
+    @Test
+    public void createMessageRateLimited() throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"hello message\", " +
+                        "\"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+
+        Assert.assertEquals(200, webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+        Assert.assertEquals(200, webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpResponse<String> response = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(429, response.statusCode());
+        Assert.assertEquals("", response.body());
+        Assert.assertTrue(Long.parseLong(response.headers().firstValue("Retry-After").orElse("0")) >= 1);
+
+        // The rejected message must not have been persisted (message 1 comes from SocialMedia.sql)
+        HttpRequest getMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages/4"))
+                .build();
+        Assert.assertEquals("", webClient.send(getMessageRequest, HttpResponse.BodyHandlers.ofString()).body());
+    }
+
+    /**
+     * Sending two http requests to POST localhost:8080/login from the same client when its burst is 1
+     * 
+     * Expected Response:
+     *  Status Code: 200, then 429 with a Retry-After header
+     */
+    @Test
+    public void loginRateLimited() throws IOException, InterruptedException {
+        HttpRequest loginRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{" +
+                        "\"username\": \"testuser1\", " +
+                        "\"password\": \"password\" }"))
+                .header("Content-Type", "application/json")
+                .build();
+
+        Assert.assertEquals(200, webClient.send(loginRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpResponse<String> response = webClient.send(loginRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(429, response.statusCode());
+        Assert.assertTrue(response.headers().firstValue("Retry-After").isPresent());
+    }
+}
@@ -0,0 +1,120 @@
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import Controller.SocialMediaServer;
+import Util.EmbeddedDatabase;
+
+public class ReadinessTest {
+    static EmbeddedDatabase database;
+    SocialMediaServer server;
+    String baseUrl;
+    HttpClient webClient;
+    File requestSample;
+
+    /**
+     * Before the tests of this class run, create the in-memory database that they share.
+     * @throws SQLException
+     */
+    @BeforeClass
+    public static void createDatabase() throws SQLException {
+        database = new EmbeddedDatabase();
+    }
+
+    @AfterClass
+    public static void dropDatabase() {
+        database.close();
+    }
+
+    /**
+     * Before every test, write a request sample to replay, reset the database, restart the Javalin app, and create
+     * a new webClient for interacting locally on the web.
+     * @throws SQLException
+     * @throws IOException
+     */
+    @Before
+    public void setUp() throws SQLException, IOException {
+        requestSample = File.createTempFile("requests", ".txt");
+        Files.writeString(requestSample.toPath(), "# sampled requests\nGET /messages/1\nPOST /messages\n/accounts/1/stats\n");
+        System.setProperty("warmup.requestSample", requestSample.getPath());
+        System.setProperty("warmup.replayIterations", "2");
+        database.reset();
+        server = SocialMediaServer.builder().dataSource(database.getDataSource()).port(0).warmUp(false).start().join();
+        baseUrl = server.getBaseUrl();
+        webClient = HttpClient.newHttpClient();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+        System.clearProperty("warmup.requestSample");
+        System.clearProperty("warmup.replayIterations");
+        requestSample.delete();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/ready before warm-up has been started
+     *
+     * Expected Response:
+     *  Status Code: 503
+     *  Response Body: JSON reporting that the server is not ready
+     */
+    @Test
+    public void notReadyBeforeWarmup() throws IOException, InterruptedException {
+        HttpResponse<String> response = getReady();
+
+        Assert.assertEquals(503, response.statusCode());
+        Assert.assertEquals("{\"ready\":false}", response.body());
+    }
+
+    /**
+     * Warming up, then sending http requests to GET localhost:8080/ready and GET localhost:8080/metrics
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON reporting that the server is ready, and metrics counting the warmed cache entries and
+     *  the replayed GET requests (the POST in the sample is skipped)
+     */
+    @Test
+    public void readyAfterWarmup() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+        server.getController().warmUp(server.getPort()).get(10, TimeUnit.SECONDS);
+
+        HttpResponse<String> response = getReady();
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals("{\"ready\":true}", response.body());
+
+        HttpRequest getMetricsRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/metrics"))
+                .build();
+        String metrics = webClient.send(getMetricsRequest, HttpResponse.BodyHandlers.ofString()).body();
+
+        Assert.assertTrue(metrics.contains("warmup_items_total{task=\"accounts\"} 1\n"));
+        Assert.assertTrue(metrics.contains("warmup_items_total{task=\"messages\"} 1\n"));
+        Assert.assertTrue(metrics.contains("warmup_items_total{task=\"replay\"} 4\n"));
+        Assert.assertTrue(metrics.contains("warmup_tasks{state=\"completed\"} 3\n"));
+        Assert.assertTrue(metrics.contains("ready 1\n"));
+    }
+
+    private HttpResponse<String> getReady() throws IOException, InterruptedException {
+        HttpRequest readyRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/ready"))
+                .build();
+        return webClient.send(readyRequest, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,154 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaServer;
+import Model.Message;
+import Util.EmbeddedDatabase;
+import io.airlift.compress.zstd.ZstdDecompressor;
+
+public class ResponseCompressionTest {
+    static EmbeddedDatabase database;
+    SocialMediaServer server;
+    String baseUrl;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before the tests of this class run, create the in-memory database that they share.
+     * @throws SQLException
+     */
+    @BeforeClass
+    public static void createDatabase() throws SQLException {
+        database = new EmbeddedDatabase();
+    }
+
+    @AfterClass
+    public static void dropDatabase() {
+        database.close();
+    }
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, create a new webClient and ObjectMapper for
+     * interacting locally on the web, and post enough messages that the message list is worth compressing.
+     * @throws SQLException
+     */
+    @Before
+    public void setUp() throws SQLException, IOException, InterruptedException {
+        database.reset();
+        server = SocialMediaServer.builder().dataSource(database.getDataSource()).port(0).warmUp(false).start().join();
+        baseUrl = server.getBaseUrl();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+
+        for (int i = 0; i < 20; i++) {
+            HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                    .uri(URI.create(baseUrl + "/messages"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{"+
+                            "\"posted_by\":1, " +
+                            "\"message_text\": \"compressible message number " + i + "\", " +
+                            "\"time_posted_epoch\": 1669947793}"))
+                    .header("Content-Type", "application/json")
+                    .build();
+            Assert.assertEquals(200, webClient.send(postMessageRequest, HttpResponse.BodyHandlers.discarding()).statusCode());
+        }
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/messages and GET localhost:8080/messages/1 with
+     * Accept-Encoding: gzip
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the message list gzipped, and the single message (below the size threshold) uncompressed
+     */
+    @Test
+    public void gzipAboveMinimumSize() throws IOException, InterruptedException {
+        HttpResponse<byte[]> list = get("/messages", "gzip");
+        HttpResponse<byte[]> single = get("/messages/1", "gzip");
+
+        Assert.assertEquals(200, list.statusCode());
+        Assert.assertEquals("gzip", list.headers().firstValue("Content-Encoding").orElse(""));
+        Assert.assertTrue(list.headers().firstValue("Vary").orElse("").contains("Accept-Encoding"));
+
+        byte[] body = new GZIPInputStream(new ByteArrayInputStream(list.body())).readAllBytes();
+        Assert.assertEquals(21, objectMapper.readValue(body, Message[].class).length);
+
+        Assert.assertFalse(single.headers().firstValue("Content-Encoding").isPresent());
+        Assert.assertEquals(1, objectMapper.readValue(single.body(), Message.class).getMessage_id());
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/messages accepting gzip and zstd equally, preferring gzip, and
+     * accepting no encoding
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: zstd on a tie, gzip when it is preferred, uncompressed without Accept-Encoding
+     */
+    @Test
+    public void encodingNegotiatedFromAcceptEncoding() throws IOException, InterruptedException {
+        HttpResponse<byte[]> tie = get("/messages", "gzip, zstd");
+        HttpResponse<byte[]> gzipPreferred = get("/messages", "zstd;q=0.5, gzip");
+        HttpResponse<byte[]> identity = get("/messages", null);
+
+        Assert.assertEquals("zstd", tie.headers().firstValue("Content-Encoding").orElse(""));
+        byte[] compressed = tie.body();
+        byte[] body = new byte[(int) ZstdDecompressor.getDecompressedSize(compressed, 0, compressed.length)];
+        new ZstdDecompressor().decompress(compressed, 0, compressed.length, body, 0, body.length);
+        Assert.assertArrayEquals(identity.body(), body);
+
+        Assert.assertEquals("gzip", gzipPreferred.headers().firstValue("Content-Encoding").orElse(""));
+        Assert.assertFalse(identity.headers().firstValue("Content-Encoding").isPresent());
+        Assert.assertEquals(21, objectMapper.readValue(identity.body(), Message[].class).length);
+    }
+
+    /**
+     * Sending the same http request to GET localhost:8080/messages with Accept-Encoding: gzip twice, then sending
+     * an http request to GET localhost:8080/metrics
+     *
+     * Expected Response:
+     *  The second response is served from the compressed response cache
+     */
+    @Test
+    public void hotResponseIsCompressedOnce() throws IOException, InterruptedException {
+        HttpResponse<byte[]> first = get("/messages", "gzip");
+        HttpResponse<byte[]> second = get("/messages", "gzip");
+
+        Assert.assertArrayEquals(first.body(), second.body());
+
+        String metrics = new String(get("/metrics", null).body());
+        Assert.assertTrue(metrics.contains("cache_requests_total{cache=\"compressed_responses\",result=\"miss\"} 1\n"));
+        Assert.assertTrue(metrics.contains("cache_requests_total{cache=\"compressed_responses\",result=\"hit\"} 1\n"));
+        Assert.assertTrue(metrics.contains("http_compressed_responses_total{encoding=\"gzip\"} 2\n"));
+    }
+
+    private HttpResponse<byte[]> get(String path, String acceptEncoding) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder().uri(URI.create(baseUrl + path));
+
+        if (acceptEncoding != null) {
+            request.header("Accept-Encoding", acceptEncoding);
+        }
+
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+}
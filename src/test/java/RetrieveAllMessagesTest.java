@@ -10,43 +10,57 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.junit.After;
+import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.BeforeClass;
 import org.junit.Test;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
-import Controller.SocialMediaController;
+import Controller.SocialMediaServer;
 import Model.Message;
-import Util.ConnectionUtil;
-import io.javalin.Javalin;
+import Util.EmbeddedDatabase;
 
 public class RetrieveAllMessagesTest {
-    SocialMediaController socialMediaController;
+    static EmbeddedDatabase database;
+    SocialMediaServer server;
+    String baseUrl;
     HttpClient webClient;
     ObjectMapper objectMapper;
-    Javalin app;
+
+    /**
+     * Before the tests of this class run, create the in-memory database that they share.
+     * @throws SQLException
+     */
+    @BeforeClass
+    public static void createDatabase() throws SQLException {
+        database = new EmbeddedDatabase();
+    }
+
+    @AfterClass
+    public static void dropDatabase() {
+        database.close();
+    }
 
     /**
      * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
      * for interacting locally on the web.
-     * @throws InterruptedException
+     * @throws SQLException
      */
     @Before
-    public void setUp() throws InterruptedException {
-        ConnectionUtil.resetTestDatabase();
-        socialMediaController = new SocialMediaController();
-        app = socialMediaController.startAPI();
+    public void setUp() throws SQLException {
+        database.reset();
+        server = SocialMediaServer.builder().dataSource(database.getDataSource()).port(0).warmUp(false).start().join();
+        baseUrl = server.getBaseUrl();
         webClient = HttpClient.newHttpClient();
         objectMapper = new ObjectMapper();
-        app.start(8080);
-        Thread.sleep(1000);
     }
 
     @After
     public void tearDown() {
-        app.stop();
+        server.stop();
     }
 
 /**
@@ -59,7 +73,7 @@ public class RetrieveAllMessagesTest {
     @Test
     public void getAllMessagesMessagesAvailable() throws IOException, InterruptedException {
         HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create("http://localhost:8080/messages"))
+                .uri(URI.create(baseUrl + "/messages"))
                 .build();
         HttpResponse response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
         int status = response.statusCode();
@@ -86,7 +100,7 @@ public class RetrieveAllMessagesTest {
         removeInitialMessage();
 
         HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create("http://localhost:8080/messages"))
+                .uri(URI.create(baseUrl + "/messages"))
                 .build();
         HttpResponse response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
         int status = response.statusCode();
@@ -101,7 +115,7 @@ public class RetrieveAllMessagesTest {
 
     private void removeInitialMessage(){
         try {
-                Connection conn = ConnectionUtil.getConnection();
+                Connection conn = database.getDataSource().getConnection();
                 PreparedStatement ps = conn.prepareStatement("delete from message where message_id = ?");
                 ps.setInt(1, 1);
                 ps.executeUpdate();
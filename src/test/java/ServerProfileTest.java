@@ -0,0 +1,168 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import Controller.ServerConfig;
+import Controller.SocialMediaServer;
+import Util.EmbeddedDatabase;
+
+public class ServerProfileTest {
+    static EmbeddedDatabase database;
+    SocialMediaServer server;
+    HttpClient webClient;
+
+    /**
+     * Before the tests of this class run, create the in-memory database that they share.
+     * @throws SQLException
+     */
+    @BeforeClass
+    public static void createDatabase() throws SQLException {
+        database = new EmbeddedDatabase();
+    }
+
+    @AfterClass
+    public static void dropDatabase() {
+        database.close();
+    }
+
+    /**
+     * Before every test, reset the database and create a new webClient for interacting locally on the web. Each
+     * test starts its own server once it has chosen its settings.
+     * @throws SQLException
+     */
+    @Before
+    public void setUp() throws SQLException {
+        database.reset();
+        webClient = HttpClient.newHttpClient();
+    }
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.stop();
+            server = null;
+        }
+
+        System.clearProperty(ServerConfig.PROFILE_PROPERTY);
+        System.clearProperty("server.threads.min");
+        System.clearProperty("server.threads.max");
+        System.clearProperty("server.http.maxRequestSize");
+        System.clearProperty("server.http.requestHeaderSize");
+    }
+
+    /**
+     * Starting a server with each shipped profile, then sending an http request to GET localhost:8080/messages
+     *
+     * Expected Response:
+     *  Status Code: 200 for every profile
+     */
+    @Test
+    public void everyProfileServes() throws IOException, InterruptedException, SQLException {
+        for (String profile : ServerConfig.PROFILES) {
+            System.setProperty(ServerConfig.PROFILE_PROPERTY, profile);
+            server = startServer();
+
+            HttpResponse<String> response = send(HttpRequest.newBuilder().uri(URI.create(server.getBaseUrl() + "/messages")).build());
+
+            Assert.assertEquals(profile, 200, response.statusCode());
+            Assert.assertEquals(profile, server.getController().getServerConfig().getProfile());
+
+            server.stop();
+            server = null;
+        }
+    }
+
+    /**
+     * Starting a server with -Dserver.http.requestHeaderSize=1024 over the small-memory profile, then sending an
+     * http request to GET localhost:8080/messages with a 2 KB header
+     *
+     * Expected Response:
+     *  Status Code: 431
+     */
+    @Test
+    public void systemPropertyOverridesProfile() throws IOException, InterruptedException, SQLException {
+        System.setProperty(ServerConfig.PROFILE_PROPERTY, "small-memory");
+        System.setProperty("server.http.requestHeaderSize", "1024");
+        server = startServer();
+
+        HttpResponse<String> response = send(HttpRequest.newBuilder()
+                .uri(URI.create(server.getBaseUrl() + "/messages"))
+                .header("X-Padding", "x".repeat(2048))
+                .build());
+
+        Assert.assertEquals(431, response.statusCode());
+    }
+
+    /**
+     * Starting a server with -Dserver.http.maxRequestSize=64, then sending an http request to POST
+     * localhost:8080/messages with a larger body
+     *
+     * Expected Response:
+     *  Status Code: 413
+     */
+    @Test
+    public void requestLargerThanMaxRequestSizeIsRejected() throws IOException, InterruptedException, SQLException {
+        System.setProperty("server.http.maxRequestSize", "64");
+        server = startServer();
+
+        HttpResponse<String> response = send(HttpRequest.newBuilder()
+                .uri(URI.create(server.getBaseUrl() + "/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"a message that makes the body longer than the limit\", " +
+                        "\"time_posted_epoch\": 1669947793}"))
+                .header("Content-Type", "application/json")
+                .build());
+
+        Assert.assertEquals(413, response.statusCode());
+    }
+
+    /**
+     * Starting a server with an unknown profile, and with more minimum than maximum threads
+     *
+     * Expected Result:
+     *  The server is not created, with an IllegalArgumentException naming the problem
+     */
+    @Test
+    public void invalidSettingsAreRejected() throws SQLException {
+        System.setProperty(ServerConfig.PROFILE_PROPERTY, "fastest");
+
+        try {
+            startServer();
+            Assert.fail("An unknown profile was accepted");
+        }
+        catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("fastest"));
+        }
+
+        System.clearProperty(ServerConfig.PROFILE_PROPERTY);
+        System.setProperty("server.threads.min", "64");
+        System.setProperty("server.threads.max", "16");
+
+        try {
+            startServer();
+            Assert.fail("More minimum than maximum threads were accepted");
+        }
+        catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("server.threads.min"));
+        }
+    }
+
+    private SocialMediaServer startServer() throws SQLException {
+        return SocialMediaServer.builder().dataSource(database.getDataSource()).port(0).warmUp(false).start().join();
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,181 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaServer;
+import Util.EmbeddedDatabase;
+
+public class TrendingTest {
+    private static final Pattern MESSAGE_CACHE_HITS = Pattern.compile("cache_requests_total\\{cache=\"messages\",result=\"hit\"\\} (\\d+)");
+
+    static EmbeddedDatabase database;
+    SocialMediaServer server;
+    String baseUrl;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before the tests of this class run, create the in-memory database that they share.
+     * @throws SQLException
+     */
+    @BeforeClass
+    public static void createDatabase() throws SQLException {
+        database = new EmbeddedDatabase();
+    }
+
+    @AfterClass
+    public static void dropDatabase() {
+        database.close();
+    }
+
+    /**
+     * Before every test, use a 5 second trending window that pins the hottest message every second in a message
+     * cache of two entries, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws SQLException
+     */
+    @Before
+    public void setUp() throws SQLException {
+        System.setProperty("trending.windowSeconds", "5");
+        System.setProperty("trending.slices", "5");
+        System.setProperty("trending.pinnedMessages", "1");
+        System.setProperty("cache.messages.maxSize", "2");
+        database.reset();
+        server = SocialMediaServer.builder().dataSource(database.getDataSource()).port(0).warmUp(false).start().join();
+        baseUrl = server.getBaseUrl();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+        System.clearProperty("trending.windowSeconds");
+        System.clearProperty("trending.slices");
+        System.clearProperty("trending.pinnedMessages");
+        System.clearProperty("cache.messages.maxSize");
+    }
+
+    /**
+     * Posting three messages that mention "javalin" and one that does not, reading message 1 five times and
+     * message 2 once, then sending an http request to GET localhost:8080/stats/trending?limit=2
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: "javalin" as the top term in 3 messages, and message 1 as the top message with 5 reads
+     */
+    @Test
+    public void trendingTermsAndMessages() throws IOException, InterruptedException {
+        postMessage("Learning Javalin today");
+        postMessage("javalin routes, javalin handlers");
+        postMessage("More JAVALIN please");
+        postMessage("Something else entirely");
+
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(200, get("/messages/1").statusCode());
+        }
+
+        Assert.assertEquals(200, get("/messages/2").statusCode());
+
+        HttpResponse<String> response = get("/stats/trending?limit=2");
+        Assert.assertEquals(200, response.statusCode());
+
+        JsonNode trending = objectMapper.readTree(response.body());
+        Assert.assertEquals(5, trending.get("window_seconds").asInt());
+        Assert.assertEquals(2, trending.get("terms").size());
+        Assert.assertEquals("javalin", trending.get("terms").get(0).get("key").asText());
+        Assert.assertEquals(3, trending.get("terms").get(0).get("count").asLong());
+        Assert.assertEquals(1, trending.get("messages").get(0).get("key").asInt());
+        Assert.assertEquals(5, trending.get("messages").get(0).get("count").asLong());
+        Assert.assertEquals(2, trending.get("messages").get(1).get("key").asInt());
+
+        Assert.assertEquals(400, get("/stats/trending?limit=0").statusCode());
+    }
+
+    /**
+     * Reading message 1 until it is pinned as the hottest message, then reading four other messages through the
+     * two-entry message cache and reading message 1 again
+     *
+     * Expected Response:
+     *  Message 1 was not evicted by the other reads, so the last read is a cache hit
+     */
+    @Test(timeout = 10000)
+    public void hottestMessageIsPinnedInCache() throws IOException, InterruptedException {
+        for (int i = 0; i < 5; i++) {
+            get("/messages/1");
+        }
+
+        while (!get("/metrics").body().contains("cache_pinned_keys{cache=\"messages\"} 1\n")) {
+            Thread.sleep(100);
+        }
+
+        for (int i = 2; i <= 5; i++) {
+            postMessage("message " + i);
+            Assert.assertEquals(200, get("/messages/" + i).statusCode());
+        }
+
+        long hits = messageCacheHits();
+        Assert.assertEquals(200, get("/messages/1").statusCode());
+        Assert.assertEquals(hits + 1, messageCacheHits());
+    }
+
+    /**
+     * Updating message 1 three times, then sending an http request to GET localhost:8080/stats/trending
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: no hot messages, since updates are not reads
+     */
+    @Test
+    public void updatesAreNotCountedAsReads() throws IOException, InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            HttpRequest updateRequest = HttpRequest.newBuilder()
+                    .uri(URI.create(baseUrl + "/messages/1"))
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"updated " + i + "\"}"))
+                    .header("Content-Type", "application/json")
+                    .build();
+            Assert.assertEquals(200, webClient.send(updateRequest, HttpResponse.BodyHandlers.discarding()).statusCode());
+        }
+
+        HttpResponse<String> response = get("/stats/trending");
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals(0, objectMapper.readTree(response.body()).get("messages").size());
+    }
+
+    private long messageCacheHits() throws IOException, InterruptedException {
+        Matcher matcher = MESSAGE_CACHE_HITS.matcher(get("/metrics").body());
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : 0;
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create(baseUrl + path)).build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void postMessage(String messageText) throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"" + messageText + "\", " +
+                        "\"time_posted_epoch\": 1669947793}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(postMessageRequest, HttpResponse.BodyHandlers.discarding()).statusCode());
+    }
+}